@@ -0,0 +1,83 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.filter.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled {@link RuleMatcher} with the evaluation of the rules one by one.
+ * Run with: mvn -pl arlas-commons -Pbenchmark test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleMatcherBenchmark {
+
+    @Param({"10", "50", "100", "500"})
+    public int ruleCount;
+
+    private List<RuleClaim> rules;
+    private RuleMatcher matcher;
+    private String lastRulePath;
+    private String deniedPath;
+
+    @Setup
+    public void setup() {
+        rules = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) {
+            switch (i % 3) {
+                case 0 -> rules.add(new RuleClaim("/explore/collection" + i + "/_search", "GET", 1));
+                case 1 -> rules.add(new RuleClaim("/explore/\\Qorg" + i + ".com\\E_.*", "GET,POST", 1));
+                default -> rules.add(new RuleClaim("/explore/collection" + i + "/_(count|compute)", "GET,POST", 1));
+            }
+        }
+        matcher = new RuleMatcher(rules);
+        lastRulePath = (ruleCount - 1) % 3 == 1 ? "/explore/org" + (ruleCount - 1) + ".com_data/_search"
+                : "/explore/collection" + (ruleCount - 1) + ((ruleCount - 1) % 3 == 0 ? "/_search" : "/_count");
+        deniedPath = "/explore/unknown/_search";
+    }
+
+    @Benchmark
+    public boolean rulesAllowed() {
+        return rules.stream().anyMatch(rule -> rule.match("GET", lastRulePath));
+    }
+
+    @Benchmark
+    public boolean rulesDenied() {
+        return rules.stream().anyMatch(rule -> rule.match("GET", deniedPath));
+    }
+
+    @Benchmark
+    public boolean matcherAllowed() {
+        return matcher.matches("GET", lastRulePath);
+    }
+
+    @Benchmark
+    public boolean matcherDenied() {
+        return matcher.matches("GET", deniedPath);
+    }
+}
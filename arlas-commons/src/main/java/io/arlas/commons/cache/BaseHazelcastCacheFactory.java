@@ -26,7 +26,7 @@ public class BaseHazelcastCacheFactory extends CacheFactory {
 
     public BaseHazelcastCacheFactory(ArlasConfiguration configuration) {
         super(configuration);
-        this.cacheManager = new BaseHazelcastCacheManager(configuration.arlasCacheTimeout);
+        this.cacheManager = new BaseHazelcastCacheManager(configuration.arlasCacheTimeout, configuration.arlasCacheSize);
     }
 
     @Override
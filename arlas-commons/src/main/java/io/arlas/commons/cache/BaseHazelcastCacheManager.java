@@ -19,25 +19,71 @@
 
 package io.arlas.commons.cache;
 
-import com.hazelcast.config.Config;
+import com.hazelcast.config.*;
+import com.hazelcast.core.DistributedObject;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.HazelcastInstanceNotActiveException;
+import com.hazelcast.map.IMap;
+import com.hazelcast.nearcache.NearCacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
+/**
+ * Objects are stored in partitioned maps: each member only holds its partitions (and their backups).
+ * A bounded near cache is held by each member in front of the maps, except the ones given at creation (e.g. maps of
+ * large or short-lived entries): it is invalidated by Hazelcast when an entry changes.
+ * Invalidations of objects derived from the cached ones (e.g. all the entries of a collection) are broadcast
+ * to the other members over a topic.
+ */
 public class BaseHazelcastCacheManager implements BaseCacheManager {
     Logger LOGGER = LoggerFactory.getLogger(BaseHazelcastCacheManager.class);
+    private static final String INVALIDATION_TOPIC = "arlas-invalidations";
     final private Config hzConfig;
     final protected int cacheTimeout;
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
     protected HazelcastInstance instance;
 
     public BaseHazelcastCacheManager(int cacheTimeout) {
+        this(cacheTimeout, 1000);
+    }
+
+    /**
+     * @param cacheTimeout  time to live of the cached objects, in seconds
+     * @param nearCacheSize maximum number of entries of the near cache of each map
+     */
+    public BaseHazelcastCacheManager(int cacheTimeout, int nearCacheSize) {
+        this(cacheTimeout, nearCacheSize, List.of());
+    }
+
+    /**
+     * @param cacheTimeout     time to live of the cached objects, in seconds
+     * @param nearCacheSize    maximum number of entries of the near cache of each map
+     * @param noNearCacheMaps  name patterns (e.g. "*-explore") of the maps held without near cache
+     */
+    public BaseHazelcastCacheManager(int cacheTimeout, int nearCacheSize, List<String> noNearCacheMaps) {
         this.cacheTimeout = cacheTimeout;
         this.hzConfig = new Config();
         hzConfig.setProperty( "hazelcast.phone.home.enabled", "false" );
+        // the near cache keeps the objects as they are: no deserialization on a hit, and local entries are cached too
+        hzConfig.addMapConfig(new MapConfig("*")
+                .setNearCacheConfig(new NearCacheConfig()
+                        .setInMemoryFormat(InMemoryFormat.OBJECT)
+                        .setInvalidateOnChange(true)
+                        .setCacheLocalEntries(true)
+                        .setEvictionConfig(new EvictionConfig()
+                                .setEvictionPolicy(EvictionPolicy.LRU)
+                                .setMaxSizePolicy(MaxSizePolicy.ENTRY_COUNT)
+                                .setSize(nearCacheSize))));
+        // the most specific pattern matching the name of a map wins over "*"
+        noNearCacheMaps.forEach(pattern -> hzConfig.addMapConfig(new MapConfig(pattern)));
         // no need to expose the following env variable as a server configuration as it is set by Arlas Cloud if needed
         String dns = System.getenv("ARLAS_CLOUD_SERVER_DNS");
         if (dns != null) {
@@ -54,30 +100,75 @@ public class BaseHazelcastCacheManager implements BaseCacheManager {
     protected void init() {
         LOGGER.info("Starting Hazelcast member");
         this.instance = Hazelcast.newHazelcastInstance(this.hzConfig);
+        this.instance.<String>getTopic(INVALIDATION_TOPIC).addMessageListener(message -> {
+            // the publishing member has already invalidated its own objects
+            if (!message.getPublishingMember().localMember()) {
+                LOGGER.debug("Invalidating '{}' on request of {}", message.getMessageObject(), message.getPublishingMember());
+                invalidationListeners.forEach(listener -> listener.accept(message.getMessageObject()));
+            }
+        });
     }
 
-    @Override
-    public Object getObject(String key, String ref) {
-        Object c;
+    /**
+     * Applies the operation to the map, recovering from an unexpected shutdown of the Hazelcast member.
+     */
+    protected <T> T onMap(String key, Function<IMap<String, Object>, T> operation) {
         try {
-            c = this.instance.getReplicatedMap(key).get(ref);
+            return operation.apply(this.instance.getMap(key));
         } catch (HazelcastInstanceNotActiveException e) { // recover from unexpected shutdown
             init();
-            c = this.instance.getReplicatedMap(key).get(ref);
+            return operation.apply(this.instance.getMap(key));
         }
-        LOGGER.debug(String.format("Returning {'%s':{'%s': '%s'}}", key, ref, (c == null ? "null" : c.toString())));
-        return c;
     }
 
-    @Override
-    public void putObject(String key, String ref, Object o, long timeout) {
-        LOGGER.debug(String.format("Inserting {'%s':{'%s': '%s'}}", key, ref, o));
+    /**
+     * Registers a listener called with the reference of the objects invalidated by another member.
+     */
+    public void addInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    /**
+     * Asks the other members to invalidate the objects derived from the given reference.
+     */
+    public void publishInvalidation(String ref) {
         try {
-            this.instance.getReplicatedMap(key).put(ref, o, timeout, TimeUnit.SECONDS);
+            this.instance.<String>getTopic(INVALIDATION_TOPIC).publish(ref);
         } catch (HazelcastInstanceNotActiveException e) { // recover from unexpected shutdown
             init();
-            this.instance.getReplicatedMap(key).put(ref, o, timeout, TimeUnit.SECONDS);
+            this.instance.<String>getTopic(INVALIDATION_TOPIC).publish(ref);
+        }
+    }
+
+    public long getNearCacheHits() {
+        return sumNearCacheStats(NearCacheStats::getHits);
+    }
+
+    public long getNearCacheMisses() {
+        return sumNearCacheStats(NearCacheStats::getMisses);
+    }
+
+    private long sumNearCacheStats(ToLongFunction<NearCacheStats> stat) {
+        long sum = 0;
+        for (DistributedObject object : this.instance.getDistributedObjects()) {
+            if (object instanceof IMap<?, ?> map && map.getLocalMapStats().getNearCacheStats() != null) {
+                sum += stat.applyAsLong(map.getLocalMapStats().getNearCacheStats());
+            }
         }
+        return sum;
+    }
+
+    @Override
+    public Object getObject(String key, String ref) {
+        Object c = onMap(key, map -> map.get(ref));
+        LOGGER.debug("Returning {'{}':{'{}': '{}'}}", key, ref, c);
+        return c;
+    }
+
+    @Override
+    public void putObject(String key, String ref, Object o, long timeout) {
+        LOGGER.debug("Inserting {'{}':{'{}': '{}'}}", key, ref, o);
+        onMap(key, map -> map.put(ref, o, timeout, TimeUnit.SECONDS));
     }
 
     @Override
@@ -87,12 +178,7 @@ public class BaseHazelcastCacheManager implements BaseCacheManager {
 
     @Override
     public void removeObject(String key, String ref) {
-        LOGGER.debug(String.format("Clearing {'%s':{'%s': ''}}", key, ref));
-        try {
-            this.instance.getReplicatedMap(key).remove(ref);
-        } catch (HazelcastInstanceNotActiveException e) { // recover from unexpected shutdown
-            init();
-            this.instance.getReplicatedMap(key).remove(ref);
-        }
+        LOGGER.debug("Clearing {'{}':{'{}': ''}}", key, ref);
+        onMap(key, map -> map.remove(ref));
     }
 }
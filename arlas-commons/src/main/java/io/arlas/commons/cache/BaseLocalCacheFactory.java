@@ -26,7 +26,7 @@ public class BaseLocalCacheFactory extends CacheFactory {
 
     public BaseLocalCacheFactory(ArlasConfiguration configuration) {
         super(configuration);
-        this.cacheManager = new BaseLocalCacheManager(configuration.arlasCacheTimeout);
+        this.cacheManager = new BaseLocalCacheManager(configuration.arlasCacheTimeout, configuration.arlasCacheSize);
     }
 
     @Override
@@ -19,37 +19,83 @@
 
 package io.arlas.commons.cache;
 
-import io.arlas.commons.utils.SelfExpiringHashMap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is a local cache implementation (no network replication)
+ * Each namespace is a bounded cache: entries are admitted and evicted according to their frequency of use
+ * (W-TinyLFU), reads do not lock and expired entries are removed in the background.
+ * An entry expires when it has not been read for its time to live.
  */
 public class BaseLocalCacheManager implements BaseCacheManager {
     Logger LOGGER = LoggerFactory.getLogger(BaseLocalCacheManager.class);
     final protected long cacheTimeout;
-    final protected Map<String, SelfExpiringHashMap<String, Object>> cache;
+    final protected long cacheSize;
+    final protected Map<String, Cache<String, Entry>> cache;
 
     public BaseLocalCacheManager(int cacheTimeout) {
+        this(cacheTimeout, 1000);
+    }
+
+    /**
+     * @param cacheTimeout default time to live of the entries, in seconds
+     * @param cacheSize    maximum number of entries of each namespace
+     */
+    public BaseLocalCacheManager(int cacheTimeout, long cacheSize) {
         this.cacheTimeout = cacheTimeout;
+        this.cacheSize = cacheSize;
         this.cache = new ConcurrentHashMap<>();
     }
 
+    protected Cache<String, Entry> getCache(String key) {
+        Cache<String, Entry> namespace = this.cache.get(key);
+        return namespace != null ? namespace : this.cache.computeIfAbsent(key, k -> Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new EntryExpiry())
+                .scheduler(Scheduler.systemScheduler())
+                .recordStats()
+                .build());
+    }
+
+    /**
+     * Removes all the entries of the namespace.
+     */
+    protected void clear(String key) {
+        Cache<String, Entry> namespace = this.cache.get(key);
+        if (namespace != null) {
+            namespace.invalidateAll();
+        }
+    }
+
+    /**
+     * @return the statistics of all the namespaces: hits, misses, evictions...
+     */
+    public CacheStats getStats() {
+        return this.cache.values().stream().map(Cache::stats).reduce(CacheStats.empty(), CacheStats::plus);
+    }
+
     @Override
     public Object getObject(String key, String ref) {
-        Object c = this.cache.computeIfAbsent(key, k -> new SelfExpiringHashMap<>()).get(ref);
-        LOGGER.debug(String.format("Returning {'%s':{'%s': '%s'}}", key, ref, (c == null ? "null" : c.toString())));
+        Entry entry = getCache(key).getIfPresent(ref);
+        Object c = entry == null ? null : entry.value;
+        LOGGER.debug("Returning {'{}':{'{}': '{}'}}", key, ref, c);
         return c;
     }
 
     @Override
     public void putObject(String key, String ref, Object o, long timeout) {
-        LOGGER.debug(String.format("Inserting {'%s':{'%s': '%s'}}", key, ref, o));
-        this.cache.computeIfAbsent(key, k -> new SelfExpiringHashMap<>()).put(ref, o, timeout * 1000L);
+        LOGGER.debug("Inserting {'{}':{'{}': '{}'}}", key, ref, o);
+        getCache(key).put(ref, new Entry(o, TimeUnit.SECONDS.toNanos(timeout)));
     }
 
     @Override
@@ -59,7 +105,27 @@ public class BaseLocalCacheManager implements BaseCacheManager {
 
     @Override
     public void removeObject(String key, String ref) {
-        LOGGER.debug(String.format("Clearing {'%s':{'%s': ''}}", key, ref));
-        this.cache.computeIfAbsent(key, k -> new SelfExpiringHashMap<>()).remove(ref);
+        LOGGER.debug("Clearing {'{}':{'{}': ''}}", key, ref);
+        getCache(key).invalidate(ref);
+    }
+
+    protected record Entry(Object value, long timeToLiveNanos) {
+    }
+
+    private static class EntryExpiry implements Expiry<String, Entry> {
+        @Override
+        public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            return entry.timeToLiveNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return entry.timeToLiveNanos;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return entry.timeToLiveNanos;
+        }
     }
 }
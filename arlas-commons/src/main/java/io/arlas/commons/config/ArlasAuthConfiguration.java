@@ -22,6 +22,8 @@ package io.arlas.commons.config;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.arlas.commons.exceptions.ArlasConfigurationException;
 import io.arlas.filter.config.InitConfiguration;
+import io.arlas.filter.core.RuleClaim;
+import io.arlas.filter.core.RuleMatcher;
 import jakarta.ws.rs.HttpMethod;
 import org.keycloak.representations.adapters.config.AdapterConfig;
 
@@ -29,6 +31,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class ArlasAuthConfiguration {
+    private static final List<String> METHODS = Arrays.asList(HttpMethod.DELETE, HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH);
 
     @JsonProperty("permission_url")
     public String permissionUrl;
@@ -75,10 +78,12 @@ public class ArlasAuthConfiguration {
 
     private String publicRegex;
 
+    private RuleMatcher publicMatcher;
+
     public String getPublicRegex()  {
         // [swagger.*:*, persist.*:GET/POST/DELETE}]
         if (this.publicRegex == null) {
-            final String allMethods = ":" + String.join("/", Arrays.asList(HttpMethod.DELETE, HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH));
+            final String allMethods = ":" + String.join("/", METHODS);
             String pathToVerbs = Optional.ofNullable(this.publicUris)
                     .orElse(Collections.emptyList())
                     .stream()
@@ -94,15 +99,29 @@ public class ArlasAuthConfiguration {
         return this.publicRegex;
     }
 
+    /**
+     * Compiled form of {@link #getPublicRegex()}: a request is public if its method and path match one of the public uris.
+     */
+    public RuleMatcher getPublicMatcher() {
+        if (this.publicMatcher == null) {
+            this.publicMatcher = new RuleMatcher(Optional.ofNullable(this.publicUris)
+                    .orElse(Collections.emptyList())
+                    .stream()
+                    .map(u -> !u.contains(":") || u.endsWith(":*") ? new RuleClaim(u.split(":")[0], String.join(",", METHODS), 1)
+                            : new RuleClaim(u.split(":")[0], u.split(":")[1].replace("/", ","), 1))
+                    .toList());
+        }
+        return this.publicMatcher;
+    }
+
     public void check() throws ArlasConfigurationException  {
         // collect all invalid verbs declared after 'path:'
-        List<String> methods = Arrays.asList(HttpMethod.DELETE, HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH);
         Set<String> invalidVerbs = Optional.ofNullable(this.publicUris)
                 .orElse(Collections.emptyList())
                 .stream()
                 .filter(uri -> uri.contains(":") && !uri.endsWith(":*")) // no ':' or ends with ':*' then no further check is needed
                 .flatMap(uri -> Arrays.stream(uri.split(":")[1].split("/")))
-                .filter(verb -> !methods.contains(verb))
+                .filter(verb -> !METHODS.contains(verb))
                 .collect(Collectors.toSet());
 
         if (invalidVerbs.size() > 0) {
@@ -48,6 +48,9 @@ public class ArlasConfiguration extends Configuration {
     @JsonProperty("arlas-cache-timeout")
     public int arlasCacheTimeout;
 
+    @JsonProperty("arlas-cache-size")
+    public int arlasCacheSize;
+
     public static final String FLATTEN_CHAR = "_";
 
     public void check() throws ArlasConfigurationException {
@@ -69,5 +72,8 @@ public class ArlasConfiguration extends Configuration {
         if (arlasCacheFactoryClass == null) {
             arlasCacheFactoryClass = "io.arlas.commons.cache.NoCacheFactory";
         }
+        if (arlasCacheSize <= 0) {
+            arlasCacheSize = 1000;
+        }
     }
 }
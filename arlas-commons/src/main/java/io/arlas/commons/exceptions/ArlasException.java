@@ -40,10 +40,14 @@ public class ArlasException extends Exception {
     }
 
     public Response getResponse() {
-        return Response.status(status).entity(new Error(status.getStatusCode(), this.getClass().getName(), this.getMessage()))
+        return Response.status(status).entity(getError())
                 .type(MediaType.APPLICATION_JSON).build();
     }
 
+    public Error getError() {
+        return new Error(status.getStatusCode(), this.getClass().getName(), this.getMessage());
+    }
+
     public static Response getResponse(Exception e, Response.Status status, String message) {
         return Response.status(status).entity(new Error(status.getStatusCode(), e.getClass().getName(), message))
                 .type(MediaType.APPLICATION_JSON).build();
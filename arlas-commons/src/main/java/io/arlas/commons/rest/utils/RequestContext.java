@@ -0,0 +1,218 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.commons.rest.utils;
+
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.commons.exceptions.GatewayTimeoutException;
+import io.arlas.commons.exceptions.ServiceUnavailableException;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Context of the API request being processed: its identifier (sent to elasticsearch as X-Opaque-Id), unique even
+ * when clients reuse their X-Opaque-Id so that only the elasticsearch tasks of this request are cancelled,
+ * its deadline and the handlers cancelling the work done for the request (e.g. the running elasticsearch requests).
+ * The handlers are called when the client disconnects or when the deadline expires.
+ *
+ * The context is bound to the thread processing the request by the {@link RequestContextFilter}
+ * and must be propagated with {@link #wrap(Callable)} to the tasks run by other threads.
+ */
+public class RequestContext {
+    public static final String OPAQUE_ID_HEADER = "X-Opaque-Id";
+    public static final String TIMEOUT_HEADER = "arlas-timeout";
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+    private static final ScheduledThreadPoolExecutor DEADLINES = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "request-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        DEADLINES.setRemoveOnCancelPolicy(true);
+    }
+
+    private final String clientOpaqueId;
+    private final String opaqueId;
+    private final long timeoutMillis;
+    private final long deadline;
+    private final List<Runnable> cancellationHandlers = new CopyOnWriteArrayList<>();
+    private final ScheduledFuture<?> expiration;
+    private final boolean clientDeadline;
+    private volatile boolean expired = false;
+    private volatile boolean cancelled = false;
+    private volatile boolean finished = false;
+
+    /**
+     * @param opaqueId      identifier given by the client (X-Opaque-Id header), null or empty if none
+     * @param timeoutMillis time allowed to process the request, in milliseconds. 0 for no deadline.
+     */
+    public RequestContext(String opaqueId, long timeoutMillis) {
+        this(opaqueId, timeoutMillis, false);
+    }
+
+    /**
+     * @param opaqueId       identifier given by the client (X-Opaque-Id header), null or empty if none
+     * @param timeoutMillis  time allowed to process the request, in milliseconds. 0 for no deadline.
+     * @param clientDeadline true if the timeout has been shortened by the client (arlas-timeout header)
+     */
+    public RequestContext(String opaqueId, long timeoutMillis, boolean clientDeadline) {
+        this.clientDeadline = clientDeadline && timeoutMillis > 0;
+        String uuid = UUID.randomUUID().toString();
+        this.clientOpaqueId = opaqueId == null || opaqueId.isBlank() ? null : opaqueId;
+        // the client identifier is kept as a prefix so that the elasticsearch tasks can still be traced back to the client
+        this.opaqueId = clientOpaqueId == null ? uuid : clientOpaqueId + ";" + uuid;
+        this.timeoutMillis = timeoutMillis;
+        if (timeoutMillis > 0) {
+            this.deadline = System.currentTimeMillis() + timeoutMillis;
+            this.expiration = DEADLINES.schedule(this::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.deadline = Long.MAX_VALUE;
+            this.expiration = null;
+        }
+    }
+
+    /**
+     * @return the context of the request processed by the current thread, null if none or if its processing is over
+     */
+    public static RequestContext current() {
+        RequestContext context = CURRENT.get();
+        return context == null || context.finished ? null : context;
+    }
+
+    public static void set(RequestContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+
+    /**
+     * @return a task running the given task within the context of the current request
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        RequestContext context = current();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            RequestContext previous = CURRENT.get();
+            set(context);
+            try {
+                return task.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return the unique identifier of the request, sent to elasticsearch
+     */
+    public String getOpaqueId() {
+        return opaqueId;
+    }
+
+    /**
+     * @return the identifier given by the client if any, the unique identifier of the request otherwise
+     */
+    public String getClientOpaqueId() {
+        return clientOpaqueId != null ? clientOpaqueId : opaqueId;
+    }
+
+    public boolean hasDeadline() {
+        return expiration != null;
+    }
+
+    /**
+     * @return the time left before the deadline in milliseconds (at least 1), Long.MAX_VALUE if the request has no deadline
+     */
+    public long getRemainingMillis() {
+        return hasDeadline() ? Math.max(1, deadline - System.currentTimeMillis()) : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the deadline has been set by the client, shorter than the one of the server
+     */
+    public boolean isClientDeadline() {
+        return clientDeadline;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throws if the request has been cancelled or has exceeded its deadline: no more work should be done for it.
+     */
+    public void checkActive() throws ArlasException {
+        if (expired) {
+            throw new GatewayTimeoutException("The request exceeded its deadline of " + timeoutMillis + "ms.");
+        } else if (cancelled) {
+            throw new ServiceUnavailableException("The request has been cancelled.");
+        }
+    }
+
+    /**
+     * Registers a handler called when the request is cancelled (immediately if it already is).
+     * @return a runnable unregistering the handler, to be called once the work it cancels is over
+     */
+    public Runnable onCancel(Runnable handler) {
+        cancellationHandlers.add(handler);
+        if (cancelled && cancellationHandlers.remove(handler)) {
+            handler.run();
+        }
+        return () -> cancellationHandlers.remove(handler);
+    }
+
+    /**
+     * Cancels the work still running for the request.
+     */
+    public void cancel() {
+        if (finished) {
+            return;
+        }
+        cancelled = true;
+        for (Runnable handler : cancellationHandlers) {
+            if (cancellationHandlers.remove(handler)) {
+                handler.run();
+            }
+        }
+    }
+
+    private void expire() {
+        expired = true;
+        cancel();
+    }
+
+    /**
+     * Marks the processing of the request as over: the context is no more returned by {@link #current()}.
+     */
+    public void finish() {
+        finished = true;
+        cancellationHandlers.clear();
+        if (expiration != null) {
+            expiration.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.commons.rest.utils;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binds a {@link RequestContext} to each API request. The deadline of the request is the timeout configured for
+ * its endpoint (the first path segment starting with '_', e.g. `_geoaggregate`) or the default timeout,
+ * shortened by the `arlas-timeout` header (in milliseconds) when provided.
+ * The X-Opaque-Id header of the client is returned in the X-Opaque-Id response header (a generated identifier if none);
+ * the requests sent to elasticsearch carry it followed by an identifier unique to the request.
+ */
+public class RequestContextFilter implements Filter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestContextFilter.class);
+
+    private final long defaultTimeout;
+    private final Map<String, Long> endpointTimeouts = new HashMap<>();
+
+    /**
+     * @param defaultTimeout   timeout of the requests in milliseconds, 0 for no timeout
+     * @param endpointTimeouts comma separated list of endpoint:timeout values (e.g. `_search:30000,_geoaggregate:10000`)
+     */
+    public RequestContextFilter(long defaultTimeout, String endpointTimeouts) {
+        this.defaultTimeout = defaultTimeout;
+        if (endpointTimeouts != null && !endpointTimeouts.isBlank()) {
+            for (String endpointTimeout : endpointTimeouts.split(",")) {
+                String[] values = endpointTimeout.trim().split(":");
+                if (values.length != 2) {
+                    throw new IllegalArgumentException("Invalid endpoint timeout '" + endpointTimeout + "': expected endpoint:timeout");
+                }
+                this.endpointTimeouts.put(values[0].trim(), Long.parseLong(values[1].trim()));
+            }
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain) throws IOException, ServletException {
+        if (!(servletRequest instanceof HttpServletRequest request) || !(servletResponse instanceof HttpServletResponse response)) {
+            chain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+        long timeout = getTimeout(request);
+        long clientTimeout = getClientTimeout(request);
+        boolean clientDeadline = clientTimeout > 0 && (timeout <= 0 || clientTimeout < timeout);
+        RequestContext context = new RequestContext(request.getHeader(RequestContext.OPAQUE_ID_HEADER),
+                clientDeadline ? clientTimeout : timeout, clientDeadline);
+        response.setHeader(RequestContext.OPAQUE_ID_HEADER, context.getClientOpaqueId());
+        RequestContext.set(context);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestContext.set(null);
+            finishOnCompletion(request, context);
+        }
+    }
+
+    private void finishOnCompletion(HttpServletRequest request, RequestContext context) {
+        if (request.isAsyncStarted()) {
+            try {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        context.finish();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        // e.g. the client disconnected
+                        context.cancel();
+                        context.finish();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+                return;
+            } catch (IllegalStateException e) {
+                // the asynchronous processing is already over
+            }
+        }
+        context.finish();
+    }
+
+    /**
+     * @return the timeout of the endpoint of the request, the default timeout if the endpoint has none
+     */
+    private long getTimeout(HttpServletRequest request) {
+        for (String segment : request.getRequestURI().split("/")) {
+            if (segment.startsWith("_")) {
+                return endpointTimeouts.getOrDefault(segment, defaultTimeout);
+            }
+        }
+        return defaultTimeout;
+    }
+
+    /**
+     * @return the timeout requested by the client with the arlas-timeout header, 0 if none. It can only shorten the
+     * timeout of the server.
+     */
+    private long getClientTimeout(HttpServletRequest request) {
+        String header = request.getHeader(RequestContext.TIMEOUT_HEADER);
+        if (header != null && !header.isBlank()) {
+            try {
+                return Math.max(0, Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Invalid {} header: {}", RequestContext.TIMEOUT_HEADER, header);
+            }
+        }
+        return 0;
+    }
+}
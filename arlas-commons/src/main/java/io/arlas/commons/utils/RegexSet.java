@@ -0,0 +1,166 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.commons.utils;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Set of regular expressions compiled once, to check whether a string fully matches any of them
+ * without evaluating the expressions one by one:
+ * <ul>
+ *     <li>literal expressions are looked up in a hash set,</li>
+ *     <li>expressions made of a literal prefix followed by ".*" are looked up in a prefix trie,</li>
+ *     <li>the other expressions are combined in a single regular expression.</li>
+ * </ul>
+ * It is immutable and thread safe.
+ */
+public class RegexSet {
+    private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}";
+    private static final String ANY_SUFFIX = ".*";
+
+    private final Set<String> literals = new HashSet<>();
+    private final PrefixNode prefixes = new PrefixNode();
+    private final Pattern others;
+    // all the expressions, used when the input contains a line terminator that '.' does not match
+    private final Pattern all;
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if one of the expressions is invalid
+     */
+    public RegexSet(Collection<String> regexes) {
+        List<String> distinct = regexes.stream().distinct().toList();
+        List<String> otherRegexes = new ArrayList<>();
+        for (String regex : distinct) {
+            String literal = toLiteral(regex);
+            String prefix = regex.endsWith(ANY_SUFFIX) && !regex.endsWith("\\" + ANY_SUFFIX)
+                    ? toLiteral(regex.substring(0, regex.length() - ANY_SUFFIX.length())) : null;
+            if (literal != null) {
+                literals.add(literal);
+            } else if (prefix != null) {
+                prefixes.add(prefix);
+            } else {
+                otherRegexes.add(regex);
+            }
+        }
+        this.others = combine(otherRegexes);
+        this.all = combine(distinct);
+    }
+
+    public boolean isEmpty() {
+        return all == null;
+    }
+
+    public boolean matches(String input) {
+        if (all == null) {
+            return false;
+        }
+        if (hasLineTerminator(input)) {
+            return all.matcher(input).matches();
+        }
+        return literals.contains(input)
+                || prefixes.matchesPrefixOf(input)
+                || (others != null && others.matcher(input).matches());
+    }
+
+    /**
+     * Returns the literal string matched by the regex, or null if the regex is not a literal.
+     * Quoted sections (\Q...\E) and escaped characters are supported, as produced by {@link Pattern#quote(String)}.
+     */
+    static String toLiteral(String regex) {
+        StringBuilder literal = new StringBuilder(regex.length());
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return null;
+                }
+                char next = regex.charAt(i + 1);
+                if (next == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    if (end < 0) {
+                        literal.append(regex, i + 2, regex.length());
+                        return literal.toString();
+                    }
+                    literal.append(regex, i + 2, end);
+                    i = end + 2;
+                } else if (!Character.isLetterOrDigit(next)) {
+                    literal.append(next);
+                    i += 2;
+                } else {
+                    // character classes (\d, \w...) and back references
+                    return null;
+                }
+            } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        return literal.toString();
+    }
+
+    private static boolean hasLineTerminator(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern combine(Collection<String> regexes) {
+        return regexes.isEmpty() ? null
+                : Pattern.compile(regexes.stream().map(r -> "(?:" + r + ")").collect(Collectors.joining("|")));
+    }
+
+    private static class PrefixNode {
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+        private boolean terminal = false;
+
+        private void add(String prefix) {
+            PrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixNode());
+            }
+            node.terminal = true;
+        }
+
+        private boolean matchesPrefixOf(String input) {
+            PrefixNode node = this;
+            for (int i = 0; ; i++) {
+                if (node.terminal) {
+                    return true;
+                }
+                if (i == input.length()) {
+                    return false;
+                }
+                node = node.children.get(input.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+        }
+    }
+}
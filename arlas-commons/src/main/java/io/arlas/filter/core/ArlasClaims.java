@@ -34,6 +34,7 @@ public class ArlasClaims {
     private final List<RuleClaim> rules;
     private final Map<String, List<String>> headers;
     private final Map<String, String> variables;
+    private final RuleMatcher matcher;
 
     private final static String COLUMN_FILTER_HEADER_PREFIX = "h:column-filter";
 
@@ -74,9 +75,17 @@ public class ArlasClaims {
 
         Collections.sort(rules);
         variables.forEach(this::injectVariable);
+        this.matcher = new RuleMatcher(rules);
     }
 
     public boolean isAllowed(String method, String path) {
+        if (!LOGGER.isTraceEnabled()) {
+            boolean allowed = matcher.matches(method, path);
+            if (!allowed) {
+                LOGGER.debug("NO Matching rule found path '" + path + "' with method " + method);
+            }
+            return allowed;
+        }
         for (RuleClaim rule : rules) {
             if (rule.match(method, path)) {
                 LOGGER.trace("Matching rule '" + rule +"' for path '" + path + "' with method " + method);
@@ -0,0 +1,53 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.filter.core;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Security context resolved from an access token: identity, organisations, groups, permissions and the parsed claims
+ * (rules and headers to inject, with their variables already substituted).
+ * It is immutable so that it can be shared by all the requests carrying the same token until it expires.
+ *
+ * @param userId      subject of the token, may be null
+ * @param email       email of the subject
+ * @param orgs        organisations found in the roles of the token
+ * @param groups      groups found in the roles of the token
+ * @param permissions permissions of the token, including the permissions of the technical roles
+ * @param claims      claims parsed from the permissions
+ * @param expiresAt   instant after which the context must not be used anymore, null if the token does not expire
+ */
+public record ArlasSecurityContext(String userId,
+                                   Optional<String> email,
+                                   Set<String> orgs,
+                                   List<String> groups,
+                                   Set<String> permissions,
+                                   ArlasClaims claims,
+                                   Instant expiresAt) {
+
+    public ArlasSecurityContext {
+        orgs = Set.copyOf(orgs);
+        groups = List.copyOf(groups);
+        permissions = Set.copyOf(permissions);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.filter.core;
+
+import io.arlas.commons.utils.RegexSet;
+import jakarta.ws.rs.HttpMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Set of {@link RuleClaim} compiled once, so that checking a request does not evaluate the rules one by one.
+ * The resources of the rules are grouped by method in a {@link RegexSet}.
+ * It answers exactly like {@link RuleClaim#match(String, String)} applied to each rule.
+ */
+public class RuleMatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleMatcher.class);
+    private static final List<String> METHODS = List.of(HttpMethod.DELETE, HttpMethod.GET, HttpMethod.HEAD,
+            HttpMethod.OPTIONS, HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH);
+
+    private final List<RuleClaim> rules;
+    private final Map<String, RegexSet> matchers = new HashMap<>();
+
+    public RuleMatcher(List<RuleClaim> rules) {
+        this.rules = rules.stream().filter(rule -> isValid(rule.resource)).toList();
+        METHODS.stream().map(String::toLowerCase).forEach(m -> matchers.put(m, new RegexSet(this.rules.stream()
+                .filter(rule -> rule.verbs.contains(m))
+                .map(rule -> rule.resource)
+                .toList())));
+    }
+
+    public boolean matches(String method, String path) {
+        String m = method.toLowerCase();
+        RegexSet matcher = matchers.get(m);
+        if (matcher == null) {
+            // not a standard method: no need to keep a compiled matcher for it
+            return rules.stream().anyMatch(rule -> rule.match(m, path));
+        }
+        return matcher.matches(path);
+    }
+
+    private static boolean isValid(String regex) {
+        try {
+            Pattern.compile(regex);
+            return true;
+        } catch (PatternSyntaxException e) {
+            LOGGER.warn("Ignoring rule with invalid resource '{}': {}", regex, e.getDescription());
+            return false;
+        }
+    }
+}
@@ -21,13 +21,20 @@ package io.arlas.filter.impl;
 
 import co.elastic.apm.api.ElasticApm;
 import co.elastic.apm.api.Transaction;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
 import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import io.arlas.commons.cache.BaseCacheManager;
 import io.arlas.commons.config.ArlasAuthConfiguration;
 import io.arlas.commons.utils.StringUtil;
 import io.arlas.filter.config.TechnicalRoles;
 import io.arlas.filter.core.ArlasClaims;
+import io.arlas.filter.core.ArlasSecurityContext;
 import io.arlas.filter.core.PolicyEnforcer;
 import jakarta.annotation.Priority;
 import jakarta.servlet.http.HttpServletRequest;
@@ -42,7 +49,14 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -75,12 +89,15 @@ public abstract class AbstractPolicyEnforcer implements PolicyEnforcer {
     public static final String USER_EMAIL = "user.emaild";
     // This filter is used to protect private collection in public endpoint
     public static final String DUMMY_COLUMN_FILTER = "dummy:*";
+    // max number of security contexts kept in memory
+    private static final long MAX_SECURITY_CONTEXTS = 10000;
 
     private final Logger LOGGER = LoggerFactory.getLogger(AbstractPolicyEnforcer.class);
     protected ArlasAuthConfiguration authConf;
     protected BaseCacheManager cacheManager;
     private long cacheTimeout;
     protected boolean injectPermissions = true;
+    private LoadingCache<TokenKey, ArlasSecurityContext> securityContexts;
 
     private final Base64.Decoder decoder = Base64.getUrlDecoder();
 
@@ -100,9 +117,38 @@ public abstract class AbstractPolicyEnforcer implements PolicyEnforcer {
     public PolicyEnforcer setCacheTimeout(long timeout) throws Exception {
         // max cache timeout is 60s for decisions
         this.cacheTimeout = Math.min(timeout, 60);
+        this.securityContexts = this.cacheTimeout > 0 ? buildSecurityContextCache() : null;
         return this;
     }
 
+    /**
+     * The security contexts are kept until their token expires. Concurrent requests carrying the same token wait for
+     * a single resolution, and a context is refreshed in the background once it is older than the cache timeout
+     * so that the permission changes are still taken into account. A context whose refresh fails is dropped.
+     */
+    private LoadingCache<TokenKey, ArlasSecurityContext> buildSecurityContextCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(MAX_SECURITY_CONTEXTS)
+                .expireAfter(new TokenExpiry())
+                .refreshAfterWrite(Duration.ofSeconds(this.cacheTimeout))
+                .build(new CacheLoader<>() {
+                    @Override
+                    public ArlasSecurityContext load(TokenKey key) throws Exception {
+                        return resolveSecurityContext(key.accessToken, key.orgFilter);
+                    }
+
+                    @Override
+                    public ArlasSecurityContext reload(TokenKey key, ArlasSecurityContext oldValue) {
+                        try {
+                            return resolveSecurityContext(key.accessToken, key.orgFilter);
+                        } catch (Exception e) {
+                            LOGGER.warn("Security context refresh failed, it is removed from the cache: {}", e.getMessage());
+                            return null;
+                        }
+                    }
+                });
+    }
+
     @Override
     public PolicyEnforcer setCacheManager(BaseCacheManager baseCacheManager) {
         this.cacheManager = baseCacheManager;
@@ -129,6 +175,10 @@ public abstract class AbstractPolicyEnforcer implements PolicyEnforcer {
         }
     }
 
+    protected Optional<Instant> getExpiration(Object token) {
+        return Optional.ofNullable(((DecodedJWT) token).getExpiresAtAsInstant());
+    }
+
     protected Set<String> getPermissionsClaim(Object token) {
         Claim jwtClaimPermissions = ((DecodedJWT) token).getClaim(authConf.claimPermissions);
         if (!jwtClaimPermissions.isMissing() && !jwtClaimPermissions.isNull()) {
@@ -199,7 +249,7 @@ public abstract class AbstractPolicyEnforcer implements PolicyEnforcer {
 
         try {
             Transaction transaction = ElasticApm.currentTransaction();
-            boolean isPublic = path.concat(":").concat(method).matches(authConf.getPublicRegex());
+            boolean isPublic = authConf.getPublicMatcher().matches(method, path);
             boolean isApiKey = false;
             String keyIdHeader = ctx.getHeaderString(ARLAS_API_KEY_ID);
             String keySecretHeader = ctx.getHeaderString(ARLAS_API_KEY_SECRET);
@@ -226,67 +276,61 @@ public abstract class AbstractPolicyEnforcer implements PolicyEnforcer {
                     String.join(":", ARLAS_API_KEY, keyIdHeader, keySecretHeader)
                     : authHeader.substring(7);
             try {
-                Boolean ok = getDecision(getDecisionCacheKey(ctx, method, fullPath, accessToken));
+                String orgFilter = ctx.getHeaders().getFirst(ARLAS_ORG_FILTER);
+                LOGGER.debug("ARLAS_ORG_FILTER=" + orgFilter);
+                TokenKey tokenKey = new TokenKey(accessToken, orgFilter);
+                String decisionKey = getDecisionCacheKey(method, fullPath, tokenKey);
+                Boolean ok = getDecision(decisionKey);
                 if (ok != null && !ok) {
                     logUAM(LOGGER::warn, DENIED,"forbidden (from cache): " + log);
                     ctx.abortWith(Response.status(FORBIDDEN).build());
                     return;
                 }
-                String orgFilter = ctx.getHeaders().getFirst(ARLAS_ORG_FILTER);
-                LOGGER.debug("ARLAS_ORG_FILTER=" + orgFilter);
-                Object token = getObjectToken(accessToken, orgFilter);
-                Set<String> permissions = getPermissionsClaim(token);
-                Optional<String> org = Optional.ofNullable(new ArlasClaims(permissions.stream().toList()).getVariables().get(VAR_ORG));
+                ArlasSecurityContext securityContext = getSecurityContext(tokenKey);
                 if(ctx.getHeaders().get(PARTITION_FILTER) != null){
                     ctx.getHeaders().remove(PARTITION_FILTER); // remove it in case it's been set manually
                 }
                 ctx.getHeaders().remove(authConf.headerUser); // remove it in case it's been set manually
-                String userId = getSubject(token);
+                String userId = securityContext.userId();
                 if (!StringUtil.isNullOrEmpty(userId)) {
                     ctx.getHeaders().putSingle(authConf.headerUser, userId);
                     LOGGER.debug("Add Header [" + authConf.headerUser + ": " + userId + "]");
                     transaction.setUser(userId, "", "");
                     MDC.put(USER_ID, userId);
-                    getSubjectEmail(token).ifPresent(s -> MDC.put(USER_EMAIL, s));
+                    securityContext.email().ifPresent(s -> MDC.put(USER_EMAIL, s));
                     if (orgFilter != null) {
                         MDC.put(ORGANIZATION_NAME, orgFilter);
                     }
                 }
 
                 ctx.getHeaders().remove(authConf.headerGroup); // remove it in case it's been set manually
-                Map<String, Object> roles = getRolesClaim(token, org);
-                log = StringUtil.concat(log, String.format(" (orgs=%s)", roles.keySet()));
-                Set<String> groups = Collections.emptySet();
-                if (!roles.isEmpty()) {
-                    groups = roles.values().stream()
-                            .map(v -> (List<String>) v)
-                            .flatMap(Collection::stream)
-                            .filter(r -> r.toLowerCase().startsWith("group"))
-                            .collect(Collectors.toSet());
-                    ctx.setProperty("groups", groups.stream().toList());
-                    ctx.getHeaders().put(authConf.headerGroup, groups.stream().toList());
+                log = StringUtil.concat(log, String.format(" (orgs=%s)", securityContext.orgs()));
+                List<String> groups = securityContext.groups();
+                if (!securityContext.orgs().isEmpty()) {
+                    ctx.setProperty("groups", groups);
+                    ctx.getHeaders().put(authConf.headerGroup, groups);
                     LOGGER.debug("Add Header [" + authConf.headerGroup + ": " + groups + "]");
                 }
                 log = StringUtil.concat(log, String.format(" (groups=%s)", groups));
 
-                addTechnicalRolesToPermissions(permissions, roles);
-                log = StringUtil.concat(log, String.format(" (permissions=%s)", permissions));
-                if (!permissions.isEmpty()) {
-                    ArlasClaims arlasClaims = new ArlasClaims(permissions.stream().toList());
+                log = StringUtil.concat(log, String.format(" (permissions=%s)", securityContext.permissions()));
+                if (!securityContext.permissions().isEmpty()) {
+                    ArlasClaims arlasClaims = securityContext.claims();
                     ctx.setProperty("claims", arlasClaims.getRules());
                     if ((ok != null && ok) || arlasClaims.isAllowed(method, path)) {
                         arlasClaims.injectHeaders(ctx.getHeaders(), transaction);
-                        putDecision(getDecisionCacheKey(ctx, method, fullPath, accessToken), Boolean.TRUE);
+                        putDecision(decisionKey, Boolean.TRUE);
                         logUAM(LOGGER::debug, ALLOWED, "granted: " + log);
                         return;
                     }
                 }
                 if (isPublic) {
-                    putDecision(getDecisionCacheKey(ctx, method, fullPath, accessToken), Boolean.TRUE);
+                    putDecision(decisionKey, Boolean.TRUE);
                     ctx.getHeaders().add(COLUMN_FILTER, DUMMY_COLUMN_FILTER);
                     logUAM(LOGGER::debug, ALLOWED, "public (with token): " + log);
                     return;
                 }
+                putDecision(decisionKey, Boolean.FALSE);
             } catch (Exception e) {
                 LOGGER.warn("JWT verification failed.", e);
                 if (!isPublic) {
@@ -298,7 +342,6 @@ public abstract class AbstractPolicyEnforcer implements PolicyEnforcer {
                 }
                 return;
             }
-            putDecision(getDecisionCacheKey(ctx, method, fullPath, accessToken), Boolean.FALSE);
             logUAM(LOGGER::warn, DENIED,"forbidden (with token): " + log);
             ctx.abortWith(Response.status(FORBIDDEN).build());
         } finally {
@@ -322,16 +365,116 @@ public abstract class AbstractPolicyEnforcer implements PolicyEnforcer {
         cacheManager.putObject("decisions", path, decision, this.cacheTimeout);
     }
 
-    private String getDecisionCacheKey(ContainerRequestContext ctx, String method, String uri, String accessToken) {
-        return Integer.toString(Objects.hash(
-                method,
-                uri,
-                ctx.getHeaderString(ARLAS_ORG_FILTER),
-                accessToken));
+    private String getDecisionCacheKey(String method, String uri, TokenKey tokenKey) {
+        return String.join(" ", tokenKey.digest, String.valueOf(tokenKey.orgFilter), method, uri);
+    }
+
+    private ArlasSecurityContext getSecurityContext(TokenKey key) throws Exception {
+        if (securityContexts == null) {
+            return resolveSecurityContext(key.accessToken, key.orgFilter);
+        }
+        try {
+            return securityContexts.get(key);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Verifies the token (fetching the permissions from the remote service if needed) and extracts
+     * everything the filter needs from it.
+     */
+    private ArlasSecurityContext resolveSecurityContext(String accessToken, String orgFilter) throws Exception {
+        Object token = getObjectToken(accessToken, orgFilter);
+        Set<String> permissions = new HashSet<>(getPermissionsClaim(token));
+        Optional<String> org = Optional.ofNullable(new ArlasClaims(permissions.stream().toList()).getVariables().get(VAR_ORG));
+        Map<String, Object> roles = getRolesClaim(token, org);
+        List<String> groups = roles.values().stream()
+                .map(v -> (List<String>) v)
+                .flatMap(Collection::stream)
+                .filter(r -> r.toLowerCase().startsWith("group"))
+                .distinct()
+                .toList();
+        addTechnicalRolesToPermissions(permissions, roles);
+        Instant expiresAt = getExpiration(token).orElse(null);
+        Optional<Instant> accessTokenExpiresAt = getAccessTokenExpiration(accessToken);
+        if (accessTokenExpiresAt.isPresent() && (expiresAt == null || accessTokenExpiresAt.get().isBefore(expiresAt))) {
+            expiresAt = accessTokenExpiresAt.get();
+        }
+        return new ArlasSecurityContext(getSubject(token), getSubjectEmail(token), roles.keySet(), groups,
+                permissions, new ArlasClaims(permissions.stream().toList()), expiresAt);
+    }
+
+    private Optional<Instant> getAccessTokenExpiration(String accessToken) {
+        if (accessToken.startsWith(ARLAS_API_KEY)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(JWT.decode(accessToken).getExpiresAtAsInstant());
+        } catch (JWTDecodeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String digest(String accessToken) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(accessToken.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     protected String decodeToken(String token) {
         String[] chunks = token.split("\\.");
         return new String(decoder.decode(chunks[0])) + new String(decoder.decode(chunks[1]));
     }
-}
\ No newline at end of file
+
+    /**
+     * Key of the security context cache: the token is only compared through its hash.
+     */
+    private static final class TokenKey {
+        private final String digest;
+        private final String orgFilter;
+        private final String accessToken;
+
+        private TokenKey(String accessToken, String orgFilter) {
+            this.digest = digest(accessToken);
+            this.orgFilter = orgFilter;
+            this.accessToken = accessToken;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TokenKey other && digest.equals(other.digest) && Objects.equals(orgFilter, other.orgFilter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(digest, orgFilter);
+        }
+    }
+
+    /**
+     * A security context expires with its token, or after the cache timeout if the token does not expire.
+     */
+    private final class TokenExpiry implements Expiry<TokenKey, ArlasSecurityContext> {
+        @Override
+        public long expireAfterCreate(TokenKey key, ArlasSecurityContext value, long currentTime) {
+            if (value.expiresAt() == null) {
+                return Duration.ofSeconds(cacheTimeout).toNanos();
+            }
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Duration.between(Instant.now(), value.expiresAt()).getSeconds()));
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenKey key, ArlasSecurityContext value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TokenKey key, ArlasSecurityContext value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
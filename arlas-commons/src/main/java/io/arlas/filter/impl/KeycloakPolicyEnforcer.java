@@ -33,6 +33,7 @@ import org.keycloak.representations.idm.authorization.Permission;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
 import java.util.*;
 
 @Provider
@@ -70,6 +71,11 @@ public class KeycloakPolicyEnforcer extends AbstractPolicyEnforcer {
         return ((AccessToken)token).getSubject();
     }
 
+    @Override
+    protected Optional<Instant> getExpiration(Object token) {
+        return Optional.ofNullable(((AccessToken) token).getExp()).map(Instant::ofEpochSecond);
+    }
+
     @Override
     protected Optional<String> getSubjectEmail(Object token) {
         return Optional.ofNullable(((AccessToken) token).getEmail());
@@ -44,6 +44,7 @@ module arlas.commons {
     requires com.fasterxml.jackson.databind;
     requires com.fasterxml.jackson.dataformat.yaml;
     requires com.fasterxml.jackson.jakarta.rs.base;
+    requires com.github.benmanes.caffeine;
     requires com.hazelcast.core;
     requires io.dropwizard.core;
     requires io.swagger.v3.core;
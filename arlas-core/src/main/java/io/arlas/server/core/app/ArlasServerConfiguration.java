@@ -22,6 +22,7 @@ package io.arlas.server.core.app;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.arlas.commons.exceptions.ArlasConfigurationException;
 import io.arlas.commons.utils.StringUtil;
+import io.arlas.server.core.utils.GeometryCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,12 +52,72 @@ public class ArlasServerConfiguration extends ArlasBaseConfiguration {
     @JsonProperty("arlas-base-uri")
     public String arlasBaseUri;
 
-    @JsonProperty("arlas-cache-size")
-    public int arlasCacheSize;
-
     @JsonProperty("arlas-rest-cache-timeout")
     public int arlasRestCacheTimeout;
 
+    @JsonProperty("arlas-explore-cache-timeout")
+    public int arlasExploreCacheTimeout;
+
+    @JsonProperty("arlas-explore-cache-max-bytes")
+    public long arlasExploreCacheMaxBytes;
+
+    @JsonProperty("arlas-explore-cache-shared")
+    public Boolean arlasExploreCacheShared;
+
+    @JsonProperty("arlas-geometry-cache-max-vertices")
+    public Long arlasGeometryCacheMaxVertices;
+
+    @JsonProperty("arlas-geometry-simplify-max-vertices")
+    public Integer arlasGeometrySimplifyMaxVertices;
+
+    @JsonProperty("arlas-geometry-simplify-tolerance")
+    public Double arlasGeometrySimplifyTolerance;
+
+    @JsonProperty("arlas-request-timeout")
+    public long arlasRequestTimeout;
+
+    @JsonProperty("arlas-request-timeouts")
+    public String arlasRequestTimeouts;
+
+    @JsonProperty("arlas-response-threads")
+    public int arlasResponseThreads;
+
+    @JsonProperty("arlas-fanout-threads")
+    public int arlasFanOutThreads;
+
+    @JsonProperty("arlas-fanout-queue-size")
+    public int arlasFanOutQueueSize;
+
+    @JsonProperty("arlas-fanout-max-per-request")
+    public int arlasFanOutMaxPerRequest;
+
+    @JsonProperty("arlas-tile-fetch-threads")
+    public int arlasTileFetchThreads;
+
+    @JsonProperty("arlas-tile-prefetch")
+    public int arlasTilePrefetch;
+
+    @JsonProperty("arlas-tile-cache-timeout")
+    public int arlasTileCacheTimeout;
+
+    @JsonProperty("arlas-tile-cache-max-bytes")
+    public long arlasTileCacheMaxBytes;
+
+    @JsonProperty("arlas-tile-png-cache-dir")
+    public String arlasTilePngCacheDir;
+
+    @JsonProperty("arlas-tile-png-cache-timeout")
+    public int arlasTilePngCacheTimeout;
+
+    @JsonProperty("arlas-tile-png-cache-max-bytes")
+    public long arlasTilePngCacheMaxBytes;
+
+    @JsonProperty("arlas-export-page-size")
+    public int arlasExportPageSize;
+
+    @JsonProperty("arlas-export-keep-alive")
+    public String arlasExportKeepAlive;
+
     @JsonProperty("arlas-service-collections-enabled")
     public Boolean arlasServiceCollectionsEnabled;
 
@@ -97,12 +158,66 @@ public class ArlasServerConfiguration extends ArlasBaseConfiguration {
         if (StringUtil.isNullOrEmpty(arlasIndex)) {
             arlasIndex = ".arlas";
         }
-        if (arlasCacheSize < 0) {
-            arlasCacheSize = 1000;
-        }
         if (arlasCacheTimeout < 0) {
             arlasCacheTimeout = 60;
         }
+        if (arlasExploreCacheTimeout < 0) {
+            arlasExploreCacheTimeout = 0;
+        }
+        if (arlasExploreCacheMaxBytes < 0) {
+            arlasExploreCacheMaxBytes = 67108864;
+        }
+        if (arlasExploreCacheShared == null) {
+            arlasExploreCacheShared = false;
+        }
+        if (arlasGeometryCacheMaxVertices == null || arlasGeometryCacheMaxVertices < 0) {
+            arlasGeometryCacheMaxVertices = GeometryCache.DEFAULT_MAX_VERTICES;
+        }
+        if (arlasGeometrySimplifyMaxVertices == null || arlasGeometrySimplifyMaxVertices < 0) {
+            arlasGeometrySimplifyMaxVertices = 0;
+        }
+        if (arlasGeometrySimplifyTolerance == null || arlasGeometrySimplifyTolerance < 0) {
+            arlasGeometrySimplifyTolerance = 0d;
+        }
+        if (arlasRequestTimeout < 0) {
+            arlasRequestTimeout = 0;
+        }
+        if (arlasResponseThreads <= 0) {
+            arlasResponseThreads = 16;
+        }
+        if (arlasFanOutThreads <= 0) {
+            arlasFanOutThreads = 16;
+        }
+        if (arlasFanOutQueueSize <= 0) {
+            arlasFanOutQueueSize = 1000;
+        }
+        if (arlasFanOutMaxPerRequest <= 0) {
+            arlasFanOutMaxPerRequest = 4;
+        }
+        if (arlasTileFetchThreads <= 0) {
+            arlasTileFetchThreads = 16;
+        }
+        if (arlasTilePrefetch <= 0) {
+            arlasTilePrefetch = 4;
+        }
+        if (arlasTileCacheTimeout < 0) {
+            arlasTileCacheTimeout = 0;
+        }
+        if (arlasTileCacheMaxBytes < 0) {
+            arlasTileCacheMaxBytes = 67108864;
+        }
+        if (arlasTilePngCacheTimeout < 0) {
+            arlasTilePngCacheTimeout = 0;
+        }
+        if (arlasTilePngCacheMaxBytes < 0) {
+            arlasTilePngCacheMaxBytes = 268435456;
+        }
+        if (arlasExportPageSize <= 0) {
+            arlasExportPageSize = 1000;
+        }
+        if (StringUtil.isNullOrEmpty(arlasExportKeepAlive)) {
+            arlasExportKeepAlive = "1m";
+        }
         if (arlasServiceCollectionsEnabled == null) {
             arlasServiceCollectionsEnabled = true;
         }
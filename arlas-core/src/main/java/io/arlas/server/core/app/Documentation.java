@@ -25,6 +25,9 @@ public class Documentation {
     public static final String SHAPESEARCH_OPERATION = "Search and return the elements found in the collection(s) as features, given the filters, exported as a Shapefile"; // TODO: different?
     public static final String TILED_GEOSEARCH_OPERATION = "Search and return the elements found in the collection(s) and localized in the given tile(x,y,z) as features, given the filters";
     public static final String SEARCH_OPERATION = "Search and return the elements found in the collection, given the filters";
+    public static final String EXPORT_OPERATION = "Export all the elements found in the collection, given the filters, as a stream of json lines, of geojson features or of csv lines. "
+            + "The elements are read page after page from an Elasticsearch point in time and written as they are read, in no particular order";
+    public static final String EXPORT_FORMAT = "The format of the export : `ndjson` (one hit per line), `geojsonseq` (GeoJSON text sequence, one feature per record) or `csv` (one column per field of the collection)";
     public static final String OPENSEARCH_OPERATION = "Access to the OpenSearch Description document for the given collection";
     public static final String OPENSEARCH_CSW_OPERATION = "Access to the OpenSearch CSW Description document";
     public static final String PROJECTION_PARAM_INCLUDE = "List the name patterns of the field to be included in the result. Separate patterns with a comma.";
@@ -65,6 +68,9 @@ public class Documentation {
             "> __**Restriction 2**__: **from** param must be set to 0 or kept unset" +
             "\n \n";
     public static final String PAGE_PARAM_BEFORE = "Same idea that after param, but to retrieve the data placed before the pointed element, given the provided order (sort).";
+    public static final String SEARCH_PARAM_TRACK_TOTAL_HITS = "Accuracy of the total number of hits (**totalnb**): `true` to count all the hits, `false` to count none of them, " +
+            "or a number of hits up to which the hits are counted. When not counted exactly, **totalnb_relation** is `gte` and **totalnb** is a lower bound. " +
+            "Defaults to the `track_total_hits` parameter of the collection, otherwise `true`.";
     public static final String FILTER_PARAM_F = "- A triplet for filtering the result. Multiple filter can be provided in distinct parameters (AND operator is applied) or in the same parameter separated by semi-colons (OR operator is applied). " +
             "The order does not matter. " +
             "\n \n" +
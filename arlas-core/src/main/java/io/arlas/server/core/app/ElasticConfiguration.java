@@ -44,6 +44,45 @@ public class ElasticConfiguration {
     @JsonProperty("elastic-max-precision-threshold")
     public Integer elasticMaxPrecisionThreshold;
 
+    @JsonProperty("elastic-read-timeout")
+    public Integer elasticReadTimeout = 0;
+
+    @JsonProperty("elastic-connection-request-timeout")
+    public Integer elasticConnectionRequestTimeout = 0;
+
+    @JsonProperty("elastic-max-connections")
+    public Integer elasticMaxConnections = 100;
+
+    @JsonProperty("elastic-max-connections-per-node")
+    public Integer elasticMaxConnectionsPerNode = 50;
+
+    @JsonProperty("elastic-io-threads")
+    public Integer elasticIoThreads = 0;
+
+    @JsonProperty("elastic-idle-timeout")
+    public Integer elasticIdleTimeout = 0;
+
+    @JsonProperty("elastic-compression")
+    public Boolean elasticCompression = false;
+
+    @JsonProperty("elastic-sniff-interval")
+    public Integer elasticSniffInterval = 0;
+
+    @JsonProperty("elastic-circuit-breaker-failures")
+    public Integer elasticCircuitBreakerFailures = 0;
+
+    @JsonProperty("elastic-circuit-breaker-open-time")
+    public Integer elasticCircuitBreakerOpenTime = 30000;
+
+    @JsonProperty("elastic-hedging-budget")
+    public Integer elasticHedgingBudget = 0;
+
+    @JsonProperty("elastic-hedging-min-delay")
+    public Integer elasticHedgingMinDelay = 50;
+
+    @JsonProperty("elastic-index-pruning-refresh")
+    public Integer elasticIndexPruningRefresh = 0;
+
     public void check() throws ArlasConfigurationException {
         if (getElasticNodes().length == 0) {
             throw new ArlasConfigurationException("Elastic search configuration missing in config file.");
@@ -51,6 +90,45 @@ public class ElasticConfiguration {
         if (elasticEnableSsl == null) {
             elasticEnableSsl = false;
         }
+        if (elasticReadTimeout == null) {
+            elasticReadTimeout = 0;
+        }
+        if (elasticConnectionRequestTimeout == null) {
+            elasticConnectionRequestTimeout = 0;
+        }
+        if (elasticMaxConnections == null || elasticMaxConnections <= 0) {
+            elasticMaxConnections = 100;
+        }
+        if (elasticMaxConnectionsPerNode == null || elasticMaxConnectionsPerNode <= 0) {
+            elasticMaxConnectionsPerNode = 50;
+        }
+        if (elasticIoThreads == null) {
+            elasticIoThreads = 0;
+        }
+        if (elasticIdleTimeout == null) {
+            elasticIdleTimeout = 0;
+        }
+        if (elasticCompression == null) {
+            elasticCompression = false;
+        }
+        if (elasticSniffInterval == null) {
+            elasticSniffInterval = 0;
+        }
+        if (elasticCircuitBreakerFailures == null) {
+            elasticCircuitBreakerFailures = 0;
+        }
+        if (elasticCircuitBreakerOpenTime == null || elasticCircuitBreakerOpenTime <= 0) {
+            elasticCircuitBreakerOpenTime = 30000;
+        }
+        if (elasticHedgingBudget == null || elasticHedgingBudget < 0) {
+            elasticHedgingBudget = 0;
+        }
+        if (elasticHedgingMinDelay == null || elasticHedgingMinDelay < 0) {
+            elasticHedgingMinDelay = 50;
+        }
+        if (elasticIndexPruningRefresh == null || elasticIndexPruningRefresh < 0) {
+            elasticIndexPruningRefresh = 0;
+        }
     }
 
     public static String[] getCredentials(String elasticCredentials) {
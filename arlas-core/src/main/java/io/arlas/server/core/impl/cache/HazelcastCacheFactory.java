@@ -28,7 +28,7 @@ public class HazelcastCacheFactory extends CacheFactory {
 
     public HazelcastCacheFactory(ArlasConfiguration configuration) {
         super(configuration);
-        this.cacheManager = new HazelcastCacheManager(configuration.arlasCacheTimeout);
+        this.cacheManager = new HazelcastCacheManager(configuration.arlasCacheTimeout, configuration.arlasCacheSize);
     }
 
     @Override
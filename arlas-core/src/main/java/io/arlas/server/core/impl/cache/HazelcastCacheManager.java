@@ -26,17 +26,26 @@ import io.arlas.server.core.model.response.FieldType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
 
 /**
- * This cache holds a replicated map (named 'collections') for storing the collection references
- * and one replicated map per collection (named '<collection name>') for storing the elastic types.
+ * This cache holds a map (named 'collections') for storing the collection references
+ * and one map per collection (named '<collection name>') for storing the elastic types.
+ * The results of the explore requests are shared in one map per collection (named '<collection name>-explore'),
+ * without near cache: they are large and seldom read twice by the same member.
+ * When a collection reference is removed, the other members are asked to invalidate what they derived from it.
  */
 public class HazelcastCacheManager extends BaseHazelcastCacheManager implements CacheManager {
     Logger LOGGER = LoggerFactory.getLogger(HazelcastCacheManager.class);
+    private static final String EXPLORE_SUFFIX = "-explore";
 
     public HazelcastCacheManager(int cacheTimeout) {
-        super(cacheTimeout);
+        this(cacheTimeout, 1000);
+    }
+
+    public HazelcastCacheManager(int cacheTimeout, int nearCacheSize) {
+        super(cacheTimeout, nearCacheSize, List.of("*" + EXPLORE_SUFFIX));
     }
 
     @Override
@@ -47,17 +56,24 @@ public class HazelcastCacheManager extends BaseHazelcastCacheManager implements
     @Override
     public void putCollectionReference(String ref, CollectionReference col) {
         putObject("collections", ref, col);
-        LOGGER.debug("Clearing field types of collection '" + ref + "' from cache");
-        this.instance.getReplicatedMap(ref).clear();
-        this.instance.getReplicatedMap(ref+"-datefield").clear();
+        clearCollection(ref);
     }
 
     @Override
     public void removeCollectionReference(String ref) {
         removeObject("collections", ref);
-        LOGGER.debug("Clearing field types of collection '" + ref + "' from cache");
-        this.instance.getReplicatedMap(ref).clear();
-        this.instance.getReplicatedMap(ref+"-datefield").clear();
+        clearCollection(ref);
+        publishInvalidation(ref);
+    }
+
+    private void clearCollection(String ref) {
+        LOGGER.debug("Clearing field types of collection '{}' from cache", ref);
+        for (String key : new String[]{ref, ref + "-datefield", ref + EXPLORE_SUFFIX}) {
+            onMap(key, map -> {
+                map.clear();
+                return null;
+            });
+        }
     }
 
     @Override
@@ -94,4 +110,14 @@ public class HazelcastCacheManager extends BaseHazelcastCacheManager implements
     public void removeMapping(String indexName) {
         removeObject("mappings", indexName);
     }
+
+    @Override
+    public byte[] getExploreResult(String ref, String key) {
+        return (byte[]) getObject(ref + EXPLORE_SUFFIX, key);
+    }
+
+    @Override
+    public void putExploreResult(String ref, String key, byte[] result, long timeout) {
+        putObject(ref + EXPLORE_SUFFIX, key, result, timeout);
+    }
 }
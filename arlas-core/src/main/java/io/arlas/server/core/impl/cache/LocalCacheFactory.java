@@ -28,7 +28,7 @@ public class LocalCacheFactory extends CacheFactory {
 
     public LocalCacheFactory(ArlasConfiguration configuration) {
         super(configuration);
-        this.cacheManager = new LocalCacheManager(configuration.arlasCacheTimeout);
+        this.cacheManager = new LocalCacheManager(configuration.arlasCacheTimeout, configuration.arlasCacheSize);
     }
 
     @Override
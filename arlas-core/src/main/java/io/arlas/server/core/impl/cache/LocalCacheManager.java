@@ -20,7 +20,6 @@
 package io.arlas.server.core.impl.cache;
 
 import io.arlas.commons.cache.BaseLocalCacheManager;
-import io.arlas.commons.utils.SelfExpiringHashMap;
 import io.arlas.server.core.managers.CacheManager;
 import io.arlas.server.core.model.CollectionReference;
 import io.arlas.server.core.model.response.FieldType;
@@ -40,6 +39,10 @@ public class LocalCacheManager extends BaseLocalCacheManager implements CacheMan
         super(cacheTimeout);
     }
 
+    public LocalCacheManager(int cacheTimeout, long cacheSize) {
+        super(cacheTimeout, cacheSize);
+    }
+
     @Override
     public CollectionReference getCollectionReference(String ref) {
         return (CollectionReference) getObject("collections", ref);
@@ -48,17 +51,17 @@ public class LocalCacheManager extends BaseLocalCacheManager implements CacheMan
     @Override
     public void putCollectionReference(String ref, CollectionReference col) {
         putObject("collections", ref, col);
-        LOGGER.debug("Clearing field types of collection '" + ref + "' from cache");
-        this.cache.computeIfAbsent(ref, k -> new SelfExpiringHashMap<>()).clear();
-        this.cache.computeIfAbsent(ref+"-datefield", k -> new SelfExpiringHashMap<>()).clear();
+        LOGGER.debug("Clearing field types of collection '{}' from cache", ref);
+        clear(ref);
+        clear(ref+"-datefield");
     }
 
     @Override
     public void removeCollectionReference(String ref) {
         removeObject("collections", ref);
-        LOGGER.debug("Clearing field types of collection '" + ref + "' from cache");
-        this.cache.computeIfAbsent(ref, k -> new SelfExpiringHashMap<>()).clear();
-        this.cache.computeIfAbsent(ref+"-datefield", k -> new SelfExpiringHashMap<>()).clear();
+        LOGGER.debug("Clearing field types of collection '{}' from cache", ref);
+        clear(ref);
+        clear(ref+"-datefield");
     }
 
     @Override
@@ -95,4 +98,14 @@ public class LocalCacheManager extends BaseLocalCacheManager implements CacheMan
     public void removeMapping(String indexName) {
         removeObject("mappings", indexName);
     }
+
+    // The explore results are already held by the in-process ExploreResultCache: nothing to share
+    @Override
+    public byte[] getExploreResult(String ref, String key) {
+        return null;
+    }
+
+    @Override
+    public void putExploreResult(String ref, String key, byte[] result, long timeout) {
+    }
 }
@@ -93,4 +93,13 @@ public class NoCacheManager implements CacheManager {
     @Override
     public void removeMapping(String indexName) {
     }
+
+    @Override
+    public byte[] getExploreResult(String ref, String key) {
+        return null;
+    }
+
+    @Override
+    public void putExploreResult(String ref, String key, byte[] result, long timeout) {
+    }
 }
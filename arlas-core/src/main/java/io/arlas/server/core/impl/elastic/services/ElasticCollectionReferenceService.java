@@ -146,7 +146,7 @@ public class ElasticCollectionReferenceService extends CollectionReferenceServic
             throw new InternalServerErrorException("Unable to delete collection : " + response.result());
         } else {
         //explicit clean-up cache
-        cacheManager.removeCollectionReference(ref);
+        removeCollectionReferenceFromCache(ref);
         }
     }
 
@@ -157,15 +157,4 @@ public class ElasticCollectionReferenceService extends CollectionReferenceServic
             throw new InternalServerErrorException("Unable to index collection : " + response.result());
         }
     }
-
-    @Override
-    public boolean isDateField(String field, CollectionReference ref) throws ArlasException {
-        Boolean isDateField = cacheManager.getIsDateField(ref.collectionName, field);
-        if (isDateField == null) {
-            isDateField = client.isDateField(field, ref.params.indexName);
-            cacheManager.putIsDateField(ref.collectionName, field, isDateField);
-        }
-
-        return isDateField;
-    }
 }
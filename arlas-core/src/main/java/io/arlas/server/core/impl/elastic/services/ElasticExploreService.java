@@ -23,19 +23,25 @@ import co.elastic.clients.elasticsearch._types.GeoBounds;
 import co.elastic.clients.elasticsearch._types.GeoLocation;
 import co.elastic.clients.elasticsearch._types.LatLonGeoLocation;
 import co.elastic.clients.elasticsearch._types.aggregations.*;
-import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.HitsMetadata;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
 import co.elastic.clients.json.JsonData;
+import com.fasterxml.jackson.core.JsonGenerator;
 import io.arlas.commons.exceptions.ArlasException;
 import io.arlas.server.core.impl.elastic.core.ElasticDocument;
 import io.arlas.server.core.impl.elastic.utils.ElasticClient;
+import io.arlas.server.core.impl.elastic.utils.ElasticMultiSearch;
+import io.arlas.server.core.impl.elastic.utils.ElasticPointInTime;
 import io.arlas.server.core.impl.elastic.utils.GeoTypeMapper;
 import io.arlas.server.core.managers.CollectionReferenceManager;
 import io.arlas.server.core.model.CollectionReference;
 import io.arlas.server.core.model.Link;
 import io.arlas.server.core.model.enumerations.AggregatedGeometryEnum;
 import io.arlas.server.core.model.enumerations.ComputationEnum;
+import io.arlas.server.core.model.enumerations.ExportFormatEnum;
 import io.arlas.server.core.model.enumerations.GeoTypeEnum;
 import io.arlas.server.core.model.request.*;
 import io.arlas.server.core.model.request.Aggregation;
@@ -51,8 +57,15 @@ import org.locationtech.spatial4j.context.SpatialContext;
 import org.locationtech.spatial4j.io.GeohashUtils;
 import org.locationtech.spatial4j.shape.Rectangle;
 
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -65,12 +78,37 @@ public class ElasticExploreService extends ExploreService {
     public static final String GEODISTANCE = "geodistance";
     protected ElasticClient client;
     protected int arlasElasticMaxPrecisionThreshold;
+    private final ElasticMultiSearch multiSearch;
+    private int exportPageSize = 1000;
+    private String exportKeepAlive = "1m";
 
     public ElasticExploreService(ElasticClient client, CollectionReferenceService collectionReferenceService,
                                  String baseUri, int arlasRestCacheTimeout, int arlasElasticMaxPrecisionThreshold) {
         super(baseUri, arlasRestCacheTimeout, collectionReferenceService);
         this.client = client;
         this.arlasElasticMaxPrecisionThreshold = arlasElasticMaxPrecisionThreshold;
+        this.multiSearch = null;
+    }
+
+    /**
+     * Creates a view of the service whose non blocking requests are added to the given multi search instead of being sent.
+     */
+    private ElasticExploreService(ElasticExploreService exploreService, ElasticMultiSearch multiSearch) {
+        super(exploreService);
+        this.client = exploreService.client;
+        this.arlasElasticMaxPrecisionThreshold = exploreService.arlasElasticMaxPrecisionThreshold;
+        this.multiSearch = multiSearch;
+        this.exportPageSize = exploreService.exportPageSize;
+        this.exportKeepAlive = exploreService.exportKeepAlive;
+    }
+
+    /**
+     * @param pageSize  number of hits read from Elasticsearch at once by the exports
+     * @param keepAlive keep alive of the point in time of the exports between two pages (e.g. "1m")
+     */
+    public void setExport(int pageSize, String keepAlive) {
+        this.exportPageSize = pageSize;
+        this.exportKeepAlive = keepAlive;
     }
 
     public ElasticClient getClient() {
@@ -79,17 +117,42 @@ public class ElasticExploreService extends ExploreService {
 
     @Override
     public FluidSearchService getFluidSearch(CollectionReference collectionReference) {
-        return new ElasticFluidSearch(collectionReference, arlasElasticMaxPrecisionThreshold).setClient(client);
+        return new ElasticFluidSearch(collectionReference, arlasElasticMaxPrecisionThreshold).setClient(client).setMultiSearch(multiSearch);
+    }
+
+    /**
+     * The requests that are not already cached are sent to Elasticsearch in a single _msearch round trip.
+     */
+    @Override
+    public CompletableFuture<List<MultiExploreResponse>> multiAsync(List<Pair<CollectionReference, MixedRequest>> requests) {
+        if (multiSearch != null) {
+            return super.multiAsync(requests);
+        }
+        ElasticMultiSearch batch = new ElasticMultiSearch(client);
+        CompletableFuture<List<MultiExploreResponse>> responses = new ElasticExploreService(this, batch).multiAsync(requests);
+        batch.exec();
+        return responses;
     }
 
     @Override
     public Hits count(CollectionReference collectionReference,
                       FluidSearchService fluidSearch) throws ArlasException {
-        SearchResponse<Map> searchHits = ((ElasticFluidSearch) fluidSearch).exec();
+        return getCountHits(collectionReference, (ElasticFluidSearch) fluidSearch, ((ElasticFluidSearch) fluidSearch).exec());
+    }
 
+    @Override
+    protected CompletableFuture<Hits> countAsync(CollectionReference collectionReference,
+                                                 FluidSearchService fluidSearch) throws ArlasException {
+        return ((ElasticFluidSearch) fluidSearch).execAsync()
+                .thenApplyAsync(response -> getCountHits(collectionReference, (ElasticFluidSearch) fluidSearch, response), responseExecutor);
+    }
+
+    private Hits getCountHits(CollectionReference collectionReference, ElasticFluidSearch fluidSearch, ResponseBody<Map> searchHits) {
         Hits hits = new Hits(collectionReference.collectionName);
         hits.totalnb = searchHits.hits().total().value();
+        hits.totalnbRelation = searchHits.hits().total().relation().jsonValue();
         hits.nbhits = searchHits.hits().hits().size();
+        hits.geometryReduction = fluidSearch.getGeometryReduction();
         return hits;
     }
 
@@ -97,8 +160,20 @@ public class ElasticExploreService extends ExploreService {
     public ComputationResponse compute(CollectionReference collectionReference,
                                        FluidSearchService fluidSearch,
                                        String field, ComputationEnum metric) throws ArlasException {
-        SearchResponse<Map> response = ((ElasticFluidSearch) fluidSearch).exec();
+        return getComputationResponse((ElasticFluidSearch) fluidSearch, ((ElasticFluidSearch) fluidSearch).exec(), field, metric);
+    }
+
+    @Override
+    protected CompletableFuture<ComputationResponse> computeAsync(CollectionReference collectionReference,
+                                                                  FluidSearchService fluidSearch,
+                                                                  String field, ComputationEnum metric) throws ArlasException {
+        return ((ElasticFluidSearch) fluidSearch).execAsync()
+                .thenApplyAsync(response -> getComputationResponse((ElasticFluidSearch) fluidSearch, response, field, metric), responseExecutor);
+    }
+
+    private ComputationResponse getComputationResponse(ElasticFluidSearch fluidSearch, ResponseBody<Map> response, String field, ComputationEnum metric) {
         ComputationResponse computationResponse = new ComputationResponse();
+        computationResponse.geometryReduction = fluidSearch.getGeometryReduction();
         long startQueryTimestamp = System.nanoTime();
         computationResponse.field = field;
         computationResponse.metric = metric;
@@ -135,10 +210,24 @@ public class ElasticExploreService extends ExploreService {
 
     @Override
     public Hits search(MixedRequest request, CollectionReference collectionReference, Boolean flat, UriInfo uriInfo, String method) throws ArlasException {
-        HitsMetadata<Map> searchHits = getSearchHits(request, collectionReference);
+        ElasticFluidSearch fluidSearch = (ElasticFluidSearch) getSearchRequest(request, collectionReference);
+        return getHits(fluidSearch, fluidSearch.exec().hits(), request, collectionReference, flat, uriInfo, method);
+    }
+
+    @Override
+    public CompletableFuture<Hits> searchAsync(MixedRequest request, CollectionReference collectionReference, Boolean flat, UriInfo uriInfo, String method) throws ArlasException {
+        ElasticFluidSearch fluidSearch = (ElasticFluidSearch) getSearchRequest(request, collectionReference);
+        return thenApply(fluidSearch.execAsync(),
+                response -> getHits(fluidSearch, response.hits(), request, collectionReference, flat, uriInfo, method));
+    }
+
+    private Hits getHits(ElasticFluidSearch fluidSearch, HitsMetadata<Map> searchHits, MixedRequest request, CollectionReference collectionReference,
+                         Boolean flat, UriInfo uriInfo, String method) throws ArlasException {
         Search searchRequest  = (Search)request.basicRequest;
         Hits hits = new Hits(collectionReference.collectionName);
-        hits.totalnb = searchHits.total().value();
+        hits.geometryReduction = fluidSearch.getGeometryReduction();
+        hits.totalnb = getTotalnb(searchHits, searchRequest);
+        hits.totalnbRelation = getTotalnbRelation(searchHits);
         hits.nbhits = searchHits.hits().size();
         hits.hits = new ArrayList<>((int) hits.nbhits);
         // searchHitList should be a modifiable list in order to apply the Collections.reverse.
@@ -153,6 +242,48 @@ public class ElasticExploreService extends ExploreService {
         return hits;
     }
 
+    @Override
+    public CompletableFuture<StreamingOutput> searchAsStreamAsync(MixedRequest request, CollectionReference collectionReference, Boolean flat, UriInfo uriInfo, String method) throws ArlasException {
+        ElasticFluidSearch fluidSearch = (ElasticFluidSearch) getSearchRequest(request, collectionReference);
+        return fluidSearch.execAsync()
+                .thenApplyAsync(response -> getHitsOutput(response.hits(), fluidSearch, request, collectionReference, Boolean.TRUE.equals(flat), uriInfo, method), responseExecutor);
+    }
+
+    private StreamingOutput getHitsOutput(HitsMetadata<Map> searchHits, ElasticFluidSearch fluidSearch, MixedRequest request,
+                                          CollectionReference collectionReference, boolean flat, UriInfo uriInfo, String method) {
+        Search searchRequest  = (Search)request.basicRequest;
+        long totalnb = getTotalnb(searchHits, searchRequest);
+        // searchHitList should be a modifiable list in order to apply the Collections.reverse.
+        ArrayList<Hit<Map>> searchHitList = new ArrayList<>(searchHits.hits());
+        if(searchRequest.page != null && searchRequest.page.before != null ){
+            Collections.reverse(searchHitList);
+        }
+        HashMap<String, Link> links = getLinks(searchRequest, collectionReference, searchHitList.size(), searchHitList, uriInfo, method);
+        GeometryReduction geometryReduction = fluidSearch.getGeometryReduction();
+        return output -> {
+            try (JsonGenerator generator = streamMapper.getFactory().createGenerator(output)) {
+                generator.writeStartObject();
+                generator.writeStringField("collection", collectionReference.collectionName);
+                generator.writeArrayFieldStart("hits");
+                for (Hit<Map> hit : searchHitList) {
+                    // the flat data is written on the fly rather than copied in the hit
+                    writeHit(generator, new ArlasHit(collectionReference, hit.source(), searchRequest.returned_geometries, false, false), flat);
+                }
+                generator.writeEndArray();
+                generator.writeNumberField("nbhits", searchHitList.size());
+                generator.writeNumberField("totalnb", totalnb);
+                generator.writeStringField("totalnb_relation", getTotalnbRelation(searchHits));
+                generator.writeObjectField("links", links);
+                if (geometryReduction != null) {
+                    generator.writeObjectField("geometry_reduction", geometryReduction);
+                }
+                generator.writeEndObject();
+            } catch (ArlasException e) {
+                throw toWebApplicationException(e);
+            }
+        };
+    }
+
     private HashMap<String, Link> getLinks(Search searchRequest, CollectionReference collectionReference, long nbhits,
                                            List<Hit<Map>> searchHitList, UriInfo uriInfo, String method) {
         var links = new HashMap<String, Link>();
@@ -187,6 +318,24 @@ public class ElasticExploreService extends ExploreService {
         return !hits.isEmpty() && sort != null && (before != null || sort.contains(ref.params.idPath));
     }
 
+    /**
+     * Maps the response on the response executor, as the future is completed by the I/O threads of the elasticsearch client.
+     */
+    private <T, R> CompletableFuture<R> thenApply(CompletableFuture<T> future, ResponseMapper<T, R> mapper) {
+        return future.thenApplyAsync(response -> {
+            try {
+                return mapper.apply(response);
+            } catch (ArlasException e) {
+                throw new CompletionException(e);
+            }
+        }, responseExecutor);
+    }
+
+    @FunctionalInterface
+    private interface ResponseMapper<T, R> {
+        R apply(T response) throws ArlasException;
+    }
+
     private <T> T getSafe(Supplier<T> supplier) {
         try {
             return supplier.get();
@@ -242,6 +391,7 @@ public class ElasticExploreService extends ExploreService {
             newSearch.form = originalSearch.form;
             newSearch.projection = originalSearch.projection;
             newSearch.returned_geometries = originalSearch.returned_geometries;
+            newSearch.track_total_hits = originalSearch.track_total_hits;
             newSearch.page = newPage;
             link.href = uriUtil.getRequestUri();
             link.body = newSearch;
@@ -264,7 +414,7 @@ public class ElasticExploreService extends ExploreService {
 
     @Override
     public List<Map<String, JsonData>> searchAsRaw(MixedRequest request, CollectionReference collectionReference) throws ArlasException {
-        List<Hit<Map>> searchHitList = getSearchHits(request, collectionReference).hits();
+        List<Hit<Map>> searchHitList = getSearchHits(request, collectionReference, false).hits();
         List<Map<String, JsonData>> rawList = new ArrayList<>( searchHitList.size());
         for (Hit<Map> hit : searchHitList) {
             rawList.add(hit.source());
@@ -273,18 +423,42 @@ public class ElasticExploreService extends ExploreService {
 
     }
 
-    private HitsMetadata<Map> getSearchHits(MixedRequest request, CollectionReference collectionReference) throws ArlasException {
+    /**
+     * @param countHits false if the total number of hits is not used, in which case the hits are not counted
+     */
+    private HitsMetadata<Map> getSearchHits(MixedRequest request, CollectionReference collectionReference, boolean countHits) throws ArlasException {
         ElasticFluidSearch fluidSearch = (ElasticFluidSearch) getSearchRequest(request, collectionReference);
+        if (!countHits) {
+            fluidSearch.trackTotalHits(0);
+        }
         return fluidSearch.exec().hits();
     }
 
+    /**
+     * @return the total number of hits, or a lower bound of it when the hits are not all counted
+     */
+    private long getTotalnb(HitsMetadata<Map> searchHits, Search searchRequest) {
+        if (searchHits.total() != null) {
+            return searchHits.total().value();
+        }
+        // the hits are not counted: the returned hits and the skipped ones are known to match
+        return Optional.ofNullable(getSafe(() -> searchRequest.page.from)).orElse(0) + searchHits.hits().size();
+    }
+
+    /**
+     * @return 'eq' if the total number of hits is exact, 'gte' if it is a lower bound
+     */
+    private static String getTotalnbRelation(HitsMetadata<Map> searchHits) {
+        return (searchHits.total() != null ? searchHits.total().relation() : TotalHitsRelation.Gte).jsonValue();
+    }
+
     @Override
     public FeatureCollection getFeatures(MixedRequest request, CollectionReference collectionReference,
                                          boolean flat, UriInfo uriInfo, String method,
                                          HashMap<String, Object> context) throws ArlasException {
-        HitsMetadata<Map> searchHits = getSearchHits(request, collectionReference);
-        long totalnb = searchHits.total().value();
+        HitsMetadata<Map> searchHits = getSearchHits(request, collectionReference, true);
         Search searchRequest = (Search) request.basicRequest;
+        long totalnb = getTotalnb(searchHits, searchRequest);
         FeatureCollection fc = new FeatureCollection();
         // results should be a modifiable list in order to apply the Collections.reverse.
         List<co.elastic.clients.elasticsearch.core.search.Hit<Map>> results = new ArrayList<>(searchHits.hits());//NOSONAR
@@ -319,6 +493,106 @@ public class ElasticExploreService extends ExploreService {
         return fc;
     }
 
+    @Override
+    public StreamingOutput getShapefile(MixedRequest request, CollectionReference collectionReference) throws ArlasException {
+        HitsMetadata<Map> searchHits = getSearchHits(request, collectionReference, false);
+        Search searchRequest = (Search) request.basicRequest;
+        SortedMap<String, FieldType> fields = getShapefileFields(request, collectionReference);
+        Map<String, String> shapeColumnNames = collectionReference.params.collectionDisplayNames != null ?
+                collectionReference.params.collectionDisplayNames.shapeColumns : null;
+        return output -> {
+            ShapefileWriter writer = new ShapefileWriter(collectionReference.collectionName, getShapefileColumns(fields), shapeColumnNames);
+            // the writer is closed before its temporary directory is deleted
+            try (writer) {
+                for (Hit<Map> hit : searchHits.hits()) {
+                    ArlasHit arlasHit = new ArlasHit(collectionReference, hit.source(), searchRequest.returned_geometries, false, true);
+                    writeShapefileFeatures(writer, collectionReference, arlasHit, fields.keySet(), searchRequest.returned_geometries);
+                }
+                writer.zip(output);
+            } catch (ArlasException e) {
+                throw toWebApplicationException(e);
+            } finally {
+                writer.delete();
+            }
+        };
+    }
+
+    @Override
+    public StreamingOutput getFeaturesAsStream(MixedRequest request, CollectionReference collectionReference, boolean flat) throws ArlasException {
+        HitsMetadata<Map> searchHits = getSearchHits(request, collectionReference, false);
+        Search searchRequest = (Search) request.basicRequest;
+        // results should be a modifiable list in order to apply the Collections.reverse.
+        List<Hit<Map>> results = new ArrayList<>(searchHits.hits());
+        if (searchRequest.page != null && searchRequest.page.before != null) {
+            Collections.reverse(results);
+        }
+        return output -> {
+            try (JsonGenerator generator = streamMapper.getFactory().createGenerator(output)) {
+                generator.writeStartObject();
+                generator.writeStringField("type", "FeatureCollection");
+                generator.writeArrayFieldStart("features");
+                for (Hit<Map> hit : results) {
+                    // the flat properties are written on the fly rather than copied in the hit
+                    ArlasHit arlasHit = new ArlasHit(collectionReference, hit.source(), searchRequest.returned_geometries, false, true);
+                    writeFeatures(generator, collectionReference, arlasHit, searchRequest.returned_geometries, flat, false);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            } catch (ArlasException e) {
+                throw toWebApplicationException(e);
+            }
+        };
+    }
+
+    @Override
+    public StreamingOutput export(MixedRequest request, CollectionReference collectionReference, ExportFormatEnum format, boolean flat) throws ArlasException {
+        Search searchRequest = (Search) request.basicRequest;
+        ElasticFluidSearch fluidSearch = (ElasticFluidSearch) getCountRequest(request, collectionReference);
+        applyProjection(searchRequest.projection, fluidSearch, request.columnFilter, collectionReference);
+        List<String> columns = format == ExportFormatEnum.csv ? new ArrayList<>(getExportFields(request, collectionReference).keySet()) : null;
+        SearchRequest exportRequest = fluidSearch.build();
+        return output -> {
+            // the point in time is only opened once the output is written, so that it can not leak if the client
+            // disconnects before; a page is only read once the previous one has been written: a slow client slows down the export
+            try (ElasticPointInTime pointInTime = new ElasticPointInTime(client, exportRequest, exportPageSize, exportKeepAlive)) {
+                switch (format) {
+                    case csv -> {
+                        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                        writeCsvLine(writer, columns);
+                        List<Object> values = new ArrayList<>(columns.size());
+                        for (List<Hit<Map>> page = pointInTime.next(); !page.isEmpty(); page = pointInTime.next()) {
+                            for (Hit<Map> hit : page) {
+                                values.clear();
+                                for (String column : columns) {
+                                    values.add(MapExplorer.getObjectFromPath(column, hit.source()));
+                                }
+                                writeCsvLine(writer, values);
+                            }
+                            writer.flush();
+                        }
+                    }
+                    case ndjson, geojsonseq -> {
+                        JsonGenerator generator = streamMapper.getFactory().createGenerator(output).setRootValueSeparator(null);
+                        for (List<Hit<Map>> page = pointInTime.next(); !page.isEmpty(); page = pointInTime.next()) {
+                            for (Hit<Map> hit : page) {
+                                if (format == ExportFormatEnum.ndjson) {
+                                    writeHit(generator, new ArlasHit(collectionReference, hit.source(), searchRequest.returned_geometries, false, false), flat);
+                                    generator.writeRaw('\n');
+                                } else {
+                                    ArlasHit arlasHit = new ArlasHit(collectionReference, hit.source(), searchRequest.returned_geometries, false, true);
+                                    writeFeatures(generator, collectionReference, arlasHit, searchRequest.returned_geometries, flat, true);
+                                }
+                            }
+                            generator.flush();
+                        }
+                    }
+                }
+            } catch (ArlasException e) {
+                throw toWebApplicationException(e);
+            }
+        };
+    }
+
     @Override
     public Map<String, Object> getRawDoc(CollectionReference collectionReference, String identifier, String[] includes) throws ArlasException {
         return new ElasticDocument(client).getSource(collectionReference, identifier, includes);
@@ -330,9 +604,23 @@ public class ElasticExploreService extends ExploreService {
                                          int aggTreeDepth,
                                          Long startQuery,
                                          FluidSearchService fluidSearch) throws ArlasException {
-        SearchResponse<Map> response = ((ElasticFluidSearch) fluidSearch).exec();
+        return getAggregationResponse((ElasticFluidSearch) fluidSearch, ((ElasticFluidSearch) fluidSearch).exec(), collectionReference, aggregationsRequests, aggTreeDepth, startQuery);
+    }
+
+    @Override
+    protected CompletableFuture<AggregationResponse> aggregateAsync(CollectionReference collectionReference,
+                                                                    List<Aggregation> aggregationsRequests,
+                                                                    int aggTreeDepth,
+                                                                    Long startQuery,
+                                                                    FluidSearchService fluidSearch) throws ArlasException {
+        return ((ElasticFluidSearch) fluidSearch).execAsync()
+                .thenApplyAsync(response -> getAggregationResponse((ElasticFluidSearch) fluidSearch, response, collectionReference, aggregationsRequests, aggTreeDepth, startQuery), responseExecutor);
+    }
 
+    private AggregationResponse getAggregationResponse(ElasticFluidSearch fluidSearch, ResponseBody<Map> response, CollectionReference collectionReference,
+                                                       List<Aggregation> aggregationsRequests, int aggTreeDepth, Long startQuery) {
         AggregationResponse aggregationResponse = new AggregationResponse();
+        aggregationResponse.geometryReduction = fluidSearch.getGeometryReduction();
         aggregationResponse.totalnb = response.hits().total().value();
         aggregationResponse.queryTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startQuery);
         return formatAggregationResult(response.aggregations().get("mainAgg"), aggregationResponse, collectionReference, aggregationsRequests, aggTreeDepth);
@@ -25,31 +25,40 @@ import co.elastic.clients.elasticsearch._types.aggregations.*;
 import co.elastic.clients.elasticsearch._types.query_dsl.*;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.json.JsonData;
 import co.elastic.clients.util.NamedValue;
 import co.elastic.clients.util.ObjectBuilder;
 import io.arlas.commons.exceptions.*;
+import io.arlas.commons.rest.utils.RequestContext;
 import io.arlas.commons.utils.StringUtil;
 import io.arlas.server.core.app.ArlasBaseConfiguration;
 import io.arlas.server.core.impl.elastic.utils.ElasticClient;
+import io.arlas.server.core.impl.elastic.utils.ElasticMultiSearch;
+import io.arlas.server.core.impl.elastic.utils.QueryOptimizer;
 import io.arlas.server.core.managers.CollectionReferenceManager;
 import io.arlas.server.core.model.CollectionReference;
 import io.arlas.server.core.model.enumerations.*;
 import io.arlas.server.core.model.request.Aggregation;
 import io.arlas.server.core.model.request.*;
 import io.arlas.server.core.model.response.FieldType;
+import io.arlas.server.core.model.response.GeometryReduction;
 import io.arlas.server.core.model.response.TimestampType;
 import io.arlas.server.core.services.FluidSearchService;
 import io.arlas.server.core.utils.CheckParams;
 import io.arlas.server.core.utils.CollectionUtil;
 import io.arlas.server.core.utils.GeoUtil;
+import io.arlas.server.core.utils.GeometryCache;
+import io.arlas.server.core.utils.GeometrySimplifier;
 import io.arlas.server.core.utils.ParamsParser;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.locationtech.jts.geom.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static io.arlas.server.core.utils.CheckParams.GEO_AGGREGATION_TYPE_ENUMS;
 
@@ -58,20 +67,26 @@ public class ElasticFluidSearch extends FluidSearchService {
     public static final String COORDINATES = "coordinates";
     public static final String POLYGON = "Polygon";
     public static final String MULTI_POLYGON = "MultiPolygon";
+    // kinds of the shapes cached by the geometry cache
+    private static final String SHAPE = "shape";
+    private static final String POLYGON_SHAPES = "polygon-shapes";
     public static final String ORDER_SIGN_REGEX = "^[+-]";
+    // characters having a meaning in the Lucene regular expressions
+    private static final String REGEXP_RESERVED_CHARACTERS = ".?+*|{}[]()\"\\#@&<>~";
     private ElasticClient client;
+    private ElasticMultiSearch multiSearch;
 
     private final int elasticMaxPrecisionThreshold;
     private SearchRequest.Builder requestBuilder;
     private BoolQuery.Builder boolQueryBuilder;
     private BoolQuery.Builder boolPartitionQueryBuilder;
-
+    private boolean partitioned = false;
+    private GeometryReduction geometryReduction;
 
     public ElasticFluidSearch(CollectionReference collectionReference, int elasticMaxPrecisionThreshold) {
         super(collectionReference);
         this.elasticMaxPrecisionThreshold = elasticMaxPrecisionThreshold;
         requestBuilder = new SearchRequest.Builder()
-                .index(collectionReference.params.indexName)
                 .trackTotalHits(b -> b.enabled(true));
         boolQueryBuilder = new BoolQuery.Builder();
         boolPartitionQueryBuilder = new BoolQuery.Builder();
@@ -87,6 +102,14 @@ public class ElasticFluidSearch extends FluidSearchService {
         return this;
     }
 
+    /**
+     * When set, {@link #execAsync()} adds the request to the given multi search instead of sending it.
+     */
+    public ElasticFluidSearch setMultiSearch(ElasticMultiSearch multiSearch) {
+        this.multiSearch = multiSearch;
+        return this;
+    }
+
     public BoolQuery.Builder getBoolQueryBuilder() {
         return boolQueryBuilder;
     }
@@ -94,22 +117,72 @@ public class ElasticFluidSearch extends FluidSearchService {
         return boolPartitionQueryBuilder;
     }
 
+    /**
+     * @return the vertices of the geometries of the geo filters that were simplified, null if none was
+     */
+    public GeometryReduction getGeometryReduction() {
+        return geometryReduction;
+    }
+
 
     public SearchResponse<Map> exec() throws ArlasException {
+        // https://www.elastic.co/guide/en/elasticsearch/client/java-api-client/current/reading.html#_reading_raw_json
+        return client.search(buildRequest());
+    }
+
+    public CompletableFuture<ResponseBody<Map>> execAsync() throws ArlasException {
+        SearchRequest request = buildRequest();
+        if (multiSearch != null) {
+            return multiSearch.add(request);
+        }
+        return client.searchAsync(request).thenApply(response -> response);
+    }
+
+    /**
+     * Builds the search request without executing it. As the underlying builder is single use, the fluid search
+     * can not be built or executed again afterward.
+     */
+    public SearchRequest build() throws ArlasException {
+        return buildRequest();
+    }
+
+    private SearchRequest buildRequest() throws ArlasException {
         Pair<String[], String[]> includeExclude = computeIncludeExclude(false);
+        RequestContext context = RequestContext.current();
+        if (context != null && context.hasDeadline()) {
+            // the shards stop collecting the documents once the deadline of the request is reached
+            requestBuilder.timeout(context.getRemainingMillis() + "ms");
+        }
+        Query query = buildQuery();
+        List<String> indices = client == null ? null : client.getIndexTimeRanges()
+                .getIndices(collectionReference.params.indexName, collectionReference.params.timestampPath, query);
+        if (indices != null) {
+            // the indices whose timestamps can not match the time range of the request are excluded
+            requestBuilder.index(indices);
+        } else {
+            requestBuilder.index(collectionReference.params.indexName);
+        }
 
-        SearchRequest request = requestBuilder
+        return requestBuilder
                 .source(s -> s
                         .filter(f -> f
                                 .includes(Arrays.asList(includeExclude.getLeft()))
                                 .excludes(Arrays.asList(includeExclude.getRight()))
                         )
                 )
-                .query(boolQueryBuilder.must(boolPartitionQueryBuilder.build()._toQuery()).build()._toQuery())
+                .query(query)
                 .build();
+    }
 
-        // https://www.elastic.co/guide/en/elasticsearch/client/java-api-client/current/reading.html#_reading_raw_json
-        return client.search(request);
+    /**
+     * The filters are only used to select the documents (the score is not used), so the query is evaluated in a
+     * filter context and can be optimized.
+     */
+    private Query buildQuery() {
+        if (partitioned) {
+            boolQueryBuilder = boolQueryBuilder.filter(boolPartitionQueryBuilder.build()._toQuery());
+        }
+        return QueryOptimizer.optimize(boolQueryBuilder.build()._toQuery());
     }
 
     @Override
@@ -124,6 +197,13 @@ public class ElasticFluidSearch extends FluidSearchService {
 
     @Override
     public FluidSearchService partitionFilter(List<Filter> filters) throws ArlasException {
+        // the queries of the partition filters parsed from the header are built once
+        ValidatedPartitionFilter validated = filters instanceof ValidatedPartitionFilter v && v.isChecked() ? v : null;
+        partitioned = true;
+        if (validated != null && validated.getQuery() instanceof PartitionQueries cached) {
+            boolPartitionQueryBuilder = boolPartitionQueryBuilder.should(cached.queries()).minimumShouldMatch("1");
+            return this;
+        }
         List<Query> finalQueries = new ArrayList<>();
         for (Filter filter : filters){
             // OR LEVEL
@@ -146,13 +226,19 @@ public class ElasticFluidSearch extends FluidSearchService {
                 }
             }
             //AND OF OR
-            finalQueries.add(builder.build()._toQuery());
+            finalQueries.add(QueryOptimizer.optimize(builder.build()._toQuery()));
         }
         // OR OF (AND OF OR)
         boolPartitionQueryBuilder = boolPartitionQueryBuilder.should(finalQueries).minimumShouldMatch("1");
+        if (validated != null) {
+            validated.setQuery(new PartitionQueries(List.copyOf(finalQueries)));
+        }
         return this;
     }
 
+    private record PartitionQueries(List<Query> queries) {
+    }
+
     private Query filter(Expression expression, String dateFormat) throws ArlasException {
         BoolQuery.Builder ret = new BoolQuery.Builder();
         if (StringUtil.isNullOrEmpty(expression.field) || expression.op == null || StringUtil.isNullOrEmpty(expression.value)) {
@@ -164,21 +250,25 @@ public class ElasticFluidSearch extends FluidSearchService {
         String[] fieldValues = value.split(",");
         switch (op) {
             case eq:
-                ret = getEqFilter(fieldValues, ret, field, value);
+                if (isExactKeywordField(field)) {
+                    ret = ret.filter(getTermsQuery(field, fieldValues.length > 1 ? fieldValues : new String[]{value}));
+                } else {
+                    ret = getEqFilter(fieldValues, ret, field, value);
+                }
                 break;
             case gte,gt,lte,lt:
                 ret = getCompareFilter(dateFormat, field, value, ret,op, this::getCompareQuery);
                 break;
             case like:
-                if (isTextField(field)) {
-                    ret = ret.filter(QueryBuilders.matchPhrasePrefix().field(field).query(value).build()._toQuery());
-                } else {
-                    ret = ret.filter(QueryBuilders.regexp().field(field).value(".*" + value + ".*").build()._toQuery());
-                }
+                ret = ret.filter(getLikeQuery(field, value));
                 break;
             case ne:
-                for (String valueInValues : fieldValues) {
-                    ret = ret.mustNot(QueryBuilders.match().field(field).query(valueInValues).build()._toQuery());
+                if (isExactKeywordField(field)) {
+                    ret = ret.mustNot(getTermsQuery(field, fieldValues));
+                } else {
+                    for (String valueInValues : fieldValues) {
+                        ret = ret.mustNot(QueryBuilders.match().field(field).query(valueInValues).build()._toQuery());
+                    }
                 }
                 break;
             case range:
@@ -267,6 +357,40 @@ public class ElasticFluidSearch extends FluidSearchService {
         return ret;
     }
 
+    /**
+     * The value of a like filter is a regular expression matched anywhere in the field. The regexp query scans the
+     * whole terms dictionary, so when the value is a plain string the substring subfield of the field is searched
+     * instead, or a wildcard query is used on a wildcard field.
+     * The substring subfield is only used for alphanumeric values whose length is within the gram sizes of its analyzer:
+     * such a value is a single gram, so the match query finds the values containing it (with the normalization of the
+     * analyzer, e.g. lowercasing). Shorter values have no gram and longer ones would match non contiguous grams.
+     */
+    private Query getLikeQuery(String field, String value) throws ArlasException {
+        if (isTextField(field)) {
+            return QueryBuilders.matchPhrasePrefix().field(field).query(value).build()._toQuery();
+        }
+        if (StringUtils.containsNone(value, REGEXP_RESERVED_CHARACTERS)) {
+            String substringField = getSubstringField(field);
+            if (substringField != null && StringUtils.isAlphanumeric(value)
+                    && value.length() >= collectionReference.params.substringMinGram
+                    && value.length() <= collectionReference.params.substringMaxGram) {
+                return QueryBuilders.match().field(substringField).query(value).operator(Operator.And).build()._toQuery();
+            }
+            if (isWildcardField(field)) {
+                return QueryBuilders.wildcard().field(field).value("*" + value + "*").build()._toQuery();
+            }
+        }
+        return QueryBuilders.regexp().field(field).value(".*" + value + ".*").build()._toQuery();
+    }
+
+    /**
+     * On a keyword without normalizer, a term query matches the same documents than a match query and a single
+     * terms query replaces the OR of the values.
+     */
+    private static Query getTermsQuery(String field, String[] fieldValues) {
+        return QueryOptimizer.terms(field, Arrays.stream(fieldValues).distinct().map(FieldValue::of).toList());
+    }
+
     private static BoolQuery.Builder getEqFilter(String[] fieldValues, BoolQuery.Builder ret, String field, String value) {
         if (fieldValues.length > 1) {
             ret = ret.filter(QueryBuilders.bool().should(
@@ -355,25 +479,35 @@ public class ElasticFluidSearch extends FluidSearchService {
             double[] tlbr = CheckParams.toDoubles(pwithinFilter);
             builderList.add(filterPWithin(field, tlbr[0], tlbr[1], tlbr[2], tlbr[3]));
         } else {
-            Geometry p = GeoUtil.readWKT(pwithinFilter);
-            String geometryType = p.getGeometryType();
-            if (geometryType.equals(POLYGON) || geometryType.equals(MULTI_POLYGON)) {
-                for (int i = 0; i< p.getNumGeometries(); i++) {
-                    JSONObject shapeObject = getShapeObject(p.getGeometryN(i));
-                    GeoShapeQuery.Builder andQueryBuilder = QueryBuilders.geoShape()
-                            .field(field)
-                            .shape(s -> s
-                                    .relation(GeoShapeRelation.Within)
-                                    .shape(JsonData.of(shapeObject)));
-                    builderList.add(andQueryBuilder.build()._toQuery());
-                }
-            } else {
-                throw new NotImplementedException("WKT is not supported for 'within' op on field '" + field + "' of type '" + geometryType + "'");
+            GeometrySimplifier.Simplification simplification = simplify(pwithinFilter);
+            String geometry = simplification != null ? simplification.geometry() : pwithinFilter;
+            List<JsonData> shapes = GeometryCache.getInstance().getShape(POLYGON_SHAPES, geometry, () -> getPolygonShapes(field, geometry));
+            for (JsonData shape : shapes) {
+                GeoShapeQuery.Builder andQueryBuilder = QueryBuilders.geoShape()
+                        .field(field)
+                        .shape(s -> s
+                                .relation(GeoShapeRelation.Within)
+                                .shape(shape));
+                builderList.add(withBboxPreFilter(field, simplification, andQueryBuilder.build()._toQuery()));
             }
         }
         return builderList;
     }
 
+    private List<JsonData> getPolygonShapes(String field, String wkt) throws ArlasException {
+        Geometry p = GeoUtil.readWKT(wkt);
+        String geometryType = p.getGeometryType();
+        if (geometryType.equals(POLYGON) || geometryType.equals(MULTI_POLYGON)) {
+            List<JsonData> shapes = new ArrayList<>();
+            for (int i = 0; i< p.getNumGeometries(); i++) {
+                shapes.add(JsonData.of(getShapeObject(p.getGeometryN(i))));
+            }
+            return List.copyOf(shapes);
+        } else {
+            throw new NotImplementedException("WKT is not supported for 'within' op on field '" + field + "' of type '" + geometryType + "'");
+        }
+    }
+
     private Query filterPWithin(String field, double west, double south, double east, double north) {
         return QueryBuilders.geoBoundingBox()
                 .field(field)
@@ -387,13 +521,14 @@ public class ElasticFluidSearch extends FluidSearchService {
 
     public Query filterGWithin(String field, String geometry ) throws ArlasException {
         try {
-            JSONObject shapeObject = getShapeObject(geometry);
-            return QueryBuilders.geoShape()
+            GeometrySimplifier.Simplification simplification = simplify(geometry);
+            JsonData shape = getShape(simplification != null ? simplification.geometry() : geometry);
+            return withBboxPreFilter(field, simplification, QueryBuilders.geoShape()
                     .field(field)
                     .shape(s -> s
                             .relation(GeoShapeRelation.Within)
-                            .shape(JsonData.of(shapeObject))
-                    ).build()._toQuery();
+                            .shape(shape)
+                    ).build()._toQuery());
         } catch (Exception e) {
             throw new ArlasException("Exception while building geoWithinQuery: " + e.getMessage());
         }
@@ -401,24 +536,75 @@ public class ElasticFluidSearch extends FluidSearchService {
 
     public Query filterGIntersect(String field, String geometry ) throws ArlasException {
         try {
-            JSONObject shapeObject = getShapeObject(geometry);
-            return QueryBuilders.geoShape()
+            GeometrySimplifier.Simplification simplification = simplify(geometry);
+            JsonData shape = getShape(simplification != null ? simplification.geometry() : geometry);
+            return withBboxPreFilter(field, simplification, QueryBuilders.geoShape()
                     .field(field)
                     .shape(s -> s
                             .relation(GeoShapeRelation.Intersects)
-                            .shape(JsonData.of(shapeObject))
-                    ).build()._toQuery();
+                            .shape(shape)
+                    ).build()._toQuery());
         } catch (Exception e) {
             throw new ArlasException("Exception while building geoIntersectionQuery: " + e.getMessage());
         }
     }
 
+    /**
+     * Simplifies the geometry of a geo filter if it exceeds the vertex budget, and reports the simplification.
+     * @return the simplification of the geometry, null if the geometry is sent as it is
+     */
+    private GeometrySimplifier.Simplification simplify(String geometry) throws ArlasException {
+        GeometrySimplifier simplifier = GeometrySimplifier.getInstance();
+        GeometrySimplifier.Simplification simplification = simplifier.simplify(geometry, 0);
+        if (simplification != null) {
+            if (geometryReduction == null) {
+                geometryReduction = new GeometryReduction(simplifier.getMaxVertices());
+            }
+            geometryReduction.originalVertices += simplification.originalVertices();
+            geometryReduction.vertices += simplification.vertices();
+            geometryReduction.tolerance = Math.max(geometryReduction.tolerance, simplification.tolerance());
+        }
+        return simplification;
+    }
+
+    /**
+     * Adds to the geo shape query of a simplified geometry a bounding box query on its envelope, which discards
+     * cheaply the documents far from the geometry. As the documents matching the geo shape query intersect its envelope,
+     * the result is the same for the within, intersects and their negations.
+     */
+    private Query withBboxPreFilter(String field, GeometrySimplifier.Simplification simplification, Query query) {
+        if (simplification == null) {
+            return query;
+        }
+        Envelope envelope = simplification.envelope();
+        if (envelope.getMinX() < -180 || envelope.getMaxX() > 180) {
+            // geometries beyond the dateline are not supported by the bounding box query
+            return query;
+        }
+        return QueryBuilders.bool()
+                .filter(filterPWithin(field, envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY()))
+                .filter(query)
+                .build()._toQuery();
+    }
+
     @Override
     public FluidSearchService filterSize(Integer size, Integer from) {
         requestBuilder.size(size).from(from);
         return this;
     }
 
+    @Override
+    public FluidSearchService trackTotalHits(int threshold) {
+        if (threshold == Integer.MAX_VALUE) {
+            requestBuilder.trackTotalHits(b -> b.enabled(true));
+        } else if (threshold == 0) {
+            requestBuilder.trackTotalHits(b -> b.enabled(false));
+        } else {
+            requestBuilder.trackTotalHits(b -> b.count(threshold));
+        }
+        return this;
+    }
+
     @Override
     public FluidSearchService searchAfter(Page page, String after) {
         requestBuilder.searchAfter(Arrays.stream(after.split(",")).map(FieldValue::of).toList());
@@ -1179,6 +1365,13 @@ public class ElasticFluidSearch extends FluidSearchService {
             default -> throw new InvalidParameterException("The given geometry is not handled.");
         };
     }
+    /**
+     * @return the shape of the validated geometry, built once for all the requests
+     */
+    private JsonData getShape(String geometry) throws ArlasException {
+        return GeometryCache.getInstance().getShape(SHAPE, geometry, () -> JsonData.of(getShapeObject(geometry)));
+    }
+
     private JSONObject getShapeObject(String geometry) throws ArlasException {
         // test if geometry is 'west,south,east,north' or wkt string
         if (CheckParams.isBboxMatch(geometry)) {
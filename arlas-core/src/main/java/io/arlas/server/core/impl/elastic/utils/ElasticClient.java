@@ -19,18 +19,29 @@
 
 package io.arlas.server.core.impl.elastic.utils;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorCause;
 import co.elastic.clients.elasticsearch._types.HealthStatus;
 import co.elastic.clients.elasticsearch._types.mapping.Property;
 import co.elastic.clients.elasticsearch.core.*;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.elasticsearch.indices.GetFieldMappingResponse;
 import co.elastic.clients.elasticsearch.indices.get_field_mapping.TypeFieldMappings;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.rest_client.RestClientOptions;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.arlas.commons.exceptions.*;
+import io.arlas.commons.rest.utils.RequestContext;
 import io.arlas.commons.utils.StringUtil;
 import io.arlas.server.core.app.ElasticConfiguration;
 import io.arlas.server.core.model.CollectionReference;
@@ -41,10 +52,32 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
 import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,7 +88,9 @@ import javax.net.ssl.X509ExtendedTrustManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.net.ConnectException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -63,9 +98,20 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static io.arlas.server.core.model.CollectionReference.INCLUDE_FIELDS;
 
@@ -74,7 +120,30 @@ public class ElasticClient {
     private static final Logger LOGGER = LoggerFactory.getLogger(ElasticClient.class);
 
     private final ElasticsearchClient client;
+    private final ElasticsearchAsyncClient asyncClient;
     private final JacksonJsonpMapper mapper;
+    private final RestClient restClient;
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final Sniffer sniffer;
+    private final ElasticConfiguration configuration;
+    private final IndexCircuitBreaker circuitBreaker;
+    private final RequestHedging hedging;
+    private final IndexTimeRanges indexTimeRanges;
+    // time spent by the requests waiting for a connection of the pool
+    private final Timer leaseWait = new Timer();
+    private final Set<String> cancellingTasks = ConcurrentHashMap.newKeySet();
+
+    private static final ObjectMapper TASKS_MAPPER = new ObjectMapper();
+    private static final ResponseListener LOGGING_LISTENER = new ResponseListener() {
+        @Override
+        public void onSuccess(Response response) {
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            LOGGER.warn("Unable to cancel an elasticsearch task: " + e.getMessage());
+        }
+    };
 
     private static final X509ExtendedTrustManager TRUST_MANAGER = new X509ExtendedTrustManager() {
         @Override
@@ -118,58 +187,168 @@ public class ElasticClient {
         // because the Elastic load balancer can change IP addresses
         java.security.Security.setProperty("networkaddress.cache.ttl", "60");
         java.security.Security.setProperty("networkaddress.cache.negative.ttl", "0");
+        this.configuration = configuration;
+        this.circuitBreaker = new IndexCircuitBreaker(configuration.elasticCircuitBreakerFailures, configuration.elasticCircuitBreakerOpenTime);
+        this.hedging = new RequestHedging(configuration.elasticHedgingBudget, configuration.elasticHedgingMinDelay);
+        this.indexTimeRanges = new IndexTimeRanges(this, configuration.elasticIndexPruningRefresh);
 
         SSLContext context = null;
         try {
-            context = SSLContext.getInstance("TLS");
-            context.init(null, new TrustManager[]{TRUST_MANAGER}, new SecureRandom());
+            if (configuration.elasticIgnoreCerts) {
+                context = SSLContext.getInstance("TLS");
+                context.init(null, new TrustManager[]{TRUST_MANAGER}, new SecureRandom());
+            } else {
+                context = SSLContext.getDefault();
+            }
         } catch (NoSuchAlgorithmException | KeyManagementException e) {
             throw new RuntimeException("Could not create SSL context", e);
         }
-        final SSLContext finalContext = context;
-
-        // Create the low-level client
-        RestClientBuilder restClientBuilder = RestClient.builder(configuration.getElasticNodes());
-        restClientBuilder.setHttpClientConfigCallback(
-                httpClientBuilder -> {
-                    httpClientBuilder
-                        .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(configuration.elasticSocketTimeout).build());
-                    if (configuration.elasticIgnoreCerts) {
-                        httpClientBuilder.setSSLContext(finalContext);
-                    }
-                    return httpClientBuilder;
-                }
-        );
+        connectionManager = createConnectionManager(configuration, context, leaseWait);
 
         // Authentication needed ?
+        final CredentialsProvider credentialsProvider;
         if (!StringUtil.isNullOrEmpty(configuration.elasticCredentials)) {
             String[] credentials = ElasticConfiguration.getCredentials(configuration.elasticCredentials);
-            final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            credentialsProvider = new BasicCredentialsProvider();
             credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(credentials[0], credentials[1]));
+        } else {
+            credentialsProvider = null;
+        }
 
-            restClientBuilder.setHttpClientConfigCallback(
-                    httpClientBuilder -> {
-                        httpClientBuilder
-                                .setDefaultCredentialsProvider(credentialsProvider)
-                                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(configuration.elasticSocketTimeout).build());
-                        if (configuration.elasticIgnoreCerts) {
-                            httpClientBuilder.setSSLContext(finalContext);
-                        }
-                        return httpClientBuilder;
+        // Create the low-level client
+        // All the http client settings are applied by a single callback: a second callback would replace the first one
+        RestClientBuilder restClientBuilder = RestClient.builder(configuration.getElasticNodes())
+                .setCompressionEnabled(configuration.elasticCompression)
+                .setRequestConfigCallback(requestConfigBuilder -> {
+                    requestConfigBuilder
+                            .setConnectTimeout(configuration.elasticSocketTimeout)
+                            .setSocketTimeout(configuration.elasticReadTimeout);
+                    if (configuration.elasticConnectionRequestTimeout > 0) {
+                        requestConfigBuilder.setConnectionRequestTimeout(configuration.elasticConnectionRequestTimeout);
+                    }
+                    return requestConfigBuilder;
+                })
+                .setHttpClientConfigCallback(httpClientBuilder -> {
+                    httpClientBuilder.setConnectionManager(connectionManager);
+                    if (credentialsProvider != null) {
+                        httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+                    }
+                    if (configuration.elasticIdleTimeout > 0) {
+                        // connections are not reused once they have been idle longer than the idle timeout
+                        httpClientBuilder.setKeepAliveStrategy((response, httpContext) -> {
+                            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, httpContext);
+                            return keepAlive > 0 ? Math.min(keepAlive, configuration.elasticIdleTimeout) : configuration.elasticIdleTimeout;
+                        });
                     }
-            );
+                    return httpClientBuilder;
+                });
+
+        SniffOnFailureListener sniffOnFailureListener = null;
+        if (configuration.elasticSniffInterval > 0) {
+            sniffOnFailureListener = new SniffOnFailureListener();
+            restClientBuilder.setFailureListener(sniffOnFailureListener);
         }
+        restClient = restClientBuilder.build();
+        if (sniffOnFailureListener != null) {
+            sniffer = Sniffer.builder(restClient)
+                    .setSniffIntervalMillis(configuration.elasticSniffInterval)
+                    .setNodesSniffer(new ElasticsearchNodesSniffer(restClient, ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT,
+                            configuration.elasticEnableSsl ? ElasticsearchNodesSniffer.Scheme.HTTPS : ElasticsearchNodesSniffer.Scheme.HTTP))
+                    .build();
+            sniffOnFailureListener.setSniffer(sniffer);
+        } else {
+            sniffer = null;
+        }
+
         mapper = new JacksonJsonpMapper();
         // Create the transport with a Jackson mapper
-        ElasticsearchTransport transport = new RestClientTransport(restClientBuilder.build(), mapper);
-        // And create the API client
+        ElasticsearchTransport transport = new RestClientTransport(restClient, mapper);
+        // And create the API clients, sharing the same transport
         client = new ElasticsearchClient(transport);
+        asyncClient = new ElasticsearchAsyncClient(transport);
+    }
+
+    private static PoolingNHttpClientConnectionManager createConnectionManager(ElasticConfiguration configuration, SSLContext sslContext,
+                                                                               Timer leaseWait) {
+        IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom()
+                .setSoKeepAlive(true)
+                .setConnectTimeout(configuration.elasticSocketTimeout);
+        if (configuration.elasticIoThreads > 0) {
+            ioReactorConfig.setIoThreadCount(configuration.elasticIoThreads);
+        }
+        Registry<SchemeIOSessionStrategy> sessionStrategies = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", new SSLIOSessionStrategy(sslContext, SSLIOSessionStrategy.getDefaultHostnameVerifier()))
+                .build();
+        try {
+            PoolingNHttpClientConnectionManager connectionManager =
+                    new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig.build()), sessionStrategies) {
+                        @Override
+                        public Future<NHttpClientConnection> requestConnection(HttpRoute route, Object state, long connectTimeout,
+                                                                               long leaseTimeout, TimeUnit timeUnit,
+                                                                               FutureCallback<NHttpClientConnection> callback) {
+                            return super.requestConnection(route, state, connectTimeout, leaseTimeout, timeUnit,
+                                    new LeaseWaitCallback(callback, leaseWait));
+                        }
+                    };
+            connectionManager.setMaxTotal(configuration.elasticMaxConnections);
+            connectionManager.setDefaultMaxPerRoute(configuration.elasticMaxConnectionsPerNode);
+            return connectionManager;
+        } catch (IOReactorException e) {
+            throw new RuntimeException("Could not create the elasticsearch connection pool", e);
+        }
+    }
+
+    /**
+     * @return the statistics of the pool of connections to elasticsearch (leased, available, pending and max connections)
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * @return the time spent by the requests from their submission to the lease of a connection of the pool,
+     * including the connection to the node when no idle connection is available
+     */
+    public Timer getLeaseWait() {
+        return leaseWait;
+    }
+
+    public RequestHedging getHedging() {
+        return hedging;
+    }
+
+    public IndexTimeRanges getIndexTimeRanges() {
+        return indexTimeRanges;
+    }
+
+    /**
+     * Closes the expired connections and the connections idle for longer than the given time.
+     */
+    public void closeIdleConnections(long idleTimeMillis) {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        if (sniffer != null) {
+            sniffer.close();
+        }
+        try {
+            restClient.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close the elasticsearch client: " + e.getMessage());
+        }
     }
 
     public ElasticsearchClient getClient() {
         return client;
     }
 
+    public ElasticsearchAsyncClient getAsyncClient() {
+        return asyncClient;
+    }
+
     public boolean isClusterHealthRed() throws ArlasException {
         try {
             return client.cluster().health().status() == HealthStatus.Red;
@@ -295,35 +474,360 @@ public class ElasticClient {
             return null;
         }
     }
+    /**
+     * @return the names of the indices matched by the (comma separated) index pattern, listed with the field capabilities API
+     */
+    public List<String> getIndices(String index, String field) throws ArlasException {
+        try {
+            return client.fieldCaps(b -> b.index(Arrays.asList(index.split(","))).fields(field)).indices();
+        } catch (IOException e) {
+            processException(e, index);
+            return null;
+        }
+    }
+
     public SearchResponse<Map> search(SearchRequest request) throws ArlasException {
         return search(request, Map.class);
     }
 
     public <T> SearchResponse<T> search(SearchRequest request, Class<T> cl) throws ArlasException {
+        CompletableFuture<SearchResponse<T>> future = searchAsync(request, cl);
         try {
-            LOGGER.debug("REQUEST  : " + request.toString());
-            SearchResponse<T> response = client.search(request, cl);
-            LOGGER.debug("RESPONSE : " + response.toString());
-            return response;
+            return future.get();
+        } catch (InterruptedException e) {
+            // e.g. a cancelled sub-query of a fan-out: the elasticsearch request is aborted
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("The request has been interrupted.");
+        } catch (ExecutionException e) {
+            throw getArlasException(e.getCause());
+        }
+    }
+
+    public CompletableFuture<SearchResponse<Map>> searchAsync(SearchRequest request) {
+        return searchAsync(request, Map.class);
+    }
+
+    /**
+     * Non blocking variant of {@link #search(SearchRequest, Class)}: the returned future is completed by the
+     * Elasticsearch client I/O threads, exceptionally with an {@link ArlasException} in case of failure.
+     * Cancelling the returned future aborts the elasticsearch request.
+     */
+    public <T> CompletableFuture<SearchResponse<T>> searchAsync(SearchRequest request, Class<T> cl) {
+        return execute("_search", getIndexKey(request), request, c -> c.search(request, cl), SearchResponse::timedOut);
+    }
+
+    /**
+     * Executes the search requests in a single _msearch round trip. The futures of the returned list are completed
+     * with the response of the request of same position, or exceptionally with an {@link ArlasException} if it failed.
+     */
+    public List<CompletableFuture<ResponseBody<Map>>> msearchAsync(List<SearchRequest> requests) {
+        List<CompletableFuture<ResponseBody<Map>>> responses = requests.stream()
+                .map(r -> new CompletableFuture<ResponseBody<Map>>())
+                .toList();
+        MsearchRequest request = MsearchRequest.of(m -> m.searches(requests.stream().map(ElasticClient::getRequestItem).toList()));
+        String index = requests.stream().map(this::getIndexKey).distinct().collect(Collectors.joining(","));
+        RequestContext context = RequestContext.current();
+        execute("_msearch", index, request, c -> c.msearch(request, Map.class), r -> false).whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                ArlasException e = getArlasException(throwable);
+                responses.forEach(r -> r.completeExceptionally(e));
+                return;
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                MultiSearchResponseItem<Map> item = response.responses().get(i);
+                if (item.isResult() && item.result().timedOut() && context != null && context.hasDeadline()) {
+                    responses.get(i).completeExceptionally(getCancellationException(context));
+                } else if (item.isResult()) {
+                    responses.get(i).complete(item.result());
+                } else {
+                    responses.get(i).completeExceptionally(new BadRequestException(getReason(item.failure().error())));
+                }
+            }
+        });
+        return responses;
+    }
+
+    /**
+     * Executes the request within the context of the API request being processed: the request is tagged with its
+     * X-Opaque-Id, bounded by its deadline and aborted (as well as its elasticsearch tasks) when it is cancelled.
+     * The requests on indices whose circuit is open fail fast. The requests must be idempotent reads, as they can be hedged.
+     */
+    private <R> CompletableFuture<R> execute(String endpoint, String index, Object request,
+                                             Function<ElasticsearchAsyncClient, CompletableFuture<R>> call,
+                                             Predicate<R> timedOut) {
+        RequestContext context = RequestContext.current();
+        boolean trial;
+        try {
+            trial = circuitBreaker.check(index);
+        } catch (ArlasException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (context != null) {
+            try {
+                context.checkActive();
+            } catch (ArlasException e) {
+                if (trial) {
+                    circuitBreaker.release(index);
+                }
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        LOGGER.debug("REQUEST  : " + request.toString());
+        ElasticsearchAsyncClient requestClient = context == null ? asyncClient : asyncClient.withTransportOptions(getTransportOptions(context));
+        // a hedged request is sent to the next node by the client, which is only another node if there are several
+        CompletableFuture<R> pending = hedging.isEnabled() && restClient.getNodes().size() > 1
+                ? hedging.execute(endpoint + "|" + index, () -> call.apply(requestClient))
+                : call.apply(requestClient);
+        Runnable unregister = context == null ? () -> {} : context.onCancel(() -> {
+            pending.cancel(true);
+            cancelTasks(context.getOpaqueId());
+        });
+        CompletableFuture<R> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                pending.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        pending.whenComplete((response, throwable) -> {
+            unregister.run();
+            if (throwable == null) {
+                LOGGER.debug("RESPONSE : " + response.toString());
+                circuitBreaker.onSuccess(index);
+                if (context != null && context.hasDeadline() && timedOut.test(response)) {
+                    result.completeExceptionally(getCancellationException(context));
+                } else {
+                    result.complete(response);
+                }
+            } else if (context != null && context.isCancelled()) {
+                if (trial) {
+                    circuitBreaker.release(index);
+                }
+                result.completeExceptionally(getCancellationException(context));
+            } else {
+                if (isRejected(throwable)) {
+                    circuitBreaker.onFailure(index);
+                } else if (isTimedOut(throwable)) {
+                    // a deadline shortened by the client does not tell that elasticsearch is overloaded
+                    if (context == null || !context.isClientDeadline()) {
+                        circuitBreaker.onFailure(index);
+                    } else if (trial) {
+                        circuitBreaker.release(index);
+                    }
+                } else {
+                    circuitBreaker.onSuccess(index);
+                }
+                result.completeExceptionally(getArlasException(throwable));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the indices of the request as named by the collection, i.e. the index pattern of the collection when
+     * some of its indices have been excluded, so that the failures and the latencies are tracked per collection
+     */
+    private String getIndexKey(SearchRequest request) {
+        String indexName = indexTimeRanges.getIndexName(request.index());
+        return indexName != null ? indexName : String.join(",", request.index());
+    }
+
+    private TransportOptions getTransportOptions(RequestContext context) {
+        RequestOptions.Builder options = RequestOptions.DEFAULT.toBuilder()
+                .addHeader(RequestContext.OPAQUE_ID_HEADER, context.getOpaqueId());
+        if (context.hasDeadline()) {
+            int remaining = (int) Math.min(Integer.MAX_VALUE, context.getRemainingMillis());
+            options.setRequestConfig(RequestConfig.custom()
+                    .setConnectTimeout(Math.min(configuration.elasticSocketTimeout, remaining))
+                    .setSocketTimeout(configuration.elasticReadTimeout > 0 ? Math.min(configuration.elasticReadTimeout, remaining) : remaining)
+                    .setConnectionRequestTimeout(configuration.elasticConnectionRequestTimeout > 0
+                            ? Math.min(configuration.elasticConnectionRequestTimeout, remaining) : remaining)
+                    .build());
+        }
+        return new RestClientOptions(options.build());
+    }
+
+    private static ArlasException getCancellationException(RequestContext context) {
+        try {
+            context.checkActive();
+        } catch (ArlasException e) {
+            return e;
+        }
+        return new GatewayTimeoutException("Elasticsearch did not answer before the deadline of the request.");
+    }
+
+    /**
+     * Cancels the elasticsearch tasks of the request with the given X-Opaque-Id, unique to the request (see
+     * {@link RequestContext#getOpaqueId()}): the tasks of other requests reusing the X-Opaque-Id of the client are
+     * left running. The search tasks are also cancelled by elasticsearch when the connection of the aborted request is
+     * closed, this only speeds up the cancellation.
+     */
+    private void cancelTasks(String opaqueId) {
+        if (!cancellingTasks.add(opaqueId)) {
+            return;
+        }
+        Request list = new Request("GET", "/_tasks");
+        list.addParameter("actions", "indices:data/read/*");
+        restClient.performRequestAsync(list, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                try {
+                    for (JsonNode node : TASKS_MAPPER.readTree(response.getEntity().getContent()).path("nodes")) {
+                        node.path("tasks").fields().forEachRemaining(task -> {
+                            if (opaqueId.equals(task.getValue().path("headers").path(RequestContext.OPAQUE_ID_HEADER).asText())
+                                    && !task.getValue().has("parent_task_id")) {
+                                restClient.performRequestAsync(new Request("POST", "/_tasks/" + task.getKey() + "/_cancel"), LOGGING_LISTENER);
+                            }
+                        });
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to read the elasticsearch tasks: " + e.getMessage());
+                } finally {
+                    cancellingTasks.remove(opaqueId);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                cancellingTasks.remove(opaqueId);
+                LOGGER.warn("Unable to list the elasticsearch tasks: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return true if the failure shows that elasticsearch rejects the requests (rejections, unavailable nodes)
+     */
+    private static boolean isRejected(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            int status = getStatus(cause);
+            if (status == 429 || status == 503 || cause instanceof ConnectException) {
+                return true;
+            }
+            for (Throwable suppressed : cause.getSuppressed()) {
+                if (suppressed instanceof ResponseException e && e.getResponse().getStatusLine().getStatusCode() == 429) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if elasticsearch did not answer in time
+     */
+    private static boolean isTimedOut(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (getStatus(cause) == 504 || cause instanceof SocketTimeoutException || cause instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int getStatus(Throwable throwable) {
+        if (throwable instanceof ElasticsearchException e) {
+            return e.status();
+        } else if (throwable instanceof ResponseException e) {
+            return e.getResponse().getStatusLine().getStatusCode();
+        }
+        return 0;
+    }
+
+    /**
+     * Copies the options of the search request, including its timeout, in a multi search item.
+     */
+    private static RequestItem getRequestItem(SearchRequest request) {
+        return RequestItem.of(i -> i
+                .header(h -> h
+                        .index(request.index())
+                        .ignoreUnavailable(request.ignoreUnavailable())
+                        .allowPartialSearchResults(request.allowPartialSearchResults())
+                        .preference(request.preference())
+                        .requestCache(request.requestCache())
+                        .routing(request.routing())
+                )
+                .body(b -> b
+                        .query(request.query())
+                        .postFilter(request.postFilter())
+                        .aggregations(request.aggregations())
+                        .size(request.size())
+                        .from(request.from())
+                        .sort(request.sort())
+                        .searchAfter(request.searchAfter())
+                        .source(request.source())
+                        .trackTotalHits(request.trackTotalHits())
+                        .trackScores(request.trackScores())
+                        .minScore(request.minScore())
+                        .terminateAfter(request.terminateAfter())
+                        .timeout(request.timeout())
+                )
+        );
+    }
+
+    /**
+     * Opens a point in time on the given (comma separated) indices, kept alive for the given duration (e.g. "1m").
+     * The missing indices are skipped if ignoreUnavailable is true.
+     */
+    public String openPointInTime(String index, String keepAlive, Boolean ignoreUnavailable) throws ArlasException {
+        try {
+            return client.openPointInTime(b -> b
+                    .index(Arrays.asList(index.split(",")))
+                    .ignoreUnavailable(ignoreUnavailable)
+                    .keepAlive(t -> t.time(keepAlive))).id();
         } catch (IOException e) {
-            processException(e, Arrays.toString(request.index().toArray()));
-            return null;
+            LOGGER.warn("Exception while communicating with ES: " + e.getMessage(), e);
+            throw new InternalServerErrorException(e.getMessage());
         } catch (ElasticsearchException e) {
-            String msg = e.getMessage();
-            if (e.response() != null
-                    && e.response().error() != null
-                    && e.response().error().rootCause() != null
-                    && !e.response().error().rootCause().isEmpty()) {
-                msg = e.response().error().rootCause().get(0).reason();
-           }
-            Throwable[] suppressed = e.getSuppressed();
-            if (suppressed.length > 0 && suppressed[0] instanceof ResponseException) {
-                msg = suppressed[0].getMessage();
-            }
-            throw new BadRequestException(msg);
+            throw getBadRequestException(e);
         }
     }
 
+    /**
+     * Releases the point in time. Failures are only logged as the point in time expires anyway after its keep alive.
+     */
+    public void closePointInTime(String id) {
+        try {
+            client.closePointInTime(b -> b.id(id));
+        } catch (IOException | ElasticsearchException e) {
+            LOGGER.warn("Unable to close point in time: " + e.getMessage());
+        }
+    }
+
+    private ArlasException getArlasException(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof ArlasException e) {
+            return e;
+        } else if (cause instanceof ElasticsearchException e) {
+            return getBadRequestException(e);
+        }
+        LOGGER.warn("Exception while communicating with ES: " + cause.getMessage(), cause);
+        return new InternalServerErrorException(cause.getMessage());
+    }
+
+    private static String getReason(ErrorCause error) {
+        if (error.rootCause() != null && !error.rootCause().isEmpty()) {
+            return error.rootCause().get(0).reason();
+        }
+        return error.reason();
+    }
+
+    private BadRequestException getBadRequestException(ElasticsearchException e) {
+        String msg = e.getMessage();
+        if (e.response() != null
+                && e.response().error() != null
+                && e.response().error().rootCause() != null
+                && !e.response().error().rootCause().isEmpty()) {
+            msg = e.response().error().rootCause().get(0).reason();
+        }
+        Throwable[] suppressed = e.getSuppressed();
+        if (suppressed.length > 0 && suppressed[0] instanceof ResponseException) {
+            msg = suppressed[0].getMessage();
+        }
+        return new BadRequestException(msg);
+    }
+
     public DeleteResponse deleteDocument(String index, String ref) throws ArlasException {
         try {
             return client.delete(b -> b.index(index).id(ref));
@@ -395,4 +899,39 @@ public class ElasticClient {
         throw new InternalServerErrorException(e.getMessage());
     }
 
+    /**
+     * Records the time from the request of a connection to its lease.
+     */
+    private static class LeaseWaitCallback implements FutureCallback<NHttpClientConnection> {
+        private final FutureCallback<NHttpClientConnection> callback;
+        private final Timer leaseWait;
+        private final long start = System.nanoTime();
+
+        private LeaseWaitCallback(FutureCallback<NHttpClientConnection> callback, Timer leaseWait) {
+            this.callback = callback;
+            this.leaseWait = leaseWait;
+        }
+
+        @Override
+        public void completed(NHttpClientConnection connection) {
+            leaseWait.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (callback != null) {
+                callback.completed(connection);
+            }
+        }
+
+        @Override
+        public void failed(Exception e) {
+            if (callback != null) {
+                callback.failed(e);
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            if (callback != null) {
+                callback.cancelled();
+            }
+        }
+    }
 }
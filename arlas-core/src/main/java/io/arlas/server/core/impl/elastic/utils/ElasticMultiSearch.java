@@ -0,0 +1,77 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.impl.elastic.utils;
+
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Collects search requests in order to send them to Elasticsearch in a single _msearch round trip.
+ * The futures returned by {@link #add(SearchRequest)} are completed once {@link #exec()} has been called
+ * and the response of Elasticsearch has been received.
+ */
+public class ElasticMultiSearch {
+    private final ElasticClient client;
+    private final List<SearchRequest> requests = new ArrayList<>();
+    private final List<CompletableFuture<ResponseBody<Map>>> responses = new ArrayList<>();
+
+    public ElasticMultiSearch(ElasticClient client) {
+        this.client = client;
+    }
+
+    public synchronized CompletableFuture<ResponseBody<Map>> add(SearchRequest request) {
+        CompletableFuture<ResponseBody<Map>> response = new CompletableFuture<>();
+        requests.add(request);
+        responses.add(response);
+        return response;
+    }
+
+    /**
+     * Sends the pending requests. A single request is sent as a plain search.
+     */
+    public synchronized void exec() {
+        if (requests.size() == 1) {
+            complete(responses.get(0), client.searchAsync(requests.get(0)));
+        } else if (requests.size() > 1) {
+            List<CompletableFuture<ResponseBody<Map>>> results = client.msearchAsync(requests);
+            for (int i = 0; i < results.size(); i++) {
+                complete(responses.get(i), results.get(i));
+            }
+        }
+        requests.clear();
+        responses.clear();
+    }
+
+    private static <T extends ResponseBody<Map>> void complete(CompletableFuture<ResponseBody<Map>> response, CompletableFuture<T> result) {
+        result.whenComplete((r, throwable) -> {
+            if (throwable == null) {
+                response.complete(r);
+            } else {
+                response.completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+            }
+        });
+    }
+}
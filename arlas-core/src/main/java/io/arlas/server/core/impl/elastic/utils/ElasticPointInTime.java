@@ -0,0 +1,103 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.impl.elastic.utils;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import io.arlas.commons.exceptions.ArlasException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Walks all the hits of a search request, page after page, through an Elasticsearch point in time and search_after.
+ * Hits are sorted in index order (shard and document id), the cheapest order for Elasticsearch, and each page
+ * only holds the hits of a single search response. The point in time is opened when the first page is fetched and
+ * released on {@link #close()}.
+ */
+@SuppressWarnings({"rawtypes"})
+public class ElasticPointInTime implements AutoCloseable {
+    private static final String SHARD_DOC = "_shard_doc";
+
+    private final ElasticClient client;
+    private final SearchRequest request;
+    private final int pageSize;
+    private final String keepAlive;
+    private String id;
+    private List<FieldValue> searchAfter;
+    private boolean exhausted = false;
+
+    /**
+     * @param request   search request giving the indices, the query and the source filtering of the hits
+     * @param pageSize  number of hits fetched by each search
+     * @param keepAlive time the point in time is kept alive between two pages (e.g. "1m")
+     */
+    public ElasticPointInTime(ElasticClient client, SearchRequest request, int pageSize, String keepAlive) {
+        this.client = client;
+        this.request = request;
+        this.pageSize = pageSize;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Fetches the next page of hits, empty once all the hits have been returned.
+     */
+    public List<Hit<Map>> next() throws ArlasException {
+        if (exhausted) {
+            return Collections.emptyList();
+        }
+        if (id == null) {
+            id = client.openPointInTime(String.join(",", request.index()), keepAlive, request.ignoreUnavailable());
+        }
+        SearchRequest page = SearchRequest.of(b -> {
+            b.query(request.query())
+                    .source(request.source())
+                    .size(pageSize)
+                    .pit(p -> p.id(id).keepAlive(t -> t.time(keepAlive)))
+                    .sort(s -> s.field(f -> f.field(SHARD_DOC)))
+                    .trackTotalHits(t -> t.enabled(false));
+            if (searchAfter != null) {
+                b.searchAfter(searchAfter);
+            }
+            return b;
+        });
+        SearchResponse<Map> response = client.search(page);
+        if (response.pitId() != null) {
+            // the id of the point in time may change between two searches
+            id = response.pitId();
+        }
+        List<Hit<Map>> hits = response.hits().hits();
+        exhausted = hits.size() < pageSize;
+        if (!hits.isEmpty()) {
+            searchAfter = hits.get(hits.size() - 1).sort();
+        }
+        return hits;
+    }
+
+    @Override
+    public void close() {
+        if (id != null) {
+            client.closePointInTime(id);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.impl.elastic.utils;
+
+import io.arlas.commons.exceptions.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fails fast the requests on the indices that elasticsearch is not able to serve (rejections, timeouts).
+ * After `failureThreshold` consecutive failures on an index, its requests are rejected during `openMillis`.
+ * A single request is then let through: its success closes the circuit, its failure opens it again.
+ */
+public class IndexCircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexCircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * @param failureThreshold number of consecutive failures opening the circuit of an index, 0 to disable the circuit breaker
+     * @param openMillis       time during which the requests are rejected once the circuit is open, in milliseconds
+     */
+    public IndexCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public boolean isEnabled() {
+        return failureThreshold > 0;
+    }
+
+    /**
+     * @return true if the request is the single request let through once the open time is over: its outcome must then
+     * be reported with {@link #onSuccess}, {@link #onFailure} or {@link #release}
+     * @throws ServiceUnavailableException if the circuit of the index is open
+     */
+    public boolean check(String index) throws ServiceUnavailableException {
+        if (!isEnabled()) {
+            return false;
+        }
+        Circuit circuit = circuits.get(index);
+        if (circuit == null || circuit.openUntil == 0) {
+            return false;
+        }
+        if (System.currentTimeMillis() < circuit.openUntil || !circuit.trial.compareAndSet(false, true)) {
+            throw new ServiceUnavailableException("Elasticsearch is overloaded on " + index + ", please retry later.");
+        }
+        return true;
+    }
+
+    /**
+     * Lets another request through when the trial request ended without telling whether elasticsearch is able to
+     * serve the index (e.g. it has been cancelled).
+     */
+    public void release(String index) {
+        Circuit circuit = circuits.get(index);
+        if (circuit != null) {
+            circuit.trial.set(false);
+        }
+    }
+
+    public void onSuccess(String index) {
+        if (!isEnabled()) {
+            return;
+        }
+        Circuit circuit = circuits.get(index);
+        if (circuit != null) {
+            if (circuit.openUntil != 0) {
+                LOGGER.info("Circuit of {} closed", index);
+            }
+            circuit.failures.set(0);
+            circuit.openUntil = 0;
+            circuit.trial.set(false);
+        }
+    }
+
+    public void onFailure(String index) {
+        if (!isEnabled()) {
+            return;
+        }
+        Circuit circuit = circuits.computeIfAbsent(index, k -> new Circuit());
+        if (circuit.failures.incrementAndGet() >= failureThreshold) {
+            if (circuit.openUntil == 0) {
+                LOGGER.warn("Circuit of {} opened after {} failures", index, circuit.failures.get());
+            }
+            circuit.openUntil = System.currentTimeMillis() + openMillis;
+            circuit.trial.set(false);
+        }
+    }
+
+    private static class Circuit {
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicBoolean trial = new AtomicBoolean();
+        private volatile long openUntil = 0;
+    }
+}
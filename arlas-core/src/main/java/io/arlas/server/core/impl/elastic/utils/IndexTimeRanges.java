@@ -0,0 +1,295 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.impl.elastic.utils;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonData;
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.server.core.utils.ParamsParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of the range of the timestamps of each index targeted by the index patterns of the collections (e.g. `events-*`),
+ * used to search only the indices that can match the timestamp range of a request.
+ *
+ * The ranges of an index pattern are computed in the background, the first time a request targets it and then every
+ * `refreshPeriod` seconds. Until then, all the indices of the pattern are searched. As the documents are usually indexed
+ * in the most recent index, its range has no upper bound. The indices that can not match are excluded from the pattern
+ * (e.g. `events-*,-events-2024.01.01`) so that the indices created since the last refresh are still searched.
+ */
+public class IndexTimeRanges {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexTimeRanges.class);
+    private static final String MIN_AGG = "min";
+    private static final String MAX_AGG = "max";
+    // margin covering the clock skew between ARLAS and elasticsearch, which evaluates `now`
+    private static final long NOW_MARGIN = 60000L;
+    private static final long[] UNBOUNDED = {Long.MIN_VALUE, Long.MAX_VALUE};
+    private static final String EXCLUSION = "-";
+    private static final Pattern DATE_MATH_OPERATION = Pattern.compile("([+-])(\\d+)([yMwdhHms])|/([yMwdhHms])");
+    private static final long DAY = 86400000L;
+
+    private final ElasticClient client;
+    private final long refreshPeriodMillis;
+    private final Map<Target, Ranges> ranges = new ConcurrentHashMap<>();
+
+    /**
+     * @param refreshPeriod time between two computations of the ranges of an index pattern, in seconds. 0 disables the pruning.
+     */
+    public IndexTimeRanges(ElasticClient client, int refreshPeriod) {
+        this.client = client;
+        this.refreshPeriodMillis = refreshPeriod * 1000L;
+    }
+
+    public boolean isEnabled() {
+        return refreshPeriodMillis > 0;
+    }
+
+    /**
+     * @param indexName     index name (or pattern) of the collection
+     * @param timestampPath timestamp field of the collection
+     * @param query         query of the request
+     * @return the index pattern followed by the exclusions of the indices that can not match, null if all the indices
+     * of the collection must be searched
+     */
+    public List<String> getIndices(String indexName, String timestampPath, Query query) {
+        if (!isEnabled() || indexName == null || !indexName.contains("*") || timestampPath == null) {
+            return null;
+        }
+        Ranges indices = ranges.computeIfAbsent(new Target(indexName, timestampPath), k -> new Ranges(Map.of(), 0));
+        if (indices.ranges.size() < 2) {
+            return null;
+        }
+        long[] range = getTimeRange(query, timestampPath, System.currentTimeMillis());
+        if (range[0] == Long.MIN_VALUE && range[1] == Long.MAX_VALUE) {
+            return null;
+        }
+        List<String> excluded = indices.ranges.entrySet().stream()
+                .filter(e -> e.getValue()[0] > range[1] || e.getValue()[1] < range[0])
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+        // when no index can match, the collection is searched as usual so that the response is built the same way
+        if (excluded.isEmpty() || excluded.size() == indices.ranges.size()) {
+            return null;
+        }
+        List<String> ret = new ArrayList<>(excluded.size() + 1);
+        ret.add(indexName);
+        excluded.forEach(index -> ret.add(EXCLUSION + index));
+        return ret;
+    }
+
+    /**
+     * @param indices indices of a request, possibly returned by {@link #getIndices}
+     * @return the index pattern the indices have been excluded from, null if they are not the result of a pruning
+     */
+    public String getIndexName(List<String> indices) {
+        if (!isEnabled() || indices.size() < 2 || !indices.stream().skip(1).allMatch(index -> index.startsWith(EXCLUSION))) {
+            return null;
+        }
+        return indices.get(0);
+    }
+
+    /**
+     * Computes the ranges of the index patterns not refreshed since the refresh period.
+     */
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        ranges.forEach((target, indices) -> {
+            if (now - indices.refreshedAt >= refreshPeriodMillis) {
+                try {
+                    ranges.put(target, new Ranges(computeRanges(target), now));
+                } catch (ArlasException | RuntimeException e) {
+                    LOGGER.warn("Unable to compute the time ranges of the indices of {}: {}", target.indexName, e.getMessage());
+                    ranges.put(target, new Ranges(Map.of(), now));
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes the range of each index with its own search: elasticsearch answers the top level min and max
+     * aggregations from the metadata of the index, without reading the documents.
+     */
+    private Map<String, long[]> computeRanges(Target target) throws ArlasException {
+        Map<String, long[]> ret = new HashMap<>();
+        List<String> indices = client.getIndices(target.indexName, target.timestampPath);
+        if (indices == null) {
+            return ret;
+        }
+        String latest = null;
+        for (String index : indices) {
+            long[] range = computeRange(index, target.timestampPath);
+            ret.put(index, range);
+            // an empty index, or one whose range is unknown, is never excluded: the latest is the one of the last document
+            if (range[1] != Long.MAX_VALUE && (latest == null || range[1] > ret.get(latest)[1])) {
+                latest = index;
+            }
+        }
+        if (latest != null) {
+            // the documents being indexed are not in the computed range yet
+            ret.get(latest)[1] = Long.MAX_VALUE;
+        }
+        return ret;
+    }
+
+    /**
+     * @return the range of the timestamps of the index, unbounded if it is empty or can not be computed
+     */
+    private long[] computeRange(String index, String timestampPath) {
+        SearchRequest request = SearchRequest.of(b -> b
+                .index(index)
+                .size(0)
+                .trackTotalHits(t -> t.enabled(false))
+                .aggregations(MIN_AGG, a -> a.min(f -> f.field(timestampPath)))
+                .aggregations(MAX_AGG, a -> a.max(f -> f.field(timestampPath))));
+        try {
+            SearchResponse<Map> response = client.search(request);
+            double min = response.aggregations().get(MIN_AGG).min().value();
+            double max = response.aggregations().get(MAX_AGG).max().value();
+            if (Double.isFinite(min) && Double.isFinite(max)) {
+                return new long[]{(long) Math.floor(min), (long) Math.ceil(max)};
+            }
+        } catch (ArlasException | RuntimeException e) {
+            LOGGER.warn("Unable to compute the time range of {}: {}", index, e.getMessage());
+        }
+        return UNBOUNDED.clone();
+    }
+
+    /**
+     * @return a range of epoch milliseconds containing all the values of the field matched by the query
+     * (Long.MIN_VALUE and Long.MAX_VALUE for no bound). The range is widened when the bounds can not be computed exactly.
+     */
+    public static long[] getTimeRange(Query query, String field, long now) {
+        if (query.isRange()) {
+            RangeQuery range = query.range();
+            if (!field.equals(range.field()) || (range.format() != null && !range.format().contains("epoch_millis"))) {
+                // the bounds of the other formats are not evaluated
+                return UNBOUNDED.clone();
+            }
+            return new long[]{
+                    Math.max(toMillis(range.gte(), false, now), toMillis(range.gt(), false, now)),
+                    Math.min(toMillis(range.lte(), true, now), toMillis(range.lt(), true, now))};
+        } else if (query.isBool()) {
+            BoolQuery bool = query.bool();
+            long[] ret = UNBOUNDED.clone();
+            List<Query> required = new ArrayList<>(bool.filter());
+            required.addAll(bool.must());
+            for (Query clause : required) {
+                intersect(ret, getTimeRange(clause, field, now));
+            }
+            String msm = bool.minimumShouldMatch();
+            if (!bool.should().isEmpty() && ("1".equals(msm) || (msm == null && required.isEmpty()))) {
+                // at least one of the should clauses matches
+                long[] union = null;
+                for (Query clause : bool.should()) {
+                    long[] range = getTimeRange(clause, field, now);
+                    union = union == null ? range : new long[]{Math.min(union[0], range[0]), Math.max(union[1], range[1])};
+                }
+                intersect(ret, union);
+            }
+            return ret;
+        }
+        return UNBOUNDED.clone();
+    }
+
+    private static void intersect(long[] range, long[] other) {
+        range[0] = Math.max(range[0], other[0]);
+        range[1] = Math.min(range[1], other[1]);
+    }
+
+    /**
+     * Evaluates a bound of a range on the timestamp: epoch milliseconds or a date math expression anchored on `now` or
+     * on epoch milliseconds. The upper bounds are rounded up and the lower bounds down when the evaluation is not exact.
+     */
+    private static long toMillis(JsonData data, boolean upper, long now) {
+        long unbounded = upper ? Long.MAX_VALUE : Long.MIN_VALUE;
+        if (data == null) {
+            return unbounded;
+        }
+        String value = data.to(Object.class).toString();
+        Long millis = ParamsParser.tryParseLong(value);
+        if (millis != null) {
+            return millis;
+        }
+        String operations;
+        long ret;
+        if (value.startsWith("now")) {
+            ret = upper ? now + NOW_MARGIN : now - NOW_MARGIN;
+            operations = value.substring(3);
+        } else if (value.contains("||")) {
+            Long anchor = ParamsParser.tryParseLong(value.substring(0, value.indexOf("||")));
+            if (anchor == null) {
+                return unbounded;
+            }
+            ret = anchor;
+            operations = value.substring(value.indexOf("||") + 2);
+        } else {
+            return unbounded;
+        }
+        Matcher matcher = DATE_MATH_OPERATION.matcher(operations);
+        int position = 0;
+        try {
+            while (matcher.find() && matcher.start() == position) {
+                if (matcher.group(4) != null) {
+                    // rounding, up for the upper bounds
+                    ret = upper ? Math.addExact(ret, getUnitMillis(matcher.group(4), true)) : Math.subtractExact(ret, getUnitMillis(matcher.group(4), true));
+                } else {
+                    long amount = Long.parseLong(matcher.group(2));
+                    boolean add = matcher.group(1).equals("+");
+                    // the length of the months and years varies: the longest or the shortest is used to widen the range
+                    long unit = getUnitMillis(matcher.group(3), add == upper);
+                    ret = add ? Math.addExact(ret, Math.multiplyExact(amount, unit)) : Math.subtractExact(ret, Math.multiplyExact(amount, unit));
+                }
+                position = matcher.end();
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            return unbounded;
+        }
+        return position == operations.length() ? ret : unbounded;
+    }
+
+    private static long getUnitMillis(String unit, boolean longest) {
+        return switch (unit) {
+            case "y" -> (longest ? 366 : 365) * DAY;
+            case "M" -> (longest ? 31 : 28) * DAY;
+            case "w" -> 7 * DAY;
+            case "d" -> DAY;
+            case "h", "H" -> 3600000L;
+            case "m" -> 60000L;
+            default -> 1000L;
+        };
+    }
+
+    private record Target(String indexName, String timestampPath) {
+    }
+
+    private record Ranges(Map<String, long[]> ranges, long refreshedAt) {
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.impl.elastic.utils;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import jakarta.json.stream.JsonGenerator;
+
+import java.io.StringWriter;
+import java.util.*;
+
+/**
+ * Rewrites the boolean queries built from the ARLAS filters into smaller equivalent queries.
+ * All the rewritings assume that the query is evaluated in a filter context (i.e. its score is not used):
+ * <ul>
+ *     <li>nested AND (filter, must) and OR (should with at least one match) are flattened,
+ *     and the bools holding a single clause are replaced by the clause,</li>
+ *     <li>identical clauses of a same bool are kept once (the geo clauses only when they are the same object),</li>
+ *     <li>the term and terms queries on a same field of a OR (or of a must_not) are merged into a single terms query,</li>
+ *     <li>the clauses of a OR that are already required by the enclosing AND are removed
+ *     (C AND ((C AND X) OR Y) is C AND (X OR Y)).</li>
+ * </ul>
+ * Bools with a boost, a name or a minimum_should_match other than 1 are kept as they are.
+ */
+public class QueryOptimizer {
+    private static final JsonpMapper MAPPER = new JacksonJsonpMapper();
+    private static final String ONE = "1";
+
+    private QueryOptimizer() {
+    }
+
+    /**
+     * @return a query matching the same documents than the given query, which must be evaluated in a filter context
+     */
+    public static Query optimize(Query query) {
+        if (!query.isBool()) {
+            return query;
+        }
+        BoolQuery bool = query.bool();
+        if (bool.boost() != null || bool.queryName() != null) {
+            return query;
+        }
+        boolean hasAnd = !bool.filter().isEmpty() || !bool.must().isEmpty();
+        if (bool.should().isEmpty() ? bool.minimumShouldMatch() != null : !isOrSemantics(bool, hasAnd)) {
+            // minimum_should_match without should clause (no match), optional should clauses or minimum_should_match other than 1
+            return query;
+        }
+
+        Clauses and = new Clauses();
+        for (Query clause : concat(bool.must(), bool.filter())) {
+            Query optimized = optimize(clause);
+            if (!isMatchAll(optimized)) {
+                and.addAll(optimized);
+            }
+        }
+
+        Clauses not = new Clauses();
+        for (Query clause : bool.mustNot()) {
+            Query optimized = optimize(clause);
+            if (isOr(optimized)) {
+                // NOT (A OR B) is NOT A AND NOT B
+                optimized.bool().should().forEach(not::add);
+            } else {
+                not.add(optimized);
+            }
+        }
+
+        Clauses or = new Clauses();
+        boolean orMatchesAll = false;
+        for (Query clause : bool.should()) {
+            Query optimized = optimize(clause);
+            if (isMatchAll(optimized)) {
+                orMatchesAll = true;
+                break;
+            } else if (isOr(optimized)) {
+                optimized.bool().should().forEach(or::add);
+            } else {
+                or.add(optimized);
+            }
+        }
+        if (orMatchesAll) {
+            or = new Clauses();
+        } else if (or.size() == 1) {
+            and.addAll(or.list().get(0));
+            or = new Clauses();
+        }
+
+        List<Query> andClauses = absorb(and);
+        List<Query> notClauses = mergeTerms(not.list());
+        List<Query> orClauses = mergeTerms(or.list());
+        if (orClauses.size() == 1) {
+            andClauses = new ArrayList<>(andClauses);
+            andClauses.add(orClauses.get(0));
+            orClauses = List.of();
+        }
+
+        if (notClauses.isEmpty() && orClauses.isEmpty() && andClauses.size() == 1) {
+            return andClauses.get(0);
+        }
+        if (notClauses.isEmpty() && andClauses.isEmpty() && orClauses.size() > 1) {
+            return QueryBuilders.bool().should(orClauses).minimumShouldMatch(ONE).build()._toQuery();
+        }
+        BoolQuery.Builder ret = QueryBuilders.bool();
+        if (!andClauses.isEmpty()) {
+            ret.filter(andClauses);
+        }
+        if (!notClauses.isEmpty()) {
+            ret.mustNot(notClauses);
+        }
+        if (!orClauses.isEmpty()) {
+            ret.should(orClauses).minimumShouldMatch(ONE);
+        }
+        return ret.build()._toQuery();
+    }
+
+    /**
+     * Removes from the OR clauses of the AND the clauses already required by the AND.
+     * A OR having a branch fully required by the AND is always true and is removed.
+     */
+    private static List<Query> absorb(Clauses and) {
+        if (and.size() < 2) {
+            return and.list();
+        }
+        Clauses ret = new Clauses();
+        for (Query clause : and.list()) {
+            if (!isOr(clause)) {
+                ret.add(clause);
+                continue;
+            }
+            Clauses branches = new Clauses();
+            boolean alwaysTrue = false;
+            for (Query branch : clause.bool().should()) {
+                List<Query> members = isAnd(branch) ? branch.bool().filter() : List.of(branch);
+                List<Query> remaining = members.stream().filter(member -> !and.contains(member)).toList();
+                if (remaining.isEmpty()) {
+                    alwaysTrue = true;
+                    break;
+                }
+                branches.add(remaining.size() == 1 ? remaining.get(0) : QueryBuilders.bool().filter(remaining).build()._toQuery());
+            }
+            if (!alwaysTrue) {
+                List<Query> remainingBranches = mergeTerms(branches.list());
+                ret.addAll(remainingBranches.size() == 1
+                        ? remainingBranches.get(0)
+                        : QueryBuilders.bool().should(remainingBranches).minimumShouldMatch(ONE).build()._toQuery());
+            }
+        }
+        return ret.list();
+    }
+
+    /**
+     * Merges the term and terms queries on a same field into a single terms query, at the position of the first one.
+     * Only valid for clauses combined with a OR.
+     */
+    private static List<Query> mergeTerms(List<Query> clauses) {
+        if (clauses.size() < 2) {
+            return clauses;
+        }
+        Map<String, Map<String, FieldValue>> valuesByField = new LinkedHashMap<>();
+        List<Object> merged = new ArrayList<>();
+        for (Query clause : clauses) {
+            String field = getTermsField(clause);
+            if (field == null) {
+                merged.add(clause);
+            } else {
+                Map<String, FieldValue> values = valuesByField.get(field);
+                if (values == null) {
+                    values = new LinkedHashMap<>();
+                    valuesByField.put(field, values);
+                    merged.add(field);
+                }
+                for (FieldValue value : getTermsValues(clause)) {
+                    values.putIfAbsent(getValueKey(value), value);
+                }
+            }
+        }
+        List<Query> ret = new ArrayList<>(merged.size());
+        for (Object clause : merged) {
+            if (clause instanceof String field) {
+                ret.add(terms(field, new ArrayList<>(valuesByField.get(field).values())));
+            } else {
+                ret.add((Query) clause);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return a term query for a single value, a terms query otherwise
+     */
+    public static Query terms(String field, List<FieldValue> values) {
+        if (values.size() == 1) {
+            return QueryBuilders.term().field(field).value(values.get(0)).build()._toQuery();
+        }
+        return QueryBuilders.terms().field(field).terms(t -> t.value(values)).build()._toQuery();
+    }
+
+    private static String getTermsField(Query query) {
+        if (query.isTerm()) {
+            var term = query.term();
+            return term.boost() == null && term.queryName() == null && term.caseInsensitive() == null ? term.field() : null;
+        } else if (query.isTerms()) {
+            TermsQuery terms = query.terms();
+            return terms.boost() == null && terms.queryName() == null && terms.terms().isValue() ? terms.field() : null;
+        }
+        return null;
+    }
+
+    private static List<FieldValue> getTermsValues(Query query) {
+        return query.isTerm() ? List.of(query.term().value()) : query.terms().terms().value();
+    }
+
+    private static String getValueKey(FieldValue value) {
+        return value._kind() + ":" + value._get();
+    }
+
+    /**
+     * @return a key identifying the query among the clauses, without serializing the queries whenever possible: the
+     * term, terms and range queries are identified by their field and values, the bools by the keys of their clauses
+     * and the geo queries, whose shapes can be large, by their reference
+     */
+    private static Object getKey(Query query) {
+        switch (query._kind()) {
+            case Term, Terms -> {
+                String field = getTermsField(query);
+                if (field != null) {
+                    // a term query is the terms query of its single value
+                    return new Key(Query.Kind.Terms, field, getTermsValues(query).stream().map(QueryOptimizer::getValueKey).toList());
+                }
+            }
+            case Range -> {
+                RangeQuery range = query.range();
+                return new Key(Query.Kind.Range, range.field(), Arrays.asList(getBound(range.gt()), getBound(range.gte()),
+                        getBound(range.lt()), getBound(range.lte()), getBound(range.from()), getBound(range.to()),
+                        range.format(), range.timeZone(), range.relation(), range.boost(), range.queryName()));
+            }
+            case Bool -> {
+                BoolQuery bool = query.bool();
+                return new Key(Query.Kind.Bool, null, Arrays.asList(getKeys(bool.filter()), getKeys(bool.must()),
+                        getKeys(bool.mustNot()), getKeys(bool.should()),
+                        bool.minimumShouldMatch(), bool.boost(), bool.queryName()));
+            }
+            case GeoShape, GeoBoundingBox, GeoDistance, GeoPolygon, Shape -> {
+                return query;
+            }
+            default -> {
+            }
+        }
+        return toJson(query);
+    }
+
+    private static List<Object> getKeys(List<Query> queries) {
+        return queries.stream().map(QueryOptimizer::getKey).toList();
+    }
+
+    private static Object getBound(JsonData bound) {
+        // the bounds built by ARLAS hold their value as is: no serialization
+        return bound == null ? null : bound.to(Object.class);
+    }
+
+    private static boolean isOrSemantics(BoolQuery bool, boolean hasAnd) {
+        if (bool.should().isEmpty()) {
+            return false;
+        }
+        String msm = bool.minimumShouldMatch();
+        return ONE.equals(msm) || (msm == null && !hasAnd);
+    }
+
+    private static boolean isPlain(BoolQuery bool) {
+        return bool.boost() == null && bool.queryName() == null;
+    }
+
+    private static boolean isAnd(Query query) {
+        return query.isBool() && isPlain(query.bool())
+                && query.bool().should().isEmpty() && query.bool().mustNot().isEmpty() && query.bool().must().isEmpty()
+                && !query.bool().filter().isEmpty() && query.bool().minimumShouldMatch() == null;
+    }
+
+    private static boolean isOr(Query query) {
+        return query.isBool() && isPlain(query.bool())
+                && query.bool().filter().isEmpty() && query.bool().mustNot().isEmpty() && query.bool().must().isEmpty()
+                && isOrSemantics(query.bool(), false);
+    }
+
+    private static boolean isMatchAll(Query query) {
+        return query.isMatchAll() && query.matchAll().boost() == null && query.matchAll().queryName() == null
+                || query.isBool() && isPlain(query.bool()) && query.bool().minimumShouldMatch() == null
+                && query.bool().filter().isEmpty() && query.bool().must().isEmpty()
+                && query.bool().should().isEmpty() && query.bool().mustNot().isEmpty();
+    }
+
+    private static List<Query> concat(List<Query> first, List<Query> second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        List<Query> ret = new ArrayList<>(first);
+        ret.addAll(second);
+        return ret;
+    }
+
+    /**
+     * @return the JSON form of the query, used to compare the queries that have no cheaper key
+     */
+    public static String toJson(Query query) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = MAPPER.jsonProvider().createGenerator(writer)) {
+            query.serialize(generator, MAPPER);
+        }
+        return writer.toString();
+    }
+
+    private record Key(Query.Kind kind, String field, List<Object> values) {
+    }
+
+    /**
+     * Clauses without duplicates, in the order they are added.
+     */
+    private static class Clauses {
+        private final Map<Object, Query> clauses = new LinkedHashMap<>();
+
+        void add(Query query) {
+            clauses.putIfAbsent(getKey(query), query);
+        }
+
+        /**
+         * Adds the query to the clauses of a AND, the clauses of the query being added when it is a AND too.
+         */
+        void addAll(Query query) {
+            if (isAnd(query)) {
+                query.bool().filter().forEach(this::add);
+            } else {
+                add(query);
+            }
+        }
+
+        boolean contains(Query query) {
+            return clauses.containsKey(getKey(query));
+        }
+
+        int size() {
+            return clauses.size();
+        }
+
+        List<Query> list() {
+            return new ArrayList<>(clauses.values());
+        }
+    }
+}
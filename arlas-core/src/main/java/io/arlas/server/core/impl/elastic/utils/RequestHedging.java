@@ -0,0 +1,228 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.impl.elastic.utils;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedges the read requests: when a request has not answered within the 95th percentile of the latencies observed
+ * for the same endpoint and collection, the same request is sent again (the client sends it to the next node).
+ * The first successful answer wins and the other request is cancelled.
+ * The number of hedged requests is bounded by a budget, as a percentage of the requests.
+ */
+public class RequestHedging {
+    // number of latencies kept per endpoint and collection, and needed before hedging their requests
+    private static final int WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES = 32;
+    // number of endpoint and collection pairs whose latencies are kept, the unused ones being dropped
+    private static final int MAX_KEYS = 1000;
+    private static final Duration KEY_EXPIRATION = Duration.ofHours(1);
+    // maximum number of hedges that can be fired in a burst
+    private static final double MAX_CREDITS = 10;
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "elastic-hedging");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final double budget;
+    private final long minDelayMillis;
+    private final Cache<String, Histogram> latencies = Caffeine.newBuilder()
+            .maximumSize(MAX_KEYS)
+            .expireAfterAccess(KEY_EXPIRATION)
+            .build();
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong won = new AtomicLong();
+    private double credits = 0;
+
+    /**
+     * @param budgetPercent  maximum number of hedged requests, as a percentage of the requests. 0 disables the hedging.
+     * @param minDelayMillis minimum time to wait for an answer before hedging a request, in milliseconds
+     */
+    public RequestHedging(int budgetPercent, long minDelayMillis) {
+        this.budget = budgetPercent / 100d;
+        this.minDelayMillis = minDelayMillis;
+    }
+
+    public boolean isEnabled() {
+        return budget > 0;
+    }
+
+    /**
+     * @return the number of hedged requests
+     */
+    public long getFired() {
+        return fired.get();
+    }
+
+    /**
+     * @return the number of hedged requests which answered before the original request
+     */
+    public long getWon() {
+        return won.get();
+    }
+
+    /**
+     * Executes the request, hedged if it is slower than usual.
+     * @param key  endpoint and collection (index name or pattern) of the request, its latencies are compared to the ones of the same key
+     * @param call sends the request, called twice when the request is hedged. Cancelling its future aborts the request.
+     */
+    public <R> CompletableFuture<R> execute(String key, Supplier<CompletableFuture<R>> call) {
+        Histogram histogram = latencies.get(key, k -> new Histogram(new SlidingWindowReservoir(WINDOW_SIZE)));
+        long delay = histogram.getCount() < MIN_SAMPLES ? -1
+                : Math.max(minDelayMillis, (long) histogram.getSnapshot().get95thPercentile());
+        addCredits();
+        Hedge<R> hedge = new Hedge<>(call, histogram);
+        hedge.start(delay);
+        return hedge.result;
+    }
+
+    private synchronized void addCredits() {
+        credits = Math.min(MAX_CREDITS, credits + budget);
+    }
+
+    private synchronized boolean acquireCredit() {
+        if (credits >= 1) {
+            credits -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private class Hedge<R> {
+        private final Supplier<CompletableFuture<R>> call;
+        private final Histogram histogram;
+        private final long start = System.nanoTime();
+        private final CompletableFuture<R> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                cancelAll();
+                return cancelled;
+            }
+        };
+        private CompletableFuture<R> primary;
+        private CompletableFuture<R> backup;
+        private ScheduledFuture<?> timer;
+        private int pending = 0;
+        private boolean settled = false;
+
+        private Hedge(Supplier<CompletableFuture<R>> call, Histogram histogram) {
+            this.call = call;
+            this.histogram = histogram;
+        }
+
+        private void start(long delay) {
+            CompletableFuture<R> request = call.get();
+            synchronized (this) {
+                primary = request;
+                pending++;
+                if (delay >= 0) {
+                    timer = SCHEDULER.schedule(this::fire, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+            request.whenComplete((response, throwable) -> onComplete(response, throwable, false));
+        }
+
+        private void fire() {
+            synchronized (this) {
+                if (result.isDone() || !acquireCredit()) {
+                    return;
+                }
+                pending++;
+            }
+            fired.incrementAndGet();
+            CompletableFuture<R> request = call.get();
+            boolean cancel;
+            synchronized (this) {
+                backup = request;
+                cancel = settled || result.isDone();
+            }
+            if (cancel) {
+                request.cancel(true);
+            }
+            request.whenComplete((response, throwable) -> onComplete(response, throwable, true));
+        }
+
+        private void onComplete(R response, Throwable throwable, boolean isBackup) {
+            boolean last;
+            synchronized (this) {
+                last = --pending == 0;
+            }
+            // the other request is cancelled and the statistics updated before the caller gets the result
+            if (throwable == null) {
+                if (settle()) {
+                    histogram.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    if (isBackup) {
+                        won.incrementAndGet();
+                    }
+                    cancelAll();
+                    result.complete(response);
+                }
+            } else if (last && settle()) {
+                // the failure is reported once no other request can answer
+                cancelAll();
+                result.completeExceptionally(throwable);
+            }
+        }
+
+        /**
+         * @return true for the first request answering, which gives the result
+         */
+        private synchronized boolean settle() {
+            if (settled || result.isDone()) {
+                return false;
+            }
+            settled = true;
+            return true;
+        }
+
+        private void cancelAll() {
+            CompletableFuture<R> p;
+            CompletableFuture<R> b;
+            synchronized (this) {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                p = primary;
+                b = backup;
+            }
+            if (p != null && !p.isDone()) {
+                p.cancel(true);
+            }
+            if (b != null && !b.isDone()) {
+                b.cancel(true);
+            }
+        }
+    }
+}
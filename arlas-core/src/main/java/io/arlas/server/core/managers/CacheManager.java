@@ -25,6 +25,7 @@ import io.arlas.server.core.model.CollectionReference;
 import io.arlas.server.core.model.response.FieldType;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface CacheManager extends BaseCacheManager {
 
@@ -41,4 +42,14 @@ public interface CacheManager extends BaseCacheManager {
     void putMapping(String indexName, Map<String, Map<String, Object>> exists);
     Map<String, Map<String, Object>> getMapping(String indexName);
     void removeMapping(String indexName);
+
+    byte[] getExploreResult(String ref, String key);
+    void putExploreResult(String ref, String key, byte[] result, long timeout);
+
+    /**
+     * Registers a listener called with the name of the collections removed from the cache by another node.
+     * Nothing to do when the cache is not shared.
+     */
+    default void addInvalidationListener(Consumer<String> listener) {
+    }
 }
@@ -20,11 +20,9 @@
 package io.arlas.server.core.managers;
 
 import io.arlas.commons.exceptions.ArlasException;
-import io.arlas.commons.exceptions.NotFoundException;
 import io.arlas.server.core.impl.elastic.utils.GeoTypeMapper;
 import io.arlas.server.core.services.CollectionReferenceService;
 import io.arlas.server.core.model.CollectionReference;
-import io.arlas.server.core.model.response.CollectionReferenceDescriptionProperty;
 import io.arlas.server.core.model.response.FieldType;
 import io.arlas.server.core.utils.MapExplorer;
 
@@ -51,27 +49,7 @@ public class CollectionReferenceManager {
     }
 
     public FieldType getType(CollectionReference collectionReference, String field, boolean throwException) throws ArlasException {
-        FieldType fieldType = cacheManager.getFieldType(collectionReference.collectionName, field);
-        if (fieldType == null) {
-            String[] props = field.split("\\.");
-            CollectionReferenceDescriptionProperty esField = collectionReferenceService.describeCollection(collectionReference).properties.get(props[0]);
-            if (esField == null) {
-                return getUnknownType(field, collectionReference.collectionName, throwException);
-            }
-            for (int i=1; i<props.length; i++) {
-                esField = esField.properties.get(props[i]);
-                if (esField == null) {
-                    return getUnknownType(field, collectionReference.collectionName, throwException);
-                }
-            }
-            if (esField != null) {
-                fieldType = esField.type;
-                cacheManager.putFieldType(collectionReference.collectionName, field, fieldType);
-            } else {
-                return getUnknownType(field, collectionReference.collectionName, throwException);
-            }
-        }
-        return fieldType;
+        return collectionReferenceService.getType(collectionReference, field, throwException);
     }
 
     public static void setCollectionGeometriesType(Object source, CollectionReference collectionReference) throws ArlasException {
@@ -105,12 +83,4 @@ public class CollectionReferenceManager {
             }
         }
     }
-
-    private FieldType getUnknownType(String parentField, String collectionName, boolean throwException) throws ArlasException{
-        if (throwException) {
-            throw new NotFoundException("Field '" + parentField + "' not found in collection " + collectionName);
-        } else {
-            return FieldType.UNKNOWN;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -65,6 +65,18 @@ public class CollectionReferenceParameters implements Serializable {
     @JsonProperty(value = "taggable_fields")
     public String taggableFields = null;
 
+    @JsonProperty(value = "substring_subfield")
+    public String substringSubfield = null;
+
+    @JsonProperty(value = "substring_min_gram")
+    public int substringMinGram = 1;
+
+    @JsonProperty(value = "substring_max_gram")
+    public int substringMaxGram = 2;
+
+    @JsonProperty(value = "track_total_hits")
+    public String trackTotalHits = null;
+
     @JsonProperty(value = CollectionReference.EXCLUDE_WFS_FIELDS)
     public String excludeWfsFields = null;
 
@@ -0,0 +1,275 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.model;
+
+import io.arlas.commons.utils.StringUtil;
+import io.arlas.server.core.model.response.CollectionReferenceDescriptionProperty;
+import io.arlas.server.core.model.response.FieldType;
+import io.arlas.server.core.utils.ColumnFilterMatcher;
+import io.arlas.server.core.utils.ColumnFilterUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable description of the fields of a collection, computed once from the mappings of its indices.
+ * It holds the tree of the properties (without the excluded fields) and a flat index of the fields by path,
+ * so that the type of a field is found without walking the mappings.
+ * A schema is bound to the mappings and to the parameters it has been built from: it must be rebuilt when they change.
+ */
+@SuppressWarnings({"rawtypes"})
+public class CollectionSchema {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CollectionSchema.class);
+    private static final String WILDCARD = "wildcard";
+
+    private final Map<String, Map<String, Object>> mappings;
+    private final String excludeFields;
+    private final String taggableFields;
+    private final String substringSubfield;
+    private final List<Pattern> excludePatterns = new ArrayList<>();
+    private final Set<String> taggablePaths = new HashSet<>();
+    private final Map<String, CollectionReferenceDescriptionProperty> properties;
+    // all the fields of the collection (objects included) by path, except the excluded ones
+    private final Map<String, CollectionReferenceDescriptionProperty> fields = new HashMap<>();
+    // types of all the fields of the mappings by path, excluded ones included
+    private final Map<String, FieldType> mappingTypes = new HashMap<>();
+    // whether the field is a keyword without normalizer in all the indices having it, by path
+    private final Map<String, Boolean> exactKeywords = new HashMap<>();
+    // whether the field is a wildcard in all the indices having it, by path
+    private final Map<String, Boolean> wildcards = new HashMap<>();
+    // path of the substring subfield of the field, empty if the indices do not share one, by path
+    private final Map<String, String> substringFields = new HashMap<>();
+
+    public CollectionSchema(CollectionReference collectionReference, Map<String, Map<String, Object>> mappings) {
+        this.mappings = mappings;
+        this.excludeFields = collectionReference.params.excludeFields;
+        this.taggableFields = collectionReference.params.taggableFields;
+        this.substringSubfield = collectionReference.params.substringSubfield;
+        if (excludeFields != null) {
+            Arrays.stream(excludeFields.split(","))
+                    .forEach(field -> excludePatterns.add(Pattern.compile("^" + field.replace(".", "\\.").replace("*", ".*") + "$")));
+        }
+        if (taggableFields != null) {
+            Arrays.stream(taggableFields.split(",")).map(String::trim).forEach(taggablePaths::add);
+        }
+        Map<String, CollectionReferenceDescriptionProperty> union = new HashMap<>();
+        for (Map<String, Object> mapping : mappings.values()) {
+            union = union(union, getFromSource(mapping, "", true));
+            addMappingTypes(mapping, "");
+        }
+        this.properties = Collections.unmodifiableMap(union);
+        indexFields(properties, "");
+    }
+
+    /**
+     * @return true if the schema has been built from these mappings and from the same parameters of the collection
+     */
+    public boolean isBuiltFrom(CollectionReference collectionReference, Map<String, Map<String, Object>> mappings) {
+        return this.mappings == mappings
+                && Objects.equals(excludeFields, collectionReference.params.excludeFields)
+                && Objects.equals(taggableFields, collectionReference.params.taggableFields)
+                && Objects.equals(substringSubfield, collectionReference.params.substringSubfield);
+    }
+
+    public boolean isEmpty() {
+        return properties.isEmpty();
+    }
+
+    /**
+     * @return the type of the field, excluded fields being ignored, or null if the field is not in the collection
+     */
+    public FieldType getType(String path) {
+        CollectionReferenceDescriptionProperty property = fields.get(path);
+        return property != null ? property.type : null;
+    }
+
+    /**
+     * @return the type of the field in the mappings, excluded fields included, or UNKNOWN
+     */
+    public FieldType getMappingType(String path) {
+        return mappingTypes.getOrDefault(path, FieldType.UNKNOWN);
+    }
+
+    /**
+     * @return true if the field is a keyword without normalizer in the mappings of all the indices,
+     * i.e. a term query on the field matches the same documents than a match query
+     */
+    public boolean isExactKeyword(String path) {
+        return exactKeywords.getOrDefault(path, false);
+    }
+
+    /**
+     * @return true if the field is a wildcard in the mappings of all the indices
+     */
+    public boolean isWildcard(String path) {
+        return wildcards.getOrDefault(path, false);
+    }
+
+    /**
+     * @return the path of the subfield named after the `substring_subfield` parameter of the collection, if all the
+     * indices have it, otherwise null (or if the parameter is not set)
+     */
+    public String getSubstringField(String path) {
+        String substringField = substringFields.get(path);
+        return StringUtil.isNullOrEmpty(substringField) ? null : substringField;
+    }
+
+    /**
+     * Copies the properties of the collection, restricted to the ones allowed by the column filter.
+     * The copy can be modified by the caller.
+     */
+    public Map<String, CollectionReferenceDescriptionProperty> describe(Optional<ColumnFilterMatcher> columnFilterMatcher) {
+        return copy(properties, "", columnFilterMatcher);
+    }
+
+    /**
+     * @return the leaf fields allowed by the column filter with their type, sorted by path
+     */
+    public SortedMap<String, FieldType> getFieldTypes(Optional<ColumnFilterMatcher> columnFilterMatcher) {
+        SortedMap<String, FieldType> fieldTypes = new TreeMap<>();
+        addFieldTypes(properties, "", columnFilterMatcher, fieldTypes);
+        return fieldTypes;
+    }
+
+    private Map<String, CollectionReferenceDescriptionProperty> copy(Map<String, CollectionReferenceDescriptionProperty> source, String parentPath,
+                                                                      Optional<ColumnFilterMatcher> columnFilterMatcher) {
+        Map<String, CollectionReferenceDescriptionProperty> ret = new HashMap<>();
+        source.forEach((key, property) -> {
+            String path = parentPath + key;
+            if (ColumnFilterUtil.matchesOrWithin(columnFilterMatcher, path, property.type == FieldType.OBJECT)) {
+                CollectionReferenceDescriptionProperty copy = new CollectionReferenceDescriptionProperty();
+                copy.type = property.type;
+                copy.format = property.format;
+                copy.hashField = property.hashField;
+                copy.taggable = property.taggable;
+                copy.indexed = property.indexed;
+                if (property.properties != null) {
+                    copy.properties = copy(property.properties, path + ".", columnFilterMatcher);
+                }
+                ret.put(key, copy);
+            }
+        });
+        return ret;
+    }
+
+    private void addFieldTypes(Map<String, CollectionReferenceDescriptionProperty> source, String parentPath,
+                               Optional<ColumnFilterMatcher> columnFilterMatcher, Map<String, FieldType> fieldTypes) {
+        source.forEach((key, property) -> {
+            String path = parentPath + key;
+            if (ColumnFilterUtil.matchesOrWithin(columnFilterMatcher, path, property.type == FieldType.OBJECT)) {
+                if (property.type == FieldType.OBJECT && property.properties != null) {
+                    addFieldTypes(property.properties, path + ".", columnFilterMatcher, fieldTypes);
+                } else {
+                    fieldTypes.put(path, property.type);
+                }
+            }
+        });
+    }
+
+    private void indexFields(Map<String, CollectionReferenceDescriptionProperty> source, String parentPath) {
+        source.forEach((key, property) -> {
+            String path = parentPath + key;
+            fields.put(path, property);
+            if (property.properties != null) {
+                indexFields(property.properties, path + ".");
+            }
+        });
+    }
+
+    private void addMappingTypes(Map source, String parentPath) {
+        for (Object key : source.keySet()) {
+            if (source.get(key) instanceof Map property) {
+                String path = parentPath + key;
+                mappingTypes.putIfAbsent(path, property.containsKey("type") ? FieldType.getType(property.get("type")) : FieldType.OBJECT);
+                exactKeywords.merge(path, FieldType.KEYWORD.toString().equals(property.get("type")) && !property.containsKey("normalizer"), Boolean::logicalAnd);
+                wildcards.merge(path, WILDCARD.equals(property.get("type")), Boolean::logicalAnd);
+                substringFields.merge(path, getSubstringSubfield(property, path), (a, b) -> a.equals(b) ? a : "");
+                if (property.get("properties") instanceof Map subProperties) {
+                    addMappingTypes(subProperties, path + ".");
+                }
+            }
+        }
+    }
+
+    private String getSubstringSubfield(Map property, String path) {
+        if (substringSubfield != null && property.get("fields") instanceof Map subFields && subFields.get(substringSubfield) instanceof Map) {
+            return path + "." + substringSubfield;
+        }
+        return "";
+    }
+
+    private Map<String, CollectionReferenceDescriptionProperty> getFromSource(Map source, String parentPath, boolean parentIsIndexed) {
+        Map<String, CollectionReferenceDescriptionProperty> ret = new HashMap<>();
+        for (Object key : source.keySet()) {
+            String path = parentPath + key;
+            boolean excludePath = excludePatterns.stream().anyMatch(pattern -> pattern.matcher(path).matches());
+            if (!excludePath && source.get(key) instanceof Map property) {
+                CollectionReferenceDescriptionProperty collectionProperty = new CollectionReferenceDescriptionProperty();
+                if (property.containsKey("type")) {
+                    collectionProperty.type = FieldType.getType(property.get("type"));
+                } else {
+                    collectionProperty.type = FieldType.OBJECT;
+                }
+                if (property.get("fields") instanceof Map subFields) {
+                    for (Object keyFields : subFields.keySet()) {
+                        if (subFields.get(keyFields) instanceof Map propertyFields
+                                && FieldType.MAPPER_MURMUR3.toString().equals(propertyFields.get("type"))) {
+                            collectionProperty.hashField = keyFields.toString();
+                        }
+                    }
+                }
+                // check whether the field is declared in the mapping but not index
+                if (property.containsKey("enabled")) {
+                    collectionProperty.indexed = (boolean) property.get("enabled") && parentIsIndexed;
+                } else if (property.containsKey("index")) {
+                    collectionProperty.indexed = (boolean) property.get("index") && parentIsIndexed;
+                } else {
+                    collectionProperty.indexed = parentIsIndexed;
+                }
+                if (property.containsKey("format")) {
+                    collectionProperty.format = property.get("format").toString();
+                }
+                if (property.get("properties") instanceof Map subProperties) {
+                    collectionProperty.properties = getFromSource(subProperties, path + ".", collectionProperty.indexed);
+                }
+                collectionProperty.taggable = taggablePaths.contains(path);
+                ret.put(key.toString(), collectionProperty);
+            }
+        }
+        return ret;
+    }
+
+    private static Map<String, CollectionReferenceDescriptionProperty> union(Map<String, CollectionReferenceDescriptionProperty> source,
+                                                                              Map<String, CollectionReferenceDescriptionProperty> update) {
+        Map<String, CollectionReferenceDescriptionProperty> ret = new HashMap<>(source);
+        for (String key : update.keySet()) {
+            if (!ret.containsKey(key)) {
+                ret.put(key, update.get(key));
+            } else if (ret.get(key).type != update.get(key).type) {
+                LOGGER.error("Cannot union field [key=" + key + "] because type mismatch between indices' mappings");
+            } else if (ret.get(key).properties != null && update.get(key).properties != null) {
+                ret.get(key).properties = union(ret.get(key).properties, update.get(key).properties);
+            }
+        }
+        return ret;
+    }
+}
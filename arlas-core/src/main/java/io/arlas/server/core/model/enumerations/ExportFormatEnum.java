@@ -0,0 +1,55 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.model.enumerations;
+
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.commons.exceptions.InvalidParameterException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+public enum ExportFormatEnum {
+    ndjson("application/x-ndjson", "ndjson"), geojsonseq("application/geo+json-seq", "geojsons"), csv("text/csv", "csv");
+
+    private final String mediaType;
+    private final String extension;
+
+    ExportFormatEnum(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public static ExportFormatEnum fromValue(String v) throws ArlasException {
+        for (ExportFormatEnum f : ExportFormatEnum.values()) {
+            if (f.name().equals(v.toLowerCase())) {
+                return f;
+            }
+        }
+        throw new InvalidParameterException("Invalid format : must be one of " + Arrays.stream(ExportFormatEnum.values()).map(Enum::name).collect(Collectors.joining(", ")));
+    }
+}
@@ -23,4 +23,5 @@ public class Search extends Request {
     public Page page;
     public Projection projection;
     public String returned_geometries;
+    public String track_total_hits;
 }
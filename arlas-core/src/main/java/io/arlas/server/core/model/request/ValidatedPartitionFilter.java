@@ -0,0 +1,93 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.model.request;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Partition filter parsed from the partition-filter header and validated for a collection (see
+ * {@link io.arlas.server.core.utils.ParamsParser#getPartitionFilter}).
+ * It is shared by all the requests carrying the same header, so neither the list nor its filters are ever modified:
+ * the filters checked against the collection are a copy, published once with {@link #setChecked}.
+ * The query built from the checked filters by the fluid search can be kept with them.
+ */
+public class ValidatedPartitionFilter extends AbstractList<Filter> {
+    private final List<Filter> filters;
+    private final boolean checked;
+    private volatile ValidatedPartitionFilter checkedFilter;
+    private volatile Object query;
+
+    public ValidatedPartitionFilter(List<Filter> filters) {
+        this(filters, false);
+    }
+
+    private ValidatedPartitionFilter(List<Filter> filters, boolean checked) {
+        this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+        this.checked = checked;
+    }
+
+    @Override
+    public Filter get(int index) {
+        return filters.get(index);
+    }
+
+    @Override
+    public int size() {
+        return filters.size();
+    }
+
+    /**
+     * @return true if the filters have been checked against the collection and can be used as is
+     */
+    public boolean isChecked() {
+        return checked;
+    }
+
+    /**
+     * @return the filters checked against the collection, null if they have not been checked yet
+     */
+    public ValidatedPartitionFilter getChecked() {
+        return checked ? this : checkedFilter;
+    }
+
+    /**
+     * @param filters the filters checked against the collection, which must not be modified anymore
+     * @return the checked partition filter, shared by the next requests carrying the same header
+     */
+    public ValidatedPartitionFilter setChecked(List<Filter> filters) {
+        ValidatedPartitionFilter ret = new ValidatedPartitionFilter(filters, true);
+        this.checkedFilter = ret;
+        return ret;
+    }
+
+    /**
+     * @return the query built from the filters by the fluid search, null if it has not been built yet
+     */
+    public Object getQuery() {
+        return query;
+    }
+
+    public void setQuery(Object query) {
+        this.query = query;
+    }
+}
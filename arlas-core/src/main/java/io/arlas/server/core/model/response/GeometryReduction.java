@@ -0,0 +1,44 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.model.response;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/**
+ * Reports that the geometries of the geo filters exceeded the vertex budget and were simplified before being queried.
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class GeometryReduction {
+    public Integer maxVertices = null;
+    public Integer originalVertices = null;
+    public Integer vertices = null;
+    public Double tolerance = null;
+
+    public GeometryReduction() {
+    }
+
+    public GeometryReduction(int maxVertices) {
+        this.maxVertices = maxVertices;
+        this.originalVertices = 0;
+        this.vertices = 0;
+        this.tolerance = 0d;
+    }
+}
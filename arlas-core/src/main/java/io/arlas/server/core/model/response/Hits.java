@@ -33,7 +33,12 @@ public class Hits {
     public List<ArlasHit> hits;
     public long nbhits;
     public long totalnb;
+    public String totalnbRelation;
     public HashMap<String, Link> links;
+    public GeometryReduction geometryReduction;
+
+    public Hits() {
+    }
 
     public Hits(String collection) {
         this.collection = collection;
@@ -28,5 +28,6 @@ public class OperationInfo {
     public Long queryTime = null;
     public Long totalTime = null;
     public Long totalnb = null;
+    public GeometryReduction geometryReduction = null;
 }
 
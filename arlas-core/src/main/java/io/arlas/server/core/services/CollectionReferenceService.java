@@ -21,16 +21,15 @@ package io.arlas.server.core.services;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Stack;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,13 +45,14 @@ import io.arlas.server.core.managers.CacheManager;
 import io.arlas.server.core.model.CollectionDisplayNames;
 import io.arlas.server.core.model.CollectionReference;
 import io.arlas.server.core.model.CollectionReferenceParameters;
+import io.arlas.server.core.model.CollectionSchema;
 import io.arlas.server.core.model.response.CollectionReferenceDescription;
-import io.arlas.server.core.model.response.CollectionReferenceDescriptionProperty;
 import io.arlas.server.core.model.response.FieldType;
 import io.arlas.server.core.utils.CheckParams;
 import io.arlas.server.core.utils.CollectionUtil;
 import io.arlas.server.core.utils.ColumnFilterUtil;
-import io.arlas.server.core.utils.FilterMatcherUtil;
+import io.arlas.server.core.utils.ExploreResultCache;
+import io.arlas.server.core.utils.ParamsParser;
 
 /**
  * DAO for collection references
@@ -64,11 +64,16 @@ public abstract class CollectionReferenceService {
     protected final String arlasIndex;
     protected final CacheManager cacheManager;
     protected final ArlasConfiguration configuration;
+    protected ExploreResultCache exploreResultCache;
+    private final Map<String, CollectionSchema> schemas = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
 
     public CollectionReferenceService(String arlasIndex, CacheManager cacheManager, ArlasConfiguration configuration) {
         this.arlasIndex = arlasIndex;
         this.cacheManager = cacheManager;
         this.configuration = configuration;
+        // what is derived from a collection updated by another node is dropped as well
+        cacheManager.addInvalidationListener(this::invalidateCollection);
     }
 
     abstract protected CollectionReference getCollectionReferenceFromDao(String ref) throws ArlasException;
@@ -86,6 +91,31 @@ public abstract class CollectionReferenceService {
     abstract public void deleteCollectionReference(String ref) throws ArlasException;
 
     // -------
+    public void setExploreResultCache(ExploreResultCache exploreResultCache) {
+        this.exploreResultCache = exploreResultCache;
+    }
+
+    /**
+     * Registers a listener called with the name of a collection when it is updated or deleted, on this node or on another one.
+     */
+    public void addInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    protected void removeCollectionReferenceFromCache(String ref) {
+        cacheManager.removeCollectionReference(ref);
+        invalidateCollection(ref);
+    }
+
+    private void invalidateCollection(String ref) {
+        schemas.remove(ref);
+        ParamsParser.invalidatePartitionFilters(ref);
+        if (exploreResultCache != null) {
+            exploreResultCache.invalidate(ref);
+        }
+        invalidationListeners.forEach(listener -> listener.accept(ref));
+    }
+
     public CollectionReference getCollectionReference(String ref, Optional<String> organisations) throws ArlasException {
         CollectionReference collectionReference = cacheManager.getCollectionReference(ref);
         if (collectionReference == null) {
@@ -121,7 +151,7 @@ public abstract class CollectionReferenceService {
         checkCollectionReferenceParameters(collectionReference, checkFields);
         putCollectionReferenceWithDao(collectionReference);
         //explicit clean-up cache
-        cacheManager.removeCollectionReference(collectionReference.collectionName);
+        removeCollectionReferenceFromCache(collectionReference.collectionName);
         cacheManager.removeMapping(collectionReference.params.indexName);
         return collectionReference;
     }
@@ -195,110 +225,33 @@ public abstract class CollectionReferenceService {
 
     public CollectionReferenceDescription describeCollection(CollectionReference collectionReference,
             Optional<String> columnFilter) throws ArlasException {
-        ArrayList<Pattern> excludeFields = new ArrayList<>();
-        if (collectionReference.params.excludeFields != null) {
-            Arrays.asList(collectionReference.params.excludeFields.split(","))
-                    .forEach(field -> excludeFields.add(Pattern.compile("^" + field.replace(".", "\\.").replace("*", ".*") + "$")));
-        }
+        return describeCollection(collectionReference, columnFilter, getCollectionSchema(collectionReference));
+    }
+
+    private CollectionReferenceDescription describeCollection(CollectionReference collectionReference,
+            Optional<String> columnFilter, CollectionSchema schema) throws ArlasException {
         CollectionReferenceDescription collectionReferenceDescription = new CollectionReferenceDescription();
         collectionReferenceDescription.params = collectionReference.params;
         collectionReferenceDescription.collectionName = collectionReference.collectionName;
-
-        Map<String, Map<String, Object>> mappings = getMapping(collectionReferenceDescription.params.indexName);
-        Iterator<String> indices = mappings.keySet().iterator();
-        Map<String, CollectionReferenceDescriptionProperty> properties = new HashMap<>();
-        Optional<Set<String>> columnFilterPredicates = ColumnFilterUtil.getColumnFilterPredicates(columnFilter, collectionReference);
-
-        while (indices.hasNext()) {
-            String index = indices.next();
-            Map fields = mappings.get(index);
-            properties = union(properties, getFromSource(collectionReference, fields, new Stack<>(), excludeFields, columnFilterPredicates, true));
-        }
-
-        collectionReferenceDescription.properties = properties;
-        if (properties.isEmpty()) {
+        collectionReferenceDescription.properties = schema.describe(ColumnFilterUtil.getColumnFilterMatcher(columnFilter, collectionReference));
+        if (collectionReferenceDescription.properties.isEmpty()) {
             throw new ArlasException("This collection can not be described. Check if index or template ".concat(collectionReferenceDescription.params.indexName).concat(" exist in Elasticsearch"));
         }
         return collectionReferenceDescription;
     }
 
-    private Map<String, CollectionReferenceDescriptionProperty> union(Map<String, CollectionReferenceDescriptionProperty> source,
-            Map<String, CollectionReferenceDescriptionProperty> update) {
-        Map<String, CollectionReferenceDescriptionProperty> ret = new HashMap<>(source);
-        for (String key : update.keySet()) {
-            if (!ret.containsKey(key)) {
-                ret.put(key, update.get(key));
-            } else if (ret.get(key).type != update.get(key).type) {
-                LOGGER.error("Cannot union field [key=" + key + "] because type mismatch between indices' mappings");
-            } else if (ret.get(key).properties != null && update.get(key).properties != null) {
-                ret.get(key).properties = union(ret.get(key).properties, update.get(key).properties);
-            }
-        }
-        return ret;
-    }
-
-    protected Map<String, CollectionReferenceDescriptionProperty> getFromSource(CollectionReference collectionReference,
-            Map source, Stack<String> namespace,
-            ArrayList<Pattern> excludeFields,
-            Optional<Set<String>> columnFilterPredicates,
-            boolean parentIsIndexed) {
-
-        Map<String, CollectionReferenceDescriptionProperty> ret = new HashMap<>();
-
-        for (Object key : source.keySet()) {
-            namespace.push(key.toString());
-            String path = String.join(".", namespace);
-            boolean excludePath = excludeFields.stream().anyMatch(pattern -> pattern.matcher(path).matches());
-            if (!excludePath) {
-                if (source.get(key) instanceof Map property) {
-                    CollectionReferenceDescriptionProperty collectionProperty = new CollectionReferenceDescriptionProperty();
-                    if (property.containsKey("type")) {
-                        collectionProperty.type = FieldType.getType(property.get("type"));
-                    } else {
-                        collectionProperty.type = FieldType.OBJECT;
-                    }
-                    if (FilterMatcherUtil.matchesOrWithin(columnFilterPredicates, path, collectionProperty.type == FieldType.OBJECT)) {
-                        if (property.containsKey("fields")) {
-                            if (property.get("fields") instanceof Map) {
-                                for (Object keyFields : ((Map) property.get("fields")).keySet()) {
-                                    if (((Map) property.get("fields")).get(keyFields) instanceof Map propertyFields) {
-                                        if (propertyFields.containsKey("type")) {
-                                            if (propertyFields.get("type").equals(FieldType.MAPPER_MURMUR3.toString())) {
-                                                collectionProperty.hashField = keyFields.toString();
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                        // check whether the field is declared in the mapping but not index
-                        if (property.containsKey("enabled")) {
-                            collectionProperty.indexed = (boolean) property.get("enabled") && parentIsIndexed;
-                        } else if (property.containsKey("index")) {
-                            collectionProperty.indexed = (boolean) property.get("index") && parentIsIndexed;
-                        } else {
-                            collectionProperty.indexed = parentIsIndexed;
-                        }
-                        if (property.containsKey("format")) {
-                            String format = property.get("format").toString();
-                            if (format == null && collectionProperty.type.equals(FieldType.DATE)) {
-                                format = CollectionReference.DEFAULT_TIMESTAMP_FORMAT;
-                            }
-                            collectionProperty.format = format;
-                        }
-                        if (property.containsKey("properties") && property.get("properties") instanceof Map) {
-                            collectionProperty.properties = getFromSource(collectionReference, (Map) property.get("properties"), namespace, excludeFields, columnFilterPredicates, collectionProperty.indexed);
-                        }
-                        if (collectionReference.params.taggableFields != null) {
-                            collectionProperty.taggable = Arrays.stream(collectionReference.params.taggableFields.split(",")).map(String::trim).toList().contains(path);
-                        }
-                        ret.put(key.toString(), collectionProperty);
-                    }
-                }
-            }
-            namespace.pop();
+    /**
+     * Get the schema of the collection. It is built once from the mappings of the collection and rebuilt when
+     * the mappings or the parameters of the collection change.
+     */
+    public CollectionSchema getCollectionSchema(CollectionReference collectionReference) throws ArlasException {
+        Map<String, Map<String, Object>> mappings = getMapping(collectionReference.params.indexName);
+        CollectionSchema schema = schemas.get(collectionReference.collectionName);
+        if (schema == null || !schema.isBuiltFrom(collectionReference, mappings)) {
+            schema = new CollectionSchema(collectionReference, mappings);
+            schemas.put(collectionReference.collectionName, schema);
         }
-        return ret;
+        return schema;
     }
 
     /**
@@ -306,25 +259,19 @@ public abstract class CollectionReferenceService {
      * predicates
      */
     public Set<String> getCollectionFields(CollectionReference collectionReference, Optional<String> filterPredicates) throws ArlasException {
-
-        Map<String, CollectionReferenceDescriptionProperty> collectionFilteredProperties
-                = this.describeCollection(collectionReference, filterPredicates).properties;
-
-        return getPropertiesFields(collectionFilteredProperties, "")
-                .collect(Collectors.toSet());
+        return getCollectionFieldTypes(collectionReference, filterPredicates).keySet();
     }
 
     /**
-     * Extract the fields of the given paths, recursively
+     * Get the parameters paths of a collection with their type, sorted by path, using the given filter predicates
      */
-    private Stream<String> getPropertiesFields(Map<String, CollectionReferenceDescriptionProperty> properties, String parentPath) {
-        return properties.entrySet().stream().flatMap(es -> {
-            if (es.getValue().type == FieldType.OBJECT && es.getValue().properties != null) {
-                return getPropertiesFields(es.getValue().properties, parentPath + es.getKey() + ".");
-            } else {
-                return Stream.of(parentPath + es.getKey());
-            }
-        });
+    public SortedMap<String, FieldType> getCollectionFieldTypes(CollectionReference collectionReference, Optional<String> filterPredicates) throws ArlasException {
+        CollectionSchema schema = getCollectionSchema(collectionReference);
+        SortedMap<String, FieldType> fieldTypes = schema.getFieldTypes(ColumnFilterUtil.getColumnFilterMatcher(filterPredicates, collectionReference));
+        if (fieldTypes.isEmpty()) {
+            throw new ArlasException("This collection can not be described. Check if index or template ".concat(collectionReference.params.indexName).concat(" exist in Elasticsearch"));
+        }
+        return fieldTypes;
     }
 
     public List<CollectionReferenceDescription> getAllIndicesAsCollections() throws ArlasException {
@@ -336,7 +283,8 @@ public abstract class CollectionReferenceService {
             collection.collectionName = indexName;
             collection.params = new CollectionReferenceParameters();
             collection.params.indexName = indexName;
-            collections.add(describeCollection(collection));
+            // the schemas of the indices are not kept: only the ones of the collections are
+            collections.add(describeCollection(collection, Optional.empty(), new CollectionSchema(collection, Map.of(indexName, indices.get(indexName)))));
         }
         return collections;
     }
@@ -376,21 +324,9 @@ public abstract class CollectionReferenceService {
     }
 
     public FieldType getType(CollectionReference collectionReference, String field, boolean throwException) throws ArlasException {
-        FieldType fieldType = cacheManager.getFieldType(collectionReference.collectionName, field);
+        FieldType fieldType = getCollectionSchema(collectionReference).getType(field);
         if (fieldType == null) {
-            String[] props = field.split("\\.");
-            CollectionReferenceDescriptionProperty esField = describeCollection(collectionReference).properties.get(props[0]);
-            if (esField == null) {
-                return getUnknownType(field, collectionReference.collectionName, throwException);
-            }
-            for (int i = 1; i < props.length; i++) {
-                esField = esField.properties.get(props[i]);
-                if (esField == null) {
-                    return getUnknownType(field, collectionReference.collectionName, throwException);
-                }
-            }
-            fieldType = esField.type;
-            cacheManager.putFieldType(collectionReference.collectionName, field, fieldType);
+            return getUnknownType(field, collectionReference.collectionName, throwException);
         }
         return fieldType;
     }
@@ -404,7 +340,19 @@ public abstract class CollectionReferenceService {
     }
 
     public boolean isDateField(String field, CollectionReference ref) throws ArlasException {
-        return getFieldType(field, ref.params.indexName).isDateField();
+        return getCollectionSchema(ref).getMappingType(field).isDateField();
+    }
+
+    public boolean isExactKeywordField(String field, CollectionReference ref) throws ArlasException {
+        return getCollectionSchema(ref).isExactKeyword(field);
+    }
+
+    public boolean isWildcardField(String field, CollectionReference ref) throws ArlasException {
+        return getCollectionSchema(ref).isWildcard(field);
+    }
+
+    public String getSubstringField(String field, CollectionReference ref) throws ArlasException {
+        return getCollectionSchema(ref).getSubstringField(field);
     }
 
     public boolean isTextField(String field, String index) throws ArlasException {
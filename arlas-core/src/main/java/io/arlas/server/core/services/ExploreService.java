@@ -19,17 +19,24 @@
 package io.arlas.server.core.services;
 
 import co.elastic.clients.json.JsonData;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.arlas.commons.exceptions.ArlasException;
 import io.arlas.commons.exceptions.BadRequestException;
+import io.arlas.commons.exceptions.InternalServerErrorException;
 import io.arlas.commons.utils.StringUtil;
 import io.arlas.server.core.app.ArlasServerConfiguration;
 import io.arlas.server.core.exceptions.CollectionUnavailableException;
 import io.arlas.server.core.model.CollectionReference;
 import io.arlas.server.core.model.enumerations.ComputationEnum;
+import io.arlas.server.core.model.enumerations.ExportFormatEnum;
 import io.arlas.server.core.model.enumerations.OperatorEnum;
 import io.arlas.server.core.model.request.*;
 import io.arlas.server.core.model.response.*;
 import io.arlas.server.core.utils.*;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
 import org.apache.commons.lang3.tuple.Pair;
 import org.geojson.*;
@@ -39,7 +46,12 @@ import org.locationtech.spatial4j.shape.Rectangle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -52,11 +64,18 @@ public abstract class ExploreService {
     private static final String FEATURE_TYPE_KEY = "feature_type";
     private static final String FEATURE_TYPE_VALUE = "hit";
     private static final String FEATURE_GEOMETRY_PATH = "geometry_path";
+    private static final String FEATURE_MD = MD.class.getSimpleName().toLowerCase();
+    private static final char RECORD_SEPARATOR = '\u001e';
 
 
     private String baseUri;
     protected CollectionReferenceService collectionReferenceService;
     protected ResponseCacheManager responseCacheManager;
+    protected ExploreResultCache exploreResultCache;
+    // builds the responses of the asynchronous requests, off the I/O threads of the elasticsearch client
+    protected Executor responseExecutor = ForkJoinPool.commonPool();
+    // writes the streamed responses, with the same configuration as the responses written by jersey
+    protected ObjectMapper streamMapper = toStreamMapper(new ObjectMapper());
 
     public ExploreService() {
     }
@@ -67,10 +86,45 @@ public abstract class ExploreService {
         this.collectionReferenceService = collectionReferenceService;
     }
 
+    protected ExploreService(ExploreService exploreService) {
+        this.baseUri = exploreService.baseUri;
+        this.responseCacheManager = exploreService.responseCacheManager;
+        this.collectionReferenceService = exploreService.collectionReferenceService;
+        this.exploreResultCache = exploreService.exploreResultCache;
+        this.responseExecutor = exploreService.responseExecutor;
+        this.streamMapper = exploreService.streamMapper;
+    }
+
     public ResponseCacheManager getResponseCacheManager() {
         return this.responseCacheManager;
     }
 
+    public ExploreResultCache getExploreResultCache() {
+        return this.exploreResultCache;
+    }
+
+    public void setExploreResultCache(ExploreResultCache exploreResultCache) {
+        this.exploreResultCache = exploreResultCache;
+    }
+
+    public Executor getResponseExecutor() {
+        return responseExecutor;
+    }
+
+    public void setResponseExecutor(Executor responseExecutor) {
+        this.responseExecutor = responseExecutor;
+    }
+
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.streamMapper = toStreamMapper(objectMapper.copy());
+    }
+
+    // the generators must not close the output streams of the responses
+    private static ObjectMapper toStreamMapper(ObjectMapper objectMapper) {
+        return objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    }
+
     public String getBaseUri() {
         return this.baseUri;
     }
@@ -79,7 +133,8 @@ public abstract class ExploreService {
         if (request != null && request.filter != null) {
             request.filter = ParamsParser.getFilterWithValidGeos(collectionReference, request.filter);
         }
-        if (request != null && request.partitionFilter != null) {
+        // the partition filters parsed from the header are already valid
+        if (request != null && request.partitionFilter != null && !(request.partitionFilter instanceof ValidatedPartitionFilter)) {
             List<Filter> newFilters = new ArrayList<>();
             for (Filter f : request.partitionFilter){
                 newFilters.add(ParamsParser.getFilterWithValidGeos(collectionReference, f));
@@ -164,22 +219,45 @@ public abstract class ExploreService {
 
     public void applyPartitionFilter(List<Filter> filters, FluidSearchService fluidSearch) throws ArlasException {
         if (filters != null) {
-            for(Filter f:filters){
-                if (f != null) {
-                    CheckParams.checkFilter(f);
-                    if (f.f != null && !f.f.isEmpty()) {
-                        CollectionReference collectionReference = fluidSearch.getCollectionReference();
-                        if (!filterFHasDateQuery(f, collectionReference) && !StringUtil.isNullOrEmpty(f.dateformat)) {
-                            f.dateformat = null;
-                            LOGGER.warn("dateformat is specified but no date field is queried in f filter (gt, lt, gte, lte or range operations)");
+            ValidatedPartitionFilter validated = filters instanceof ValidatedPartitionFilter v ? v : null;
+            // a partition filter parsed from the header is checked once. Its filters are shared by the requests,
+            // so they are copied before being modified.
+            if (validated != null && validated.getChecked() != null) {
+                filters = validated.getChecked();
+            } else {
+                List<Filter> checkedFilters = new ArrayList<>(filters.size());
+                for(Filter f:filters){
+                    Filter checked = f;
+                    if (f != null) {
+                        CheckParams.checkFilter(f);
+                        if (f.f != null && !f.f.isEmpty()) {
+                            CollectionReference collectionReference = fluidSearch.getCollectionReference();
+                            if (!filterFHasDateQuery(f, collectionReference) && !StringUtil.isNullOrEmpty(f.dateformat)) {
+                                checked = validated == null ? f : copyFilter(f);
+                                checked.dateformat = null;
+                                LOGGER.warn("dateformat is specified but no date field is queried in f filter (gt, lt, gte, lte or range operations)");
+                            }
                         }
                     }
+                    checkedFilters.add(checked);
+                }
+                if (validated != null) {
+                    filters = validated.setChecked(checkedFilters);
                 }
             }
             fluidSearch = fluidSearch.partitionFilter(filters);
         }
     }
 
+    private static Filter copyFilter(Filter filter) {
+        Filter ret = new Filter();
+        ret.f = filter.f;
+        ret.q = filter.q;
+        ret.dateformat = filter.dateformat;
+        ret.righthand = filter.righthand;
+        return ret;
+    }
+
     /**
      * This method checks whether in all the expressions of the filter `f`, a date field has been queried using `lte`, `gte`, `lt`, `gt` or `range` operations
      * **/
@@ -230,6 +308,202 @@ public abstract class ExploreService {
         return feature;
     }
 
+    /**
+     * Writes the hit as serialized in a {@link Hits} response. The flat data is written on the fly,
+     * so the hit must have been built with flat set to false.
+     */
+    protected void writeHit(JsonGenerator generator, ArlasHit arlasHit, boolean flat) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectField("md", arlasHit.md);
+        if (flat) {
+            generator.writeObjectFieldStart("data");
+            MapExplorer.writeFlat(generator, arlasHit.getDataAsMap(), ArlasServerConfiguration.FLATTEN_CHAR);
+            generator.writeEndObject();
+        } else {
+            generator.writeObjectField("data", arlasHit.getDataAsMap());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the same feature as {@link #getFeatureFromHit} without copying the data of the hit.
+     * The flat properties are written on the fly, so the hit must have been built with flat set to false.
+     */
+    protected void writeFeature(JsonGenerator generator, ArlasHit arlasHit, String path, GeoJsonObject geometry, boolean flat) throws IOException {
+        geometry.setCrs(null);
+        MD md = getFeatureMd(arlasHit);
+
+        generator.writeStartObject();
+        generator.writeStringField("type", "Feature");
+        generator.writeObjectFieldStart("properties");
+        if (flat) {
+            MapExplorer.writeFlat(generator, arlasHit.getDataAsMap(), ArlasServerConfiguration.FLATTEN_CHAR, ExploreService::isNotFeatureKey);
+            generator.writeStringField(FEATURE_MD, md.toFlatString());
+        } else {
+            for (Map.Entry<String, Object> e : arlasHit.getDataAsMap().entrySet()) {
+                if (isNotFeatureKey(e.getKey())) {
+                    generator.writeObjectField(e.getKey(), e.getValue());
+                }
+            }
+            generator.writeObjectField(FEATURE_MD, md);
+        }
+        generator.writeStringField(FEATURE_TYPE_KEY, FEATURE_TYPE_VALUE);
+        generator.writeStringField(FEATURE_GEOMETRY_PATH, path);
+        generator.writeEndObject();
+        generator.writeObjectField("geometry", geometry);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the features of the hit.
+     * As a text sequence (RFC 8142), each feature is preceded by a record separator and followed by a line feed.
+     */
+    protected void writeFeatures(JsonGenerator generator, CollectionReference collectionReference, ArlasHit arlasHit,
+                                 String returnedGeometries, boolean flat, boolean textSequence) throws IOException {
+        forEachFeatureGeometry(collectionReference, arlasHit, returnedGeometries,
+                (path, geometry) -> writeFeature(generator, arlasHit, path, geometry, flat, textSequence));
+    }
+
+    /**
+     * Writes the features of the hit in the shapefiles, with the values of the given fields of the hit.
+     */
+    protected void writeShapefileFeatures(ShapefileWriter writer, CollectionReference collectionReference, ArlasHit arlasHit,
+                                          Collection<String> fields, String returnedGeometries) throws IOException {
+        forEachFeatureGeometry(collectionReference, arlasHit, returnedGeometries, (path, geometry) -> {
+            List<Object> values = new ArrayList<>(fields.size() + 3);
+            for (String field : fields) {
+                values.add(MapExplorer.getObjectFromPath(field, arlasHit.getDataAsMap()));
+            }
+            values.add(getFeatureMd(arlasHit).toFlatString());
+            values.add(FEATURE_TYPE_VALUE);
+            values.add(path);
+            writer.write(GeoUtil.toGeometry(geometry), values);
+        });
+    }
+
+    /**
+     * Fields of the shapefiles: the fields of the export, except the geometries which are the shapes of the features.
+     */
+    protected SortedMap<String, FieldType> getShapefileFields(MixedRequest request, CollectionReference collectionReference) throws ArlasException {
+        SortedMap<String, FieldType> fields = getExportFields(request, collectionReference);
+        fields.values().removeIf(type -> type == FieldType.GEO_POINT || type == FieldType.GEO_SHAPE);
+        return fields;
+    }
+
+    /**
+     * Columns of the shapefiles: the given fields followed by the metadata of the features.
+     */
+    protected List<ShapefileWriter.Column> getShapefileColumns(Map<String, FieldType> fields) {
+        List<ShapefileWriter.Column> columns = new ArrayList<>();
+        fields.forEach((field, type) -> columns.add(new ShapefileWriter.Column(
+                field.replace(".", ArlasServerConfiguration.FLATTEN_CHAR), switch (type) {
+                    case LONG, INTEGER, SHORT, BYTE -> Long.class;
+                    case DOUBLE, FLOAT -> Double.class;
+                    case BOOLEAN -> Boolean.class;
+                    default -> String.class;
+                })));
+        columns.add(new ShapefileWriter.Column(FEATURE_MD, String.class));
+        columns.add(new ShapefileWriter.Column(FEATURE_TYPE_KEY, String.class));
+        columns.add(new ShapefileWriter.Column(FEATURE_GEOMETRY_PATH, String.class));
+        return columns;
+    }
+
+    /**
+     * Gives the geometries of the features of the hit: one per returned geometry, or the geometry (or centroid) of the collection.
+     */
+    protected void forEachFeatureGeometry(CollectionReference collectionReference, ArlasHit arlasHit, String returnedGeometries,
+                                          FeatureGeometryConsumer consumer) throws IOException {
+        if (returnedGeometries != null) {
+            for (String path : returnedGeometries.split(",")) {
+                GeoJsonObject geometry = arlasHit.getGeometry(path);
+                if (geometry != null) {
+                    consumer.accept(path, geometry);
+                }
+            }
+        } else {
+            GeoJsonObject geometry = Optional.ofNullable(arlasHit.md.geometry).orElse(arlasHit.md.centroid);
+            if (geometry != null) {
+                String geometryPath = arlasHit.md.geometry != null ? collectionReference.params.geometryPath : collectionReference.params.centroidPath;
+                consumer.accept(geometryPath, geometry);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    protected interface FeatureGeometryConsumer {
+        void accept(String path, GeoJsonObject geometry) throws IOException;
+    }
+
+    // The properties set by the feature itself replace the fields of the source with the same name
+    private static boolean isNotFeatureKey(String key) {
+        return !FEATURE_MD.equals(key) && !FEATURE_TYPE_KEY.equals(key) && !FEATURE_GEOMETRY_PATH.equals(key);
+    }
+
+    // Only id, timestamp and centroid are set in the MD of a feature. The geometry is already returned in the geojson.
+    private MD getFeatureMd(ArlasHit arlasHit) {
+        MD md = new MD();
+        md.id = arlasHit.md.id;
+        md.timestamp = arlasHit.md.timestamp;
+        md.centroid = arlasHit.md.centroid;
+        return md;
+    }
+
+    private void writeFeature(JsonGenerator generator, ArlasHit arlasHit, String path, GeoJsonObject geometry,
+                              boolean flat, boolean textSequence) throws IOException {
+        if (textSequence) {
+            generator.writeRaw(RECORD_SEPARATOR);
+        }
+        writeFeature(generator, arlasHit, path, geometry, flat);
+        if (textSequence) {
+            generator.writeRaw('\n');
+        }
+    }
+
+    /**
+     * Fields of the exports with their type: the fields of the collection allowed by the column filter and by the projection, sorted.
+     */
+    protected SortedMap<String, FieldType> getExportFields(MixedRequest request, CollectionReference collectionReference) throws ArlasException {
+        Projection projection = ((Search) request.basicRequest).projection;
+        Optional<ColumnFilterMatcher> includes = FilterMatcherUtil.filterToPredicatesAsSet(Optional.ofNullable(projection).map(p -> p.includes))
+                .map(ColumnFilterMatcher::new);
+        Optional<ColumnFilterMatcher> excludes = FilterMatcherUtil.filterToPredicatesAsSet(Optional.ofNullable(projection).map(p -> p.excludes))
+                .map(ColumnFilterMatcher::new);
+        SortedMap<String, FieldType> fields = collectionReferenceService.getCollectionFieldTypes(collectionReference, request.columnFilter);
+        fields.keySet().removeIf(field -> !ColumnFilterUtil.matches(includes, field)
+                || (excludes.isPresent() && excludes.get().matches(field)));
+        return fields;
+    }
+
+    /**
+     * Writes a csv line (RFC 4180). Values that are not scalar (objects, arrays, geometries) are written as json.
+     */
+    protected void writeCsvLine(Appendable writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.append(',');
+            }
+            Object value = values.get(i);
+            if (value != null) {
+                String text = value instanceof String || value instanceof Number || value instanceof Boolean
+                        ? value.toString() : streamMapper.writeValueAsString(value);
+                if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                    writer.append('"').append(text.replace("\"", "\"\"")).append('"');
+                } else {
+                    writer.append(text);
+                }
+            }
+        }
+        writer.append("\r\n");
+    }
+
+    protected StreamingOutput toStreamingOutput(Object entity) {
+        return output -> streamMapper.writeValue(output, entity);
+    }
+
+    protected static WebApplicationException toWebApplicationException(ArlasException e) {
+        return new WebApplicationException(e, e.getResponse());
+    }
+
     protected void sortPage(Page page, FluidSearchService fluidSearch) throws ArlasException {
         if (page != null && page.sort != null) {
             fluidSearch.sort(page.sort);
@@ -356,38 +630,121 @@ public abstract class ExploreService {
                                          int aggTreeDepth,
                                          Long startQuery) throws ArlasException {
         CheckParams.checkAggregationRequest(request.basicRequest, collectionReference);
-        FluidSearchService fluidSearch = getFluidSearch(collectionReference);
-        applyFilter(collectionReference.params.filter, fluidSearch);
-        applyFilter(request.basicRequest.filter, fluidSearch);
-        applyPartitionFilter(request.headerRequest.partitionFilter, fluidSearch);
-        List<Aggregation> aggregations = ((AggregationsRequest) request.basicRequest).aggregations;
-        if (aggregations != null && !aggregations.isEmpty()) {
-            fluidSearch.aggregate(aggregations, isGeoAggregation);
+        if (exploreResultCache != null) {
+            return exploreResultCache.get("aggregate", collectionReference, request, AggregationResponse.class,
+                    () -> aggregate(collectionReference, aggregationsRequests, aggTreeDepth, startQuery,
+                            getAggregateRequest(request, collectionReference, isGeoAggregation)),
+                    isGeoAggregation, aggregationsRequests, aggTreeDepth);
         }
-        return aggregate(collectionReference, aggregationsRequests, aggTreeDepth, startQuery, fluidSearch);
+        return aggregate(collectionReference, aggregationsRequests, aggTreeDepth, startQuery,
+                getAggregateRequest(request, collectionReference, isGeoAggregation));
+    }
+
+    public CompletableFuture<AggregationResponse> aggregateAsync(MixedRequest request,
+                                                                 CollectionReference collectionReference,
+                                                                 Boolean isGeoAggregation,
+                                                                 List<Aggregation> aggregationsRequests,
+                                                                 int aggTreeDepth,
+                                                                 Long startQuery) throws ArlasException {
+        CheckParams.checkAggregationRequest(request.basicRequest, collectionReference);
+        if (exploreResultCache != null) {
+            return exploreResultCache.getAsync("aggregate", collectionReference, request, AggregationResponse.class,
+                    () -> aggregateAsync(collectionReference, aggregationsRequests, aggTreeDepth, startQuery,
+                            getAggregateRequest(request, collectionReference, isGeoAggregation)),
+                    isGeoAggregation, aggregationsRequests, aggTreeDepth);
+        }
+        return aggregateAsync(collectionReference, aggregationsRequests, aggTreeDepth, startQuery,
+                getAggregateRequest(request, collectionReference, isGeoAggregation));
     }
 
     public ComputationResponse compute(MixedRequest request,
                                        CollectionReference collectionReference) throws ArlasException {
         CheckParams.checkComputationRequest(request.basicRequest, collectionReference);
-        FluidSearchService fluidSearch = getFluidSearch(collectionReference);
-        applyFilter(collectionReference.params.filter, fluidSearch);
-        applyFilter(request.basicRequest.filter, fluidSearch);
-        applyPartitionFilter(request.headerRequest.partitionFilter, fluidSearch);
-        String field = ((ComputationRequest)request.basicRequest).field;
-        ComputationEnum metric = ((ComputationRequest)request.basicRequest).metric;
-        int precisionThreshold = ((ComputationRequest)request.basicRequest).precisionThreshold;
-        fluidSearch = fluidSearch.compute(field, metric, precisionThreshold);
-        return compute(collectionReference, fluidSearch, field, metric);
+        ComputationRequest computationRequest = (ComputationRequest) request.basicRequest;
+        if (exploreResultCache != null) {
+            return exploreResultCache.get("compute", collectionReference, request, ComputationResponse.class,
+                    () -> compute(collectionReference, getComputeRequest(request, collectionReference),
+                            computationRequest.field, computationRequest.metric));
+        }
+        return compute(collectionReference, getComputeRequest(request, collectionReference),
+                computationRequest.field, computationRequest.metric);
+    }
+
+    public CompletableFuture<ComputationResponse> computeAsync(MixedRequest request,
+                                                               CollectionReference collectionReference) throws ArlasException {
+        CheckParams.checkComputationRequest(request.basicRequest, collectionReference);
+        ComputationRequest computationRequest = (ComputationRequest) request.basicRequest;
+        if (exploreResultCache != null) {
+            return exploreResultCache.getAsync("compute", collectionReference, request, ComputationResponse.class,
+                    () -> computeAsync(collectionReference, getComputeRequest(request, collectionReference),
+                            computationRequest.field, computationRequest.metric));
+        }
+        return computeAsync(collectionReference, getComputeRequest(request, collectionReference),
+                computationRequest.field, computationRequest.metric);
     }
 
     public Hits count(MixedRequest request,
                       CollectionReference collectionReference) throws ArlasException {
-        FluidSearchService fluidSearch = getFluidSearch(collectionReference);
-        applyFilter(collectionReference.params.filter, fluidSearch);
-        applyFilter(request.basicRequest.filter, fluidSearch);
-        applyPartitionFilter(request.headerRequest.partitionFilter, fluidSearch);
-        return count(collectionReference, fluidSearch);
+        if (exploreResultCache != null) {
+            return exploreResultCache.get("count", collectionReference, request, Hits.class,
+                    () -> count(collectionReference, getCountRequest(request, collectionReference)));
+        }
+        return count(collectionReference, getCountRequest(request, collectionReference));
+    }
+
+    public CompletableFuture<Hits> countAsync(MixedRequest request,
+                                              CollectionReference collectionReference) throws ArlasException {
+        if (exploreResultCache != null) {
+            return exploreResultCache.getAsync("count", collectionReference, request, Hits.class,
+                    () -> countAsync(collectionReference, getCountRequest(request, collectionReference)));
+        }
+        return countAsync(collectionReference, getCountRequest(request, collectionReference));
+    }
+
+    /**
+     * Executes a batch of count, compute and aggregation requests, depending on the type of their basic request.
+     * The responses are returned in the order of the requests. The failure of a request is reported in its response
+     * and does not fail the others.
+     */
+    public CompletableFuture<List<MultiExploreResponse>> multiAsync(List<Pair<CollectionReference, MixedRequest>> requests) {
+        List<CompletableFuture<MultiExploreResponse>> responses = new ArrayList<>();
+        for (Pair<CollectionReference, MixedRequest> request : requests) {
+            CollectionReference collectionReference = request.getLeft();
+            MixedRequest mixedRequest = request.getRight();
+            CompletableFuture<?> response;
+            try {
+                if (mixedRequest.basicRequest instanceof AggregationsRequest aggregationsRequest) {
+                    response = aggregateAsync(mixedRequest, collectionReference, false, aggregationsRequest.aggregations, 0, System.nanoTime());
+                } else if (mixedRequest.basicRequest instanceof ComputationRequest) {
+                    response = computeAsync(mixedRequest, collectionReference);
+                } else {
+                    response = countAsync(mixedRequest, collectionReference);
+                }
+            } catch (ArlasException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            responses.add(response.handle((result, throwable) -> getMultiExploreResponse(collectionReference, result, throwable)));
+        }
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture[0]))
+                .thenApply(v -> responses.stream().map(CompletableFuture::join).toList());
+    }
+
+    private MultiExploreResponse getMultiExploreResponse(CollectionReference collectionReference, Object result, Throwable throwable) {
+        MultiExploreResponse response = new MultiExploreResponse(collectionReference.collectionName);
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if (!(cause instanceof ArlasException)) {
+                LOGGER.warn("Multi explore request failed on collection " + collectionReference.collectionName, cause);
+            }
+            response.error = (cause instanceof ArlasException e ? e : new InternalServerErrorException(cause.getMessage())).getError();
+        } else if (result instanceof AggregationResponse aggregationResponse) {
+            response.aggregate = aggregationResponse;
+        } else if (result instanceof ComputationResponse computationResponse) {
+            response.compute = computationResponse;
+        } else {
+            response.count = (Hits) result;
+        }
+        return response;
     }
 
     public FeatureCollection getFeatures(MixedRequest request,
@@ -396,6 +753,29 @@ public abstract class ExploreService {
         return getFeatures(request, collectionReference, flat, null, null, null);
     }
 
+    protected FluidSearchService getAggregateRequest(MixedRequest request, CollectionReference collectionReference, Boolean isGeoAggregation) throws ArlasException {
+        FluidSearchService fluidSearch = getCountRequest(request, collectionReference);
+        List<Aggregation> aggregations = ((AggregationsRequest) request.basicRequest).aggregations;
+        if (aggregations != null && !aggregations.isEmpty()) {
+            fluidSearch.aggregate(aggregations, isGeoAggregation);
+        }
+        return fluidSearch;
+    }
+
+    protected FluidSearchService getComputeRequest(MixedRequest request, CollectionReference collectionReference) throws ArlasException {
+        FluidSearchService fluidSearch = getCountRequest(request, collectionReference);
+        ComputationRequest computationRequest = (ComputationRequest) request.basicRequest;
+        return fluidSearch.compute(computationRequest.field, computationRequest.metric, computationRequest.precisionThreshold);
+    }
+
+    protected FluidSearchService getCountRequest(MixedRequest request, CollectionReference collectionReference) throws ArlasException {
+        FluidSearchService fluidSearch = getFluidSearch(collectionReference);
+        applyFilter(collectionReference.params.filter, fluidSearch);
+        applyFilter(request.basicRequest.filter, fluidSearch);
+        applyPartitionFilter(request.headerRequest.partitionFilter, fluidSearch);
+        return fluidSearch;
+    }
+
     protected FluidSearchService getSearchRequest(MixedRequest request, CollectionReference collectionReference) throws ArlasException {
         FluidSearchService fluidSearch = getFluidSearch(collectionReference);
         applyFilter(collectionReference.params.filter, fluidSearch);
@@ -403,6 +783,9 @@ public abstract class ExploreService {
         applyPartitionFilter(request.headerRequest.partitionFilter, fluidSearch);
         paginate(((Search) request.basicRequest).page, collectionReference, fluidSearch);
         applyProjection(((Search) request.basicRequest).projection, fluidSearch, request.columnFilter, collectionReference);
+        // the hits are counted exactly unless the request or the collection says otherwise
+        fluidSearch.trackTotalHits(ParamsParser.getTrackTotalHits(Optional.ofNullable(((Search) request.basicRequest).track_total_hits)
+                .orElse(collectionReference.params.trackTotalHits)));
         return fluidSearch;
     }
 
@@ -439,8 +822,76 @@ public abstract class ExploreService {
     public abstract List<Map<String, JsonData>> searchAsRaw(MixedRequest request,
                                                             CollectionReference collectionReference) throws ArlasException;
 
+    /**
+     * Exports all the hits matching the request, in the given format. The hits are written page after page as they
+     * are read, so that the memory used does not depend on the number of exported hits.
+     */
+    public abstract StreamingOutput export(MixedRequest request,
+                                           CollectionReference collectionReference,
+                                           ExportFormatEnum format,
+                                           boolean flat) throws ArlasException;
+
+    /**
+     * Zips the shapefiles of the features found, given the request. The schema of the shapefiles is given by the description
+     * of the collection and the features are written one at a time, as they are converted.
+     */
+    public abstract StreamingOutput getShapefile(MixedRequest request,
+                                                 CollectionReference collectionReference) throws ArlasException;
+
     public abstract Map<String, Object> getRawDoc(CollectionReference collectionReference,
                                                   String identifier,
                                                   String[] includes) throws ArlasException;
 
+    // ----------------- Non blocking variants, executed synchronously unless overridden by the implementation
+
+    protected CompletableFuture<AggregationResponse> aggregateAsync(CollectionReference collectionReference,
+                                                                    List<Aggregation> aggregationsRequests,
+                                                                    int aggTreeDepth,
+                                                                    Long startQuery,
+                                                                    FluidSearchService fluidSearch) throws ArlasException {
+        return CompletableFuture.completedFuture(aggregate(collectionReference, aggregationsRequests, aggTreeDepth, startQuery, fluidSearch));
+    }
+
+    protected CompletableFuture<Hits> countAsync(CollectionReference collectionReference,
+                                                 FluidSearchService fluidSearch) throws ArlasException {
+        return CompletableFuture.completedFuture(count(collectionReference, fluidSearch));
+    }
+
+    protected CompletableFuture<ComputationResponse> computeAsync(CollectionReference collectionReference,
+                                                                  FluidSearchService fluidSearch,
+                                                                  String field, ComputationEnum metric) throws ArlasException {
+        return CompletableFuture.completedFuture(compute(collectionReference, fluidSearch, field, metric));
+    }
+
+    public CompletableFuture<Hits> searchAsync(MixedRequest request,
+                                               CollectionReference collectionReference,
+                                               Boolean flat,
+                                               UriInfo uriInfo,
+                                               String method) throws ArlasException {
+        return CompletableFuture.completedFuture(search(request, collectionReference, flat, uriInfo, method));
+    }
+
+    // ----------------- Streaming variants, written from the materialized responses unless overridden by the implementation
+
+    /**
+     * Same response as {@link #searchAsync}, written hit by hit as they are converted.
+     */
+    public CompletableFuture<StreamingOutput> searchAsStreamAsync(MixedRequest request,
+                                                                  CollectionReference collectionReference,
+                                                                  Boolean flat,
+                                                                  UriInfo uriInfo,
+                                                                  String method) throws ArlasException {
+        return searchAsync(request, collectionReference, flat, uriInfo, method).thenApply(this::toStreamingOutput);
+    }
+
+    /**
+     * Same response as {@link #getFeatures}, written feature by feature as they are converted.
+     * The search is executed before returning so that its errors are reported with the right status.
+     */
+    public StreamingOutput getFeaturesAsStream(MixedRequest request,
+                                               CollectionReference collectionReference,
+                                               boolean flat) throws ArlasException {
+        return toStreamingOutput(getFeatures(request, collectionReference, flat));
+    }
+
 }
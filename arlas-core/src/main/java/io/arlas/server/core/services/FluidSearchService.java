@@ -40,6 +40,7 @@ public abstract class FluidSearchService {
     public static final String INVALID_BBOX = "Invalid BBOX";
     public static final String INVALID_SIZE = "Invalid size parameter. It should be a strictly positive integer";
     public static final String INVALID_FROM = "Invalid from parameter: should be a positive integer.";
+    public static final String INVALID_TRACK_TOTAL_HITS = "Invalid track_total_hits parameter: should be 'true', 'false' or a strictly positive integer.";
     public static final String INVALID_DATE_UNIT = "Invalid date unit.";
     public static final String INVALID_GEOSORT_LAT_LON = "'lat lon' must be numeric values separated by a space";
     public static final String INVALID_GEOSORT_LABEL = "To sort by geo_distance, please specifiy the point, from which the distances are calculated, as following 'geodistance:lat lon'";
@@ -153,6 +154,18 @@ public abstract class FluidSearchService {
         return collectionReferenceManager.getCollectionReferenceService().isDateField(field, collectionReference);
     }
 
+    public boolean isExactKeywordField(String field) throws ArlasException {
+        return collectionReferenceManager.getCollectionReferenceService().isExactKeywordField(field, collectionReference);
+    }
+
+    public boolean isWildcardField(String field) throws ArlasException {
+        return collectionReferenceManager.getCollectionReferenceService().isWildcardField(field, collectionReference);
+    }
+
+    public String getSubstringField(String field) throws ArlasException {
+        return collectionReferenceManager.getCollectionReferenceService().getSubstringField(field, collectionReference);
+    }
+
     public boolean isTextField(String field) throws ArlasException {
         return collectionReferenceManager.getCollectionReferenceService().isTextField(field, collectionReference.params.indexName);
     }
@@ -198,4 +211,9 @@ public abstract class FluidSearchService {
     abstract public FluidSearchService filterSize(Integer size, Integer from);
 
     abstract public FluidSearchService searchAfter(Page page, String after);
+
+    /**
+     * @param threshold number of hits counted exactly: {@link Integer#MAX_VALUE} to count all the hits, 0 to count none
+     */
+    abstract public FluidSearchService trackTotalHits(int threshold);
 }
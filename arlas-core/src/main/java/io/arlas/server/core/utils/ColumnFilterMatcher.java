@@ -0,0 +1,65 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.utils;
+
+import io.arlas.commons.utils.RegexSet;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compiled form of a set of column filter predicates (see {@link FilterMatcherUtil}).
+ * It answers like {@link FilterMatcherUtil#matches} and {@link FilterMatcherUtil#matchesOrWithin}
+ * without evaluating the predicates one by one. It is immutable and can be shared between requests.
+ */
+public class ColumnFilterMatcher {
+    private static final String PATH_SEPARATOR = "\\.";
+
+    private final RegexSet fields;
+    // paths that have at least one predicate within them, i.e. predicates starting with "path\."
+    private final Set<String> parents = new HashSet<>();
+
+    public ColumnFilterMatcher(Set<String> predicates) {
+        this.fields = new RegexSet(predicates);
+        for (String predicate : predicates) {
+            int i = predicate.indexOf(PATH_SEPARATOR);
+            while (i >= 0) {
+                parents.add(predicate.substring(0, i));
+                i = predicate.indexOf(PATH_SEPARATOR, i + 1);
+            }
+        }
+    }
+
+    /**
+     * Check if a field matches the predicates
+     */
+    public boolean matches(String field) {
+        return StringUtils.isNotBlank(field) && fields.matches(field);
+    }
+
+    /**
+     * Check if a path or any of its subpath matches the predicates.
+     * Checking paths `params` and `params.city`, this will return `true` for both if `params.city` belongs to predicates
+     */
+    public boolean matchesOrWithin(String path, boolean checkWithin) {
+        return StringUtils.isNotBlank(path) && (fields.matches(path) || checkWithin && parents.contains(path));
+    }
+}
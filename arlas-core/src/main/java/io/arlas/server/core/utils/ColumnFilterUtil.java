@@ -19,6 +19,8 @@
 
 package io.arlas.server.core.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.arlas.commons.exceptions.ArlasException;
 import io.arlas.server.core.exceptions.CollectionUnavailableException;
 import io.arlas.server.core.exceptions.ColumnUnavailableException;
@@ -45,6 +47,7 @@ import java.util.stream.Stream;
  * - if there is a filter, turn it to regexp predicates
  * - append some collection mandatory fields to it
  * - checking a path is then a simple regexp match
+ * The predicates are compiled once per column filter and collection, see {@link #getColumnFilterMatcher}.
  */
 public class ColumnFilterUtil {
 
@@ -57,6 +60,11 @@ public class ColumnFilterUtil {
                     .filter(i -> !i.equalsIgnoreCase(RequestFieldsExtractor.INCLUDE_SEARCH_EXCLUDE))
                     .collect(Collectors.toSet());
 
+    // compiled column filters, by column filter and collection
+    private static final Cache<MatcherKey, Optional<ColumnFilterMatcher>> MATCHERS = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
     /**
      * Check that there aren't forbidden fields into the requests, and that fields are compatible with FGA prerequisites.
      * Also check that the target collection is allowed (at least one column of the collection is available, or
@@ -96,9 +104,9 @@ public class ColumnFilterUtil {
             throw new CollectionUnavailableException(collectionReference);
         }
 
-        Optional<Set<String>> columnFilterPredicates = ColumnFilterUtil.getColumnFilterPredicates(collectionColumnFilter, collectionReference);
+        Optional<ColumnFilterMatcher> columnFilterMatcher = ColumnFilterUtil.getColumnFilterMatcher(collectionColumnFilter, collectionReference);
 
-        if (columnFilterPredicates.isEmpty()) {
+        if (columnFilterMatcher.isEmpty()) {
             return;
         }
 
@@ -107,7 +115,7 @@ public class ColumnFilterUtil {
         //do not consider user columns with wildcards - they should be checked later against real fields, if necessary
         Set<String> forbiddenFields = RequestFieldsExtractor
                 .extract(requestExtractor, basicRequest, REQUEST_FIELDS_EXTRACTOR_INCLUDE)
-                .filter(f -> !f.contains("*") && !FilterMatcherUtil.matches(columnFilterPredicates, f))
+                .filter(f -> !f.contains("*") && !columnFilterMatcher.get().matches(f))
                 .collect(Collectors.toSet());
 
         if (!forbiddenFields.isEmpty()) {
@@ -142,13 +150,13 @@ public class ColumnFilterUtil {
     public static void assertFieldAvailable(Optional<String> columnFilter,
                                             CollectionReference collectionReference,
                                             String field) throws ColumnUnavailableException, CollectionUnavailableException {
-        Optional<Set<String>> columFilterPredicates = getColumnFilterPredicates(columnFilter, collectionReference);
-        assertFieldAvailable(columFilterPredicates, field);
+        Optional<ColumnFilterMatcher> columnFilterMatcher = getColumnFilterMatcher(columnFilter, collectionReference);
+        assertFieldAvailable(columnFilterMatcher, field);
     }
 
-    public static void assertFieldAvailable(Optional<Set<String>> columnFilterPredicates,
+    public static void assertFieldAvailable(Optional<ColumnFilterMatcher> columnFilterMatcher,
                                             String field) throws ColumnUnavailableException {
-        if (!FilterMatcherUtil.matches(columnFilterPredicates, field)) {
+        if (!matches(columnFilterMatcher, field)) {
             throw new ColumnUnavailableException(new HashSet<>(List.of(field)));
         }
     }
@@ -170,9 +178,9 @@ public class ColumnFilterUtil {
             return;
         }
 
-        Optional<Set<String>> columnFilterPredicates = ColumnFilterUtil.getColumnFilterPredicates(columnFilter, collectionDescription);
+        Optional<ColumnFilterMatcher> columnFilterMatcher = ColumnFilterUtil.getColumnFilterMatcher(columnFilter, collectionDescription);
         Set<String> forbiddenFields = openGisFilter.stream()
-                .filter(f -> !FilterMatcherUtil.matches(columnFilterPredicates, f))
+                .filter(f -> !matches(columnFilterMatcher, f))
                 .collect(Collectors.toSet());
 
         if (!forbiddenFields.isEmpty()) {
@@ -188,10 +196,11 @@ public class ColumnFilterUtil {
             return columnFilter;
         }
 
-        Optional<Set<String>> includesPredicates = FilterMatcherUtil.filterToPredicatesAsSet(Optional.of(projection.includes));
+        Optional<ColumnFilterMatcher> includesMatcher = FilterMatcherUtil.filterToPredicatesAsSet(Optional.of(projection.includes))
+                .map(ColumnFilterMatcher::new);
 
         return collectionAllowedFields.stream()
-                .filter(f -> FilterMatcherUtil.matches(includesPredicates, f))
+                .filter(f -> matches(includesMatcher, f))
                 .reduce((left, right) -> left + "," + right);
     }
 
@@ -233,6 +242,43 @@ public class ColumnFilterUtil {
         return res;
     }
 
+    /**
+     * Compiled form of {@link #getColumnFilterPredicates}, built once per column filter and collection.
+     * @param columnFilter the column filter to be checked
+     * @param collectionReference the collection reference to be analysed
+     * @return the compiled predicates, empty if there is no column filter
+     */
+    public static Optional<ColumnFilterMatcher> getColumnFilterMatcher(Optional<String> columnFilter, CollectionReference collectionReference) throws CollectionUnavailableException {
+        cleanColumnFilter(columnFilter);
+        if (columnFilter.isEmpty()) {
+            return Optional.empty();
+        }
+        MatcherKey key = new MatcherKey(columnFilter.get(), collectionReference.collectionName,
+                getCollectionMandatoryPaths(collectionReference), CollectionUtil.isCollectionPublic(collectionReference));
+        return MATCHERS.get(key, k -> {
+            try {
+                return getColumnFilterPredicates(columnFilter, collectionReference).map(ColumnFilterMatcher::new);
+            } catch (CollectionUnavailableException e) {
+                // already checked by cleanColumnFilter
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Check if a field matches the compiled column filter. Allowed if there is no column filter.
+     */
+    public static boolean matches(Optional<ColumnFilterMatcher> columnFilterMatcher, String field) {
+        return columnFilterMatcher.map(m -> m.matches(field)).orElse(!StringUtils.isBlank(field));
+    }
+
+    /**
+     * Check if a path or any of its subpath matches the compiled column filter. Allowed if there is no column filter.
+     */
+    public static boolean matchesOrWithin(Optional<ColumnFilterMatcher> columnFilterMatcher, String path, boolean checkWithin) {
+        return columnFilterMatcher.map(m -> m.matchesOrWithin(path, checkWithin)).orElse(!StringUtils.isBlank(path));
+    }
+
     public static List<String> getCollectionMandatoryPaths(CollectionReference collectionReference) {
         return Arrays.asList(
                 collectionReference.params.idPath,
@@ -300,4 +346,7 @@ public class ColumnFilterUtil {
             }
         }
     }
+
+    private record MatcherKey(String columnFilter, String collectionName, List<String> mandatoryPaths, boolean isPublic) {
+    }
 }
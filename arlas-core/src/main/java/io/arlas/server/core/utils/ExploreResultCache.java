@@ -0,0 +1,283 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.utils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.server.core.managers.CacheManager;
+import io.arlas.server.core.model.CollectionReference;
+import io.arlas.server.core.model.request.MixedRequest;
+import io.arlas.server.core.model.response.OperationInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of the results of the explore operations (count, compute, aggregate).
+ * Results are stored serialized, so that a cached response can never be altered by the caller and
+ * so that the memory used by the cache can be bounded. Entries are weighted by their serialized size, evicted when the
+ * memory budget is exceeded and expire after a configurable time to live.
+ * The query time of a cached result is reset to 0 since no query is executed.
+ *
+ * Keys are made of the collection name, the collection version and a digest of the canonical form of the request
+ * (filter expressions sorted, partition filter and column filter headers included).
+ * The collection version is bumped each time the collection reference is updated or deleted, which invalidates its results.
+ *
+ * When enabled, results are also shared through the {@link CacheManager} (i.e. across the cluster with Hazelcast).
+ * The shared entries are dropped by the cache manager when the collection reference is removed from the cache.
+ */
+public class ExploreResultCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExploreResultCache.class);
+
+    private static final ObjectMapper KEY_MAPPER = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+    private static final ObjectMapper VALUE_MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    // Filter members that are combined with a AND (outer list) or a OR (inner list): their order does not matter
+    private static final Set<String> UNORDERED_FILTER_FIELDS = Set.of("f", "q");
+
+    private final long maxBytes;
+    private final long timeoutMillis;
+    private final CacheManager sharedCacheManager;
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Cache<String, byte[]> entries;
+
+    /**
+     * @param maxBytes           memory budget of the in-process cache, in bytes
+     * @param timeout            time to live of the cached results, in seconds. 0 disables the cache.
+     * @param sharedCacheManager cache manager used to share the results with the other nodes, null to keep them local
+     */
+    public ExploreResultCache(long maxBytes, int timeout, CacheManager sharedCacheManager) {
+        this.maxBytes = maxBytes;
+        this.timeoutMillis = timeout * 1000L;
+        this.sharedCacheManager = sharedCacheManager;
+        this.entries = isEnabled() ? Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, byte[] value) -> value.length)
+                .expireAfterWrite(Duration.ofMillis(timeoutMillis))
+                .build() : null;
+    }
+
+    public boolean isEnabled() {
+        return timeoutMillis > 0 && maxBytes > 0;
+    }
+
+    /**
+     * Returns the cached result of the operation if any, otherwise executes it and caches its result.
+     */
+    public <T> T get(String operation, CollectionReference collectionReference, MixedRequest request, Class<T> clazz,
+                     ResultSupplier<T> supplier, Object... parameters) throws ArlasException {
+        Key key = getKey(operation, collectionReference, request, parameters);
+        if (key == null) {
+            return supplier.get();
+        }
+        T cached = lookup(key, clazz);
+        if (cached != null) {
+            return cached;
+        }
+        T result = supplier.get();
+        store(key, result);
+        return result;
+    }
+
+    /**
+     * Non blocking variant of {@link #get}: the result is cached once the returned future completes successfully.
+     */
+    public <T> CompletableFuture<T> getAsync(String operation, CollectionReference collectionReference, MixedRequest request, Class<T> clazz,
+                                             ResultSupplier<CompletableFuture<T>> supplier, Object... parameters) throws ArlasException {
+        Key key = getKey(operation, collectionReference, request, parameters);
+        if (key == null) {
+            return supplier.get();
+        }
+        T cached = lookup(key, clazz);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return supplier.get().thenApply(result -> {
+            store(key, result);
+            return result;
+        });
+    }
+
+    private Key getKey(String operation, CollectionReference collectionReference, MixedRequest request, Object... parameters) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String collection = collectionReference.collectionName;
+        // the version is read before the execution so that a result computed during an update is never stored as fresh
+        long version = versions.computeIfAbsent(collection, k -> new AtomicLong()).get();
+        String digest = digest(operation, collectionReference, request, parameters);
+        if (digest == null) {
+            return null;
+        }
+        return new Key(operation, collection, version, digest);
+    }
+
+    private <T> T lookup(Key key, Class<T> clazz) {
+        byte[] cached = entries.getIfPresent(key.local());
+        if (cached == null && sharedCacheManager != null) {
+            cached = sharedCacheManager.getExploreResult(key.collection, key.digest);
+            if (cached != null) {
+                entries.put(key.local(), cached);
+            }
+        }
+        if (cached != null) {
+            try {
+                T result = VALUE_MAPPER.readValue(cached, clazz);
+                if (result instanceof OperationInfo operationInfo) {
+                    operationInfo.queryTime = 0L;
+                }
+                return result;
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read cached {} result of collection '{}': {}", key.operation, key.collection, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void store(Key key, Object result) {
+        try {
+            byte[] value = VALUE_MAPPER.writeValueAsBytes(result);
+            if (versions.get(key.collection).get() == key.version) {
+                entries.put(key.local(), value);
+                if (sharedCacheManager != null) {
+                    sharedCacheManager.putExploreResult(key.collection, key.digest, value, timeoutMillis / 1000);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to cache {} result of collection '{}': {}", key.operation, key.collection, e.getMessage());
+        }
+    }
+
+    /**
+     * Invalidates all the cached results of the collection.
+     */
+    public void invalidate(String collection) {
+        versions.computeIfAbsent(collection, k -> new AtomicLong()).incrementAndGet();
+        if (entries != null) {
+            String prefix = collection + "|";
+            entries.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    private String digest(String operation, CollectionReference collectionReference, MixedRequest request, Object... parameters) {
+        try {
+            ObjectNode key = KEY_MAPPER.createObjectNode();
+            key.put("operation", operation);
+            key.put("collection", collectionReference.collectionName);
+            key.set("request", canonical(KEY_MAPPER.valueToTree(request.basicRequest)));
+            JsonNode partition = canonical(KEY_MAPPER.valueToTree(request.headerRequest != null ? request.headerRequest.partitionFilter : null));
+            if (partition instanceof ArrayNode partitionFilters) {
+                // partition filters are combined with a AND
+                sort(partitionFilters);
+            }
+            key.set("partition", partition);
+            key.put("column", request.columnFilter != null ? request.columnFilter.orElse(null) : null);
+            key.set("parameters", KEY_MAPPER.valueToTree(parameters));
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(KEY_MAPPER.writeValueAsBytes(key));
+            return HexFormat.of().formatHex(hash);
+        } catch (IllegalArgumentException | IOException | NoSuchAlgorithmException e) {
+            LOGGER.warn("Unable to compute the cache key of {} request: {}", operation, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sorts the members of the filters which are order independent so that equivalent requests share the same key.
+     */
+    private static JsonNode canonical(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            object.fields().forEachRemaining(e -> {
+                canonical(e.getValue());
+                if (UNORDERED_FILTER_FIELDS.contains(e.getKey()) && e.getValue() instanceof ArrayNode groups) {
+                    groups.forEach(group -> {
+                        if (group instanceof ArrayNode values) {
+                            sort(values);
+                        }
+                    });
+                    sort(groups);
+                }
+            });
+        } else if (node instanceof ArrayNode array) {
+            array.forEach(ExploreResultCache::canonical);
+        }
+        return node;
+    }
+
+    private static void sort(ArrayNode array) {
+        List<JsonNode> sorted = new ArrayList<>();
+        array.forEach(sorted::add);
+        sorted.sort(Comparator.comparing(n -> new String(toBytes(n), StandardCharsets.UTF_8)));
+        array.removeAll();
+        array.addAll(sorted);
+    }
+
+    private static byte[] toBytes(JsonNode node) {
+        try {
+            return KEY_MAPPER.writeValueAsBytes(node);
+        } catch (IOException e) {
+            return node.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ResultSupplier<T> {
+        T get() throws ArlasException;
+    }
+
+    private static class Key {
+        private final String operation;
+        private final String collection;
+        private final long version;
+        private final String digest;
+
+        private Key(String operation, String collection, long version, String digest) {
+            this.operation = operation;
+            this.collection = collection;
+            this.version = version;
+            this.digest = digest;
+        }
+
+        private String local() {
+            return collection + "|" + version + "|" + digest;
+        }
+    }
+}
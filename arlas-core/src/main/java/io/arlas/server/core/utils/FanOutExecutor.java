@@ -0,0 +1,124 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.utils;
+
+import io.arlas.commons.exceptions.ServiceUnavailableException;
+import io.arlas.commons.rest.utils.RequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs the sub-queries of a request (e.g. one query per bounding box of a geoaggregation) on a dedicated executor,
+ * with at most `maxConcurrencyPerRequest` sub-queries of the same request running at the same time.
+ * Cancelling the returned future (or the failure of one sub-query) cancels the pending and running sub-queries.
+ * The sub-queries run within the {@link RequestContext} of the request (deadline, cancellation).
+ */
+public class FanOutExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FanOutExecutor.class);
+
+    private final ExecutorService executor;
+    private final int maxConcurrencyPerRequest;
+
+    public FanOutExecutor(ExecutorService executor, int maxConcurrencyPerRequest) {
+        this.executor = executor;
+        this.maxConcurrencyPerRequest = maxConcurrencyPerRequest;
+    }
+
+    /**
+     * @return a future completed with the results of the tasks, in the order of the tasks.
+     */
+    public <T> CompletableFuture<List<T>> invokeAll(List<Callable<T>> tasks) {
+        FanOut<T> fanOut = new FanOut<>(tasks.stream().map(RequestContext::wrap).toList());
+        fanOut.start();
+        return fanOut.result;
+    }
+
+    private class FanOut<T> {
+        private final List<Callable<T>> tasks;
+        private final AtomicReferenceArray<T> results;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final List<Future<?>> running = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+
+        private FanOut(List<Callable<T>> tasks) {
+            this.tasks = tasks;
+            this.results = new AtomicReferenceArray<>(tasks.size());
+            this.remaining = new AtomicInteger(tasks.size());
+            // on cancellation or failure, the pending tasks are not started and the running ones are interrupted
+            this.result.whenComplete((r, t) -> {
+                if (t != null) {
+                    next.set(tasks.size());
+                    running.forEach(f -> f.cancel(true));
+                }
+            });
+        }
+
+        private void start() {
+            if (tasks.isEmpty()) {
+                result.complete(new ArrayList<>());
+                return;
+            }
+            for (int i = 0; i < Math.min(maxConcurrencyPerRequest, tasks.size()); i++) {
+                launchNext();
+            }
+        }
+
+        private void launchNext() {
+            int i = next.getAndIncrement();
+            if (i >= tasks.size() || result.isDone()) {
+                return;
+            }
+            try {
+                Future<?> future = executor.submit(() -> {
+                    try {
+                        results.set(i, tasks.get(i).call());
+                    } catch (Exception e) {
+                        result.completeExceptionally(e);
+                        return;
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        List<T> list = new ArrayList<>(tasks.size());
+                        for (int k = 0; k < tasks.size(); k++) {
+                            list.add(results.get(k));
+                        }
+                        result.complete(list);
+                    } else {
+                        launchNext();
+                    }
+                });
+                running.add(future);
+                // the request may have been cancelled or have failed before the task was added to the running ones
+                if (result.isDone()) {
+                    future.cancel(true);
+                }
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Sub-query rejected: the fan-out executor queue is full");
+                result.completeExceptionally(new ServiceUnavailableException("The server is too busy to process the request, please retry later."));
+            }
+        }
+    }
+}
@@ -19,6 +19,8 @@
 
 package io.arlas.server.core.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
@@ -32,17 +34,11 @@ import java.util.stream.Stream;
  */
 public class FilterMatcherUtil {
 
-    //use a cache with compiled patterns
-    private static final Map<String, Pattern> PATTERN_COMPILED_CACHE = new HashMap<>();
-    private static final Pattern EMPTY_PATTERN = Pattern.compile("");
+    //use a bounded cache with compiled patterns
+    private static final Cache<String, Pattern> PATTERN_COMPILED_CACHE = Caffeine.newBuilder().maximumSize(10000).build();
 
     //these are metacharacters, i.a. characters that can be used within regexp. If present in filter: we escape them. Except the "star" that is a wildcard.
-    private static final Map<String, String> PREDICATE_REPLACE_CHAR = Arrays.asList("\\","^","$","{","}","[","]","(",")",".","+","?","|","<",">","-","&","%").stream()
-            .collect(Collectors.toMap(c -> c, c -> "\\" + c));
-    static {
-        PREDICATE_REPLACE_CHAR.put(" ", "");
-        PREDICATE_REPLACE_CHAR.put("*", ".*");
-    }
+    private static final String PREDICATE_ESCAPED_CHARS = "\\^${}[]().+?|<>-&%";
 
     /**
      * Check if a field matches the predicates
@@ -97,13 +93,9 @@ public class FilterMatcherUtil {
                             if (Arrays.asList(cString).size() == 2) {
                                 // input: collection*:param* => avoid replacing collection* with collection.*.
                                 // Only param* should be replaced with param.*
-                                return cString[0] + ':' + EMPTY_PATTERN.splitAsStream(cString[1])
-                                        .map(cs -> PREDICATE_REPLACE_CHAR.containsKey(cs) ? PREDICATE_REPLACE_CHAR.get(cs) : cs)
-                                        .collect(Collectors.joining());
+                                return cString[0] + ':' + toPredicate(cString[1]);
                             }
-                            return EMPTY_PATTERN.splitAsStream(c)
-                                    .map(cs -> PREDICATE_REPLACE_CHAR.containsKey(cs) ? PREDICATE_REPLACE_CHAR.get(cs) : cs)
-                                    .collect(Collectors.joining());
+                            return toPredicate(c);
 
                         })
                         //filters not ending with ".*" are duplicated to same filter postfixed with ".*"
@@ -119,19 +111,33 @@ public class FilterMatcherUtil {
                         p -> p.collect(Collectors.toSet()));
     }
 
+    /**
+     * Escape the regexp metacharacters of a filter, remove its spaces and turn its wildcards to regexp.
+     * @param filter
+     * @return
+     */
+    private static String toPredicate(String filter) {
+        StringBuilder predicate = new StringBuilder(filter.length() + 8);
+        for (int i = 0; i < filter.length(); i++) {
+            char c = filter.charAt(i);
+            if (c == '*') {
+                predicate.append(".*");
+            } else if (PREDICATE_ESCAPED_CHARS.indexOf(c) >= 0) {
+                predicate.append('\\').append(c);
+            } else if (c != ' ') {
+                predicate.append(c);
+            }
+        }
+        return predicate.toString();
+    }
+
     /**
      * Get a pattern from a cache. If it doesn't already exists, the pattern is compiled and cached.
      * @param pattern
      * @return
      */
     private static Pattern addOrGetFromCache(String pattern) {
-        if (PATTERN_COMPILED_CACHE.containsKey(pattern)) {
-            return PATTERN_COMPILED_CACHE.get(pattern);
-        } else {
-            Pattern compiled = Pattern.compile(pattern);
-            PATTERN_COMPILED_CACHE.put(pattern, compiled);
-            return compiled;
-        }
+        return PATTERN_COMPILED_CACHE.get(pattern, Pattern::compile);
     }
 
 }
@@ -254,6 +254,53 @@ public class GeoUtil {
         return null;
     }
 
+    /**
+     * Converts a GeoJSON geometry to a JTS geometry, without serializing it.
+     * @return the JTS geometry, or null if the object is not a geometry
+     */
+    public static Geometry toGeometry(GeoJsonObject geojson) {
+        if (geojson instanceof org.geojson.Point point) {
+            return geometryFactory.createPoint(toCoordinate(point.getCoordinates()));
+        } else if (geojson instanceof org.geojson.MultiPoint multiPoint) {
+            return geometryFactory.createMultiPointFromCoords(toCoordinates(multiPoint.getCoordinates()));
+        } else if (geojson instanceof org.geojson.LineString lineString) {
+            return geometryFactory.createLineString(toCoordinates(lineString.getCoordinates()));
+        } else if (geojson instanceof org.geojson.MultiLineString multiLineString) {
+            return geometryFactory.createMultiLineString(multiLineString.getCoordinates().stream()
+                    .map(line -> geometryFactory.createLineString(toCoordinates(line)))
+                    .toArray(LineString[]::new));
+        } else if (geojson instanceof org.geojson.Polygon polygon) {
+            return toPolygon(polygon.getCoordinates());
+        } else if (geojson instanceof org.geojson.MultiPolygon multiPolygon) {
+            return geometryFactory.createMultiPolygon(multiPolygon.getCoordinates().stream()
+                    .map(GeoUtil::toPolygon)
+                    .toArray(Polygon[]::new));
+        } else if (geojson instanceof org.geojson.GeometryCollection collection) {
+            return geometryFactory.createGeometryCollection(collection.getGeometries().stream()
+                    .map(GeoUtil::toGeometry)
+                    .toArray(Geometry[]::new));
+        }
+        return null;
+    }
+
+    private static Polygon toPolygon(List<List<org.geojson.LngLatAlt>> rings) {
+        if (rings.isEmpty()) {
+            return geometryFactory.createPolygon();
+        }
+        return geometryFactory.createPolygon(geometryFactory.createLinearRing(toCoordinates(rings.get(0))),
+                rings.subList(1, rings.size()).stream()
+                        .map(ring -> geometryFactory.createLinearRing(toCoordinates(ring)))
+                        .toArray(LinearRing[]::new));
+    }
+
+    private static Coordinate[] toCoordinates(List<org.geojson.LngLatAlt> coordinates) {
+        return coordinates.stream().map(GeoUtil::toCoordinate).toArray(Coordinate[]::new);
+    }
+
+    private static Coordinate toCoordinate(org.geojson.LngLatAlt coordinate) {
+        return new Coordinate(coordinate.getLongitude(), coordinate.getLatitude(), coordinate.getAltitude());
+    }
+
     public static Geometry toClockwise(final GeoJsonObject geojson) throws JsonProcessingException, ParseException {
         Geometry geometry = reader.read(writer.writeValueAsString(geojson));
         return toClockwise(geometry);
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.arlas.commons.exceptions.ArlasException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * In-process cache of the geometries of the geo filters: the validated form of the raw geometries (oriented, split
+ * along the dateline) and the shapes built from the validated geometries for the datasource.
+ * Map clients send the same viewports and drawn polygons over and over, which are then parsed and validated once.
+ *
+ * Entries are keyed by a digest of the geometry, so that the memory used by the cache is bounded by the weight of its values:
+ * the number of vertices of the cached geometries. Least frequently used entries are evicted when the maximum number of vertices is reached.
+ */
+public class GeometryCache {
+    public static final long DEFAULT_MAX_VERTICES = 1000000;
+
+    private static volatile GeometryCache instance = new GeometryCache(DEFAULT_MAX_VERTICES);
+
+    private final Cache<Key, Entry> cache;
+
+    /**
+     * @param maxVertices maximum number of vertices of the cached geometries. 0 disables the cache.
+     */
+    public GeometryCache(long maxVertices) {
+        this.cache = maxVertices > 0 ? Caffeine.newBuilder()
+                .maximumWeight(maxVertices)
+                .weigher((Key key, Entry entry) -> entry.vertices)
+                .recordStats()
+                .build() : null;
+    }
+
+    public static GeometryCache getInstance() {
+        return instance;
+    }
+
+    public static void init(long maxVertices) {
+        instance = new GeometryCache(maxVertices);
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Returns the validated form of the geometry if it is cached, otherwise validates it and caches the result.
+     * Invalid geometries are not cached: the validation error is raised for each request.
+     */
+    public String getValidGeometry(String geometry, Boolean righthand, Loader<String> validator) throws ArlasException {
+        return get("valid-" + righthand, geometry, validator, GeometryCache::countVertices);
+    }
+
+    /**
+     * Returns the shape built from the validated geometry if it is cached, otherwise builds it and caches it.
+     * The shape is shared by the requests and must not be modified.
+     *
+     * @param kind kind of shape, several shapes can be built from a same geometry
+     */
+    public <T> T getShape(String kind, String geometry, Loader<T> builder) throws ArlasException {
+        return get(kind, geometry, builder, shape -> countVertices(geometry));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String kind, String geometry, Loader<T> loader, Weigher<T> weigher) throws ArlasException {
+        if (cache == null || geometry == null) {
+            return loader.load();
+        }
+        Key key = new Key(kind, digest(geometry));
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            return (T) entry.value;
+        }
+        T value = loader.load();
+        if (value != null) {
+            cache.put(key, new Entry(value, weigher.weigh(value)));
+        }
+        return value;
+    }
+
+    /**
+     * @return the hits, misses and evictions of the cache
+     */
+    public CacheStats getStats() {
+        return cache != null ? cache.stats() : CacheStats.empty();
+    }
+
+    /**
+     * @return the number of vertices of the cached geometries, once the pending evictions are done
+     */
+    public long getVertices() {
+        if (cache == null) {
+            return 0;
+        }
+        cache.cleanUp();
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return the number of coordinates of a WKT geometry, 4 for a bbox
+     */
+    static int countVertices(String geometry) {
+        int vertices = 1;
+        for (int i = 0; i < geometry.length(); i++) {
+            if (geometry.charAt(i) == ',') {
+                vertices++;
+            }
+        }
+        return vertices;
+    }
+
+    private static String digest(String geometry) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(geometry.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is supported by all the JVMs
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws ArlasException;
+    }
+
+    @FunctionalInterface
+    private interface Weigher<T> {
+        int weigh(T value);
+    }
+
+    private record Key(String kind, String digest) {
+    }
+
+    private record Entry(Object value, int vertices) {
+    }
+}
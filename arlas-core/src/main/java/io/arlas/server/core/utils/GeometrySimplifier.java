@@ -0,0 +1,120 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.utils;
+
+import io.arlas.commons.exceptions.ArlasException;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Reduces the number of vertices of the geometries of the geo filters before they are sent to the datasource,
+ * as the cost of a geo shape query grows with the number of vertices of its shape.
+ *
+ * A geometry having more vertices than the budget is simplified while preserving its topology (rings stay valid and
+ * do not cross each other). The tolerance starts with the configured one, or the one derived from the zoom of the
+ * requested tile if it is larger, and is doubled until the budget is met or the geometry can not be reduced anymore.
+ * Geometries within the budget are kept as they are. Simplified geometries are kept by the {@link GeometryCache}.
+ */
+public class GeometrySimplifier {
+    // kind of the simplified geometries in the geometry cache
+    private static final String SIMPLIFIED = "simplified-";
+    // size, in pixels, of the side of a tile
+    private static final int TILE_SIZE = 256;
+
+    private static volatile GeometrySimplifier instance = new GeometrySimplifier(0, 0);
+
+    private final int maxVertices;
+    private final double tolerance;
+
+    /**
+     * @param maxVertices maximum number of vertices of a geometry sent to the datasource. 0 disables the simplification.
+     * @param tolerance   minimum distance tolerance of the simplification, in degrees
+     */
+    public GeometrySimplifier(int maxVertices, double tolerance) {
+        this.maxVertices = maxVertices;
+        this.tolerance = tolerance;
+    }
+
+    public static GeometrySimplifier getInstance() {
+        return instance;
+    }
+
+    public static void init(int maxVertices, double tolerance) {
+        instance = new GeometrySimplifier(maxVertices, tolerance);
+    }
+
+    public boolean isEnabled() {
+        return maxVertices > 0;
+    }
+
+    public int getMaxVertices() {
+        return maxVertices;
+    }
+
+    /**
+     * @return the size of a pixel of the tile, in degrees, under which the simplification of a geometry is not visible in the tile
+     */
+    public static double getTileTolerance(BoundingBox tile) {
+        return (tile.getEast() - tile.getWest()) / TILE_SIZE;
+    }
+
+    /**
+     * @param geometry     validated WKT geometry or bbox of a geo filter
+     * @param minTolerance minimum tolerance of the simplification (i.e. derived from the tile zoom), 0 if none
+     * @return the simplified geometry, or null if the simplification is disabled or if the geometry is within the budget
+     */
+    public Simplification simplify(String geometry, double minTolerance) throws ArlasException {
+        if (!isEnabled() || geometry == null || CheckParams.isBboxMatch(geometry)
+                || GeometryCache.countVertices(geometry) <= maxVertices) {
+            return null;
+        }
+        return GeometryCache.getInstance().getShape(SIMPLIFIED + maxVertices + "-" + Math.max(tolerance, minTolerance), geometry,
+                () -> compute(GeoUtil.readWKT(geometry), Math.max(tolerance, minTolerance)));
+    }
+
+    private Simplification compute(Geometry geometry, double minTolerance) {
+        int originalVertices = geometry.getNumPoints();
+        Envelope envelope = geometry.getEnvelopeInternal();
+        double extent = Math.max(envelope.getWidth(), envelope.getHeight());
+        if (originalVertices <= maxVertices || extent == 0) {
+            return null;
+        }
+        double currentTolerance = minTolerance > 0 ? minTolerance : extent / maxVertices;
+        Geometry simplified = TopologyPreservingSimplifier.simplify(geometry, currentTolerance);
+        // beyond the extent of the geometry, a larger tolerance does not remove any more vertex
+        while (simplified.getNumPoints() > maxVertices && currentTolerance < extent) {
+            currentTolerance *= 2;
+            simplified = TopologyPreservingSimplifier.simplify(geometry, currentTolerance);
+        }
+        return new Simplification(simplified.toString(), simplified.getEnvelopeInternal(),
+                originalVertices, simplified.getNumPoints(), currentTolerance);
+    }
+
+    /**
+     * @param geometry         WKT of the simplified geometry
+     * @param envelope         envelope of the simplified geometry
+     * @param originalVertices number of vertices of the geometry before the simplification
+     * @param vertices         number of vertices of the simplified geometry
+     * @param tolerance        distance tolerance used to simplify the geometry, in degrees
+     */
+    public record Simplification(String geometry, Envelope envelope, int originalVertices, int vertices, double tolerance) {
+    }
+}
@@ -20,6 +20,7 @@
 package io.arlas.server.core.utils;
 
 import co.elastic.clients.json.JsonData;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cyclops.data.tuple.Tuple2;
@@ -27,8 +28,10 @@ import cyclops.reactive.ReactiveSeq;
 import io.arlas.commons.utils.StringUtil;
 import io.arlas.server.core.model.response.CollectionReferenceDescriptionProperty;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class MapExplorer {
@@ -90,6 +93,56 @@ public class MapExplorer {
         }
     }
 
+    /**
+     * Writes the fields of the flattened source directly in the current object of the generator, without building the flat map.
+     * Keys and values are the same as the ones of {@link #flat} with a {@link ReduceArrayOnKey} of the given separator.
+     */
+    public static void writeFlat(JsonGenerator generator, Object source, String separator) throws IOException {
+        writeFlat(generator, new StringBuilder(), source, separator, key -> true);
+    }
+
+    /**
+     * Same as {@link #writeFlat(JsonGenerator, Object, String)}, only the flattened keys accepted by the filter are written.
+     */
+    public static void writeFlat(JsonGenerator generator, Object source, String separator, Predicate<String> keyFilter) throws IOException {
+        writeFlat(generator, new StringBuilder(), source, separator, keyFilter);
+    }
+
+    private static void writeFlat(JsonGenerator generator, StringBuilder key, Object source, String separator,
+                                  Predicate<String> keyFilter) throws IOException {
+        if (source == null) {
+            return;
+        }
+        int length = key.length();
+        if (source instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                appendKeyPart(key, String.valueOf(e.getKey()), separator);
+                writeFlat(generator, key, e.getValue(), separator, keyFilter);
+                key.setLength(length);
+            }
+        } else if (source instanceof Collection<?> collection) {
+            int index = 0;
+            for (Object value : collection) {
+                appendKeyPart(key, Integer.toString(index++), separator);
+                writeFlat(generator, key, value, separator, keyFilter);
+                key.setLength(length);
+            }
+        } else {
+            String field = key.toString();
+            if (keyFilter.test(field)) {
+                generator.writeFieldName(field);
+                generator.writeObject(source);
+            }
+        }
+    }
+
+    private static void appendKeyPart(StringBuilder key, String part, String separator) {
+        if (key.length() > 0) {
+            key.append(separator);
+        }
+        key.append(part);
+    }
+
     public static class ReduceArrayOnKey implements Function<Map<List<String>, Object>,Map<String, Object>> {
         private String separator="/";
         public ReduceArrayOnKey(){}
@@ -20,6 +20,8 @@
 package io.arlas.server.core.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.arlas.commons.exceptions.ArlasException;
@@ -45,6 +47,7 @@ import org.locationtech.jts.operation.valid.TopologyValidationError;
 import java.io.IOException;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -76,6 +79,12 @@ public class ParamsParser {
     private static final List<OperatorEnum> GEO_OP = Arrays.asList(OperatorEnum.within, OperatorEnum.notwithin, OperatorEnum.intersects, OperatorEnum.notintersects);
     private static final List<OperatorEnum> GEO_OP_WITHIN = Arrays.asList(OperatorEnum.within, OperatorEnum.notwithin);
     private static final  GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+    // partition filters validated for a collection, by collection and header value.
+    // They are dropped when the collection changes, and after a while in case its mapping changes.
+    private static final Cache<PartitionFilterKey, ValidatedPartitionFilter> PARTITION_FILTERS = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
     public static final String INVALID_AGG_RETURNED_GEOMETRIES = "Invalid `returned_geometries` parameter. It should be `returned_geometries-{comma separated strategies and geo_fields}(+/-sort_field)`";
 
     public static final String RANGE_ALIASES_CHARACTER = "$";
@@ -262,28 +271,61 @@ public class ParamsParser {
         return Objects.requireNonNullElse(aggFormat, "yyyy-MM-dd-HH:mm:ss");
     }
 
+    /**
+     * Parses the partition filter header and validates its geometries for the collection.
+     * The result is cached by header value, as the header is the same for all the requests of a user.
+     */
     public static List<Filter> getPartitionFilter(CollectionReference collectionReference, String serializedFilter) throws InvalidParameterException {
-        if (serializedFilter != null) {
-            List<Filter> fList;
-            String sf = "[" + serializedFilter + "]";
+        if (serializedFilter == null) {
+            return null;
+        }
+        PartitionFilterKey key = new PartitionFilterKey(collectionReference.collectionName, serializedFilter);
+        ValidatedPartitionFilter cached = PARTITION_FILTERS.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        List<Filter> filters = parsePartitionFilter(collectionReference, serializedFilter);
+        try {
+            List<Filter> validFilters = new ArrayList<>();
+            for (Filter f : filters) {
+                validFilters.add(getFilterWithValidGeos(collectionReference, f));
+            }
+            ValidatedPartitionFilter validated = new ValidatedPartitionFilter(validFilters);
+            PARTITION_FILTERS.put(key, validated);
+            return validated;
+        } catch (ArlasException | RuntimeException e) {
+            // not cached: the error is raised when the filters are validated for the request.
+            // The filters are parsed again as the validation modifies them.
+            return parsePartitionFilter(collectionReference, serializedFilter);
+        }
+    }
+
+    /**
+     * Drops the cached partition filters of the collection.
+     */
+    public static void invalidatePartitionFilters(String collectionName) {
+        PARTITION_FILTERS.asMap().keySet().removeIf(key -> key.collectionName().equals(collectionName));
+    }
+
+    private static List<Filter> parsePartitionFilter(CollectionReference collectionReference, String serializedFilter) throws InvalidParameterException {
+        List<Filter> fList;
+        String sf = "[" + serializedFilter + "]";
+        try {
+            List<Map<String, Filter>> pf = objectMapper.readValue(sf,
+                    new TypeReference<List<Map<String, Filter>>>() {});
+            fList = pf.stream()
+                    .filter(m -> m.get(collectionReference.collectionName) != null)
+                    .map(m -> m.get(collectionReference.collectionName)).toList();
+        } catch (IOException e) {
             try {
-                List<Map<String, Filter>> pf = objectMapper.readValue(sf,
-                        new TypeReference<List<Map<String, Filter>>>() {});
-                fList = pf.stream()
-                        .filter(m -> m.get(collectionReference.collectionName) != null)
-                        .map(m -> m.get(collectionReference.collectionName)).toList();
-            } catch (IOException e) {
-                try {
-                    fList = objectMapper.readValue(sf, new TypeReference<List<Filter>>() {});
-                } catch (JsonProcessingException ex) {
-                    // We dont print the filter in the exception to hide it from the final user
-                    LOGGER.error("{} : '{}'", INVALID_FILTER, sf);
-                    throw new InvalidParameterException(INVALID_FILTER, ex);
-                }
+                fList = objectMapper.readValue(sf, new TypeReference<List<Filter>>() {});
+            } catch (JsonProcessingException ex) {
+                // We dont print the filter in the exception to hide it from the final user
+                LOGGER.error("{} : '{}'", INVALID_FILTER, sf);
+                throw new InvalidParameterException(INVALID_FILTER, ex);
             }
-            return fList;
         }
-        return null;
+        return fList;
     }
 
     public static Filter getFilter(CollectionReference collectionReference,
@@ -330,6 +372,12 @@ public class ParamsParser {
                                     value = simplifiedGeometry.toString();
                                 }
                             }
+                            // geometries over the vertex budget are simplified under the size of a pixel of the tile
+                            GeometrySimplifier.Simplification simplification = GeometrySimplifier.getInstance()
+                                    .simplify(value, GeometrySimplifier.getTileTolerance(tileBbox));
+                            if (simplification != null) {
+                                value = simplification.geometry();
+                            }
                         }
 
                     }
@@ -404,7 +452,14 @@ public class ParamsParser {
         return expression;
     }
 
+    /**
+     * Validates the geometry of a geo filter. The validated geometries are cached by the {@link GeometryCache}.
+     */
     public static String getValidGeometry(String geo, Boolean righthand) throws ArlasException {
+        return GeometryCache.getInstance().getValidGeometry(geo, righthand, () -> computeValidGeometry(geo, righthand));
+    }
+
+    private static String computeValidGeometry(String geo, Boolean righthand) throws ArlasException {
         if (CheckParams.isBboxMatch(geo)) {
             CheckParams.checkBbox(geo);
             return geo;
@@ -563,6 +618,27 @@ public class ParamsParser {
         return filters.split(";");
     }
 
+    /**
+     * @param trackTotalHits 'true' to count all the hits, 'false' to count none, or the number of hits counted exactly
+     * @return the number of hits counted exactly, {@link Integer#MAX_VALUE} when all the hits are counted
+     */
+    public static int getTrackTotalHits(String trackTotalHits) throws InvalidParameterException {
+        if (trackTotalHits == null || trackTotalHits.equalsIgnoreCase("true")) {
+            return Integer.MAX_VALUE;
+        } else if (trackTotalHits.equalsIgnoreCase("false")) {
+            return 0;
+        }
+        try {
+            int threshold = Integer.parseInt(trackTotalHits.trim());
+            if (threshold > 0) {
+                return threshold;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new InvalidParameterException(INVALID_TRACK_TOTAL_HITS);
+    }
+
     public static Page getPage(IntParam size, IntParam from, String sort, String after, String before) {
         Page page = new Page();
         page.size = size.get();
@@ -655,4 +731,6 @@ public class ParamsParser {
             return null;
         }
     }
+
+    private record PartitionFilterKey(String collectionName, String header) {}
 }
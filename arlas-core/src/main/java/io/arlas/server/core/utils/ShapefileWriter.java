@@ -0,0 +1,259 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.core.utils;
+
+import org.geotools.api.data.FeatureWriter;
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.locationtech.jts.geom.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes features, one at a time, in shapefiles of a temporary directory and zips them. As a shapefile holds a single
+ * type of geometry, a shapefile is created for each type of geometry written (points, multi points, lines and polygons).
+ * All the shapefiles share the same columns, given at creation: values are converted to the type of their column.
+ */
+public class ShapefileWriter implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShapefileWriter.class);
+    private static final String GEOMETRY_COLUMN = "the_geom";
+    private static final FilenameFilter SHAPEFILE_FILTER = (dir, name) -> {
+        name = name.toLowerCase();
+        return name.endsWith(".shp") || name.endsWith(".shx") || name.endsWith(".dbf")
+                || name.endsWith(".prj") || name.endsWith(".cst") || name.endsWith(".txt");
+    };
+    private static final CoordinateReferenceSystem CRS_WGS84 = getWGS84();
+
+    private final File directory;
+    private final String name;
+    private final List<Column> columns;
+    private final Map<String, String> shapeColumnNames;
+    private final Map<Class<? extends Geometry>, Shapefile> shapefiles = new LinkedHashMap<>();
+    private boolean closed = false;
+
+    /**
+     * @param name             prefix of the name of the shapefiles
+     * @param columns          columns of the shapefiles, in order
+     * @param shapeColumnNames display names of the columns, by column name (optional)
+     */
+    public ShapefileWriter(String name, List<Column> columns, Map<String, String> shapeColumnNames) throws IOException {
+        this.directory = Files.createTempDirectory("shpdir").toFile();
+        this.name = name;
+        this.columns = columns;
+        this.shapeColumnNames = shapeColumnNames != null ? shapeColumnNames : Collections.emptyMap();
+    }
+
+    /**
+     * Writes a feature in the shapefile of the type of its geometry.
+     * @param values values of the columns, in order
+     */
+    public void write(Geometry geometry, List<?> values) throws IOException {
+        Geometry shapeGeometry = toShapeGeometry(geometry);
+        if (shapeGeometry == null) {
+            LOGGER.debug("Geometry of type {} can not be written in a shapefile", geometry == null ? null : geometry.getGeometryType());
+            return;
+        }
+        Shapefile shapefile = shapefiles.get(shapeGeometry.getClass());
+        if (shapefile == null) {
+            shapefile = new Shapefile(shapeGeometry.getClass());
+            shapefiles.put(shapeGeometry.getClass(), shapefile);
+        }
+        shapefile.write(shapeGeometry, values);
+    }
+
+    /**
+     * Closes the shapefiles and zips them, with the mapping of the column names, in the output.
+     */
+    public void zip(OutputStream output) throws IOException {
+        close();
+        ZipOutputStream zipOut = new ZipOutputStream(output);
+        IOUtils.zipDirectory(directory, "", zipOut, SHAPEFILE_FILTER);
+        zipOut.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Shapefile shapefile : shapefiles.values()) {
+            shapefile.close();
+        }
+        if (shapefiles.isEmpty()) {
+            Files.writeString(new File(directory, "README.txt").toPath(),
+                    "No shapefile could be generated because the request returned no data.");
+        } else {
+            List<String> originalColNames = new ArrayList<>();
+            originalColNames.add("geometry");
+            columns.forEach(column -> originalColNames.add(column.name));
+            Files.writeString(new File(directory, "column_mapping.txt").toPath(), String.join(",", originalColNames));
+        }
+    }
+
+    /**
+     * Deletes the temporary directory of the shapefiles.
+     */
+    public void delete() {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete temp directory: " + directory + " due to: " + e.getMessage(), e);
+        }
+    }
+
+    private SimpleFeatureType getFeatureType(Class<? extends Geometry> binding) {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(name + "_" + binding.getSimpleName());
+        // the geometry column name of schema for saving into a shapefile must be "the_geom"
+        builder.add(GEOMETRY_COLUMN, binding, CRS_WGS84);
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            String columnName = shapeColumnNames.getOrDefault(column.name, column.name);
+            builder.add(getShortColumnName(columnName, i + 1), column.binding);
+        }
+        return builder.buildFeatureType();
+    }
+
+    private static String getShortColumnName(String s, int colNum) {
+        return s.length() <= 10 ? s : "column" + colNum;
+    }
+
+    /**
+     * Returns the geometry as written in a shapefile: lines and polygons are always written as multi geometries.
+     */
+    private static Geometry toShapeGeometry(Geometry geometry) {
+        if (geometry instanceof Point || geometry instanceof MultiPoint
+                || geometry instanceof MultiLineString || geometry instanceof MultiPolygon) {
+            return geometry;
+        } else if (geometry instanceof LineString lineString) {
+            return geometry.getFactory().createMultiLineString(new LineString[]{lineString});
+        } else if (geometry instanceof Polygon polygon) {
+            return geometry.getFactory().createMultiPolygon(new Polygon[]{polygon});
+        }
+        return null;
+    }
+
+    private static Object toAttribute(Object value, Class<?> binding) {
+        if (value == null || binding.isInstance(value)) {
+            return value;
+        }
+        if (binding == Long.class) {
+            if (value instanceof Number number) {
+                return number.longValue();
+            }
+            try {
+                return Long.valueOf(value.toString());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else if (binding == Double.class) {
+            if (value instanceof Number number) {
+                return number.doubleValue();
+            }
+            try {
+                return Double.valueOf(value.toString());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else if (binding == Boolean.class) {
+            return Boolean.valueOf(value.toString());
+        }
+        if (value instanceof Map || value instanceof Collection) {
+            try {
+                return GeoUtil.writer.writeValueAsString(value);
+            } catch (IOException e) {
+                return value.toString();
+            }
+        }
+        return value.toString();
+    }
+
+    private static CoordinateReferenceSystem getWGS84() {
+        try {
+            return CRS.parseWKT("GEOGCS[\"GCS_WGS_1984\",DATUM[\"D_WGS_1984\",SPHEROID[\"WGS_1984\",6378137,298.257223563]],PRIMEM[\"Greenwich\",0],UNIT[\"Degree\",0.017453292519943295]]");
+        } catch (FactoryException e) {
+            return DefaultGeographicCRS.WGS84;
+        }
+    }
+
+    /**
+     * A column of the shapefiles.
+     */
+    public static class Column {
+        public final String name;
+        public final Class<?> binding;
+
+        /**
+         * @param name    name of the column, replaced by its display name if any
+         * @param binding type of the values: String, Long, Double or Boolean
+         */
+        public Column(String name, Class<?> binding) {
+            this.name = name;
+            this.binding = binding;
+        }
+    }
+
+    private class Shapefile {
+        private final ShapefileDataStore dataStore;
+        private final FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+
+        private Shapefile(Class<? extends Geometry> binding) throws IOException {
+            String fileName = name + "_" + binding.getSimpleName();
+            dataStore = new ShapefileDataStore(new File(directory, fileName + ".shp").toURI().toURL());
+            dataStore.setCharset(StandardCharsets.UTF_8);
+            dataStore.createSchema(getFeatureType(binding));
+            writer = dataStore.getFeatureWriterAppend(Transaction.AUTO_COMMIT);
+            Files.writeString(new File(directory, fileName + ".cst").toPath(), StandardCharsets.UTF_8.name());
+        }
+
+        private void write(Geometry geometry, List<?> values) throws IOException {
+            SimpleFeature feature = writer.next();
+            feature.setAttribute(0, geometry);
+            for (int i = 0; i < columns.size(); i++) {
+                feature.setAttribute(i + 1, toAttribute(values.get(i), columns.get(i).binding));
+            }
+            writer.write();
+        }
+
+        private void close() throws IOException {
+            try {
+                writer.close();
+            } finally {
+                dataStore.dispose();
+            }
+        }
+    }
+}
@@ -34,6 +34,7 @@ import io.arlas.server.core.model.*;
 import io.arlas.server.core.services.CollectionReferenceService;
 import io.arlas.server.core.utils.CheckParams;
 import io.arlas.server.core.utils.ColumnFilterUtil;
+import io.arlas.server.core.utils.ParamsParser;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -508,6 +509,8 @@ public class CollectionService extends CollectionRESTServices {
             CheckParams.checkInvalidDublinCoreElementsForInspire(collectionReference);
         }
         CheckParams.checkInvalidInspireParameters(collectionReference);
+        // raises an error if the track_total_hits parameter is invalid
+        ParamsParser.getTrackTotalHits(collectionReference.params.trackTotalHits);
         if (collectionReferenceService.checkIfAllowedForOrganisations(collectionReference, Optional.ofNullable(organisations), true)) {
             collectionReferenceService.checkIfIndexAllowedForOrganisations(collectionReference, Optional.ofNullable(organisations), Optional.ofNullable(configuration.arlasAuthPolicyClass));
             return collectionReferenceService.putCollectionReference(collectionReference, checkFields);
@@ -19,43 +19,30 @@
 
 package io.arlas.server.rest.explore;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.commons.rest.utils.RequestContext;
+import io.arlas.server.core.app.ArlasBaseConfiguration;
+import io.arlas.server.core.model.response.AggregationResponse;
 import io.arlas.server.core.services.ArlasRESTServices;
 import io.arlas.server.core.services.ExploreService;
-import io.arlas.server.core.utils.IOUtils;
+import io.arlas.server.core.utils.GeoUtil;
+import io.arlas.server.core.utils.MapExplorer;
+import io.arlas.server.core.utils.ShapefileWriter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.ConnectionCallback;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import org.apache.commons.io.FileUtils;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.geojson.Feature;
 import org.geojson.FeatureCollection;
-import org.geotools.data.collection.ListFeatureCollection;
-import org.geotools.data.shapefile.ShapefileDumper;
-import org.geotools.feature.FeatureIterator;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
-import org.geotools.feature.simple.SimpleFeatureImpl;
-import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
-import org.geotools.feature.type.GeometryDescriptorImpl;
-import org.geotools.geojson.feature.FeatureJSON;
-import org.geotools.geojson.geom.GeometryJSON;
-import org.geotools.referencing.CRS;
-import org.geotools.referencing.crs.DefaultGeographicCRS;
-import org.geotools.api.feature.simple.SimpleFeature;
-import org.geotools.api.feature.simple.SimpleFeatureType;
-import org.geotools.api.referencing.FactoryException;
-import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.ZipOutputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 @Path("/explore")
 @Tag(name="explore", description="Explore API")
@@ -65,110 +52,110 @@ public abstract class ExploreRESTServices extends ArlasRESTServices {
     protected static final Logger LOGGER = LoggerFactory.getLogger(ExploreRESTServices.class);
     public static final String UTF8JSON = MediaType.APPLICATION_JSON + ";charset=utf-8";
     public static final String ZIPFILE = "application/zip";
-    private CoordinateReferenceSystem CRS_WGS84;
-    private static ObjectMapper mapper = new ObjectMapper();
 
     protected ExploreService exploreService;
 
     public ExploreRESTServices(ExploreService exploreService) {
         this.exploreService = exploreService;
-        try {
-            CRS_WGS84 = CRS.parseWKT("GEOGCS[\"GCS_WGS_1984\",DATUM[\"D_WGS_1984\",SPHEROID[\"WGS_1984\",6378137,298.257223563]],PRIMEM[\"Greenwich\",0],UNIT[\"Degree\",0.017453292519943295]]");
-        } catch (FactoryException e) {
-            CRS_WGS84 = DefaultGeographicCRS.WGS84;
-        }
-
     }
 
     public Response cache(Response.ResponseBuilder response, Integer maxagecache) {
         return exploreService.getResponseCacheManager().cache(response, maxagecache);
     }
 
-    public String getExplorePathUri() {
-        return "explore/";
+    /**
+     * Resumes the suspended request once the future completes: with the response built from its result,
+     * or with the cause of its failure so that it goes through the exception mappers.
+     * The response is built and written from the response executor, never from the I/O threads of the elasticsearch client.
+     */
+    public <T> void resume(AsyncResponse asyncResponse, CompletableFuture<T> future, Function<T, Response> responseBuilder) {
+        RequestContext context = RequestContext.current();
+        if (context != null) {
+            // stops the elasticsearch requests still running for a client that went away
+            asyncResponse.register((ConnectionCallback) disconnected -> context.cancel());
+        }
+        future.whenCompleteAsync((result, throwable) -> {
+            if (throwable == null) {
+                Response response;
+                try {
+                    response = responseBuilder.apply(result);
+                } catch (RuntimeException e) {
+                    // the request would otherwise never be resumed
+                    asyncResponse.resume(e);
+                    return;
+                }
+                asyncResponse.resume(response);
+            } else {
+                asyncResponse.resume(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+            }
+        }, exploreService.getResponseExecutor());
     }
 
-    public File toShapefile(FeatureCollection geojson, Map<String, String> shapeColumnNames) throws ArlasException {
-        try {
-            java.nio.file.Path tempDir = Files.createTempDirectory("shpdir");
-            try (InputStream in = new ByteArrayInputStream(mapper.writeValueAsBytes(geojson))) {
-                // get GeoJson source
-                org.geotools.feature.FeatureCollection fc = new FeatureJSON(new GeometryJSON(15)).readFeatureCollection(in);
+    protected AggregationResponse flatten(AggregationResponse aggregationResponse) {
+        List<AggregationResponse> elements = aggregationResponse.elements;
+        if (elements != null && !elements.isEmpty()) {
+            for (AggregationResponse element : elements) {
+                element.flattenedElements = new HashMap<>();
+                element.flattenedElements.putAll(exploreService.flat(
+                        element,
+                        new MapExplorer.ReduceArrayOnKey(ArlasBaseConfiguration.FLATTEN_CHAR),
+                        s -> (!"elements".equals(s))
+                ));
+                element.elements = null;
+                element.metrics = null;
+            }
+        }
+        return aggregationResponse;
+    }
 
-                if (!fc.isEmpty()) {
-                    // Create schema
-                    List<String> originalColNames = new ArrayList<>();
-                    AtomicInteger colNum = new AtomicInteger(0);
-                    SimpleFeatureType geoJsonSchema = (SimpleFeatureType) fc.getSchema();
-                    SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
-                    builder.setName(geoJsonSchema.getTypeName());
-                    geoJsonSchema.getAttributeDescriptors().stream().forEach(adesc -> {
-                        originalColNames.add(adesc.getLocalName());
-                        builder.nillable(adesc.isNillable());
-                        builder.minOccurs(adesc.getMinOccurs());
-                        builder.maxOccurs(adesc.getMaxOccurs());
-                        if (adesc instanceof GeometryDescriptorImpl) {
-                            // the geometry column name of schema for saving into a shapefile must be "the_geom"
-                            builder.add("the_geom", adesc.getType().getBinding(), CRS_WGS84);
-                        } else {
-                            LOGGER.debug(String.format("Original column name : %s",adesc.getLocalName()));
-                            String columnName = shapeColumnNames!=null && shapeColumnNames.containsKey(adesc.getLocalName()) ?
-                                    shapeColumnNames.get(adesc.getLocalName()) : adesc.getLocalName();
-                            LOGGER.debug(String.format("Final column name : %s",columnName));
-                            builder.add(getShortColumnName(columnName, colNum.get()),
-                                    adesc.getType().getBinding() == Object.class ? String.class : adesc.getType().getBinding());
-                        }
-                        colNum.getAndIncrement();
-                    });
-                    // write column mapping
-                    Files.write(Paths.get(tempDir.toString(), "column_mapping.txt"),
-                            String.join(",", originalColNames).getBytes());
-                    final SimpleFeatureType SCHEMA = builder.buildFeatureType();
+    public String getExplorePathUri() {
+        return "explore/";
+    }
 
-                    // Convert GeoJson features to features with short column names
-                    SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(SCHEMA);
-                    List<SimpleFeature> newGeoJsonSource = new ArrayList<>();
-                    try (FeatureIterator iter = fc.features()) {
-                        while (iter.hasNext()) {
-                            SimpleFeatureImpl originalFeature = (SimpleFeatureImpl) iter.next();
-                            featureBuilder.addAll(originalFeature.getAttributes());
-                            newGeoJsonSource.add(featureBuilder.buildFeature(originalFeature.getID()));
-                        }
+    /**
+     * Zips the shapefiles of the features. The columns are the properties of the features, typed after their values.
+     */
+    public StreamingOutput toShapefile(String name, FeatureCollection geojson, Map<String, String> shapeColumnNames) {
+        Map<String, Class<?>> bindings = new LinkedHashMap<>();
+        for (Feature feature : geojson.getFeatures()) {
+            feature.getProperties().forEach((key, value) -> {
+                if (value != null) {
+                    bindings.merge(key, getBinding(value), (previous, binding) -> previous == binding ? previous : String.class);
+                }
+            });
+        }
+        List<ShapefileWriter.Column> columns = new ArrayList<>();
+        bindings.forEach((key, binding) -> columns.add(new ShapefileWriter.Column(key, binding)));
+        return output -> {
+            ShapefileWriter writer = new ShapefileWriter(name, columns, shapeColumnNames);
+            // the writer is closed before its temporary directory is deleted
+            try (writer) {
+                List<Object> values = new ArrayList<>(columns.size());
+                for (Feature feature : geojson.getFeatures()) {
+                    if (feature.getGeometry() == null) {
+                        continue;
                     }
-                    if (!new ShapefileDumper(tempDir.toFile()).dump(new ListFeatureCollection(SCHEMA, newGeoJsonSource))) {
-                        throw new ArlasException("Shapefile could not be created.");
+                    values.clear();
+                    for (ShapefileWriter.Column column : columns) {
+                        values.add(feature.getProperties().get(column.name));
                     }
-                } else {
-                    Files.write(Paths.get(tempDir.toString(), "README.txt"),
-                            "No shapefile could be generated because the request returned no data.".getBytes());
+                    writer.write(GeoUtil.toGeometry(feature.getGeometry()), values);
                 }
-
-                // Create Shapefile
-                File zipFile = Files.createTempFile("shapefile", ".zip").toFile();
-                FileOutputStream output = new FileOutputStream(zipFile);
-                // zip all the files produced
-                final FilenameFilter filter = (dir, name) -> {
-                    name = name.toLowerCase();
-                    return name.endsWith(".shp") || name.endsWith(".shx") || name.endsWith(".dbf")
-                            || name.endsWith(".prj") || name.endsWith(".cst") || name.endsWith(".txt");
-                };
-                ZipOutputStream zipOut = new ZipOutputStream(output);
-                IOUtils.zipDirectory(tempDir.toFile(), "", zipOut, filter);
-                zipOut.finish();
-                return zipFile;
+                writer.zip(output);
             } finally {
-                try {
-                    FileUtils.deleteDirectory(tempDir.toFile());
-                } catch (IOException e) {
-                    LOGGER.warn("Could not delete temp directory: " + tempDir.toString() + " due to: " + e.getMessage(), e);
-                }
+                writer.delete();
             }
-        } catch (IOException e) {
-            throw new ArlasException("IOException while generating shapefile", e);
-        }
+        };
     }
 
-    private static String getShortColumnName(String s, int colNum) {
-        return s.length() <= 10 ? s : "column" + colNum;
+    private static Class<?> getBinding(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Long.class;
+        } else if (value instanceof Number) {
+            return Double.class;
+        } else if (value instanceof Boolean) {
+            return Boolean.class;
+        }
+        return String.class;
     }
 }
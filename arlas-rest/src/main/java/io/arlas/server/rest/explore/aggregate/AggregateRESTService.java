@@ -22,7 +22,6 @@ package io.arlas.server.rest.explore.aggregate;
 import com.codahale.metrics.annotation.Timed;
 import io.arlas.commons.exceptions.ArlasException;
 import io.arlas.commons.rest.response.Error;
-import io.arlas.server.core.app.ArlasBaseConfiguration;
 import io.arlas.server.core.app.Documentation;
 import io.arlas.server.core.model.CollectionReference;
 import io.arlas.server.core.model.request.AggregationsRequest;
@@ -30,7 +29,6 @@ import io.arlas.server.core.model.request.MixedRequest;
 import io.arlas.server.core.model.response.AggregationResponse;
 import io.arlas.server.core.services.ExploreService;
 import io.arlas.server.core.utils.ColumnFilterUtil;
-import io.arlas.server.core.utils.MapExplorer;
 import io.arlas.server.core.utils.ParamsParser;
 import io.arlas.server.rest.explore.ExploreRESTServices;
 import io.swagger.v3.oas.annotations.Operation;
@@ -42,11 +40,13 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Response;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static io.arlas.commons.rest.utils.ServerConstants.*;
@@ -74,7 +74,7 @@ public class AggregateRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "400", description = "Bad request.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response aggregate(
+    public void aggregate(
             // --------------------------------------------------------
             // ----------------------- PATH -----------------------
             // --------------------------------------------------------
@@ -140,7 +140,9 @@ public class AggregateRESTService extends ExploreRESTServices {
             // ----------------------- EXTRA -----------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws ArlasException {
         long startArlasTime = System.nanoTime();
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
@@ -162,9 +164,11 @@ public class AggregateRESTService extends ExploreRESTServices {
         request.headerRequest = aggregationsRequestHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
-        AggregationResponse aggregationResponse = getArlasAggregation(request, collectionReference, Boolean.TRUE.equals(flat));
-        aggregationResponse.totalTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startArlasTime);
-        return cache(Response.ok(aggregationResponse), maxagecache);
+        resume(asyncResponse, getArlasAggregationAsync(request, collectionReference, Boolean.TRUE.equals(flat)),
+                aggregationResponse -> {
+                    aggregationResponse.totalTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startArlasTime);
+                    return cache(Response.ok(aggregationResponse), maxagecache);
+                });
     }
 
     @Timed
@@ -184,7 +188,7 @@ public class AggregateRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "400", description = "Bad request.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response aggregatePost(
+    public void aggregatePost(
             // --------------------------------------------------------
             // ----------------------- PATH -----------------------
             // --------------------------------------------------------
@@ -223,7 +227,9 @@ public class AggregateRESTService extends ExploreRESTServices {
             // ----------------------- EXTRA -----------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws NotFoundException, ArlasException {
         long startArlasTime = System.nanoTime();
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
@@ -245,10 +251,11 @@ public class AggregateRESTService extends ExploreRESTServices {
         request.headerRequest = aggregationsRequestHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
-        AggregationResponse aggregationResponse = getArlasAggregation(request, collectionReference, (aggregationsRequest.form != null && Boolean.TRUE.equals(aggregationsRequest.form.flat)));
-        aggregationResponse.totalTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startArlasTime);
-
-        return cache(Response.ok(aggregationResponse), maxagecache);
+        resume(asyncResponse, getArlasAggregationAsync(request, collectionReference, (aggregationsRequest.form != null && Boolean.TRUE.equals(aggregationsRequest.form.flat))),
+                aggregationResponse -> {
+                    aggregationResponse.totalTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startArlasTime);
+                    return cache(Response.ok(aggregationResponse), maxagecache);
+                });
     }
 
     public AggregationResponse getArlasAggregation(MixedRequest request, CollectionReference collectionReference, boolean flat) throws ArlasException {
@@ -261,20 +268,13 @@ public class AggregateRESTService extends ExploreRESTServices {
         return  flat ? flatten(aggregationResponse) : aggregationResponse;
     }
 
-    private AggregationResponse flatten(AggregationResponse aggregationResponse) {
-        List<AggregationResponse> elements = aggregationResponse.elements;
-        if (elements != null && !elements.isEmpty()) {
-            for (AggregationResponse element : elements) {
-                element.flattenedElements = new HashMap<>();
-                element.flattenedElements.putAll(exploreService.flat(
-                        element,
-                        new MapExplorer.ReduceArrayOnKey(ArlasBaseConfiguration.FLATTEN_CHAR),
-                        s -> (!"elements".equals(s))
-                ));
-                element.elements = null;
-                element.metrics = null;
-            }
-        }
-        return aggregationResponse;
+    public CompletableFuture<AggregationResponse> getArlasAggregationAsync(MixedRequest request, CollectionReference collectionReference, boolean flat) throws ArlasException {
+        return exploreService.aggregateAsync(request,
+                collectionReference,
+                false,
+                ((AggregationsRequest) request.basicRequest).aggregations,
+                0,
+                System.nanoTime())
+                .thenApply(aggregationResponse -> flat ? flatten(aggregationResponse) : aggregationResponse);
     }
 }
@@ -44,25 +44,34 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.ConnectionCallback;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Response;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.io.FileUtils;
 import org.geojson.Feature;
 import org.geojson.FeatureCollection;
 import org.geojson.GeoJsonObject;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 import static io.arlas.commons.rest.utils.ServerConstants.*;
 
 public class GeoAggregateRESTService extends ExploreRESTServices {
 
     private static final double GEOHASH_EPSILON = 0.00000001;
+    private final FanOutExecutor fanOutExecutor;
+
     public GeoAggregateRESTService(ExploreService exploreService) {
+        this(exploreService, new FanOutExecutor(ForkJoinPool.commonPool(), Integer.MAX_VALUE));
+    }
+
+    public GeoAggregateRESTService(ExploreService exploreService, FanOutExecutor fanOutExecutor) {
         super(exploreService);
+        this.fanOutExecutor = fanOutExecutor;
     }
 
     private static final String FEATURE_TYPE_KEY = "feature_type";
@@ -284,7 +293,7 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "501", description = "Not implemented functionality.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response geohashgeoaggregate(
+    public void geohashgeoaggregate(
             // --------------------------------------------------------
             // ----------------------- PATH ---------------------------
             // --------------------------------------------------------
@@ -354,7 +363,9 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
             // ----------------------- EXTRA --------------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws NotFoundException, ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
                 .getCollectionReference(collection, Optional.ofNullable(organisations));
@@ -370,7 +381,7 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
         }
 
         List<BoundingBox> bboxes = getBoundingBoxes(geohash, agg, collectionReference);
-        List<CompletableFuture<AggregationResponse>> futureList = new ArrayList<>();
+        List<Callable<AggregationResponse>> tasks = new ArrayList<>();
         AggregationTypeEnum aggType = null;
         for (BoundingBox b : bboxes) {
             Expression pwithinBbox = new Expression(collectionReference.params.centroidPath, OperatorEnum.within,
@@ -382,23 +393,18 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
                     , partitionFilter, Optional.ofNullable(columnFilter), agg);
             aggType = ((AggregationsRequest) request.basicRequest).aggregations.get(0).type;
 
-            futureList.add(CompletableFuture.supplyAsync(() -> {
-                try {
-                    return exploreService.aggregate(request,collectionReference, true,
-                            ((AggregationsRequest) request.basicRequest).aggregations,0,
-                            System.nanoTime());
-                } catch (ArlasException e) {
-                    throw new RuntimeException(e);
-                }
-            }));
+            tasks.add(() -> exploreService.aggregate(request,collectionReference, true,
+                    ((AggregationsRequest) request.basicRequest).aggregations,0,
+                    System.nanoTime()));
 
         }
 
-        List<AggregationResponse> aggResponses = futureList.stream()
-                .map(CompletableFuture::join)
-                .toList();
-
-        return cache(Response.ok(toGeoJson(merge(aggResponses), aggType, Boolean.TRUE.equals(flat), Optional.of(geohash))), maxagecache);
+        AggregationTypeEnum mainAggregationType = aggType;
+        String tile = geohash;
+        CompletableFuture<List<AggregationResponse>> future = fanOutExecutor.invokeAll(tasks);
+        asyncResponse.register((ConnectionCallback) disconnected -> future.cancel(true));
+        resume(asyncResponse, future,
+                aggResponses -> cache(Response.ok(toGeoJson(merge(aggResponses), mainAggregationType, Boolean.TRUE.equals(flat), Optional.of(tile))), maxagecache));
 
     }
 
@@ -421,7 +427,7 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "501", description = "Not implemented functionality.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response geotilegeoaggregate(
+    public void geotilegeoaggregate(
             // --------------------------------------------------------
             // ----------------------- PATH ---------------------------
             // --------------------------------------------------------
@@ -499,7 +505,9 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
             // ----------------------- EXTRA --------------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws NotFoundException, ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
                 .getCollectionReference(collection, Optional.ofNullable(organisations));
@@ -512,7 +520,7 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
         }
 
         List<BoundingBox> bboxes = getBoundingBoxes(z, x, y, agg, collectionReference);
-        List<CompletableFuture<AggregationResponse>> futureList = new ArrayList<>();
+        List<Callable<AggregationResponse>> tasks = new ArrayList<>();
         AggregationTypeEnum aggType = null;
         for (BoundingBox b : bboxes) {
             Expression pwithinBbox = new Expression(collectionReference.params.centroidPath, OperatorEnum.within,
@@ -524,23 +532,17 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
                     , partitionFilter, Optional.ofNullable(columnFilter), agg);
             aggType = ((AggregationsRequest) request.basicRequest).aggregations.get(0).type;
 
-            futureList.add(CompletableFuture.supplyAsync(() -> {
-                try {
-                    return exploreService.aggregate(request,collectionReference, true,
-                            ((AggregationsRequest) request.basicRequest).aggregations,0,
-                            System.nanoTime());
-                } catch (ArlasException e) {
-                    throw new RuntimeException(e);
-                }
-            }));
+            tasks.add(() -> exploreService.aggregate(request,collectionReference, true,
+                    ((AggregationsRequest) request.basicRequest).aggregations,0,
+                    System.nanoTime()));
 
         }
 
-        List<AggregationResponse> aggResponses = futureList.stream()
-                .map(CompletableFuture::join)
-                .toList();
-
-        return cache(Response.ok(toGeoJson(merge(aggResponses), aggType, Boolean.TRUE.equals(flat), Optional.of(z + "/" + x + "/" + y))), maxagecache);
+        AggregationTypeEnum mainAggregationType = aggType;
+        CompletableFuture<List<AggregationResponse>> future = fanOutExecutor.invokeAll(tasks);
+        asyncResponse.register((ConnectionCallback) disconnected -> future.cancel(true));
+        resume(asyncResponse, future,
+                aggResponses -> cache(Response.ok(toGeoJson(merge(aggResponses), mainAggregationType, Boolean.TRUE.equals(flat), Optional.of(z + "/" + x + "/" + y))), maxagecache));
 
     }
 
@@ -607,6 +609,8 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
         if (aggResponses.size() > 1) {
             result.name = aggResponses.get(0).name;
             result.totalnb = aggResponses.stream().filter(r -> r.totalnb != null).mapToLong(r -> r.totalnb).sum();
+            // the sub-requests share the same geo filters
+            result.geometryReduction = aggResponses.get(0).geometryReduction;
             result.elements = aggResponses.stream().map(r -> r.elements).filter(Objects::nonNull).flatMap(Collection::stream).toList();
             result.metrics = aggResponses.stream().map(r -> r.metrics).filter(Objects::nonNull).flatMap(Collection::stream).toList();
             result.hits = aggResponses.stream().map(r -> r.hits).filter(Objects::nonNull).flatMap(Collection::stream).toList();
@@ -777,17 +781,10 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
         FeatureCollection fc = getFeatureCollection(request, collectionReference, true, Optional.empty());
-        File result = toShapefile(fc, collectionReference.params.collectionDisplayNames!=null?collectionReference.params.collectionDisplayNames.shapeColumns:null);
-        try {
-            return Response.ok(result)
-                    .header("Content-Disposition",
-                            "attachment; filename=" + result.getName()).build();
-        } finally {
-            try {
-                FileUtils.forceDeleteOnExit(result);
-            } catch (IOException ignored) {
-            }
-        }
+        return Response.ok(toShapefile(collectionReference.collectionName, fc,
+                        collectionReference.params.collectionDisplayNames!=null?collectionReference.params.collectionDisplayNames.shapeColumns:null))
+                .header("Content-Disposition",
+                        "attachment; filename=" + collectionReference.collectionName + ".zip").build();
     }
 
     private MixedRequest getGeoaggregateRequest(CollectionReference collectionReference, Filter filter,
@@ -814,17 +811,10 @@ public class GeoAggregateRESTService extends ExploreRESTServices {
         MixedRequest request = getGeoaggregateRequest(collectionReference, filter, partitionFilter, columnFilter, agg);
         FeatureCollection fc = getFeatureCollection(request, collectionReference, Boolean.TRUE.equals(flat), geohash);
         if (asShapeFile) {
-            File result = toShapefile(fc, collectionReference.params.collectionDisplayNames!=null?collectionReference.params.collectionDisplayNames.shapeColumns:null);
-            try {
-                return Response.ok(result)
-                        .header("Content-Disposition",
-                                "attachment; filename=" + result.getName()).build();
-            } finally {
-                try {
-                    FileUtils.forceDeleteOnExit(result);
-                } catch (IOException ignored) {
-                }
-            }
+            return Response.ok(toShapefile(collectionReference.collectionName, fc,
+                            collectionReference.params.collectionDisplayNames!=null?collectionReference.params.collectionDisplayNames.shapeColumns:null))
+                    .header("Content-Disposition",
+                            "attachment; filename=" + collectionReference.collectionName + ".zip").build();
         } else {
             return cache(Response.ok(fc), maxagecache);
         }
@@ -41,6 +41,8 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Response;
 
 import java.util.List;
@@ -71,7 +73,7 @@ public class ComputeRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "400", description = "Bad request.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response compute(
+    public void compute(
             // --------------------------------------------------------
             // ----------------------- PATH -----------------------
             // --------------------------------------------------------
@@ -141,7 +143,9 @@ public class ComputeRESTService extends ExploreRESTServices {
             // ----------------------- EXTRA -----------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
                 .getCollectionReference(collection, Optional.ofNullable(organisations));
@@ -164,8 +168,8 @@ public class ComputeRESTService extends ExploreRESTServices {
         request.basicRequest = computationRequest;
         request.headerRequest = computationRequestHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
-        ComputationResponse computationResponse = exploreService.compute(request, collectionReference);
-        return cache(Response.ok(computationResponse), maxagecache) ;
+        resume(asyncResponse, exploreService.computeAsync(request, collectionReference),
+                computationResponse -> cache(Response.ok(computationResponse), maxagecache));
     }
 
 
@@ -186,7 +190,7 @@ public class ComputeRESTService extends ExploreRESTServices {
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
 
-    public Response computePost(
+    public void computePost(
             // --------------------------------------------------------
             // ----------------------- PATH -----------------------
             // --------------------------------------------------------
@@ -224,7 +228,9 @@ public class ComputeRESTService extends ExploreRESTServices {
             // ----------------------- EXTRA -----------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws NotFoundException, ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
                 .getCollectionReference(collection, Optional.ofNullable(organisations));
@@ -242,8 +248,8 @@ public class ComputeRESTService extends ExploreRESTServices {
         request.basicRequest = computationRequest;
         request.headerRequest = computationRequestHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
-        ComputationResponse computationResponse = exploreService.compute(request, collectionReference);
-        return cache(Response.ok(computationResponse), maxagecache) ;
+        resume(asyncResponse, exploreService.computeAsync(request, collectionReference),
+                computationResponse -> cache(Response.ok(computationResponse), maxagecache));
     }
 
 }
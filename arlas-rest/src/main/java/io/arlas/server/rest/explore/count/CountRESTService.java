@@ -40,6 +40,8 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Response;
 
 import java.util.List;
@@ -70,7 +72,7 @@ public class CountRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "400", description = "Bad request.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response count(
+    public void count(
             // --------------------------------------------------------
             // ----------------------- PATH -----------------------
             // --------------------------------------------------------
@@ -123,7 +125,9 @@ public class CountRESTService extends ExploreRESTServices {
             // -----------------------  EXTRA   -----------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws NotFoundException, ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService().getCollectionReference(collection, Optional.ofNullable(organisations));
         if (collectionReference == null) {
@@ -143,8 +147,8 @@ public class CountRESTService extends ExploreRESTServices {
         request.headerRequest = countHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
-        Hits hits = exploreService.count(request, collectionReference);
-        return cache(Response.ok(hits), maxagecache);
+        resume(asyncResponse, exploreService.countAsync(request, collectionReference),
+                hits -> cache(Response.ok(hits), maxagecache));
     }
 
 
@@ -165,7 +169,7 @@ public class CountRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "400", description = "Bad request.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response countPost(
+    public void countPost(
             // --------------------------------------------------------
             // ----------------------- PATH -----------------------
             // --------------------------------------------------------
@@ -198,7 +202,9 @@ public class CountRESTService extends ExploreRESTServices {
             // --------------------------------------------------------
             // -----------------------  SEARCH  -----------------------
             // --------------------------------------------------------
-            Count count
+            Count count,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws NotFoundException, ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService().getCollectionReference(collection, Optional.ofNullable(organisations));
         if (collectionReference == null) {
@@ -217,7 +223,7 @@ public class CountRESTService extends ExploreRESTServices {
         request.headerRequest = countHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
-        Hits hits = exploreService.count(request, collectionReference);
-        return Response.ok(hits).build();
+        resume(asyncResponse, exploreService.countAsync(request, collectionReference),
+                hits -> Response.ok(hits).build());
     }
 }
@@ -0,0 +1,245 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.rest.explore.export;
+
+import com.codahale.metrics.annotation.Timed;
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.commons.exceptions.NotFoundException;
+import io.arlas.commons.rest.response.Error;
+import io.arlas.server.core.app.Documentation;
+import io.arlas.server.core.model.CollectionReference;
+import io.arlas.server.core.model.enumerations.ExportFormatEnum;
+import io.arlas.server.core.model.request.MixedRequest;
+import io.arlas.server.core.model.request.Search;
+import io.arlas.server.core.services.ExploreService;
+import io.arlas.server.core.utils.CheckParams;
+import io.arlas.server.core.utils.ColumnFilterUtil;
+import io.arlas.server.core.utils.ParamsParser;
+import io.arlas.server.rest.explore.ExploreRESTServices;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.Explode;
+import io.swagger.v3.oas.annotations.enums.ParameterStyle;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+import java.util.Optional;
+
+import static io.arlas.commons.rest.utils.ServerConstants.*;
+
+public class ExportRESTService extends ExploreRESTServices {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String GEOJSONSEQ = "application/geo+json-seq";
+    private static final String CSV = "text/csv";
+
+    public ExportRESTService(ExploreService exploreService) {
+        super(exploreService);
+    }
+
+    @Timed
+    @Path("{collection}/_export")
+    @GET
+    @Produces({NDJSON, GEOJSONSEQ, CSV})
+    @Consumes(UTF8JSON)
+    @Operation(
+            summary = "Export",
+            description = Documentation.EXPORT_OPERATION
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful operation"),
+            @ApiResponse(responseCode = "500", description = "Arlas Server Error.",
+                    content = @Content(schema = @Schema(implementation = Error.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request.",
+                    content = @Content(schema = @Schema(implementation = Error.class)))
+    })
+    public Response export(
+            // --------------------------------------------------------
+            // ----------------------- PATH -----------------------
+            // --------------------------------------------------------
+            @Parameter(
+                    name = "collection",
+                    description = "collection",
+                    required = true)
+            @PathParam(value = "collection") String collection,
+            // --------------------------------------------------------
+            // -----------------------  FILTER  -----------------------
+            // --------------------------------------------------------
+            @Parameter(name = "f",
+                    description = Documentation.FILTER_PARAM_F,
+                    style = ParameterStyle.FORM,
+                    explode = Explode.TRUE)
+            @QueryParam(value = "f") List<String> f,
+
+            @Parameter(name = "q",
+                    description = Documentation.FILTER_PARAM_Q,
+                    style = ParameterStyle.FORM,
+                    explode = Explode.TRUE)
+            @QueryParam(value = "q") List<String> q,
+
+            @Parameter(name = "dateformat",
+                    description = Documentation.FILTER_DATE_FORMAT)
+            @QueryParam(value = "dateformat") String dateformat,
+
+            @Parameter(name = "righthand",
+                    schema = @Schema(defaultValue = "true"),
+                    description = Documentation.FILTER_RIGHT_HAND)
+            @QueryParam(value = "righthand") Boolean righthand,
+
+            @Parameter(hidden = true)
+            @HeaderParam(value = PARTITION_FILTER) String partitionFilter,
+
+            @Parameter(hidden = true)
+            @HeaderParam(value = COLUMN_FILTER) String columnFilter,
+
+            @Parameter(hidden = true)
+            @HeaderParam(value = ARLAS_ORGANISATION) String organisations,
+
+            // --------------------------------------------------------
+            // -----------------------  FORM    -----------------------
+            // --------------------------------------------------------
+            @Parameter(name = "format",
+                    description = Documentation.EXPORT_FORMAT,
+                    schema = @Schema(defaultValue = "ndjson"))
+            @DefaultValue("ndjson")
+            @QueryParam(value = "format") String format,
+
+            @Parameter(name = "flat",
+                    description = Documentation.FORM_FLAT,
+                    schema = @Schema(defaultValue = "false"))
+            @QueryParam(value = "flat") Boolean flat,
+
+            // --------------------------------------------------------
+            // -----------------------  PROJECTION   -----------------------
+            // --------------------------------------------------------
+            @Parameter(name = "include",
+                    description = Documentation.PROJECTION_PARAM_INCLUDE,
+                    schema = @Schema(defaultValue = "*"))
+            @QueryParam(value = "include") String include,
+
+            @Parameter(name = "exclude",
+                    description = Documentation.PROJECTION_PARAM_EXCLUDE,
+                    schema = @Schema())
+            @QueryParam(value = "exclude") String exclude,
+
+            @Parameter(name = "returned_geometries",
+                    description = Documentation.PROJECTION_PARAM_RETURNED_GEOMETRIES,
+                    schema = @Schema())
+            @QueryParam(value = "returned_geometries") String returned_geometries
+    ) throws NotFoundException, ArlasException {
+        CollectionReference collectionReference = getCollectionReference(collection, organisations);
+        Search search = new Search();
+        search.filter = ParamsParser.getFilter(collectionReference, f, q, dateformat, righthand);
+        search.projection = ParamsParser.getProjection(include, exclude);
+        search.returned_geometries = returned_geometries;
+        return export(collectionReference, search, partitionFilter, columnFilter, ExportFormatEnum.fromValue(format), Boolean.TRUE.equals(flat));
+    }
+
+    @Timed
+    @Path("{collection}/_export")
+    @POST
+    @Produces({NDJSON, GEOJSONSEQ, CSV})
+    @Consumes(UTF8JSON)
+    @Operation(
+            summary = "Export",
+            description = Documentation.EXPORT_OPERATION
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful operation"),
+            @ApiResponse(responseCode = "500", description = "Arlas Server Error.",
+                    content = @Content(schema = @Schema(implementation = Error.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request.",
+                    content = @Content(schema = @Schema(implementation = Error.class)))
+    })
+    public Response exportPost(
+            // --------------------------------------------------------
+            // ----------------------- PATH -----------------------
+            // --------------------------------------------------------
+            @Parameter(name = "collection",
+                    description = "collection",
+                    required = true)
+            @PathParam(value = "collection") String collection,
+            // --------------------------------------------------------
+            // ----------------------- SEARCH -----------------------
+            // --------------------------------------------------------
+            Search search,
+
+            // --------------------------------------------------------
+            // -----------------------  FILTER  -----------------------
+            // --------------------------------------------------------
+            @Parameter(hidden = true)
+            @HeaderParam(value = PARTITION_FILTER) String partitionFilter,
+
+            @Parameter(hidden = true)
+            @HeaderParam(value = COLUMN_FILTER) String columnFilter,
+
+            @Parameter(hidden = true)
+            @HeaderParam(value = ARLAS_ORGANISATION) String organisations,
+
+            // --------------------------------------------------------
+            // ----------------------- FORM -----------------------
+            // --------------------------------------------------------
+            @Parameter(name = "format",
+                    description = Documentation.EXPORT_FORMAT,
+                    schema = @Schema(defaultValue = "ndjson"))
+            @DefaultValue("ndjson")
+            @QueryParam(value = "format") String format
+    ) throws NotFoundException, ArlasException {
+        CollectionReference collectionReference = getCollectionReference(collection, organisations);
+        exploreService.setValidGeoFilters(collectionReference, search);
+        return export(collectionReference, search, partitionFilter, columnFilter, ExportFormatEnum.fromValue(format),
+                search.form != null && Boolean.TRUE.equals(search.form.flat));
+    }
+
+    private CollectionReference getCollectionReference(String collection, String organisations) throws ArlasException {
+        CollectionReference collectionReference = exploreService.getCollectionReferenceService()
+                .getCollectionReference(collection, Optional.ofNullable(organisations));
+        if (collectionReference == null) {
+            throw new NotFoundException(collection);
+        }
+        return collectionReference;
+    }
+
+    private Response export(CollectionReference collectionReference, Search search, String partitionFilter, String columnFilter,
+                            ExportFormatEnum format, boolean flat) throws ArlasException {
+        String includes = search.projection != null ? search.projection.includes : null;
+        String excludes = search.projection != null ? search.projection.excludes : null;
+        CheckParams.checkReturnedGeometries(collectionReference, includes, excludes, search.returned_geometries);
+        ColumnFilterUtil.assertRequestAllowed(Optional.ofNullable(columnFilter), collectionReference, search);
+        search.projection = ParamsParser.enrichIncludes(search.projection, search.returned_geometries);
+
+        Search searchHeader = new Search();
+        searchHeader.partitionFilter = ParamsParser.getPartitionFilter(collectionReference, partitionFilter);
+        exploreService.setValidGeoFilters(collectionReference, searchHeader);
+        MixedRequest request = new MixedRequest();
+        request.basicRequest = search;
+        request.headerRequest = searchHeader;
+        request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
+
+        return Response.ok(exploreService.export(request, collectionReference, format, flat), format.mediaType())
+                .header("Content-Disposition",
+                        "attachment; filename=" + collectionReference.collectionName + "." + format.extension())
+                .build();
+    }
+}
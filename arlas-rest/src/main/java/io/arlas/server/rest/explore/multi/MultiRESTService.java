@@ -0,0 +1,164 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.rest.explore.multi;
+
+import com.codahale.metrics.annotation.Timed;
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.commons.exceptions.BadRequestException;
+import io.arlas.commons.exceptions.NotFoundException;
+import io.arlas.commons.rest.response.Error;
+import io.arlas.server.core.model.CollectionReference;
+import io.arlas.server.core.model.request.*;
+import io.arlas.server.core.model.response.MultiExploreResponse;
+import io.arlas.server.core.services.ExploreService;
+import io.arlas.server.core.utils.ColumnFilterUtil;
+import io.arlas.server.core.utils.ParamsParser;
+import io.arlas.server.rest.explore.ExploreRESTServices;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Response;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static io.arlas.commons.rest.utils.ServerConstants.*;
+
+public class MultiRESTService extends ExploreRESTServices {
+
+    public MultiRESTService(ExploreService exploreService) {
+        super(exploreService);
+    }
+
+    @Timed
+    @Path("_multi")
+    @POST
+    @Produces(UTF8JSON)
+    @Consumes(UTF8JSON)
+    @Operation(
+            summary = "Multi",
+            description = "Executes several count, compute and aggregation requests at once. "
+                    + "Each request must contain one, and only one, of `count`, `compute` or `aggregate`. "
+                    + "The responses are returned in the order of the requests; a failed request is reported in the `error` of its response."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful operation",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = MultiExploreResponse.class)))),
+            @ApiResponse(responseCode = "500", description = "Arlas Server Error.",
+                    content = @Content(schema = @Schema(implementation = Error.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request.",
+                    content = @Content(schema = @Schema(implementation = Error.class))),
+            @ApiResponse(responseCode = "404", description = "Collection not found.",
+                    content = @Content(schema = @Schema(implementation = Error.class)))
+    })
+    public void multi(
+            // --------------------------------------------------------
+            // -----------------------  FILTER  -----------------------
+            // --------------------------------------------------------
+
+            @Parameter(hidden = true)
+            @HeaderParam(value = PARTITION_FILTER) String partitionFilter,
+
+            @Parameter(hidden = true)
+            @HeaderParam(value = COLUMN_FILTER) String columnFilter,
+
+            @Parameter(hidden = true)
+            @HeaderParam(value = ARLAS_ORGANISATION) String organisations,
+
+            // --------------------------------------------------------
+            // -----------------------  REQUESTS  ---------------------
+            // --------------------------------------------------------
+            List<MultiExploreRequest> multiExploreRequests,
+
+            @Suspended final AsyncResponse asyncResponse
+    ) throws ArlasException {
+        if (multiExploreRequests == null || multiExploreRequests.isEmpty()) {
+            throw new BadRequestException("At least one request must be provided.");
+        }
+        List<Pair<CollectionReference, MixedRequest>> requests = new ArrayList<>();
+        for (MultiExploreRequest multiExploreRequest : multiExploreRequests) {
+            CollectionReference collectionReference = getCollectionReference(multiExploreRequest.collection, organisations);
+            requests.add(Pair.of(collectionReference, getMixedRequest(multiExploreRequest, collectionReference, partitionFilter, columnFilter)));
+        }
+        resume(asyncResponse, exploreService.multiAsync(requests),
+                responses -> {
+                    for (int i = 0; i < responses.size(); i++) {
+                        AggregationsRequest aggregationsRequest = multiExploreRequests.get(i).aggregate;
+                        MultiExploreResponse response = responses.get(i);
+                        if (response.aggregate != null && aggregationsRequest.form != null && Boolean.TRUE.equals(aggregationsRequest.form.flat)) {
+                            flatten(response.aggregate);
+                        }
+                    }
+                    return Response.ok(responses).build();
+                });
+    }
+
+    private CollectionReference getCollectionReference(String collection, String organisations) throws ArlasException {
+        if (collection == null) {
+            throw new BadRequestException("The collection of each request must be provided.");
+        }
+        CollectionReference collectionReference = exploreService.getCollectionReferenceService()
+                .getCollectionReference(collection, Optional.ofNullable(organisations));
+        if (collectionReference == null) {
+            throw new NotFoundException("collection " + collection + " not found.");
+        }
+        return collectionReference;
+    }
+
+    private MixedRequest getMixedRequest(MultiExploreRequest multiExploreRequest, CollectionReference collectionReference,
+                                         String partitionFilter, String columnFilter) throws ArlasException {
+        if (Stream.of(multiExploreRequest.count, multiExploreRequest.compute, multiExploreRequest.aggregate).filter(r -> r != null).count() != 1) {
+            throw new BadRequestException("Each request must contain one, and only one, of 'count', 'compute' or 'aggregate'.");
+        }
+        Request basicRequest;
+        Request headerRequest;
+        if (multiExploreRequest.aggregate != null) {
+            basicRequest = multiExploreRequest.aggregate;
+            headerRequest = new AggregationsRequest();
+        } else if (multiExploreRequest.compute != null) {
+            basicRequest = multiExploreRequest.compute;
+            headerRequest = new ComputationRequest();
+        } else {
+            basicRequest = multiExploreRequest.count;
+            headerRequest = new Count();
+        }
+        headerRequest.partitionFilter = ParamsParser.getPartitionFilter(collectionReference, partitionFilter);
+        exploreService.setValidGeoFilters(collectionReference, basicRequest);
+        exploreService.setValidGeoFilters(collectionReference, headerRequest);
+
+        ColumnFilterUtil.assertRequestAllowed(Optional.ofNullable(columnFilter), collectionReference, basicRequest);
+
+        MixedRequest request = new MixedRequest();
+        request.basicRequest = basicRequest;
+        request.headerRequest = headerRequest;
+        request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
+        return request;
+    }
+}
@@ -44,11 +44,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Response;
-import org.apache.commons.io.FileUtils;
 import org.geojson.FeatureCollection;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -573,8 +570,7 @@ public class GeoSearchRESTService extends ExploreRESTServices {
         request.headerRequest = searchHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
-        FeatureCollection fc = exploreService.getFeatures(request, collectionReference, (search.form != null && search.form.flat));
-        return cache(Response.ok(fc), maxagecache);
+        return cache(Response.ok(exploreService.getFeaturesAsStream(request, collectionReference, (search.form != null && search.form.flat)), UTF8JSON), maxagecache);
     }
 
     @Timed
@@ -658,18 +654,9 @@ public class GeoSearchRESTService extends ExploreRESTServices {
         request.headerRequest = searchHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
-        FeatureCollection fc = exploreService.getFeatures(request, collectionReference, true);
-        File result = toShapefile(fc, collectionReference.params.collectionDisplayNames!=null?collectionReference.params.collectionDisplayNames.shapeColumns:null);
-        try {
-            return Response.ok(result)
-                    .header("Content-Disposition",
-                            "attachment; filename=" + result.getName()).build();
-        } finally {
-            try {
-                FileUtils.forceDeleteOnExit(result);
-            } catch (IOException ignored) {
-            }
-        }
+        return Response.ok(exploreService.getShapefile(request, collectionReference))
+                .header("Content-Disposition",
+                        "attachment; filename=" + collectionReference.collectionName + ".zip").build();
     }
 
     private Response geosearch(CollectionReference collectionReference, Filter filter, String partitionFilter,
@@ -695,22 +682,12 @@ public class GeoSearchRESTService extends ExploreRESTServices {
         exploreService.setValidGeoFilters(collectionReference, searchHeader);
         request.headerRequest = searchHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(columnFilter, collectionReference);
-        FeatureCollection fc = exploreService.getFeatures(request, collectionReference, (flat != null && flat));
         if (asShapeFile) {
-            File result = toShapefile(fc, collectionReference.params.collectionDisplayNames!=null?collectionReference.params.collectionDisplayNames.shapeColumns:null);
-            try {
-                return Response.ok(result)
-                        .header("Content-Disposition",
-                                "attachment; filename=" + result.getName()).build();
-            } finally {
-                try {
-                    FileUtils.forceDeleteOnExit(result);
-                } catch (IOException e) {
-                    //ignored
-                }
-            }
+            return Response.ok(exploreService.getShapefile(request, collectionReference))
+                    .header("Content-Disposition",
+                            "attachment; filename=" + collectionReference.collectionName + ".zip").build();
         } else {
-            return cache(Response.ok(fc), maxagecache);
+            return cache(Response.ok(exploreService.getFeaturesAsStream(request, collectionReference, (flat != null && flat)), UTF8JSON), maxagecache);
         }
     }
 
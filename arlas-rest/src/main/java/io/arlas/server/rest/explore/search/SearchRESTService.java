@@ -43,7 +43,11 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 
@@ -75,8 +79,9 @@ public class SearchRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "400", description = "Bad request.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response search(
+    public void search(
             @Context UriInfo uriInfo,
+            @Context HttpHeaders headers,
             // --------------------------------------------------------
             // ----------------------- PATH -----------------------
             // --------------------------------------------------------
@@ -178,12 +183,18 @@ public class SearchRESTService extends ExploreRESTServices {
                     description = Documentation.PAGE_PARAM_BEFORE)
             @QueryParam(value = "before") String before,
 
+            @Parameter(name = "track_total_hits",
+                    description = Documentation.SEARCH_PARAM_TRACK_TOTAL_HITS)
+            @QueryParam(value = "track_total_hits") String track_total_hits,
+
 
             // --------------------------------------------------------
             // -----------------------  EXTRA   -----------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws NotFoundException, ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
                 .getCollectionReference(collection, Optional.ofNullable(organisations));
@@ -197,6 +208,7 @@ public class SearchRESTService extends ExploreRESTServices {
         search.page = ParamsParser.getPage(size, from, sort, after, before);
         search.projection = ParamsParser.getProjection(include, exclude);
         search.returned_geometries = returned_geometries;
+        search.track_total_hits = track_total_hits;
         ColumnFilterUtil.assertRequestAllowed(Optional.ofNullable(columnFilter), collectionReference, search);
 
         search.projection = ParamsParser.enrichIncludes(search.projection, returned_geometries);
@@ -209,8 +221,13 @@ public class SearchRESTService extends ExploreRESTServices {
         request.headerRequest = searchHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
-        Hits hits = exploreService.search(request, collectionReference, Boolean.TRUE.equals(flat), uriInfo,"GET");
-        return cache(Response.ok(hits), maxagecache);
+        if (acceptsAtom(headers)) {
+            resume(asyncResponse, exploreService.searchAsync(request, collectionReference, Boolean.TRUE.equals(flat), uriInfo,"GET"),
+                    hits -> cache(Response.ok(hits), maxagecache));
+        } else {
+            resume(asyncResponse, exploreService.searchAsStreamAsync(request, collectionReference, Boolean.TRUE.equals(flat), uriInfo,"GET"),
+                    hits -> cache(Response.ok(hits, UTF8JSON), maxagecache));
+        }
     }
 
     @Timed
@@ -230,7 +247,7 @@ public class SearchRESTService extends ExploreRESTServices {
             @ApiResponse(responseCode = "400", description = "Bad request.",
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
-    public Response searchPost(
+    public void searchPost(
             @Context UriInfo uriInfo,
             // --------------------------------------------------------
             // ----------------------- PATH -----------------------
@@ -269,7 +286,9 @@ public class SearchRESTService extends ExploreRESTServices {
             // -----------------------  EXTRA   -----------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Suspended final AsyncResponse asyncResponse
     ) throws NotFoundException, ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
                 .getCollectionReference(collection, Optional.ofNullable(organisations));
@@ -296,7 +315,16 @@ public class SearchRESTService extends ExploreRESTServices {
         request.headerRequest = searchHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
-        Hits hits = exploreService.search(request, collectionReference, (search.form != null && Boolean.TRUE.equals(search.form.flat)),uriInfo,"POST");
-        return cache(Response.ok(hits), maxagecache);
+        resume(asyncResponse, exploreService.searchAsStreamAsync(request, collectionReference, (search.form != null && Boolean.TRUE.equals(search.form.flat)),uriInfo,"POST"),
+                hits -> cache(Response.ok(hits, UTF8JSON), maxagecache));
+    }
+
+    /**
+     * The hits are streamed as json unless the client explicitly prefers the atom representation.
+     */
+    private boolean acceptsAtom(HttpHeaders headers) {
+        return headers.getAcceptableMediaTypes().stream().findFirst()
+                .filter(mediaType -> !mediaType.isWildcardType() && mediaType.isCompatible(MediaType.valueOf(ATOM.APPLICATION_ATOM_XML)))
+                .isPresent();
     }
 }
@@ -0,0 +1,262 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.rest.plugins.eo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.arlas.commons.utils.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cache of the encoded PNG tiles, with the strong entity tag of their content.
+ * Tiles are stored in a local directory, and are kept across restarts until they expire, or in memory if no directory
+ * is configured. Entries are weighted by the size of the tiles, evicted when the budget is exceeded, and expire
+ * after a configurable time to live, counted from the write of their file when they are reloaded.
+ * An empty tile stands for a tile without content.
+ * Keys start with a digest of the collection name, so that all the tiles of a collection can be invalidated when the
+ * collection changes.
+ */
+public class PngTileCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PngTileCache.class);
+    private static final String EXTENSION = ".png";
+    private static final String SEPARATOR = "_";
+    private static final String COLLECTION_SEPARATOR = "-";
+    private static final ObjectMapper KEY_MAPPER = new ObjectMapper();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long timeoutMillis;
+    private final Cache<String, CachedTile> entries;
+
+    /**
+     * @param directory directory of the cached tiles, null or empty to keep them in memory
+     * @param maxBytes  size budget of the cache, in bytes. 0 disables the cache.
+     * @param timeout   time to live of the cached tiles, in seconds. 0 disables the cache.
+     */
+    public PngTileCache(String directory, long maxBytes, int timeout) throws IOException {
+        this.directory = StringUtil.isNullOrEmpty(directory) ? null : Paths.get(directory);
+        this.maxBytes = maxBytes;
+        this.timeoutMillis = timeout * 1000L;
+        this.entries = isEnabled() ? Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedTile tile) -> (int) Math.min(Integer.MAX_VALUE, tile.size))
+                .expireAfter(new TileExpiry())
+                // the files of the evicted tiles are deleted by the thread of the eviction
+                .executor(Runnable::run)
+                .evictionListener((String key, CachedTile tile, RemovalCause cause) -> tile.delete())
+                .build() : null;
+        if (this.directory != null && isEnabled()) {
+            Files.createDirectories(this.directory);
+            load();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0 && timeoutMillis > 0;
+    }
+
+    /**
+     * Returns the cached tile, or null if the tile is not cached or has expired.
+     */
+    public CachedTile get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        return entries.getIfPresent(key);
+    }
+
+    public CachedTile put(String key, byte[] png) {
+        CachedTile tile = new CachedTile(digest(png), png, System.currentTimeMillis() + timeoutMillis);
+        if (!isEnabled() || png.length > maxBytes) {
+            return tile;
+        }
+        if (directory != null) {
+            try {
+                Path path = directory.resolve(key + SEPARATOR + tile.etag + EXTENSION);
+                Path tmp = Files.createTempFile(directory, key, ".tmp");
+                Files.write(tmp, png);
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                tile = new CachedTile(tile.etag, png.length, path, tile.expiration);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write tile in cache directory " + directory + ": " + e.getMessage());
+                return tile;
+            }
+        }
+        CachedTile previous = entries.asMap().put(key, tile);
+        // the file of a tile with the same content has been replaced by the new one
+        if (previous != null && !Objects.equals(previous.path, tile.path)) {
+            previous.delete();
+        }
+        return tile;
+    }
+
+    /**
+     * Drops all the cached tiles of the collection.
+     */
+    public void invalidate(String collection) {
+        if (!isEnabled()) {
+            return;
+        }
+        String prefix = collectionDigest(collection) + COLLECTION_SEPARATOR;
+        for (String key : entries.asMap().keySet()) {
+            if (key.startsWith(prefix)) {
+                CachedTile removed = entries.asMap().remove(key);
+                if (removed != null) {
+                    removed.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reloads the tiles of the cache directory, oldest first, and deletes the expired ones.
+     */
+    private void load() throws IOException {
+        long now = System.currentTimeMillis();
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(Files::isRegularFile).toList();
+        }
+        List<Map.Entry<String, CachedTile>> tiles = new ArrayList<>();
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            String[] parts = name.endsWith(EXTENSION) ? name.substring(0, name.length() - EXTENSION.length()).split(SEPARATOR) : new String[0];
+            long expiration = Files.getLastModifiedTime(path).toMillis() + timeoutMillis;
+            if (parts.length != 2 || expiration < now) {
+                Files.deleteIfExists(path);
+            } else {
+                tiles.add(Map.entry(parts[0], new CachedTile(parts[1], Files.size(path), path, expiration)));
+            }
+        }
+        tiles.sort(Comparator.comparingLong(e -> e.getValue().expiration));
+        for (Map.Entry<String, CachedTile> tile : tiles) {
+            entries.put(tile.getKey(), tile.getValue());
+        }
+        entries.cleanUp();
+        LOGGER.info("Loaded " + entries.estimatedSize() + " tiles from cache directory " + directory);
+    }
+
+    /**
+     * Key of the cache for the given parts of a request on the collection: the parts are written as a JSON array before
+     * being digested, so that different parts can not give the same key.
+     * @return the key, or null if the parts can not be serialized (the tile is then not cached)
+     */
+    public static String key(String collection, Object... parts) {
+        try {
+            return collectionDigest(collection) + COLLECTION_SEPARATOR + digest(KEY_MAPPER.writeValueAsBytes(parts));
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Unable to compute the cache key of a tile of collection " + collection + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String collectionDigest(String collection) {
+        // a prefix of the digest is enough to tell the collections apart
+        return digest(collection.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Expires the tiles at their own expiration date, which is the one of their file when they are reloaded.
+     */
+    private static class TileExpiry implements Expiry<String, CachedTile> {
+        @Override
+        public long expireAfterCreate(String key, CachedTile tile, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, tile.expiration - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedTile tile, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, tile, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedTile tile, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    public static class CachedTile {
+        private final String etag;
+        private final long size;
+        private final byte[] png;
+        private final Path path;
+        private final long expiration;
+
+        private CachedTile(String etag, byte[] png, long expiration) {
+            this.etag = etag;
+            this.size = png.length;
+            this.png = png;
+            this.path = null;
+            this.expiration = expiration;
+        }
+
+        private CachedTile(String etag, long size, Path path, long expiration) {
+            this.etag = etag;
+            this.size = size;
+            this.png = null;
+            this.path = path;
+            this.expiration = expiration;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public byte[] read() throws IOException {
+            return png != null ? png : Files.readAllBytes(path);
+        }
+
+        private void delete() {
+            if (path != null) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to delete cached tile " + path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
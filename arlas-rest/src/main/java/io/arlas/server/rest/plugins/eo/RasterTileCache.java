@@ -0,0 +1,88 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.rest.plugins.eo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * In-process cache of the decoded source tiles, keyed by their resolved URL.
+ * Entries are weighted by the memory used by their pixels, evicted when the budget is exceeded, and expire after
+ * a configurable time to live. The cached images are shared and must not be modified.
+ */
+public class RasterTileCache {
+    private final long maxBytes;
+    private final long timeoutMillis;
+    private final Cache<String, BufferedImage> entries;
+
+    /**
+     * @param maxBytes memory budget of the cache, in bytes. 0 disables the cache.
+     * @param timeout  time to live of the cached tiles, in seconds. 0 disables the cache.
+     */
+    public RasterTileCache(long maxBytes, int timeout) {
+        this.maxBytes = maxBytes;
+        this.timeoutMillis = timeout * 1000L;
+        this.entries = isEnabled() ? Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String url, BufferedImage img) -> (int) Math.min(Integer.MAX_VALUE, sizeOf(img)))
+                .expireAfterWrite(Duration.ofMillis(timeoutMillis))
+                .build() : null;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0 && timeoutMillis > 0;
+    }
+
+    /**
+     * Returns the cached image of the URL if any, otherwise loads it and caches it.
+     */
+    public BufferedImage get(String url, ImageLoader loader) throws IOException {
+        if (!isEnabled()) {
+            return loader.load();
+        }
+        BufferedImage cached = entries.getIfPresent(url);
+        if (cached != null) {
+            return cached;
+        }
+        BufferedImage img = loader.load();
+        if (img != null) {
+            entries.put(url, img);
+        }
+        return img;
+    }
+
+    /**
+     * Size of the pixels held by the image. A sub image holds the pixels of its parent.
+     */
+    protected static long sizeOf(BufferedImage img) {
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    @FunctionalInterface
+    public interface ImageLoader {
+        BufferedImage load() throws IOException;
+    }
+}
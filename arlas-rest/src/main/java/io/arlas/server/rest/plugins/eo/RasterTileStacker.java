@@ -21,17 +21,27 @@ package io.arlas.server.rest.plugins.eo;
 
 import cyclops.control.Try;
 import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.commons.exceptions.InternalServerErrorException;
 import io.arlas.commons.exceptions.InvalidParameterException;
-import io.arlas.server.core.utils.ImageUtil;
 import io.arlas.server.core.utils.Tile;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 public class RasterTileStacker {
     private Percentage upTo=new Percentage(70);
     private Queue<TileProvider<RasterTile>> providers;
     private int sampling = 1;
+    private Executor executor = Runnable::run;
+    private int prefetch = 1;
 
     public RasterTileStacker stack(Queue<TileProvider<RasterTile>> providers){
         this.providers = providers;
@@ -50,40 +60,109 @@ public class RasterTileStacker {
         return this;
     }
 
+    /**
+     * Fetches up to `prefetch` candidate tiles ahead, in parallel on the given executor. The tiles are still stacked
+     * in the order of the providers, and the fetches in flight are cancelled, interrupting their thread, once the
+     * expected coverage is reached.
+     */
+    public RasterTileStacker prefetch(Executor executor, int prefetch) throws ArlasException {
+        if(prefetch<1)throw new InvalidParameterException("Prefetch must be greater than 1 but is "+prefetch);
+        this.executor=executor;
+        this.prefetch=prefetch;
+        return this;
+    }
+
     public Try<Optional<RasterTile>,ArlasException> on(Tile where) throws ArlasException {
         if(this.providers.size()==0){return Try.success(Optional.empty());}
-        return stack(where, Optional.empty(), providers, upTo);
+        Deque<FutureTask<Try<Optional<RasterTile>,ArlasException>>> fetches = new ArrayDeque<>();
+        try {
+            return stack(where, Optional.empty(), new Coverage(sampling), fetches);
+        } finally {
+            fetches.forEach(fetch -> fetch.cancel(true));
+        }
     }
 
-    private Try<Optional<RasterTile>,ArlasException> stack(Tile where, Optional<RasterTile> done, Queue<TileProvider<RasterTile>> providers, Percentage upTo)  {
-        return Try.flatten(providers.poll().getTile(where).map(otile ->
+    private Try<Optional<RasterTile>,ArlasException> stack(Tile where, Optional<RasterTile> done, Coverage coverage, Deque<FutureTask<Try<Optional<RasterTile>,ArlasException>>> fetches)  {
+        while (fetches.size() < prefetch && !providers.isEmpty()) {
+            TileProvider<RasterTile> provider = providers.poll();
+            // a FutureTask, unlike a CompletableFuture, interrupts the thread of the fetch when it is cancelled
+            FutureTask<Try<Optional<RasterTile>,ArlasException>> fetch = new FutureTask<>(() -> provider.getTile(where));
+            fetches.add(fetch);
+            executor.execute(fetch);
+        }
+        return Try.flatten(join(fetches.poll()).map(otile ->
                 {
-                    Optional<RasterTile> merged = merge(done, otile).orElse(Optional.empty());
-                    Percentage coverage = upTo.getValue() > 0 ? this.coverage(merged, this.sampling) : new Percentage(0); // no need to compute the percentage if upTo is 0
-                    if (providers.size() == 0 || coverage.getValue() >= upTo.getValue()) {
+                    Optional<RasterTile> merged = merge(done, otile, coverage).orElse(Optional.empty());
+                    if ((fetches.isEmpty() && providers.isEmpty()) || coverage.getValue() >= upTo.getValue()) {
                         return Try.success(merged);
                     } else {
-                        return stack(where, merged, providers, upTo);
+                        return stack(where, merged, coverage, fetches);
                     }
                 }
         ));
     }
 
-    private  Try<Optional<RasterTile>,ArlasException> merge(Optional<RasterTile> obottom, Optional<RasterTile>  otop)  {
-        return otop.map(top -> // if there's a top
-                obottom.map(bottom->{ // and a bottom then we merge
-                    Graphics g = bottom.getImg().getGraphics();
+    private static Try<Optional<RasterTile>,ArlasException> join(FutureTask<Try<Optional<RasterTile>,ArlasException>> fetch) {
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Try.failure(new InternalServerErrorException("Can not fetch the tile", e));
+        } catch (CancellationException | ExecutionException e) {
+            return Try.failure(new InternalServerErrorException("Can not fetch the tile", e));
+        }
+    }
+
+    private  Try<Optional<RasterTile>,ArlasException> merge(Optional<RasterTile> obottom, Optional<RasterTile>  otop, Coverage coverage)  {
+        return otop.map(top -> { // if there's a top
+                    // the source tiles may be cached, so they are drawn on a new image rather than on the first of them
+                    BufferedImage img = obottom.map(RasterTile::getImg)
+                            .orElseGet(() -> new BufferedImage(top.getImg().getWidth(), top.getImg().getHeight(), BufferedImage.TYPE_INT_ARGB));
+                    Graphics g = img.getGraphics();
                     g.drawImage(top.getImg(), 0, 0, null);
                     g.dispose();
-                    return Try.withCatch(() -> Optional.of(new RasterTile(top.getxTile(), top.getyTile(), top.getzTile(), bottom.getImg())));
-                }).orElse(Try.success(otop)) //no bottom but there's a top
+                    if (upTo.getValue() > 0) { // no need to compute the percentage if upTo is 0
+                        coverage.add(top.getImg());
+                    }
+                    return Try.withCatch(() -> Optional.of(new RasterTile(top.getxTile(), top.getyTile(), top.getzTile(), img)));
+                }
         ).orElse(Try.success(obottom)); // no top but there's maybe a bottom
     }
 
-    private Percentage coverage(Optional<RasterTile> tile, int sampling){
-        return tile.map(t-> {
-            return new Percentage(ImageUtil.coverage(t.getImg(),sampling));
-        }).orElse(new Percentage(0));
+    /**
+     * Coverage of the stacked tile, tracked on a bitmask of the sampled pixels: when a tile is stacked, only the
+     * pixels that are not covered yet are checked against its alpha channel.
+     */
+    private static class Coverage {
+        private final int sampling;
+        private BitSet covered;
+        private int columns;
+        private int total;
+        private int count;
+
+        private Coverage(int sampling) {
+            this.sampling = sampling;
+        }
+
+        private void add(BufferedImage img) {
+            if (covered == null) {
+                columns = (img.getWidth() + sampling - 1) / sampling;
+                total = columns * ((img.getHeight() + sampling - 1) / sampling);
+                covered = new BitSet(total);
+            }
+            for (int i = covered.nextClearBit(0); i < total; i = covered.nextClearBit(i + 1)) {
+                int x = (i % columns) * sampling;
+                int y = (i / columns) * sampling;
+                if (x < img.getWidth() && y < img.getHeight() && (img.getRGB(x, y) >>> 24) != 0x00) {
+                    covered.set(i);
+                    count++;
+                }
+            }
+        }
+
+        private int getValue() {
+            return total == 0 ? 0 : (100 * count) / total;
+        }
     }
 
     public static class Percentage{
@@ -44,6 +44,9 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.io.ParseException;
@@ -55,6 +58,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import static io.arlas.commons.rest.utils.ServerConstants.*;
@@ -62,8 +66,28 @@ import static io.arlas.commons.rest.utils.ServerConstants.*;
 public class TileRESTService extends ExploreRESTServices {
     public final static String PRODUCES_PNG =  "image/png";
 
+    private final RasterTileCache tileCache;
+    private final PngTileCache pngTileCache;
+    private final Executor fetchExecutor;
+    private final int prefetch;
+
     public TileRESTService(ExploreService exploreService) {
+        this(exploreService, null, null, Runnable::run, 1);
+    }
+
+    /**
+     * @param tileCache     cache of the decoded source tiles, null for no cache
+     * @param pngTileCache  cache of the rendered tiles, null for no cache
+     * @param fetchExecutor executor fetching the source tiles
+     * @param prefetch      maximum number of source tiles fetched at the same time for a given tile
+     */
+    public TileRESTService(ExploreService exploreService, RasterTileCache tileCache, PngTileCache pngTileCache,
+                           Executor fetchExecutor, int prefetch) {
         super(exploreService);
+        this.tileCache = tileCache;
+        this.pngTileCache = pngTileCache;
+        this.fetchExecutor = fetchExecutor;
+        this.prefetch = prefetch;
     }
 
 
@@ -78,6 +102,7 @@ public class TileRESTService extends ExploreRESTServices {
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful operation"),
+            @ApiResponse(responseCode = "304", description = "Not modified: the tile matches the entity tag of the If-None-Match header."),
             @ApiResponse(responseCode = "500", description = "Arlas Server Error.",
                     content = @Content(schema = @Schema(implementation = Error.class))),
             @ApiResponse(responseCode = "400", description = "Bad request.",
@@ -180,7 +205,9 @@ public class TileRESTService extends ExploreRESTServices {
             // -----------------------  EXTRA   -----------------------
             // --------------------------------------------------------
             @Parameter(description = "max-age-cache")
-            @QueryParam(value = "max-age-cache") Integer maxagecache
+            @QueryParam(value = "max-age-cache") Integer maxagecache,
+
+            @Context Request httpRequest
     ) throws NotFoundException, ArlasException {
         CollectionReference collectionReference = exploreService.getCollectionReferenceService()
                 .getCollectionReference(collection, Optional.ofNullable(organisations));
@@ -213,6 +240,52 @@ public class TileRESTService extends ExploreRESTServices {
         request.headerRequest = searchHeader;
         request.columnFilter = ColumnFilterUtil.getCollectionRelatedColumnFilter(Optional.ofNullable(columnFilter), collectionReference);
 
+        String key = pngTileCache == null ? null : PngTileCache.key(collectionReference.collectionName, z, x, y,
+                collectionReference.params.filter, f, q, dateformat, righthand, partitionFilter, columnFilter,
+                size.get(), from.get(), sort, after, before, sampling, coverage,
+                collectionReference.params.rasterTileURL.url, collectionReference.params.rasterTileURL.idPath,
+                collectionReference.params.rasterTileURL.checkGeometry, collectionReference.params.geometryPath,
+                collectionReference.params.rasterTileWidth, collectionReference.params.rasterTileHeight);
+        PngTileCache.CachedTile cached = key == null ? null : pngTileCache.get(key);
+        if (cached != null) {
+            if (cached.isEmpty()) {
+                return Response.noContent().build();
+            }
+            EntityTag etag = new EntityTag(cached.getEtag());
+            Response.ResponseBuilder notModified = httpRequest.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return cache(notModified, maxagecache);
+            }
+            try {
+                return cache(Response.ok(cached.read()).tag(etag), maxagecache);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read a cached tile, it is rendered again: " + e.getMessage());
+            }
+        }
+
+        Optional<byte[]> png = renderTile(collectionReference, request, bbox, x, y, z, sampling, coverage);
+        if (png.isEmpty() || png.get().length == 0) {
+            if (key != null && png.isPresent()) {
+                pngTileCache.put(key, png.get());
+            }
+            return Response.noContent().build();
+        }
+        if (key == null) {
+            return cache(Response.ok(png.get()), maxagecache);
+        }
+        EntityTag etag = new EntityTag(pngTileCache.put(key, png.get()).getEtag());
+        Response.ResponseBuilder notModified = httpRequest.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return cache(notModified, maxagecache);
+        }
+        return cache(Response.ok(png.get()).tag(etag), maxagecache);
+    }
+
+    /**
+     * Renders the tile as a PNG: an empty PNG if there is no tile, an empty Optional if the tile can not be rendered.
+     */
+    private Optional<byte[]> renderTile(CollectionReference collectionReference, MixedRequest request, BoundingBox bbox,
+                                        int x, int y, int z, Integer sampling, Integer coverage) throws ArlasException {
         Queue<TileProvider<RasterTile>> providers = findCandidateTiles(collectionReference, request).stream()
                 .filter(match -> match._2().map(
                         polygon -> (!collectionReference.params.rasterTileURL.checkGeometry) || polygon.intersects(GeoTileUtil.toPolygon(bbox))) // if geo is available, does it intersect the bbox?
@@ -223,13 +296,15 @@ public class TileRESTService extends ExploreRESTServices {
                         collectionReference.params.rasterTileURL.maxZ,
                         collectionReference.params.rasterTileURL.checkGeometry),
                         collectionReference.params.rasterTileWidth,
-                        collectionReference.params.rasterTileHeight)).collect(Collectors.toCollection(LinkedList::new));
+                        collectionReference.params.rasterTileHeight,
+                        tileCache)).collect(Collectors.toCollection(LinkedList::new));
         if (providers.isEmpty()){
-            return Response.noContent().build();
+            return Optional.of(new byte[0]);
         }
         Try<Optional<RasterTile>,ArlasException> stacked = new RasterTileStacker()
                 .stack(providers)
                 .sampling(Optional.ofNullable(sampling).orElse(10))
+                .prefetch(fetchExecutor, prefetch)
                 .upTo(new RasterTileStacker.Percentage(Optional.ofNullable(coverage).orElse(10)))
                 .on(new Tile(x, y, z));
 
@@ -237,15 +312,15 @@ public class TileRESTService extends ExploreRESTServices {
 
         return stacked.map(otile->
                 otile.map(tile->
-                        Try.withCatch(()->{ // lets write the image to the response's output
+                        Try.withCatch(()->{ // lets encode the image
                             final ByteArrayOutputStream out = new ByteArrayOutputStream();
                             ImageIO.write(tile.getImg(), "png", out);
-                            return cache(Response.ok(out.toByteArray()), maxagecache);
+                            return out.toByteArray();
                         },IOException.class)
-                                .onFail(e -> Response.serverError().entity(e.getMessage()).build())
-                                .orElse(Response.noContent().build())) // Can't write the tile => No content
-                        .orElse(Response.noContent().build()))// No tile => No content
-                .orElse(Response.noContent().build());// No tile => No content
+                                .onFail(e -> LOGGER.error("Failed to write a tile", e))
+                                .toOptional()) // Can't write the tile => No content
+                        .orElse(Optional.of(new byte[0])))// No tile => No content
+                .orElse(Optional.empty());// Can't fetch the tile => No content
     }
 
     protected List<Tuple2<String,Optional<Geometry>>> findCandidateTiles(CollectionReference collectionReference, MixedRequest request) throws ArlasException {
@@ -37,6 +37,7 @@ public class URLBasedRasterTileProvider implements TileProvider <RasterTile>{
     private RasterTileURL template;
     private int width =-1;
     private int height =-1;
+    private RasterTileCache cache;
 
     public static final String PATTERN_X="{x}";
     public static final String PATTERN_Y="{y}";
@@ -56,6 +57,11 @@ public class URLBasedRasterTileProvider implements TileProvider <RasterTile>{
         this.width=width;
     }
 
+    public URLBasedRasterTileProvider(RasterTileURL template, int width, int height, RasterTileCache cache){
+        this(template, width, height);
+        this.cache=cache;
+    }
+
     @Override
     public Try<Optional<RasterTile>,ArlasException> getTile(Tile request) {
         return Try.withCatch(()->{
@@ -66,6 +72,10 @@ public class URLBasedRasterTileProvider implements TileProvider <RasterTile>{
     }
 
     protected BufferedImage getImage(URL url) throws IOException {
+        return cache == null ? readImage(url) : cache.get(url.toString(), () -> readImage(url));
+    }
+
+    protected BufferedImage readImage(URL url) throws IOException {
         BufferedImage img = ImageIO.read(url);
         if(width>-1 && height>-1 && (img.getWidth()>width || img.getHeight()>height)){
             return img.getSubimage(0,0,width, height);
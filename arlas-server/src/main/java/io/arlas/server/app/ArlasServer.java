@@ -19,9 +19,14 @@
 
 package io.arlas.server.app;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import io.arlas.commons.cache.BaseHazelcastCacheManager;
+import io.arlas.commons.cache.BaseLocalCacheManager;
 import io.arlas.commons.cache.CacheFactory;
 import io.arlas.commons.config.ArlasConfiguration;
 import io.arlas.commons.config.ArlasCorsConfiguration;
@@ -30,6 +35,7 @@ import io.arlas.commons.exceptions.ConstraintViolationExceptionMapper;
 import io.arlas.commons.exceptions.IllegalArgumentExceptionMapper;
 import io.arlas.commons.exceptions.JsonProcessingExceptionMapper;
 import io.arlas.commons.rest.utils.PrettyPrintFilter;
+import io.arlas.commons.rest.utils.RequestContextFilter;
 import io.arlas.commons.utils.MapAwareConverter;
 import io.arlas.filter.core.PolicyEnforcer;
 import io.arlas.server.admin.task.CollectionAutoDiscover;
@@ -37,6 +43,9 @@ import io.arlas.server.core.app.ArlasServerConfiguration;
 import io.arlas.server.core.managers.CacheManager;
 import io.arlas.server.core.managers.CollectionReferenceManager;
 import io.arlas.server.core.services.ExploreService;
+import io.arlas.server.core.utils.FanOutExecutor;
+import io.arlas.server.core.utils.GeometryCache;
+import io.arlas.server.core.utils.GeometrySimplifier;
 import io.arlas.server.ogc.csw.CSWHandler;
 import io.arlas.server.ogc.csw.CSWService;
 import io.arlas.server.ogc.csw.writer.getrecords.AtomGetRecordsMessageBodyWriter;
@@ -55,10 +64,14 @@ import io.arlas.server.rest.explore.compute.ComputeRESTService;
 import io.arlas.server.rest.explore.count.CountRESTService;
 import io.arlas.server.rest.explore.describe.DescribeCollectionRESTService;
 import io.arlas.server.rest.explore.describe.DescribeRESTService;
+import io.arlas.server.rest.explore.export.ExportRESTService;
+import io.arlas.server.rest.explore.multi.MultiRESTService;
 import io.arlas.server.rest.explore.raw.RawRESTService;
 import io.arlas.server.rest.explore.search.GeoSearchRESTService;
 import io.arlas.server.rest.explore.search.SearchRESTService;
 import io.arlas.server.rest.explore.suggest.SuggestRESTService;
+import io.arlas.server.rest.plugins.eo.PngTileCache;
+import io.arlas.server.rest.plugins.eo.RasterTileCache;
 import io.arlas.server.rest.plugins.eo.TileRESTService;
 import io.arlas.server.stac.api.StacCollectionsRESTService;
 import io.arlas.server.stac.api.StacConformanceRESTService;
@@ -88,6 +101,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -125,6 +141,19 @@ public class ArlasServer extends Application<ArlasServerConfiguration> {
                 .forName(configuration.arlasCacheFactoryClass)
                 .getConstructor(ArlasConfiguration.class)
                 .newInstance(configuration);
+        if (cacheFactory.getCacheManager() instanceof BaseHazelcastCacheManager hazelcastCacheManager) {
+            environment.metrics().register(MetricRegistry.name("cache", "near", "hits"), (Gauge<Long>) hazelcastCacheManager::getNearCacheHits);
+            environment.metrics().register(MetricRegistry.name("cache", "near", "misses"), (Gauge<Long>) hazelcastCacheManager::getNearCacheMisses);
+        } else if (cacheFactory.getCacheManager() instanceof BaseLocalCacheManager localCacheManager) {
+            environment.metrics().register(MetricRegistry.name("cache", "local", "hit-rate"), (Gauge<Double>) () -> localCacheManager.getStats().hitRate());
+            environment.metrics().register(MetricRegistry.name("cache", "local", "evictions"), (Gauge<Long>) () -> localCacheManager.getStats().evictionCount());
+        }
+        GeometryCache.init(configuration.arlasGeometryCacheMaxVertices);
+        environment.metrics().register(MetricRegistry.name("cache", "geometry", "hits"), (Gauge<Long>) () -> GeometryCache.getInstance().getStats().hitCount());
+        environment.metrics().register(MetricRegistry.name("cache", "geometry", "misses"), (Gauge<Long>) () -> GeometryCache.getInstance().getStats().missCount());
+        environment.metrics().register(MetricRegistry.name("cache", "geometry", "evictions"), (Gauge<Long>) () -> GeometryCache.getInstance().getStats().evictionCount());
+        environment.metrics().register(MetricRegistry.name("cache", "geometry", "vertices"), (Gauge<Long>) () -> GeometryCache.getInstance().getVertices());
+        GeometrySimplifier.init(configuration.arlasGeometrySimplifyMaxVertices, configuration.arlasGeometrySimplifyTolerance);
 
         DatabaseToolsFactory dbToolFactory = (DatabaseToolsFactory) Class
                 .forName(configuration.arlasDatabaseFactoryClass)
@@ -135,7 +164,13 @@ public class ArlasServer extends Application<ArlasServerConfiguration> {
                 (CacheManager) cacheFactory.getCacheManager());
 
         ExploreService exploration = dbToolFactory.getExploreService();
+        ExecutorService responseExecutor = environment.lifecycle().executorService("explore-response-%d")
+                .minThreads(configuration.arlasResponseThreads)
+                .maxThreads(configuration.arlasResponseThreads)
+                .build();
+        exploration.setResponseExecutor(new InstrumentedExecutorService(responseExecutor, environment.metrics(), "explore-response"));
         environment.getObjectMapper().setSerializationInclusion(Include.NON_NULL);
+        exploration.setObjectMapper(environment.getObjectMapper());
 
         environment.jersey().register(MultiPartFeature.class);
         environment.jersey().register(new ArlasExceptionMapper());
@@ -154,12 +189,14 @@ public class ArlasServer extends Application<ArlasServerConfiguration> {
             environment.jersey().register(new SearchRESTService(exploration));
             environment.jersey().register(new AggregateRESTService(exploration));
             environment.jersey().register(new GeoSearchRESTService(exploration));
-            environment.jersey().register(new GeoAggregateRESTService(exploration));
+            environment.jersey().register(new GeoAggregateRESTService(exploration, getFanOutExecutor(environment, configuration)));
             environment.jersey().register(new SuggestRESTService(exploration));
             environment.jersey().register(new DescribeRESTService(exploration));
             environment.jersey().register(new RawRESTService(exploration));
             environment.jersey().register(new DescribeCollectionRESTService(exploration));
             environment.jersey().register(new ComputeRESTService(exploration));
+            environment.jersey().register(new MultiRESTService(exploration));
+            environment.jersey().register(new ExportRESTService(exploration));
             LOGGER.info("Explore API enabled");
         } else {
             LOGGER.info("Explore API disabled");
@@ -204,7 +241,19 @@ public class ArlasServer extends Application<ArlasServerConfiguration> {
 
         if (configuration.arlasServiceRasterTileEnabled){
             LOGGER.info("Raster Tile Service enabled");
-            environment.jersey().register(new TileRESTService(exploration));
+            ExecutorService tileFetchExecutor = environment.lifecycle().executorService("tile-fetch-%d")
+                    .minThreads(configuration.arlasTileFetchThreads)
+                    .maxThreads(configuration.arlasTileFetchThreads)
+                    .build();
+            PngTileCache pngTileCache = new PngTileCache(configuration.arlasTilePngCacheDir,
+                    configuration.arlasTilePngCacheMaxBytes, configuration.arlasTilePngCacheTimeout);
+            // the rendered tiles depend on the collection reference (e.g. its filter)
+            dbToolFactory.getCollectionReferenceService().addInvalidationListener(pngTileCache::invalidate);
+            environment.jersey().register(new TileRESTService(exploration,
+                    new RasterTileCache(configuration.arlasTileCacheMaxBytes, configuration.arlasTileCacheTimeout),
+                    pngTileCache,
+                    new InstrumentedExecutorService(tileFetchExecutor, environment.metrics(), "tile-fetch"),
+                    configuration.arlasTilePrefetch));
         } else {
             LOGGER.info("Raster Tile Service disabled");
         }
@@ -240,6 +289,9 @@ public class ArlasServer extends Application<ArlasServerConfiguration> {
 
         //filters
         environment.jersey().register(PrettyPrintFilter.class);
+        environment.servlets().addFilter("RequestContextFilter",
+                        new RequestContextFilter(configuration.arlasRequestTimeout, configuration.arlasRequestTimeouts))
+                .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
         environment.jersey().register(InsensitiveCaseFilter.class);
 
         //tasks
@@ -285,4 +337,18 @@ public class ArlasServer extends Application<ArlasServerConfiguration> {
         // Add URL mapping
         cors.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), true, "/*");
     }
+
+    private FanOutExecutor getFanOutExecutor(Environment environment, ArlasServerConfiguration configuration) {
+        String name = "geoaggregate-fanout";
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(configuration.arlasFanOutQueueSize);
+        ExecutorService executor = environment.lifecycle().executorService(name + "-%d")
+                .minThreads(configuration.arlasFanOutThreads)
+                .maxThreads(configuration.arlasFanOutThreads)
+                .workQueue(queue)
+                .build();
+        environment.metrics().register(MetricRegistry.name(name, "queue-size"), (Gauge<Integer>) queue::size);
+        // submitted/running/completed meters, duration and wait time ('idle') timers
+        return new FanOutExecutor(new InstrumentedExecutorService(executor, environment.metrics(), name),
+                configuration.arlasFanOutMaxPerRequest);
+    }
 }
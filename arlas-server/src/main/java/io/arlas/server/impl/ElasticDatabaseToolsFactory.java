@@ -20,7 +20,10 @@ package io.arlas.server.impl;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheck;
 
 import io.arlas.commons.exceptions.ArlasConfigurationException;
@@ -34,12 +37,15 @@ import io.arlas.server.core.impl.elastic.utils.ElasticClient;
 import io.arlas.server.core.managers.CacheManager;
 import io.arlas.server.core.services.CollectionReferenceService;
 import io.arlas.server.core.services.ExploreService;
+import io.arlas.server.core.utils.ExploreResultCache;
 import io.arlas.server.ogc.common.dao.ElasticOGCCollectionReferenceDao;
 import io.arlas.server.ogc.common.dao.OGCCollectionReferenceDao;
 import io.arlas.server.ogc.common.model.Service;
 import io.arlas.server.ogc.wfs.services.ElasticWFSToolService;
 import io.arlas.server.ogc.wfs.services.WFSToolService;
 import io.dropwizard.core.setup.Environment;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.pool.PoolStats;
 
 
 public class ElasticDatabaseToolsFactory extends DatabaseToolsFactory {
@@ -55,9 +61,15 @@ public class ElasticDatabaseToolsFactory extends DatabaseToolsFactory {
         environment.jersey().register(new ElasticsearchExceptionMapper());
 
         this.elasticClient = new ElasticClient(configuration.elasticConfiguration);
+        registerElasticClient(environment, configuration);
         this.collectionReferenceService = new ElasticCollectionReferenceService(elasticClient, configuration.arlasIndex, cacheManager, configuration);
         this.exploreService = new ElasticExploreService(elasticClient, collectionReferenceService, configuration.arlasBaseUri,
                 configuration.arlasRestCacheTimeout,configuration.elasticConfiguration.elasticMaxPrecisionThreshold);
+        ((ElasticExploreService) this.exploreService).setExport(configuration.arlasExportPageSize, configuration.arlasExportKeepAlive);
+        ExploreResultCache exploreResultCache = new ExploreResultCache(configuration.arlasExploreCacheMaxBytes,
+                configuration.arlasExploreCacheTimeout, configuration.arlasExploreCacheShared ? cacheManager : null);
+        this.collectionReferenceService.setExploreResultCache(exploreResultCache);
+        this.exploreService.setExploreResultCache(exploreResultCache);
         if (configuration.arlasServiceCSWEnabled) {
             this.ogcDao = new ElasticOGCCollectionReferenceDao(elasticClient, collectionReferenceService, configuration.arlasIndex, Service.CSW);
         }
@@ -66,6 +78,41 @@ public class ElasticDatabaseToolsFactory extends DatabaseToolsFactory {
         }
     }
 
+    private void registerElasticClient(Environment environment, ArlasServerConfiguration configuration) {
+        environment.lifecycle().manage(new Managed() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+                elasticClient.close();
+            }
+        });
+        environment.metrics().register(MetricRegistry.name("elastic", "pool", "leased"), (Gauge<Integer>) () -> elasticClient.getPoolStats().getLeased());
+        environment.metrics().register(MetricRegistry.name("elastic", "pool", "available"), (Gauge<Integer>) () -> elasticClient.getPoolStats().getAvailable());
+        environment.metrics().register(MetricRegistry.name("elastic", "pool", "pending"), (Gauge<Integer>) () -> elasticClient.getPoolStats().getPending());
+        environment.metrics().register(MetricRegistry.name("elastic", "pool", "max"), (Gauge<Integer>) () -> elasticClient.getPoolStats().getMax());
+        environment.metrics().register(MetricRegistry.name("elastic", "pool", "lease-wait"), elasticClient.getLeaseWait());
+        environment.metrics().register(MetricRegistry.name("elastic", "pool", "utilization"), (Gauge<Double>) () -> {
+            PoolStats stats = elasticClient.getPoolStats();
+            return stats.getMax() > 0 ? (double) stats.getLeased() / stats.getMax() : 0d;
+        });
+        environment.metrics().register(MetricRegistry.name("elastic", "hedging", "fired"), (Gauge<Long>) () -> elasticClient.getHedging().getFired());
+        environment.metrics().register(MetricRegistry.name("elastic", "hedging", "won"), (Gauge<Long>) () -> elasticClient.getHedging().getWon());
+        if (elasticClient.getIndexTimeRanges().isEnabled()) {
+            // each index pattern is refreshed once per refresh period, the new ones within a second
+            environment.lifecycle().scheduledExecutorService("elastic-index-time-ranges-%d").build()
+                    .scheduleWithFixedDelay(() -> elasticClient.getIndexTimeRanges().refresh(), 1, 1, TimeUnit.SECONDS);
+        }
+        int idleTimeout = configuration.elasticConfiguration.elasticIdleTimeout;
+        if (idleTimeout > 0) {
+            long period = Math.max(1000, idleTimeout / 2);
+            environment.lifecycle().scheduledExecutorService("elastic-idle-connections-%d").build()
+                    .scheduleWithFixedDelay(() -> elasticClient.closeIdleConnections(idleTimeout), period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
     @Override
     public ExploreService getExploreService() {
         return this.exploreService;
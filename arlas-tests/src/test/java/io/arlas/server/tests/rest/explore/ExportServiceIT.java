@@ -0,0 +1,107 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.rest.explore;
+
+import io.arlas.server.tests.AbstractTestWithCollection;
+import io.restassured.response.ExtractableResponse;
+import io.restassured.response.Response;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static io.arlas.commons.rest.utils.ServerConstants.COLUMN_FILTER;
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ExportServiceIT extends AbstractTestWithCollection {
+
+    @Test
+    public void testExportNdjson() throws Exception {
+        List<String> lines = lines(given().param("format", "ndjson")
+                .when().get(getUrlPath())
+                .then().statusCode(200)
+                .contentType(startsWith("application/x-ndjson"))
+                .extract());
+        assertEquals(595, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"md\":"));
+    }
+
+    @Test
+    public void testExportGeoJsonSeq() throws Exception {
+        String body = given().param("format", "geojsonseq")
+                .when().get(getUrlPath())
+                .then().statusCode(200)
+                .contentType(startsWith("application/geo+json-seq"))
+                .extract().asString();
+        String[] records = body.split("\u001e");
+        // the body starts with a record separator
+        assertEquals(596, records.length);
+        assertTrue(records[1].startsWith("{\"type\":\"Feature\""));
+        assertTrue(records[1].endsWith("\n"));
+    }
+
+    @Test
+    public void testExportCsv() throws Exception {
+        List<String> lines = lines(given().param("format", "csv")
+                .param("include", "params.job,params.city")
+                .when().get(getUrlPath())
+                .then().statusCode(200)
+                .contentType(startsWith("text/csv"))
+                .extract());
+        assertEquals(596, lines.size());
+        assertEquals("params.city,params.job", lines.get(0));
+    }
+
+    @Test
+    public void testExportWithFilters() throws Exception {
+        List<String> lines = lines(given().param("f", "params.job:eq:Actor")
+                .when().get(getUrlPath())
+                .then().statusCode(200)
+                .extract());
+        assertTrue(lines.size() > 0);
+        assertTrue(lines.size() < 595);
+        lines.forEach(line -> assertTrue(line.contains("\"job\":\"Actor\"")));
+
+        List<String> csv = lines(given().param("format", "csv")
+                .header(COLUMN_FILTER, COLLECTION_NAME + ":params.job")
+                .when().get(getUrlPath())
+                .then().statusCode(200)
+                .extract());
+        assertFalse(csv.get(0).contains("params.city"));
+        assertTrue(csv.get(0).contains("params.job"));
+    }
+
+    @Test
+    public void testExportWithInvalidFormat() throws Exception {
+        given().param("format", "foo")
+                .when().get(getUrlPath())
+                .then().statusCode(400);
+    }
+
+    private List<String> lines(ExtractableResponse<Response> response) {
+        return Arrays.stream(response.asString().split("\r?\n")).filter(line -> !line.isEmpty()).toList();
+    }
+
+    private String getUrlPath() {
+        return arlasPath + "explore/" + COLLECTION_NAME + "/_export";
+    }
+}
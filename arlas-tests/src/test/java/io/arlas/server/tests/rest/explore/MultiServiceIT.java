@@ -0,0 +1,126 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.rest.explore;
+
+import io.arlas.server.core.model.enumerations.AggregationTypeEnum;
+import io.arlas.server.core.model.enumerations.ComputationEnum;
+import io.arlas.server.core.model.enumerations.OperatorEnum;
+import io.arlas.server.core.model.request.*;
+import io.arlas.server.tests.AbstractTestWithCollection;
+import io.arlas.server.tests.DataSetTool;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+public class MultiServiceIT extends AbstractTestWithCollection {
+
+    @Test
+    public void testMulti() throws Exception {
+        MultiExploreRequest count = new MultiExploreRequest();
+        count.collection = COLLECTION_NAME;
+        count.count = new Count();
+
+        MultiExploreRequest filteredCount = new MultiExploreRequest();
+        filteredCount.collection = COLLECTION_NAME;
+        filteredCount.count = new Count();
+        filteredCount.count.filter = new Filter();
+        filteredCount.count.filter.f = List.of(new MultiValueFilter<>(new Expression("params.job", OperatorEnum.eq, DataSetTool.jobs[0])));
+
+        MultiExploreRequest compute = new MultiExploreRequest();
+        compute.collection = COLLECTION_NAME;
+        compute.compute = new ComputationRequest();
+        compute.compute.field = "params.startdate";
+        compute.compute.metric = ComputationEnum.MAX;
+
+        MultiExploreRequest aggregate = new MultiExploreRequest();
+        aggregate.collection = COLLECTION_NAME;
+        aggregate.aggregate = new AggregationsRequest();
+        Aggregation aggregation = new Aggregation();
+        aggregation.type = AggregationTypeEnum.term;
+        aggregation.field = "params.job";
+        aggregate.aggregate.aggregations = List.of(aggregation);
+
+        given().contentType("application/json;charset=utf-8")
+                .body(List.of(count, filteredCount, compute, aggregate))
+                .when().post(getUrlPath())
+                .then().statusCode(200)
+                .body("size()", equalTo(4))
+                .body("[0].collection", equalTo(COLLECTION_NAME))
+                .body("[0].count.totalnb", equalTo(595))
+                .body("[1].count.totalnb", lessThan(595))
+                .body("[2].compute.totalnb", equalTo(595))
+                .body("[2].compute.value", notNullValue())
+                .body("[3].aggregate.totalnb", equalTo(595))
+                .body("[3].aggregate.elements.size()", greaterThan(0));
+    }
+
+    @Test
+    public void testMultiWithFailingRequest() throws Exception {
+        MultiExploreRequest count = new MultiExploreRequest();
+        count.collection = COLLECTION_NAME;
+        count.count = new Count();
+
+        MultiExploreRequest compute = new MultiExploreRequest();
+        compute.collection = COLLECTION_NAME;
+        compute.compute = new ComputationRequest();
+        compute.compute.field = "params.job";
+        compute.compute.metric = ComputationEnum.AVG;
+
+        given().contentType("application/json;charset=utf-8")
+                .body(List.of(count, compute))
+                .when().post(getUrlPath())
+                .then().statusCode(200)
+                .body("[0].count.totalnb", equalTo(595))
+                .body("[1].error.status", equalTo(400));
+    }
+
+    @Test
+    public void testMultiWithInvalidRequests() throws Exception {
+        given().contentType("application/json;charset=utf-8")
+                .body(Collections.emptyList())
+                .when().post(getUrlPath())
+                .then().statusCode(400);
+
+        MultiExploreRequest notFound = new MultiExploreRequest();
+        notFound.collection = "foo";
+        notFound.count = new Count();
+        given().contentType("application/json;charset=utf-8")
+                .body(List.of(notFound))
+                .when().post(getUrlPath())
+                .then().statusCode(404);
+
+        MultiExploreRequest ambiguous = new MultiExploreRequest();
+        ambiguous.collection = COLLECTION_NAME;
+        ambiguous.count = new Count();
+        ambiguous.aggregate = new AggregationsRequest();
+        given().contentType("application/json;charset=utf-8")
+                .body(List.of(ambiguous))
+                .when().post(getUrlPath())
+                .then().statusCode(400);
+    }
+
+    private String getUrlPath() {
+        return arlasPath + "explore/_multi";
+    }
+}
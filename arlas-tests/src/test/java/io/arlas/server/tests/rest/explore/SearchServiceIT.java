@@ -26,6 +26,7 @@ import io.restassured.response.ExtractableResponse;
 import io.restassured.response.ValidatableResponse;
 import io.restassured.specification.RequestSpecification;
 import org.hamcrest.Matcher;
+import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,6 +48,29 @@ public class SearchServiceIT extends AbstractProjectedTest {
                 .body("totalnb", equalTo(0));
     }
 
+    @Test
+    public void testTrackTotalHits() throws Exception {
+        given().when().get(getUrlPath("geodata"))
+                .then().statusCode(200)
+                .body("totalnb", equalTo(595))
+                .body("totalnb_relation", equalTo("eq"));
+        given().param("track_total_hits", "100")
+                .when().get(getUrlPath("geodata"))
+                .then().statusCode(200)
+                .body("totalnb", equalTo(100))
+                .body("totalnb_relation", equalTo("gte"));
+        given().param("track_total_hits", "false")
+                .param("size", 20)
+                .when().get(getUrlPath("geodata"))
+                .then().statusCode(200)
+                .body("nbhits", equalTo(20))
+                .body("totalnb", equalTo(20))
+                .body("totalnb_relation", equalTo("gte"));
+        given().param("track_total_hits", "0")
+                .when().get(getUrlPath("geodata"))
+                .then().statusCode(400);
+    }
+
     //----------------------------------------------------------------
     //----------------------- FILTER PART ----------------------------
     //----------------------------------------------------------------
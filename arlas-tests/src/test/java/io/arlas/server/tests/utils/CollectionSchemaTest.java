@@ -0,0 +1,130 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.server.core.model.CollectionReference;
+import io.arlas.server.core.model.CollectionReferenceParameters;
+import io.arlas.server.core.model.CollectionSchema;
+import io.arlas.server.core.model.response.CollectionReferenceDescriptionProperty;
+import io.arlas.server.core.model.response.FieldType;
+import io.arlas.server.core.utils.ColumnFilterMatcher;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CollectionSchemaTest {
+
+    private static CollectionReference collection(String excludeFields, String taggableFields) {
+        CollectionReference collectionReference = new CollectionReference("geodata");
+        collectionReference.params = new CollectionReferenceParameters();
+        collectionReference.params.indexName = "geodata";
+        collectionReference.params.excludeFields = excludeFields;
+        collectionReference.params.taggableFields = taggableFields;
+        return collectionReference;
+    }
+
+    private static Map<String, Map<String, Object>> mappings() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("properties", Map.of(
+                "job", Map.of("type", "keyword"),
+                "secret", Map.of("type", "keyword"),
+                "startdate", Map.of("type", "date", "format", "epoch_millis")));
+        params.put("enabled", false);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("id", Map.of("type", "keyword"));
+        properties.put("params", params);
+        properties.put("geo", Map.of("type", "geo_point"));
+        return Map.of("geodata", properties);
+    }
+
+    @Test
+    public void testIndex() {
+        CollectionSchema schema = new CollectionSchema(collection("params.secret", "params.job"), mappings());
+        assertEquals(FieldType.KEYWORD, schema.getType("id"));
+        assertEquals(FieldType.OBJECT, schema.getType("params"));
+        assertEquals(FieldType.DATE, schema.getType("params.startdate"));
+        assertNull(schema.getType("params.secret"));
+        assertNull(schema.getType("id.unknown"));
+        // excluded fields are still typed as in the mappings
+        assertEquals(FieldType.KEYWORD, schema.getMappingType("params.secret"));
+        assertTrue(schema.getMappingType("params.startdate").isDateField());
+        assertEquals(FieldType.UNKNOWN, schema.getMappingType("unknown"));
+        assertEquals(List.of("geo", "id", "params.job", "params.startdate"), new ArrayList<>(schema.getFieldTypes(Optional.empty()).keySet()));
+    }
+
+    @Test
+    public void testDescribe() {
+        CollectionSchema schema = new CollectionSchema(collection(null, "params.job"), mappings());
+        Map<String, CollectionReferenceDescriptionProperty> properties = schema.describe(Optional.empty());
+        CollectionReferenceDescriptionProperty params = properties.get("params");
+        assertFalse(params.indexed);
+        assertFalse(params.properties.get("job").indexed);
+        assertTrue(params.properties.get("job").taggable);
+        assertEquals("epoch_millis", params.properties.get("startdate").format);
+        // the description is a copy
+        properties.remove("params");
+        assertNotNull(schema.describe(Optional.empty()).get("params"));
+
+        Map<String, CollectionReferenceDescriptionProperty> filtered = schema.describe(Optional.of(new ColumnFilterMatcher(Set.of("params\\.job"))));
+        assertEquals(Set.of("params"), filtered.keySet());
+        assertEquals(Set.of("job"), filtered.get("params").properties.keySet());
+        assertEquals(Set.of("params.job"), schema.getFieldTypes(Optional.of(new ColumnFilterMatcher(Set.of("params\\.job")))).keySet());
+    }
+
+    @Test
+    public void testLikeFields() {
+        Map<String, Object> properties = Map.of(
+                "name", Map.of("type", "keyword", "fields", Map.of(
+                        "grams", Map.of("type", "text", "analyzer", "ngram_analyzer"),
+                        "prefixes", Map.of("type", "text", "analyzer", "edge_ngram_analyzer"))),
+                "title", Map.of("type", "keyword", "fields", Map.of("prefixes", Map.of("type", "text", "analyzer", "edge_ngram_analyzer"))),
+                "path", Map.of("type", "wildcard"));
+        // the substring subfield is never guessed from the analyzer
+        CollectionSchema schema = new CollectionSchema(collection(null, null), Map.of("geodata", properties));
+        assertNull(schema.getSubstringField("name"));
+        assertNull(schema.getSubstringField("title"));
+        assertTrue(schema.isWildcard("path"));
+        assertFalse(schema.isWildcard("name"));
+
+        CollectionReference collectionReference = collection(null, null);
+        collectionReference.params.substringSubfield = "prefixes";
+        Map<String, Map<String, Object>> mappings = Map.of("geodata", properties);
+        schema = new CollectionSchema(collectionReference, mappings);
+        assertEquals("name.prefixes", schema.getSubstringField("name"));
+        assertEquals("title.prefixes", schema.getSubstringField("title"));
+        assertFalse(schema.isBuiltFrom(collection(null, null), mappings));
+
+        // the subfield must exist in all the indices
+        schema = new CollectionSchema(collectionReference, Map.of("geodata", properties, "other", Map.of("name", Map.of("type", "keyword"))));
+        assertNull(schema.getSubstringField("name"));
+        assertEquals("title.prefixes", schema.getSubstringField("title"));
+    }
+
+    @Test
+    public void testIsBuiltFrom() {
+        Map<String, Map<String, Object>> mappings = mappings();
+        CollectionSchema schema = new CollectionSchema(collection("params.secret", null), mappings);
+        assertTrue(schema.isBuiltFrom(collection("params.secret", null), mappings));
+        assertFalse(schema.isBuiltFrom(collection(null, null), mappings));
+        assertFalse(schema.isBuiltFrom(collection("params.secret", null), mappings()));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.server.core.utils.ColumnFilterMatcher;
+import io.arlas.server.core.utils.FilterMatcherUtil;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ColumnFilterMatcherTest {
+
+    private static final List<String> PATHS = List.of("id", "params", "params.city", "params.city.name", "params.country",
+            "params.weight", "paramsX", "fullname", "geo_params.centroid", "a-b", "a_b", "text.keyword", "");
+
+    @Test
+    public void testSameAnswerAsPredicates() {
+        for (String filter : List.of("params.city,id", "params*", "*", "*name", "a-b,geo_params.centroid", "p*s.c*y", "text")) {
+            Optional<Set<String>> predicates = FilterMatcherUtil.filterToPredicatesAsSet(Optional.of(filter));
+            ColumnFilterMatcher matcher = new ColumnFilterMatcher(predicates.get());
+            for (String path : PATHS) {
+                assertEquals(filter + " " + path, FilterMatcherUtil.matches(predicates, path), matcher.matches(path));
+                assertEquals(filter + " " + path, FilterMatcherUtil.matchesOrWithin(predicates, path, true), matcher.matchesOrWithin(path, true));
+                assertEquals(filter + " " + path, FilterMatcherUtil.matchesOrWithin(predicates, path, false), matcher.matchesOrWithin(path, false));
+            }
+        }
+    }
+
+    @Test
+    public void testWithin() {
+        ColumnFilterMatcher matcher = new ColumnFilterMatcher(FilterMatcherUtil.filterToPredicatesAsSet(Optional.of("params.city.name")).get());
+        assertTrue(matcher.matchesOrWithin("params", true));
+        assertFalse(matcher.matchesOrWithin("params", false));
+        assertFalse(matcher.matchesOrWithin("params.country", true));
+        assertTrue(matcher.matches("params.city.name"));
+    }
+}
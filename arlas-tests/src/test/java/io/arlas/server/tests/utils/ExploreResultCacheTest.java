@@ -0,0 +1,115 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.server.core.model.CollectionReference;
+import io.arlas.server.core.model.enumerations.OperatorEnum;
+import io.arlas.server.core.model.request.*;
+import io.arlas.server.core.model.response.AggregationResponse;
+import io.arlas.server.core.model.response.Hits;
+import io.arlas.server.core.utils.ExploreResultCache;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExploreResultCacheTest {
+
+    private static final CollectionReference COLLECTION = new CollectionReference("geodata");
+
+    @Test
+    public void testEquivalentRequestsShareResult() throws ArlasException {
+        ExploreResultCache cache = new ExploreResultCache(1024 * 1024, 60, null);
+        AtomicInteger executions = new AtomicInteger();
+        Expression job = new Expression("params.job", OperatorEnum.eq, "Actor");
+        Expression age = new Expression("params.age", OperatorEnum.gte, "10");
+
+        assertEquals(42, count(cache, executions, request(List.of(new MultiValueFilter<>(job), new MultiValueFilter<>(age)), null)).totalnb);
+        assertEquals(42, count(cache, executions, request(List.of(new MultiValueFilter<>(age), new MultiValueFilter<>(job)), null)).totalnb);
+        assertEquals(1, executions.get());
+
+        // a different column filter is a different request
+        count(cache, executions, request(List.of(new MultiValueFilter<>(job), new MultiValueFilter<>(age)), "geodata:params"));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testInvalidate() throws ArlasException {
+        ExploreResultCache cache = new ExploreResultCache(1024 * 1024, 60, null);
+        AtomicInteger executions = new AtomicInteger();
+        MixedRequest request = request(List.of(new MultiValueFilter<>(Arrays.asList(
+                new Expression("params.job", OperatorEnum.eq, "Actor"),
+                new Expression("params.job", OperatorEnum.eq, "Coder")))), null);
+        count(cache, executions, request);
+        count(cache, executions, request);
+        assertEquals(1, executions.get());
+        cache.invalidate(COLLECTION.collectionName);
+        count(cache, executions, request);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testQueryTimeOfCachedResult() throws ArlasException {
+        ExploreResultCache cache = new ExploreResultCache(1024 * 1024, 60, null);
+        MixedRequest request = request(List.of(new MultiValueFilter<>(new Expression("params.job", OperatorEnum.eq, "Actor"))), null);
+        ExploreResultCache.ResultSupplier<AggregationResponse> aggregate = () -> {
+            AggregationResponse response = new AggregationResponse();
+            response.queryTime = 25L;
+            return response;
+        };
+        assertEquals(Long.valueOf(25), cache.get("aggregate", COLLECTION, request, AggregationResponse.class, aggregate).queryTime);
+        assertEquals(Long.valueOf(0), cache.get("aggregate", COLLECTION, request, AggregationResponse.class, aggregate).queryTime);
+    }
+
+    @Test
+    public void testDisabled() throws ArlasException {
+        ExploreResultCache cache = new ExploreResultCache(1024 * 1024, 0, null);
+        AtomicInteger executions = new AtomicInteger();
+        MixedRequest request = request(List.of(new MultiValueFilter<>(new Expression("params.job", OperatorEnum.eq, "Actor"))), null);
+        count(cache, executions, request);
+        count(cache, executions, request);
+        assertEquals(2, executions.get());
+    }
+
+    private Hits count(ExploreResultCache cache, AtomicInteger executions, MixedRequest request) throws ArlasException {
+        return cache.get("count", COLLECTION, request, Hits.class, () -> {
+            executions.incrementAndGet();
+            Hits hits = new Hits(COLLECTION.collectionName);
+            hits.totalnb = 42;
+            return hits;
+        });
+    }
+
+    private MixedRequest request(List<MultiValueFilter<Expression>> f, String columnFilter) {
+        Count count = new Count();
+        count.filter = new Filter();
+        count.filter.f = f;
+        MixedRequest request = new MixedRequest();
+        request.basicRequest = count;
+        request.headerRequest = new Count();
+        request.columnFilter = Optional.ofNullable(columnFilter);
+        return request;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.commons.exceptions.InvalidParameterException;
+import io.arlas.server.core.utils.GeometryCache;
+import io.arlas.server.core.utils.ParamsParser;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GeometryCacheTest {
+
+    private static final String POLYGON = "POLYGON((0 0,10 0,10 10,0 10,0 0))";
+
+    @Test
+    public void testValidGeometryCached() throws Exception {
+        GeometryCache cache = new GeometryCache(1000);
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(POLYGON, cache.getValidGeometry(POLYGON, true, validator(loads)));
+        assertEquals(POLYGON, cache.getValidGeometry(POLYGON, true, validator(loads)));
+        assertEquals(1, loads.get());
+        // the orientation of the geometry depends on the righthand parameter
+        cache.getValidGeometry(POLYGON, false, validator(loads));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStats().hitCount());
+        assertEquals(2, cache.getStats().missCount());
+        assertEquals(10, cache.getVertices());
+    }
+
+    @Test
+    public void testInvalidGeometryNotCached() throws Exception {
+        GeometryCache cache = new GeometryCache(1000);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.getValidGeometry("POLYGON((0 0,0 10))", true, () -> {
+                    loads.incrementAndGet();
+                    throw new InvalidParameterException("invalid");
+                });
+                fail("the validation error must be raised");
+            } catch (InvalidParameterException e) {
+                assertEquals("invalid", e.getMessage());
+            }
+        }
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testShapes() throws Exception {
+        GeometryCache cache = new GeometryCache(1000);
+        Object shape = cache.getShape("shape", POLYGON, Object::new);
+        assertSame(shape, cache.getShape("shape", POLYGON, Object::new));
+        assertNotSame(shape, cache.getShape("polygon-shapes", POLYGON, Object::new));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        GeometryCache cache = new GeometryCache(0);
+        assertFalse(cache.isEnabled());
+        assertNotSame(cache.getShape("shape", POLYGON, Object::new), cache.getShape("shape", POLYGON, Object::new));
+    }
+
+    @Test
+    public void testMaxVertices() throws Exception {
+        GeometryCache cache = new GeometryCache(100);
+        for (int i = 0; i < 100; i++) {
+            cache.getShape("shape", "POLYGON((" + i + " 0,10 0,10 10,0 10," + i + " 0))", Object::new);
+        }
+        cache.getShape("shape", POLYGON, Object::new);
+        assertTrue(cache.getVertices() <= 100);
+    }
+
+    @Test
+    public void testParamsParser() throws Exception {
+        String valid = ParamsParser.getValidGeometry(POLYGON, true);
+        long hits = GeometryCache.getInstance().getStats().hitCount();
+        assertSame(valid, ParamsParser.getValidGeometry(POLYGON, true));
+        assertEquals(hits + 1, GeometryCache.getInstance().getStats().hitCount());
+    }
+
+    private static GeometryCache.Loader<String> validator(AtomicInteger loads) {
+        return () -> {
+            loads.incrementAndGet();
+            return POLYGON;
+        };
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.server.core.utils.BoundingBox;
+import io.arlas.server.core.utils.GeoUtil;
+import io.arlas.server.core.utils.GeometrySimplifier;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class GeometrySimplifierTest {
+
+    // counter clockwise circle of 2000 vertices, centered on (10, 10)
+    private static final String CIRCLE = circle(2000);
+
+    @Test
+    public void testDisabled() throws Exception {
+        GeometrySimplifier simplifier = new GeometrySimplifier(0, 0);
+        assertFalse(simplifier.isEnabled());
+        assertNull(simplifier.simplify(CIRCLE, 0));
+    }
+
+    @Test
+    public void testWithinBudget() throws Exception {
+        GeometrySimplifier simplifier = new GeometrySimplifier(100, 0);
+        assertNull(simplifier.simplify(circle(50), 0));
+        assertNull(simplifier.simplify("-10,-10,10,10", 0));
+    }
+
+    @Test
+    public void testSimplify() throws Exception {
+        GeometrySimplifier simplifier = new GeometrySimplifier(100, 0);
+        GeometrySimplifier.Simplification simplification = simplifier.simplify(CIRCLE, 0);
+        assertNotNull(simplification);
+        assertEquals(2001, simplification.originalVertices());
+        assertTrue(simplification.vertices() <= 100);
+        assertTrue(simplification.tolerance() > 0);
+        Geometry simplified = GeoUtil.readWKT(simplification.geometry());
+        assertTrue(simplified.isValid());
+        assertEquals(simplification.vertices(), simplified.getNumPoints());
+        assertEquals(simplified.getEnvelopeInternal(), simplification.envelope());
+        assertTrue(new Envelope(5, 15, 5, 15).contains(simplification.envelope()));
+    }
+
+    @Test
+    public void testMinTolerance() throws Exception {
+        GeometrySimplifier simplifier = new GeometrySimplifier(1000, 0.5);
+        GeometrySimplifier.Simplification simplification = simplifier.simplify(CIRCLE, 0);
+        assertEquals(0.5, simplification.tolerance(), 0);
+        // the tolerance of the tile is used when larger than the configured one
+        double tileTolerance = GeometrySimplifier.getTileTolerance(new BoundingBox(90, -90, -180, 180));
+        assertEquals(360d / 256, tileTolerance, 1e-9);
+        simplification = simplifier.simplify(CIRCLE, tileTolerance);
+        assertEquals(tileTolerance, simplification.tolerance(), 0);
+        assertTrue(simplification.vertices() < 1000);
+    }
+
+    private static String circle(int vertices) {
+        StringBuilder wkt = new StringBuilder("POLYGON((");
+        for (int i = 0; i <= vertices; i++) {
+            double angle = 2 * Math.PI * (i % vertices) / vertices;
+            if (i > 0) {
+                wkt.append(",");
+            }
+            wkt.append(String.format(Locale.ROOT, "%.6f %.6f", 10 + 5 * Math.cos(angle), 10 + 5 * Math.sin(angle)));
+        }
+        return wkt.append("))").toString();
+    }
+}
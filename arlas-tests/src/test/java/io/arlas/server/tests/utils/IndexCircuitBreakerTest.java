@@ -0,0 +1,89 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.commons.exceptions.ServiceUnavailableException;
+import io.arlas.server.core.impl.elastic.utils.IndexCircuitBreaker;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IndexCircuitBreakerTest {
+
+    @Test
+    public void testDisabled() throws Exception {
+        IndexCircuitBreaker breaker = new IndexCircuitBreaker(0, 60000);
+        assertFalse(breaker.isEnabled());
+        for (int i = 0; i < 10; i++) {
+            breaker.onFailure("index");
+        }
+        breaker.check("index");
+    }
+
+    @Test
+    public void testOpenAfterConsecutiveFailures() throws Exception {
+        IndexCircuitBreaker breaker = new IndexCircuitBreaker(3, 60000);
+        breaker.onFailure("index");
+        breaker.onFailure("index");
+        breaker.onSuccess("index");
+        breaker.onFailure("index");
+        breaker.onFailure("index");
+        breaker.check("index");
+        breaker.onFailure("index");
+        assertThrows(ServiceUnavailableException.class, () -> breaker.check("index"));
+        // the other indices are not affected
+        breaker.check("other");
+    }
+
+    @Test
+    public void testSingleTrialOnceOpenTimeElapsed() throws Exception {
+        IndexCircuitBreaker breaker = new IndexCircuitBreaker(1, 50);
+        breaker.onFailure("index");
+        assertThrows(ServiceUnavailableException.class, () -> breaker.check("index"));
+        Thread.sleep(100);
+        assertTrue(breaker.check("index"));
+        assertThrows(ServiceUnavailableException.class, () -> breaker.check("index"));
+        breaker.onSuccess("index");
+        breaker.check("index");
+        breaker.check("index");
+    }
+
+    @Test
+    public void testOpenAgainWhenTrialFails() throws Exception {
+        IndexCircuitBreaker breaker = new IndexCircuitBreaker(1, 50);
+        breaker.onFailure("index");
+        Thread.sleep(100);
+        breaker.check("index");
+        breaker.onFailure("index");
+        assertThrows(ServiceUnavailableException.class, () -> breaker.check("index"));
+    }
+
+    @Test
+    public void testReleasedTrial() throws Exception {
+        IndexCircuitBreaker breaker = new IndexCircuitBreaker(1, 50);
+        breaker.onFailure("index");
+        Thread.sleep(100);
+        assertTrue(breaker.check("index"));
+        // e.g. the trial request has been cancelled: another request is let through
+        breaker.release("index");
+        assertTrue(breaker.check("index"));
+        assertThrows(ServiceUnavailableException.class, () -> breaker.check("index"));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import co.elastic.clients.json.JsonData;
+import io.arlas.server.core.impl.elastic.utils.IndexTimeRanges;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IndexTimeRangesTest {
+    private static final String FIELD = "params.startdate";
+    private static final long NOW = 1700000000000L;
+
+    @Test
+    public void testRange() {
+        long[] range = IndexTimeRanges.getTimeRange(range(FIELD, "1000", "2000"), FIELD, NOW);
+        assertArrayEquals(new long[]{1000L, 2000L}, range);
+    }
+
+    @Test
+    public void testOtherField() {
+        long[] range = IndexTimeRanges.getTimeRange(range("params.enddate", "1000", "2000"), FIELD, NOW);
+        assertArrayEquals(new long[]{Long.MIN_VALUE, Long.MAX_VALUE}, range);
+    }
+
+    @Test
+    public void testOtherFormat() {
+        Query query = QueryBuilders.range().field(FIELD).gte(JsonData.of("20240101")).format("yyyyMMdd").build()._toQuery();
+        assertArrayEquals(new long[]{Long.MIN_VALUE, Long.MAX_VALUE}, IndexTimeRanges.getTimeRange(query, FIELD, NOW));
+    }
+
+    @Test
+    public void testAndIsIntersected() {
+        Query query = QueryBuilders.bool()
+                .filter(range(FIELD, "1000", "3000"))
+                .filter(range(FIELD, "2000", "4000"))
+                .filter(QueryBuilders.term().field("params.job").value("Actor").build()._toQuery())
+                .build()._toQuery();
+        assertArrayEquals(new long[]{2000L, 3000L}, IndexTimeRanges.getTimeRange(query, FIELD, NOW));
+    }
+
+    @Test
+    public void testOrIsMerged() {
+        Query query = QueryBuilders.bool()
+                .should(range(FIELD, "1000", "2000"))
+                .should(range(FIELD, "5000", "6000"))
+                .minimumShouldMatch("1")
+                .build()._toQuery();
+        assertArrayEquals(new long[]{1000L, 6000L}, IndexTimeRanges.getTimeRange(query, FIELD, NOW));
+    }
+
+    @Test
+    public void testOrWithUnboundedClause() {
+        Query query = QueryBuilders.bool()
+                .should(range(FIELD, "1000", "2000"))
+                .should(QueryBuilders.term().field("params.job").value("Actor").build()._toQuery())
+                .build()._toQuery();
+        assertArrayEquals(new long[]{Long.MIN_VALUE, Long.MAX_VALUE}, IndexTimeRanges.getTimeRange(query, FIELD, NOW));
+    }
+
+    @Test
+    public void testOptionalShouldIsIgnored() {
+        Query query = QueryBuilders.bool()
+                .filter(range(FIELD, "1000", "5000"))
+                .should(range(FIELD, "8000", "9000"))
+                .build()._toQuery();
+        assertArrayEquals(new long[]{1000L, 5000L}, IndexTimeRanges.getTimeRange(query, FIELD, NOW));
+    }
+
+    @Test
+    public void testDateMath() {
+        long hour = 3600000L;
+        long[] range = IndexTimeRanges.getTimeRange(range(FIELD, "now-1d", "now"), FIELD, NOW);
+        assertTrue(range[0] <= NOW - 24 * hour);
+        assertTrue(range[0] > NOW - 25 * hour);
+        assertTrue(range[1] >= NOW);
+        assertTrue(range[1] < NOW + hour);
+
+        range = IndexTimeRanges.getTimeRange(range(FIELD, "1000||+1h", "1000||+2h/h"), FIELD, NOW);
+        assertEquals(1000L + hour, range[0]);
+        assertTrue(range[1] >= 1000L + 2 * hour);
+    }
+
+    @Test
+    public void testUnknownDateMath() {
+        long[] range = IndexTimeRanges.getTimeRange(range(FIELD, "now-1x", "2000"), FIELD, NOW);
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 2000L}, range);
+    }
+
+    private static Query range(String field, String gte, String lte) {
+        return QueryBuilders.range().field(field).gte(JsonData.of(gte)).lte(JsonData.of(lte))
+                .format("epoch_millis").build()._toQuery();
+    }
+}
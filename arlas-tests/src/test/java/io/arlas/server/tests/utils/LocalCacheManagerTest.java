@@ -0,0 +1,60 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.server.core.impl.cache.LocalCacheManager;
+import io.arlas.server.core.model.CollectionReference;
+import io.arlas.server.core.model.response.FieldType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LocalCacheManagerTest {
+
+    @Test
+    public void testPutGetRemove() {
+        LocalCacheManager cacheManager = new LocalCacheManager(60, 10);
+        assertNull(cacheManager.getObject("permissions", "token"));
+        cacheManager.putObject("permissions", "token", "value");
+        assertEquals("value", cacheManager.getObject("permissions", "token"));
+        cacheManager.removeObject("permissions", "token");
+        assertNull(cacheManager.getObject("permissions", "token"));
+        assertEquals(1, cacheManager.getStats().hitCount());
+        assertEquals(2, cacheManager.getStats().missCount());
+    }
+
+    @Test
+    public void testExpiry() {
+        LocalCacheManager cacheManager = new LocalCacheManager(60, 10);
+        cacheManager.putObject("permissions", "token", "value", 0);
+        assertNull(cacheManager.getObject("permissions", "token"));
+    }
+
+    @Test
+    public void testFieldTypesClearedWithCollection() {
+        LocalCacheManager cacheManager = new LocalCacheManager(60, 10);
+        cacheManager.putFieldType("geodata", "id", FieldType.KEYWORD);
+        cacheManager.putIsDateField("geodata", "id", false);
+        cacheManager.putCollectionReference("geodata", new CollectionReference("geodata"));
+        assertNull(cacheManager.getFieldType("geodata", "id"));
+        assertNull(cacheManager.getIsDateField("geodata", "id"));
+        assertNotNull(cacheManager.getCollectionReference("geodata"));
+    }
+}
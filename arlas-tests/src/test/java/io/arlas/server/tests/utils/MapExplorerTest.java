@@ -19,6 +19,7 @@
 
 package io.arlas.server.tests.utils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.arlas.server.core.app.ArlasServerConfiguration;
@@ -29,6 +30,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Collections;
 import java.util.Map;
 
@@ -49,4 +51,19 @@ public class MapExplorerTest {
         Assert.assertThat(flat,IsMapContaining.hasEntry("a_e_g_1", 2));
         Assert.assertThat(flat,IsNot.not(IsMapContaining.hasEntry("a_e_g_2", 3)));
     }
+
+    @Test
+    public void testWriteFlat() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> source = mapper.readerFor(new TypeReference<Map<String, Object>>(){})
+                .readValue(this.getClass().getClassLoader().getResourceAsStream("flatMapTest.json"));
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            MapExplorer.writeFlat(generator, source, ArlasServerConfiguration.FLATTEN_CHAR);
+            generator.writeEndObject();
+        }
+        Map<String, Object> written = mapper.readerFor(new TypeReference<Map<String, Object>>(){}).readValue(writer.toString());
+        Assert.assertEquals(MapExplorer.flat(source, new MapExplorer.ReduceArrayOnKey(ArlasServerConfiguration.FLATTEN_CHAR), Collections.emptySet()), written);
+    }
 }
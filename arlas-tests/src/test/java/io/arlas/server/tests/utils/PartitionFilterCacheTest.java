@@ -0,0 +1,76 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.server.core.model.CollectionReference;
+import io.arlas.server.core.model.request.Filter;
+import io.arlas.server.core.model.request.ValidatedPartitionFilter;
+import io.arlas.server.core.utils.ParamsParser;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PartitionFilterCacheTest {
+
+    private static final String HEADER = "{\"geodata\":{\"f\":[[{\"field\":\"geo_params.geometry\",\"op\":\"within\",\"value\":\"POLYGON((0 0,0 10,10 10,10 0,0 0))\"}]]}}";
+
+    @Test
+    public void testValidatedOnce() throws Exception {
+        CollectionReference collection = new CollectionReference("geodata");
+        List<Filter> filters = ParamsParser.getPartitionFilter(collection, HEADER);
+        assertTrue(filters instanceof ValidatedPartitionFilter);
+        assertEquals(1, filters.size());
+        assertEquals(Boolean.TRUE, filters.get(0).righthand);
+        assertSame(filters, ParamsParser.getPartitionFilter(collection, HEADER));
+        assertNotSame(filters, ParamsParser.getPartitionFilter(new CollectionReference("other"), HEADER));
+
+        ParamsParser.invalidatePartitionFilters("geodata");
+        assertNotSame(filters, ParamsParser.getPartitionFilter(collection, HEADER));
+    }
+
+    @Test
+    public void testInvalidGeometryNotCached() throws Exception {
+        String header = "{\"geodata\":{\"f\":[[{\"field\":\"geo_params.geometry\",\"op\":\"within\",\"value\":\"POLYGON((0 0,0 10))\"}]]}}";
+        List<Filter> filters = ParamsParser.getPartitionFilter(new CollectionReference("geodata"), header);
+        assertFalse(filters instanceof ValidatedPartitionFilter);
+        assertEquals("POLYGON((0 0,0 10))", filters.get(0).f.get(0).get(0).value);
+    }
+
+    @Test
+    public void testCheckedFiltersAreACopy() {
+        Filter filter = new Filter();
+        filter.dateformat = "yyyy";
+        ValidatedPartitionFilter validated = new ValidatedPartitionFilter(List.of(filter));
+        assertFalse(validated.isChecked());
+        assertNull(validated.getChecked());
+
+        Filter checkedFilter = new Filter();
+        ValidatedPartitionFilter checked = validated.setChecked(List.of(checkedFilter));
+        assertTrue(checked.isChecked());
+        assertSame(checked, validated.getChecked());
+        assertSame(checked, checked.getChecked());
+        assertSame(checkedFilter, checked.get(0));
+        // the shared filters are left as they are
+        assertEquals("yyyy", validated.get(0).dateformat);
+        assertThrows(UnsupportedOperationException.class, () -> checked.add(new Filter()));
+    }
+}
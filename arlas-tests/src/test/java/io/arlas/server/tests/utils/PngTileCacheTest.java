@@ -0,0 +1,118 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.server.rest.plugins.eo.PngTileCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PngTileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryCache() throws IOException {
+        PngTileCache cache = new PngTileCache(null, 1024, 60);
+        String key = PngTileCache.key("geodata", 1, 0, 0, null);
+        assertNull(cache.get(key));
+
+        String etag = cache.put(key, new byte[]{1, 2, 3}).getEtag();
+        assertEquals(etag, cache.get(key).getEtag());
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get(key).read());
+        // the entity tag depends on the content only
+        assertEquals(etag, cache.put(PngTileCache.key("geodata", 1, 1, 0, null), new byte[]{1, 2, 3}).getEtag());
+        assertNotEquals(etag, cache.put(key, new byte[]{3, 2, 1}).getEtag());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        PngTileCache cache = new PngTileCache(null, 10, 60);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.put("c", new byte[4]);
+        // only two tiles fit in the budget
+        assertEquals(2, Stream.of("a", "b", "c").filter(key -> cache.get(key) != null).count());
+        // larger than the budget: not cached
+        cache.put("d", new byte[11]);
+        assertNull(cache.get("d"));
+    }
+
+    @Test
+    public void testEmptyTile() throws IOException {
+        PngTileCache cache = new PngTileCache(null, 1024, 60);
+        cache.put("a", new byte[0]);
+        assertTrue(cache.get("a").isEmpty());
+    }
+
+    @Test
+    public void testDiskCacheIsReloaded() throws IOException {
+        String directory = folder.getRoot().getAbsolutePath();
+        PngTileCache cache = new PngTileCache(directory, 1024, 60);
+        String key = PngTileCache.key("geodata", 1, 0, 0, null);
+        String etag = cache.put(key, new byte[]{1, 2, 3}).getEtag();
+
+        PngTileCache reloaded = new PngTileCache(directory, 1024, 60);
+        assertEquals(etag, reloaded.get(key).getEtag());
+        assertArrayEquals(new byte[]{1, 2, 3}, reloaded.get(key).read());
+    }
+
+    @Test
+    public void testKeysAreUnambiguous() {
+        assertNotEquals(PngTileCache.key("geodata", List.of("a:eq:x, y")), PngTileCache.key("geodata", List.of("a:eq:x", "y")));
+        assertNotEquals(PngTileCache.key("geodata", (Object) null), PngTileCache.key("geodata", "null"));
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        PngTileCache cache = new PngTileCache(folder.getRoot().getAbsolutePath(), 1024, 60);
+        String key = PngTileCache.key("geodata", 1, 0, 0, null);
+        String otherKey = PngTileCache.key("other", 1, 0, 0, null);
+        cache.put(key, new byte[]{1, 2, 3});
+        cache.put(otherKey, new byte[]{1, 2, 3});
+
+        cache.invalidate("geodata");
+        assertNull(cache.get(key));
+        assertNotNull(cache.get(otherKey));
+    }
+
+    @Test
+    public void testEvictedTilesAreDeleted() throws IOException {
+        PngTileCache cache = new PngTileCache(folder.getRoot().getAbsolutePath(), 10, 60);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.put("c", new byte[4]);
+        assertEquals(2, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testDisabledCache() throws IOException {
+        PngTileCache cache = new PngTileCache(null, 1024, 0);
+        assertNotNull(cache.put("a", new byte[]{1}).getEtag());
+        assertNull(cache.get("a"));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import co.elastic.clients.json.JsonData;
+import io.arlas.server.core.impl.elastic.utils.QueryOptimizer;
+import org.junit.Test;
+
+import java.util.*;
+
+import static io.arlas.server.core.impl.elastic.utils.QueryOptimizer.optimize;
+import static io.arlas.server.core.impl.elastic.utils.QueryOptimizer.toJson;
+import static org.junit.Assert.*;
+
+public class QueryOptimizerTest {
+
+    private static final List<String> FIELDS = List.of("a", "b");
+    private static final List<String> VALUES = List.of("1", "2", "3");
+
+    @Test
+    public void testFlattenSingleClause() {
+        Query query = and(or(term("a", "1")));
+        assertEquals(toJson(term("a", "1")), toJson(optimize(query)));
+    }
+
+    @Test
+    public void testMergeTermsOfOr() {
+        Query query = or(term("a", "1"), term("a", "2"), terms("a", "2", "3"), term("b", "1"));
+        Query expected = or(terms("a", "1", "2", "3"), term("b", "1"));
+        assertEquals(toJson(expected), toJson(optimize(query)));
+    }
+
+    @Test
+    public void testMergeTermsOfMustNot() {
+        Query query = QueryBuilders.bool().mustNot(or(term("a", "1"), term("a", "2"))).mustNot(term("a", "3")).build()._toQuery();
+        Query expected = QueryBuilders.bool().mustNot(terms("a", "1", "2", "3")).build()._toQuery();
+        assertEquals(toJson(expected), toJson(optimize(query)));
+    }
+
+    @Test
+    public void testTermsOfAndNotMerged() {
+        Query query = and(term("a", "1"), term("a", "2"));
+        assertEquals(toJson(query), toJson(optimize(query)));
+    }
+
+    @Test
+    public void testDeduplicate() {
+        // the same filter in f and in the collection filter
+        Query query = and(or(term("a", "1")), and(term("a", "1"), term("b", "2")), term("b", "2"));
+        Query expected = and(term("a", "1"), term("b", "2"));
+        assertEquals(toJson(expected), toJson(optimize(query)));
+    }
+
+    @Test
+    public void testDeduplicateRanges() {
+        Query query = and(range("a", "1", "3"), term("b", "2"), range("a", "1", "3"), range("a", "1", "2"));
+        Query expected = and(range("a", "1", "3"), term("b", "2"), range("a", "1", "2"));
+        assertEquals(toJson(expected), toJson(optimize(query)));
+    }
+
+    @Test
+    public void testPartitionFilterAbsorbed() {
+        // f=a:eq:1 with a partition filter (a:eq:1 AND b:eq:1) OR b:eq:2
+        Query partition = or(and(term("a", "1"), term("b", "1")), and(term("b", "2")));
+        Query query = and(or(term("a", "1")), partition);
+        Query expected = and(term("a", "1"), terms("b", "1", "2"));
+        assertEquals(toJson(expected), toJson(optimize(query)));
+
+        // the partition filter is always true when one of its branches is required by the request
+        query = and(term("a", "1"), term("b", "1"), or(and(term("a", "1"), term("b", "1")), term("b", "2")));
+        expected = and(term("a", "1"), term("b", "1"));
+        assertEquals(toJson(expected), toJson(optimize(query)));
+    }
+
+    @Test
+    public void testKeptAsIs() {
+        Query atLeastTwo = QueryBuilders.bool().should(term("a", "1"), term("b", "1"), term("b", "2")).minimumShouldMatch("2").build()._toQuery();
+        assertEquals(toJson(atLeastTwo), toJson(optimize(atLeastTwo)));
+        Query boosted = QueryBuilders.bool().filter(term("a", "1")).boost(2f).build()._toQuery();
+        assertEquals(toJson(boosted), toJson(optimize(boosted)));
+        Query noMatch = QueryBuilders.bool().minimumShouldMatch("1").build()._toQuery();
+        assertEquals(toJson(noMatch), toJson(optimize(noMatch)));
+    }
+
+    @Test
+    public void testIdempotent() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Query optimized = optimize(randomQuery(random, 3));
+            assertEquals(toJson(optimized), toJson(optimize(optimized)));
+        }
+    }
+
+    @Test
+    public void testEquivalent() {
+        List<Map<String, String>> docs = new ArrayList<>();
+        for (String a : VALUES) {
+            for (String b : VALUES) {
+                docs.add(Map.of("a", a, "b", b));
+            }
+        }
+        docs.add(Map.of("a", "1"));
+        docs.add(Map.of());
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            Query query = randomQuery(random, 4);
+            Query optimized = optimize(query);
+            for (Map<String, String> doc : docs) {
+                assertEquals(toJson(query) + " -> " + toJson(optimized) + " on " + doc, matches(query, doc), matches(optimized, doc));
+            }
+        }
+    }
+
+    private static Query randomQuery(Random random, int depth) {
+        int kind = random.nextInt(depth > 0 ? 6 : 2);
+        String field = FIELDS.get(random.nextInt(FIELDS.size()));
+        switch (kind) {
+            case 0:
+                return term(field, VALUES.get(random.nextInt(VALUES.size())));
+            case 1:
+                return terms(field, VALUES.get(random.nextInt(VALUES.size())), VALUES.get(random.nextInt(VALUES.size())));
+            default:
+                BoolQuery.Builder bool = QueryBuilders.bool();
+                int clauses = random.nextInt(4);
+                for (int i = 0; i < clauses; i++) {
+                    Query clause = randomQuery(random, depth - 1);
+                    switch (random.nextInt(4)) {
+                        case 0 -> bool.filter(clause);
+                        case 1 -> bool.must(clause);
+                        case 2 -> bool.mustNot(clause);
+                        default -> bool.should(clause);
+                    }
+                }
+                switch (random.nextInt(3)) {
+                    case 0 -> bool.minimumShouldMatch("1");
+                    case 1 -> bool.minimumShouldMatch("2");
+                    default -> { }
+                }
+                return bool.build()._toQuery();
+        }
+    }
+
+    /**
+     * Evaluates the query on a document holding a single value per field, as Elasticsearch does in a filter context.
+     */
+    private static boolean matches(Query query, Map<String, String> doc) {
+        if (query.isTerm()) {
+            return query.term().value().stringValue().equals(doc.get(query.term().field()));
+        } else if (query.isTerms()) {
+            return query.terms().terms().value().stream().anyMatch(v -> v.stringValue().equals(doc.get(query.terms().field())));
+        } else if (query.isMatchAll()) {
+            return true;
+        }
+        BoolQuery bool = query.bool();
+        boolean required = bool.filter().stream().allMatch(q -> matches(q, doc))
+                && bool.must().stream().allMatch(q -> matches(q, doc))
+                && bool.mustNot().stream().noneMatch(q -> matches(q, doc));
+        int minimumShouldMatch;
+        if (bool.minimumShouldMatch() != null) {
+            minimumShouldMatch = Integer.parseInt(bool.minimumShouldMatch());
+        } else {
+            minimumShouldMatch = !bool.should().isEmpty() && bool.filter().isEmpty() && bool.must().isEmpty() ? 1 : 0;
+        }
+        return required && bool.should().stream().filter(q -> matches(q, doc)).count() >= minimumShouldMatch;
+    }
+
+    private static Query term(String field, String value) {
+        return QueryBuilders.term().field(field).value(value).build()._toQuery();
+    }
+
+    private static Query range(String field, String gte, String lt) {
+        return QueryBuilders.range().field(field).gte(JsonData.of(gte)).lt(JsonData.of(lt)).build()._toQuery();
+    }
+
+    private static Query terms(String field, String... values) {
+        return QueryOptimizer.terms(field, Arrays.stream(values).distinct().map(FieldValue::of).toList());
+    }
+
+    private static Query and(Query... queries) {
+        return QueryBuilders.bool().filter(Arrays.asList(queries)).build()._toQuery();
+    }
+
+    private static Query or(Query... queries) {
+        return QueryBuilders.bool().should(Arrays.asList(queries)).minimumShouldMatch("1").build()._toQuery();
+    }
+}
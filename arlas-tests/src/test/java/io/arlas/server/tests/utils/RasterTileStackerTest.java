@@ -0,0 +1,177 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import cyclops.control.Try;
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.server.core.utils.Tile;
+import io.arlas.server.rest.plugins.eo.RasterTile;
+import io.arlas.server.rest.plugins.eo.RasterTileStacker;
+import io.arlas.server.rest.plugins.eo.TileProvider;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedList;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RasterTileStackerTest {
+
+    private static final int SIZE = 256;
+
+    @Test
+    public void testStackUntilCovered() throws ArlasException {
+        AtomicInteger fetches = new AtomicInteger();
+        Queue<TileProvider<RasterTile>> providers = providers(fetches,
+                image(Color.RED, 0, SIZE / 2), image(Color.BLUE, SIZE / 2, SIZE), image(Color.GREEN, 0, SIZE));
+
+        RasterTile tile = stack(providers, 100, Runnable::run, 1);
+
+        // the left and right halves cover the tile: the third one is not fetched
+        assertEquals(2, fetches.get());
+        assertEquals(Color.RED.getRGB(), tile.getImg().getRGB(0, 0));
+        assertEquals(Color.BLUE.getRGB(), tile.getImg().getRGB(SIZE - 1, SIZE - 1));
+    }
+
+    @Test
+    public void testStackOrder() throws ArlasException {
+        BufferedImage bottom = image(Color.RED, 0, SIZE);
+        BufferedImage top = image(Color.BLUE, 0, SIZE / 2);
+
+        RasterTile tile = stack(providers(new AtomicInteger(), bottom, top), 100, Runnable::run, 1);
+
+        assertEquals(Color.BLUE.getRGB(), tile.getImg().getRGB(0, 0));
+        assertEquals(Color.RED.getRGB(), tile.getImg().getRGB(SIZE - 1, 0));
+        // the source tiles may be cached: they are left untouched
+        assertEquals(Color.RED.getRGB(), bottom.getRGB(0, 0));
+    }
+
+    @Test
+    public void testPrefetch() throws ArlasException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AtomicInteger fetches = new AtomicInteger();
+            Queue<TileProvider<RasterTile>> providers = providers(fetches,
+                    image(Color.RED, 0, SIZE / 4), image(Color.BLUE, SIZE / 4, SIZE / 2),
+                    image(Color.GREEN, SIZE / 2, 3 * SIZE / 4), image(Color.YELLOW, 3 * SIZE / 4, SIZE),
+                    image(Color.BLACK, 0, SIZE), image(Color.BLACK, 0, SIZE));
+
+            RasterTile tile = stack(providers, 100, executor, 4);
+
+            // the tiles are stacked in order, the ones fetched beyond the coverage are dropped
+            assertTrue(fetches.get() <= 6);
+            assertEquals(Color.RED.getRGB(), tile.getImg().getRGB(0, 0));
+            assertEquals(Color.YELLOW.getRGB(), tile.getImg().getRGB(SIZE - 1, 0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelledFetchIsInterrupted() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch interrupted = new CountDownLatch(1);
+            Queue<TileProvider<RasterTile>> providers = new LinkedList<>();
+            providers.add(where -> {
+                try {
+                    // the covering tile is returned once the slow fetch is in flight
+                    started.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Try.success(Optional.of(new RasterTile(where.getxTile(), where.getyTile(), where.getzTile(), image(Color.RED, 0, SIZE))));
+            });
+            providers.add(where -> {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return Try.success(Optional.empty());
+            });
+
+            stack(providers, 100, executor, 2);
+
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNoCoverageRequired() throws ArlasException {
+        AtomicInteger fetches = new AtomicInteger();
+        RasterTile tile = stack(providers(fetches, image(Color.RED, 0, SIZE / 2), image(Color.BLUE, SIZE / 2, SIZE)),
+                0, Runnable::run, 1);
+
+        assertEquals(1, fetches.get());
+        assertEquals(0, tile.getImg().getRGB(SIZE - 1, 0) >>> 24);
+    }
+
+    private static RasterTile stack(Queue<TileProvider<RasterTile>> providers, int coverage,
+                                    Executor executor, int prefetch) throws ArlasException {
+        return new RasterTileStacker()
+                .stack(providers)
+                .sampling(8)
+                .upTo(new RasterTileStacker.Percentage(coverage))
+                .prefetch(executor, prefetch)
+                .on(new Tile(0, 0, 1))
+                .toOptional()
+                .flatMap(t -> t)
+                .orElseThrow();
+    }
+
+    private static Queue<TileProvider<RasterTile>> providers(AtomicInteger fetches, BufferedImage... images) {
+        Queue<TileProvider<RasterTile>> providers = new LinkedList<>();
+        for (BufferedImage img : images) {
+            providers.add(where -> {
+                fetches.incrementAndGet();
+                return Try.withCatch(() -> Optional.of(new RasterTile(where.getxTile(), where.getyTile(), where.getzTile(), img)),
+                        ArlasException.class);
+            });
+        }
+        return providers;
+    }
+
+    /**
+     * Transparent image, painted with the color between the given columns.
+     */
+    private static BufferedImage image(Color color, int fromX, int toX) {
+        BufferedImage img = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = img.getGraphics();
+        g.setColor(color);
+        g.fillRect(fromX, 0, toX - fromX, SIZE);
+        g.dispose();
+        return img;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.commons.rest.utils.RequestContext;
+import io.arlas.commons.rest.utils.RequestContextFilter;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RequestContextFilterTest {
+
+    @Test
+    public void testDefaultTimeout() throws Exception {
+        RequestContext context = filter(new RequestContextFilter(10000, "_search:30000"), "/arlas/explore/geodata/_count", null, null);
+        assertTrue(context.hasDeadline());
+        assertTrue(context.getRemainingMillis() > 5000 && context.getRemainingMillis() <= 10000);
+        assertFalse(context.isClientDeadline());
+    }
+
+    @Test
+    public void testEndpointTimeout() throws Exception {
+        RequestContext context = filter(new RequestContextFilter(10000, "_search:30000, _count:0"), "/arlas/explore/geodata/_search", null, null);
+        assertTrue(context.getRemainingMillis() > 20000 && context.getRemainingMillis() <= 30000);
+        context = filter(new RequestContextFilter(10000, "_search:30000, _count:0"), "/arlas/explore/geodata/_count", null, null);
+        assertFalse(context.hasDeadline());
+    }
+
+    @Test
+    public void testClientTimeout() throws Exception {
+        RequestContextFilter filter = new RequestContextFilter(10000, "_search:30000");
+        // the client can shorten the timeout
+        RequestContext context = filter(filter, "/arlas/explore/geodata/_search", "1000", null);
+        assertTrue(context.getRemainingMillis() <= 1000);
+        assertTrue(context.isClientDeadline());
+        // but not extend it
+        context = filter(filter, "/arlas/explore/geodata/_search", "60000", null);
+        assertTrue(context.getRemainingMillis() > 20000 && context.getRemainingMillis() <= 30000);
+        assertFalse(context.isClientDeadline());
+        // invalid values are ignored
+        context = filter(filter, "/arlas/explore/geodata/_search", "soon", null);
+        assertFalse(context.isClientDeadline());
+        // the client sets the deadline when the server has none
+        context = filter(new RequestContextFilter(0, null), "/arlas/explore/geodata/_search", "1000", null);
+        assertTrue(context.hasDeadline());
+        assertTrue(context.isClientDeadline());
+    }
+
+    @Test
+    public void testInvalidEndpointTimeouts() {
+        assertThrows(IllegalArgumentException.class, () -> new RequestContextFilter(0, "_search"));
+    }
+
+    @Test
+    public void testCancelOnError() throws Exception {
+        AtomicReference<AsyncListener> listener = new AtomicReference<>();
+        RequestContext context = filter(new RequestContextFilter(0, null), "/arlas/explore/geodata/_search", null, listener);
+        assertNotNull(listener.get());
+        assertFalse(context.isCancelled());
+        listener.get().onError(null);
+        assertTrue(context.isCancelled());
+    }
+
+    /**
+     * @return the context of the request processed by the filter
+     */
+    private static RequestContext filter(RequestContextFilter filter, String uri, String timeout, AtomicReference<AsyncListener> asyncListener) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        if (timeout != null) {
+            headers.put(RequestContext.TIMEOUT_HEADER, timeout);
+        }
+        AsyncContext asyncContext = proxy(AsyncContext.class, (method, args) -> {
+            if (method.equals("addListener")) {
+                asyncListener.set((AsyncListener) args[0]);
+            }
+            return null;
+        });
+        HttpServletRequest request = proxy(HttpServletRequest.class, (method, args) -> switch (method) {
+            case "getRequestURI" -> uri;
+            case "getHeader" -> headers.get((String) args[0]);
+            case "isAsyncStarted" -> asyncListener != null;
+            case "getAsyncContext" -> asyncContext;
+            default -> null;
+        });
+        HttpServletResponse response = proxy(HttpServletResponse.class, (method, args) -> null);
+        AtomicReference<RequestContext> context = new AtomicReference<>();
+        filter.doFilter(request, response, (req, res) -> context.set(RequestContext.current()));
+        assertNotNull(context.get());
+        return context.get();
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object ret = handler.invoke(method.getName(), args);
+            if (ret == null && method.getReturnType() == boolean.class) {
+                return false;
+            }
+            return ret;
+        });
+    }
+}
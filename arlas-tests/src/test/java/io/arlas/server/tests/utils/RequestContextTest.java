@@ -0,0 +1,113 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.commons.exceptions.GatewayTimeoutException;
+import io.arlas.commons.exceptions.ServiceUnavailableException;
+import io.arlas.commons.rest.utils.RequestContext;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestContextTest {
+
+    @After
+    public void tearDown() {
+        RequestContext.set(null);
+    }
+
+    @Test
+    public void testNoDeadline() throws ArlasException {
+        RequestContext context = new RequestContext(null, 0);
+        assertFalse(context.hasDeadline());
+        assertFalse(context.isClientDeadline());
+        assertEquals(Long.MAX_VALUE, context.getRemainingMillis());
+        assertNotNull(context.getOpaqueId());
+        context.checkActive();
+    }
+
+    @Test
+    public void testOpaqueIdIsUnique() {
+        RequestContext context = new RequestContext("id", 0);
+        RequestContext other = new RequestContext("id", 0);
+        assertEquals("id", context.getClientOpaqueId());
+        assertTrue(context.getOpaqueId().startsWith("id;"));
+        assertNotEquals(context.getOpaqueId(), other.getOpaqueId());
+        RequestContext anonymous = new RequestContext(null, 0);
+        assertEquals(anonymous.getOpaqueId(), anonymous.getClientOpaqueId());
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        RequestContext context = new RequestContext("id", 50);
+        AtomicInteger cancellations = new AtomicInteger();
+        context.onCancel(cancellations::incrementAndGet);
+        assertTrue(context.hasDeadline());
+        assertTrue(context.getRemainingMillis() <= 50);
+        context.checkActive();
+        Thread.sleep(200);
+        assertTrue(context.isCancelled());
+        assertEquals(1, cancellations.get());
+        assertEquals(1, context.getRemainingMillis());
+        assertThrows(GatewayTimeoutException.class, context::checkActive);
+    }
+
+    @Test
+    public void testCancel() {
+        RequestContext context = new RequestContext("id", 0);
+        AtomicInteger cancellations = new AtomicInteger();
+        context.onCancel(cancellations::incrementAndGet);
+        Runnable unregister = context.onCancel(cancellations::incrementAndGet);
+        unregister.run();
+        context.cancel();
+        context.cancel();
+        assertEquals(1, cancellations.get());
+        assertThrows(ServiceUnavailableException.class, context::checkActive);
+        // handlers registered once the request is cancelled are called immediately
+        context.onCancel(cancellations::incrementAndGet);
+        assertEquals(2, cancellations.get());
+    }
+
+    @Test
+    public void testFinish() {
+        RequestContext context = new RequestContext("id", 50);
+        RequestContext.set(context);
+        assertSame(context, RequestContext.current());
+        context.finish();
+        assertNull(RequestContext.current());
+        context.cancel();
+        assertFalse(context.isCancelled());
+    }
+
+    @Test
+    public void testWrap() throws Exception {
+        RequestContext context = new RequestContext("id", 0);
+        RequestContext.set(context);
+        Callable<RequestContext> task = RequestContext.wrap(RequestContext::current);
+        RequestContext.set(null);
+        assertSame(context, task.call());
+        assertNull(RequestContext.current());
+    }
+}
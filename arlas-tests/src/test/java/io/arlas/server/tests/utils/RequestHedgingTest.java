@@ -0,0 +1,107 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.server.core.impl.elastic.utils.RequestHedging;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestHedgingTest {
+
+    @Test
+    public void testDisabled() {
+        assertFalse(new RequestHedging(0, 10).isEnabled());
+        assertTrue(new RequestHedging(5, 10).isEnabled());
+    }
+
+    @Test
+    public void testNoHedgeWithoutEnoughSamples() throws Exception {
+        RequestHedging hedging = new RequestHedging(100, 10);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> result = hedging.execute("_search|index", () -> primary);
+        Thread.sleep(100);
+        primary.complete("primary");
+        assertEquals("primary", result.get(1, TimeUnit.SECONDS));
+        assertEquals(0, hedging.getFired());
+    }
+
+    @Test
+    public void testSlowRequestIsHedged() throws Exception {
+        RequestHedging hedging = new RequestHedging(100, 10);
+        warmUp(hedging, "_search|index");
+        List<CompletableFuture<String>> requests = new ArrayList<>();
+        CompletableFuture<String> result = hedging.execute("_search|index", () -> {
+            CompletableFuture<String> request = requests.isEmpty() ? new CompletableFuture<>() : CompletableFuture.completedFuture("backup");
+            requests.add(request);
+            return request;
+        });
+        assertEquals("backup", result.get(1, TimeUnit.SECONDS));
+        assertEquals(2, requests.size());
+        // the slow request is cancelled
+        assertTrue(requests.get(0).isCancelled());
+        assertEquals(1, hedging.getFired());
+        assertEquals(1, hedging.getWon());
+    }
+
+    @Test
+    public void testFailureWaitsForTheOtherRequest() throws Exception {
+        RequestHedging hedging = new RequestHedging(100, 10);
+        warmUp(hedging, "_search|index");
+        List<CompletableFuture<String>> requests = new ArrayList<>();
+        CompletableFuture<String> result = hedging.execute("_search|index", () -> {
+            CompletableFuture<String> request = new CompletableFuture<>();
+            requests.add(request);
+            return request;
+        });
+        Thread.sleep(100);
+        assertEquals(2, requests.size());
+        requests.get(1).completeExceptionally(new IllegalStateException("node down"));
+        assertFalse(result.isDone());
+        requests.get(0).complete("primary");
+        assertEquals("primary", result.get(1, TimeUnit.SECONDS));
+        assertEquals(0, hedging.getWon());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        RequestHedging hedging = new RequestHedging(5, 10);
+        warmUp(hedging, "_search|index");
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(hedging.execute("_search|index", CompletableFuture::new));
+        }
+        Thread.sleep(100);
+        // 52 requests with a budget of 5%: 2 hedges at most
+        assertTrue(hedging.getFired() <= 2);
+        results.forEach(r -> r.cancel(true));
+    }
+
+    private static void warmUp(RequestHedging hedging, String key) throws Exception {
+        for (int i = 0; i < 32; i++) {
+            hedging.execute(key, () -> CompletableFuture.completedFuture("fast")).get();
+        }
+    }
+}
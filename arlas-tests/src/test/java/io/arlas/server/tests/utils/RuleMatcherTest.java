@@ -0,0 +1,71 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.filter.core.ArlasClaims;
+import io.arlas.filter.core.RuleClaim;
+import io.arlas.filter.core.RuleMatcher;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RuleMatcherTest {
+
+    private static final List<RuleClaim> RULES = List.of(
+            new RuleClaim("/explore/_list", "GET", 1),
+            new RuleClaim("/explore/geodata/.*", "GET,POST", 1),
+            new RuleClaim("/explore/\\Qorg.com\\E_.*", "GET", 1),
+            new RuleClaim("/collections/[a-z]+", "GET", 1),
+            new RuleClaim("/write/.*", "POST", 1),
+            new RuleClaim("/dots\\.*", "GET", 1));
+
+    private static final List<String> PATHS = List.of("/explore/_list", "/explore/_list/", "/explore/geodata/_count",
+            "/explore/geodata/", "/explore/geodata", "/explore/geodata/\n_count", "/explore/org.com_data/_search",
+            "/explore/orgXcom_data/_search", "/collections/geodata", "/collections/geo_data", "/write/geodata",
+            "/dots", "/dots..", "/dots/", "");
+
+    @Test
+    public void testSameAnswerAsRules() {
+        RuleMatcher matcher = new RuleMatcher(RULES);
+        for (String method : List.of("GET", "POST", "DELETE", "PURGE")) {
+            for (String path : PATHS) {
+                boolean expected = RULES.stream().anyMatch(rule -> rule.match(method, path));
+                assertEquals(method + " " + path, expected, matcher.matches(method, path));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidRuleIsIgnored() {
+        RuleMatcher matcher = new RuleMatcher(List.of(new RuleClaim("/explore/(", "GET", 1),
+                new RuleClaim("/explore/.*", "GET", 1)));
+        assertTrue(matcher.matches("GET", "/explore/_list"));
+        assertFalse(matcher.matches("POST", "/explore/_list"));
+    }
+
+    @Test
+    public void testClaimsWithVariables() {
+        ArlasClaims claims = new ArlasClaims(List.of("rule:/explore/${org}_.*:GET", "var:org:org.com"));
+        assertTrue(claims.isAllowed("GET", "/explore/org.com_data/_search"));
+        assertFalse(claims.isAllowed("GET", "/explore/orgXcom_data/_search"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.server.tests.utils;
+
+import io.arlas.server.core.utils.ShapefileWriter;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+public class ShapefileWriterTest {
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    @Test
+    public void testShapefilePerGeometryType() throws IOException {
+        List<ShapefileWriter.Column> columns = List.of(
+                new ShapefileWriter.Column("id", String.class),
+                new ShapefileWriter.Column("params_age", Long.class));
+        ShapefileWriter writer = new ShapefileWriter("geodata", columns, Map.of("params_age", "age"));
+        try {
+            writer.write(FACTORY.createPoint(new Coordinate(1, 2)), Arrays.asList("a", 12));
+            writer.write(FACTORY.createPoint(new Coordinate(3, 4)), Arrays.asList("b", null));
+            writer.write(FACTORY.createPolygon(new Coordinate[]{
+                    new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(1, 1), new Coordinate(0, 0)}), Arrays.asList("c", "13"));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            writer.zip(output);
+
+            Map<String, byte[]> entries = unzip(output.toByteArray());
+            for (String extension : List.of("shp", "shx", "dbf", "prj", "cst")) {
+                assertTrue(entries.containsKey("geodata_Point." + extension));
+                assertTrue(entries.containsKey("geodata_MultiPolygon." + extension));
+            }
+            assertEquals("geometry,id,params_age", new String(entries.get("column_mapping.txt")));
+            assertFalse(entries.containsKey("README.txt"));
+        } finally {
+            writer.delete();
+        }
+    }
+
+    @Test
+    public void testNoFeature() throws IOException {
+        ShapefileWriter writer = new ShapefileWriter("geodata", List.of(new ShapefileWriter.Column("id", String.class)), null);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            writer.zip(output);
+            assertEquals(Set.of("README.txt"), unzip(output.toByteArray()).keySet());
+        } finally {
+            writer.delete();
+        }
+    }
+
+    private static Map<String, byte[]> unzip(byte[] zip) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                entries.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
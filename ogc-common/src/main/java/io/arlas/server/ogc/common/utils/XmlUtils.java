@@ -25,7 +25,8 @@ import io.arlas.commons.exceptions.InternalServerErrorException;
 import io.arlas.server.core.model.CollectionReference;
 import io.arlas.server.core.model.response.CollectionReferenceDescriptionProperty;
 import io.arlas.server.core.model.response.FieldType;
-import io.arlas.server.core.utils.FilterMatcherUtil;
+import io.arlas.server.core.utils.ColumnFilterMatcher;
+import io.arlas.server.core.utils.ColumnFilterUtil;
 import io.arlas.server.core.utils.MapExplorer;
 import io.arlas.server.core.utils.TimestampTypeMapper;
 import org.apache.commons.lang3.StringUtils;
@@ -55,17 +56,17 @@ public class XmlUtils {
     private static final Pattern ELEMENT_NAME_CHAR_PATTERN = Pattern.compile("(" + ELEMENT_NAME_START_CHAR + "|-|\\.|[0-9]|\\xB7|[\\u0300-\\u036F]|[\\u203F-\\u2040])*");
 
     public static void parsePropertiesXsd(Map<String, CollectionReferenceDescriptionProperty> properties, XMLStreamWriter writer, Stack<String> namespace, ArrayList<Pattern> excludeFields,
-                                          Optional<Set<String>> columnFilterPredicates) throws XMLStreamException {
+                                          Optional<ColumnFilterMatcher> columnFilterMatcher) throws XMLStreamException {
 
         for (String key : properties.keySet()) {
             CollectionReferenceDescriptionProperty property = properties.get(key);
             namespace.push(key);
             String path = String.join(".", new ArrayList<>(namespace));
             boolean excludePath = excludeFields.stream().anyMatch(pattern -> pattern.matcher(path).matches());
-            boolean isAllowed = FilterMatcherUtil.matchesOrWithin(columnFilterPredicates, path, property.type == FieldType.OBJECT);
+            boolean isAllowed = ColumnFilterUtil.matchesOrWithin(columnFilterMatcher, path, property.type == FieldType.OBJECT);
             if (!excludePath && isAllowed && property.indexed) {
                 if (property.type == FieldType.OBJECT && property.properties != null) {
-                    parsePropertiesXsd(property.properties, writer, namespace, excludeFields, columnFilterPredicates);
+                    parsePropertiesXsd(property.properties, writer, namespace, excludeFields, columnFilterMatcher);
                 } else {
                     writeElementForType(writer, String.join(".", new ArrayList<>(namespace)), property);
                 }
@@ -123,7 +123,7 @@ public class DescribeFeatureTypeHandler {
                 writer,
                 new Stack<String>(),
                 excludeFields,
-                ColumnFilterUtil.getColumnFilterPredicates(columnFilter, collectionReference));
+                ColumnFilterUtil.getColumnFilterMatcher(columnFilter, collectionReference));
 
 
         writer.writeEndElement();
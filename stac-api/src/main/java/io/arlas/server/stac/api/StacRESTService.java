@@ -272,6 +272,8 @@ public abstract class StacRESTService {
                                                                  boolean isOgc) throws ArlasException {
         Search search = new Search();
         search.filter = ParamsParser.getFilter(collectionReference, filter, null, null, true);
+        // the number of matched items is always given
+        search.track_total_hits = Boolean.TRUE.toString();
         if (body != null) {
             String sortBy = null;
             if(body.getSortBy() instanceof String){